@@ -0,0 +1,45 @@
+package tams.controller;
+
+/**
+ * A change to one entity made through the controller.
+ *
+ * @param <T> the type of entity changed
+ */
+public class EntityChangeEvent<T> {
+
+    /**
+     * What happened to the entity.
+     */
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    private final Type type;
+    private final T entity;
+
+    /**
+     * Create a change event.
+     *
+     * @param type what happened to the entity
+     * @param entity the entity
+     */
+    public EntityChangeEvent(Type type, T entity) {
+        this.type = type;
+        this.entity = entity;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public T getEntity() {
+        return entity;
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + entity;
+    }
+}
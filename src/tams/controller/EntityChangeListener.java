@@ -0,0 +1,16 @@
+package tams.controller;
+
+/**
+ * Callback for entities created, updated or deleted through the controller.
+ *
+ * @param <T> the type of entity listened for
+ */
+public interface EntityChangeListener<T> {
+
+    /**
+     * Called after an entity has changed, on the thread that changed it.
+     *
+     * @param event the change
+     */
+    void entityChanged(EntityChangeEvent<T> event);
+}
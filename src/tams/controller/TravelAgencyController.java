@@ -3,14 +3,21 @@ package tams.controller;
 import java.util.ArrayList;
 import java.util.UUID;
 import java.util.Date;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import tams.exceptions.BookingException;
 import tams.exceptions.PaymentProcessException;
 import tams.model.*;
 import tams.model.interfaces.Bookable;
+import tams.util.BookingColumnStore;
+import tams.util.BookingOrder;
 import tams.util.DataManager;
+import tams.util.LoadProgressListener;
+import tams.util.Page;
 
 /**
  * Controller class that manages the business logic of the Travel Agency Management System.
@@ -20,11 +27,24 @@ public class TravelAgencyController {
     
     private DataManager dataManager;
     
+    // Change listeners with the type of entity each listens for
+    private final List<Subscription<?>> subscriptions = new CopyOnWriteArrayList<>();
+    
     /**
      * Constructor that initializes the controller with a data manager.
      */
     public TravelAgencyController() {
+        this(null);
+    }
+    
+    /**
+     * Constructor that reports load progress to the given listener.
+     * 
+     * @param progressListener the listener notified while data files are read, or null
+     */
+    public TravelAgencyController(LoadProgressListener progressListener) {
         dataManager = new DataManager();
+        dataManager.setProgressListener(progressListener);
         loadData();
     }
     
@@ -59,16 +79,16 @@ public class TravelAgencyController {
         createActivity("Wine Tasting", "Napa Valley", 3, 45.0);
         createActivity("Safari Adventure", "Kenya", 10, 150.0);
         
-        // Save immediately to persist activities
-        dataManager.saveData();
+        // Persist the sample activities
+        dataManager.requestSave();
     }
     
     /**
      * Create sample reviews for testing purposes.
      */
     private void createSampleReviews() {
-        ArrayList<Customer> customers = getAllCustomers();
-        ArrayList<TravelPackage> packages = getAllTravelPackages();
+        List<Customer> customers = getAllCustomers();
+        List<TravelPackage> packages = getAllTravelPackages();
         
         if (!customers.isEmpty() && !packages.isEmpty()) {
             Customer customer = customers.get(0);
@@ -90,9 +110,104 @@ public class TravelAgencyController {
     
     /**
      * Save all data using the data manager.
+     * Only collections that changed since the last save are written. The save runs
+     * in the background, so this returns without waiting for the disk.
      */
     public void saveData() {
-        dataManager.saveData();
+        dataManager.requestSave();
+    }
+    
+    /**
+     * Wait until all saves requested so far have been written to disk.
+     * Call before the application exits.
+     * 
+     * @return true if the data was saved successfully
+     */
+    public boolean flush() {
+        return dataManager.flush();
+    }
+    
+    /**
+     * Record that an entity was changed in place (for example an itinerary edit),
+     * so that the next save writes it and listeners are told it was updated.
+     * 
+     * @param entity the changed customer, package, booking, review or activity
+     */
+    public void markModified(Object entity) {
+        dataManager.markModified(entity);
+        fireUpdated(entity);
+    }
+    
+    /**
+     * Listen for changes to one type of entity. Listeners are called on the thread
+     * that made the change, after the change has been made.
+     * 
+     * @param type the class of entity to listen for
+     * @param listener the listener
+     */
+    public <T> void addChangeListener(Class<T> type, EntityChangeListener<T> listener) {
+        subscriptions.add(new Subscription<>(type, listener));
+    }
+    
+    /**
+     * Stop listening for changes.
+     * 
+     * @param listener the listener to remove
+     */
+    public void removeChangeListener(EntityChangeListener<?> listener) {
+        subscriptions.removeIf(subscription -> subscription.listener == listener);
+    }
+    
+    private void fireCreated(Object entity) {
+        fireChange(EntityChangeEvent.Type.CREATED, entity);
+    }
+    
+    private void fireUpdated(Object entity) {
+        fireChange(EntityChangeEvent.Type.UPDATED, entity);
+    }
+    
+    private void fireDeleted(Object entity) {
+        fireChange(EntityChangeEvent.Type.DELETED, entity);
+    }
+    
+    /**
+     * Tell the listeners for an entity's type that it has changed.
+     * 
+     * @param type what happened to the entity
+     * @param entity the entity
+     */
+    private void fireChange(EntityChangeEvent.Type type, Object entity) {
+        for (Subscription<?> subscription : subscriptions) {
+            try {
+                subscription.deliver(type, entity);
+            } catch (RuntimeException e) {
+                // The change has been made, so one failing listener must not stop the others
+                System.err.println("Error in change listener: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+    
+    /**
+     * A change listener and the class of entity it listens for.
+     * 
+     * @param <T> the type of entity
+     */
+    private static class Subscription<T> {
+        
+        private final Class<T> type;
+        private final EntityChangeListener<T> listener;
+        
+        Subscription(Class<T> type, EntityChangeListener<T> listener) {
+            this.type = type;
+            this.listener = listener;
+        }
+        
+        void deliver(EntityChangeEvent.Type changeType, Object entity) {
+            if (type.isInstance(entity)) {
+                listener.entityChanged(new EntityChangeEvent<>(changeType, type.cast(entity)));
+            }
+        }
     }
     
     /**
@@ -107,6 +222,7 @@ public class TravelAgencyController {
         String customerId = "C" + UUID.randomUUID().toString().substring(0, 8);
         Customer customer = new Customer(customerId, name, email, phone, ""); // Default empty address
         dataManager.addCustomer(customer);
+        fireCreated(customer);
         return customer;
     }
     
@@ -123,6 +239,7 @@ public class TravelAgencyController {
         String customerId = "C" + UUID.randomUUID().toString().substring(0, 8);
         Customer customer = new Customer(customerId, name, email, phone, address);
         dataManager.addCustomer(customer);
+        fireCreated(customer);
         return customer;
     }
     
@@ -143,6 +260,7 @@ public class TravelAgencyController {
         TravelPackage travelPackage = new TravelPackage(packageId, name, description, basePrice, 
                                                      destination, duration, accommodation);
         dataManager.addPackage(travelPackage);
+        fireCreated(travelPackage);
         return travelPackage;
     }
     
@@ -159,6 +277,7 @@ public class TravelAgencyController {
         String activityId = "A" + UUID.randomUUID().toString().substring(0, 8);
         Activity activity = new Activity(activityId, name, location, duration, cost);
         dataManager.addActivity(activity);
+        fireCreated(activity);
         return activity;
     }
     
@@ -170,6 +289,8 @@ public class TravelAgencyController {
      */
     public void addActivityToPackage(TravelPackage travelPackage, Activity activity) {
         travelPackage.addActivity(activity);
+        dataManager.markModified(travelPackage);
+        fireUpdated(travelPackage);
     }
     
     /**
@@ -184,15 +305,9 @@ public class TravelAgencyController {
             return false;
         }
         
-        // Check if the activity is in the itinerary
-        Itinerary itinerary = travelPackage.getItinerary();
-        if (itinerary != null) {
-            for (ItineraryDay day : itinerary.getDays()) {
-                if (day.getActivities().contains(activity)) {
-                    // Cannot remove activities that are in the itinerary
-                    return false;
-                }
-            }
+        // Cannot remove activities that are in the itinerary
+        if (!dataManager.getItineraryDaysWithActivity(travelPackage, activity).isEmpty()) {
+            return false;
         }
         
         // Get the original activities list
@@ -202,6 +317,8 @@ public class TravelAgencyController {
         for (int i = 0; i < activities.size(); i++) {
             if (activities.get(i).getActivityId().equals(activity.getActivityId())) {
                 activities.remove(i);
+                dataManager.markModified(travelPackage);
+                fireUpdated(travelPackage);
                 return true;
             }
         }
@@ -229,9 +346,13 @@ public class TravelAgencyController {
         
         String bookingId = "B" + UUID.randomUUID().toString().substring(0, 8);
         Booking booking = new Booking(bookingId, customer, service);
+        if (!booking.reserveSeats()) {
+            throw new BookingException("There are not enough seats left on the selected departure.");
+        }
         
         customer.addBooking(booking);
         dataManager.addBooking(booking);
+        fireCreated(booking);
         
         return booking;
     }
@@ -258,9 +379,14 @@ public class TravelAgencyController {
         
         Booking booking = new Booking(bookingId, customer, travelPackage, 
                                     bookingDate, status, numTravelers, specialRequests);
+        // Taken before the booking is stored, so two agents cannot both get the last seats
+        if (!booking.reserveSeats()) {
+            throw new BookingException("There are not enough seats left on the selected departure.");
+        }
         
         customer.addBooking(booking);
         dataManager.addBooking(booking);
+        fireCreated(booking);
         
         return booking;
     }
@@ -294,7 +420,13 @@ public class TravelAgencyController {
         booking.addPayment(payment);
         
         if (payment.processPayment()) {
-            booking.updateStatus(BookingStatus.CONFIRMED);
+            boolean confirmed = booking.updateStatus(BookingStatus.CONFIRMED);
+            dataManager.markModified(booking);
+            fireUpdated(booking);
+            if (!confirmed) {
+                throw new PaymentProcessException(
+                    "Payment recorded, but there are not enough seats left to confirm the booking.");
+            }
             return true;
         } else {
             throw new PaymentProcessException("Payment processing failed.");
@@ -325,6 +457,8 @@ public class TravelAgencyController {
                 booking.getPayment().getStatus() == PaymentStatus.COMPLETED) {
                 booking.getPayment().setStatus(PaymentStatus.REFUNDED);
             }
+            dataManager.markModified(booking);
+            fireUpdated(booking);
         }
         
         return success;
@@ -345,6 +479,9 @@ public class TravelAgencyController {
         
         travelPackage.addReview(review);
         dataManager.addReview(review);
+        fireCreated(review);
+        // The package's rating has changed
+        fireUpdated(travelPackage);
         
         // Save data immediately to persist the review
         saveData();
@@ -355,36 +492,56 @@ public class TravelAgencyController {
     /**
      * Get all reviews.
      * 
-     * @return an ArrayList of all reviews
+     * @return a read-only list of all reviews
      */
-    public ArrayList<Review> getReviews() {
+    public List<Review> getReviews() {
         return dataManager.getReviews();
     }
     
+    /**
+     * Get the travel packages with the highest average rating.
+     * 
+     * @param limit the maximum number of packages to return
+     * @return reviewed packages, highest average rating first
+     */
+    public ArrayList<TravelPackage> getTopRatedPackages(int limit) {
+        return dataManager.getTopRatedPackages(limit);
+    }
+    
+    /**
+     * Get the travel package a review was written for.
+     * 
+     * @param review the review
+     * @return the package, or null if the review has none
+     */
+    public TravelPackage getPackageForReview(Review review) {
+        return dataManager.getPackageForReview(review);
+    }
+    
     /**
      * Get all customers.
      * 
-     * @return an ArrayList of all customers
+     * @return a read-only list of all customers
      */
-    public ArrayList<Customer> getAllCustomers() {
+    public List<Customer> getAllCustomers() {
         return dataManager.getCustomers();
     }
     
     /**
      * Get all travel packages.
      * 
-     * @return an ArrayList of all travel packages
+     * @return a read-only list of all travel packages
      */
-    public ArrayList<TravelPackage> getAllTravelPackages() {
+    public List<TravelPackage> getAllTravelPackages() {
         return dataManager.getPackages();
     }
     
     /**
      * Get all bookings.
      * 
-     * @return an ArrayList of all bookings
+     * @return a read-only list of all bookings
      */
-    public ArrayList<Booking> getAllBookings() {
+    public List<Booking> getAllBookings() {
         return dataManager.getBookings();
     }
     
@@ -395,15 +552,17 @@ public class TravelAgencyController {
      * @return an ArrayList of matching travel packages
      */
     public ArrayList<TravelPackage> searchPackagesByDestination(String destination) {
-        ArrayList<TravelPackage> result = new ArrayList<>();
-        
-        for (TravelPackage pkg : dataManager.getPackages()) {
-            if (pkg.getDestination().toLowerCase().contains(destination.toLowerCase())) {
-                result.add(pkg);
-            }
-        }
-        
-        return result;
+        return dataManager.searchPackagesByDestination(destination);
+    }
+    
+    /**
+     * Search for travel packages by name.
+     * 
+     * @param name the name to search for
+     * @return an ArrayList of matching travel packages
+     */
+    public ArrayList<TravelPackage> searchPackagesByName(String name) {
+        return dataManager.searchPackagesByName(name);
     }
     
     /**
@@ -413,14 +572,80 @@ public class TravelAgencyController {
      * @return an ArrayList of matching bookings
      */
     public ArrayList<Booking> searchBookingsByStatus(BookingStatus status) {
-        ArrayList<Booking> result = new ArrayList<>();
+        return dataManager.getBookingsByStatus(status);
+    }
+    
+    /**
+     * Search for bookings dated within a range of days.
+     * 
+     * @param from the first day to include, or null for no lower bound
+     * @param to the last day to include, or null for no upper bound
+     * @return an ArrayList of matching bookings in date order
+     */
+    public ArrayList<Booking> searchBookingsByDate(Date from, Date to) {
+        return dataManager.getBookingsBetween(from, to);
+    }
+    
+    /**
+     * Get a page of customers in ID order, for browsing more customers than
+     * can be loaded at once.
+     * 
+     * @param after the cursor from the previous page, or null for the first page
+     * @param limit the most customers to return
+     * @return the page, with the cursor for the next one
+     */
+    public Page<Customer> getCustomersPage(Page.Cursor after, int limit) {
+        return dataManager.getCustomersPage(after, limit);
+    }
+    
+    /**
+     * Get a page of bookings sorted by ID, date or price, for browsing more
+     * bookings than can be loaded at once.
+     * 
+     * @param order the sort order, the same for every page
+     * @param after the cursor from the previous page, or null for the first page
+     * @param limit the most bookings to return
+     * @return the page, with the cursor for the next one
+     */
+    public Page<Booking> getBookingsPage(BookingOrder order, Page.Cursor after, int limit) {
+        return dataManager.getBookingsPage(order, after, limit);
+    }
+    
+    /**
+     * Total the revenue of confirmed and completed bookings per package.
+     * Uses the booking column store when it is enabled, otherwise scans the bookings.
+     * 
+     * @return the packages with at least one counted booking, highest revenue first
+     */
+    public ArrayList<PackageRevenue> getRevenueByPackage() {
+        EnumSet<BookingStatus> counted = EnumSet.of(BookingStatus.COMPLETED, BookingStatus.CONFIRMED);
+        ArrayList<PackageRevenue> result = new ArrayList<>();
         
-        for (Booking booking : dataManager.getBookings()) {
-            if (booking.getStatus() == status) {
-                result.add(booking);
+        BookingColumnStore columns = dataManager.getBookingColumns();
+        if (columns != null) {
+            long[] revenueCents = new long[columns.getPackageCount()];
+            int[] counts = new int[columns.getPackageCount()];
+            columns.sumByPackage(counted, revenueCents, counts);
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    result.add(new PackageRevenue(columns.getPackage(i), revenueCents[i], counts[i]));
+                }
+            }
+        } else {
+            Map<TravelPackage, long[]> totals = new LinkedHashMap<>();
+            for (Booking booking : dataManager.getSnapshot().getBookings()) {
+                if (booking.getPackage() != null && counted.contains(booking.getStatus())) {
+                    long[] total = totals.computeIfAbsent(booking.getPackage(), pkg -> new long[2]);
+                    total[0] += booking.getChargedAmountCents();
+                    total[1]++;
+                }
+            }
+            for (Map.Entry<TravelPackage, long[]> entry : totals.entrySet()) {
+                result.add(new PackageRevenue(entry.getKey(), entry.getValue()[0], (int) entry.getValue()[1]));
             }
         }
         
+        result.sort((r1, r2) -> Long.compare(r2.getRevenueCents(), r1.getRevenueCents()));
         return result;
     }
     
@@ -431,15 +656,7 @@ public class TravelAgencyController {
      * @return an ArrayList of matching customers
      */
     public ArrayList<Customer> searchCustomersByName(String name) {
-        ArrayList<Customer> result = new ArrayList<>();
-        
-        for (Customer customer : dataManager.getCustomers()) {
-            if (customer.getName().toLowerCase().contains(name.toLowerCase())) {
-                result.add(customer);
-            }
-        }
-        
-        return result;
+        return dataManager.searchCustomersByName(name);
     }
     
     /**
@@ -454,15 +671,16 @@ public class TravelAgencyController {
         }
         
         // Check if package has any bookings
-        for (Booking booking : dataManager.getBookings()) {
-            if (booking.getService().equals(travelPackage)) {
-                return false; // Can't delete a package that has bookings
-            }
+        if (dataManager.countBookingsForPackage(travelPackage.getServiceId()) > 0) {
+            return false; // Can't delete a package that has bookings
         }
         
         // Remove package from data manager
         boolean result = dataManager.removePackage(travelPackage);
         // Save all other data (no need to call saveData since DataManager.removePackage now saves packages)
+        if (result) {
+            fireDeleted(travelPackage);
+        }
         return result;
     }
     
@@ -478,16 +696,15 @@ public class TravelAgencyController {
         }
         
         // Check if customer has any bookings
-        for (Booking booking : dataManager.getBookings()) {
-            if (booking.getCustomer().equals(customer)) {
-                return false; // Can't delete a customer with bookings
-            }
+        if (dataManager.countBookingsForCustomer(customer.getCustomerId()) > 0) {
+            return false; // Can't delete a customer with bookings
         }
         
         // Remove customer from data manager
         boolean result = dataManager.removeCustomer(customer);
         if (result) {
             saveData(); // Save changes to disk
+            fireDeleted(customer);
         }
         return result;
     }
@@ -503,7 +720,21 @@ public class TravelAgencyController {
             return false;
         }
         
-        return !getBookingsForCustomer(customer).isEmpty();
+        return countBookingsForCustomer(customer) > 0;
+    }
+    
+    /**
+     * Count the bookings made by a customer.
+     * 
+     * @param customer the customer
+     * @return the number of bookings
+     */
+    public int countBookingsForCustomer(Customer customer) {
+        if (customer == null) {
+            return 0;
+        }
+        
+        return dataManager.countBookingsForCustomer(customer.getCustomerId());
     }
     
     /**
@@ -517,9 +748,7 @@ public class TravelAgencyController {
             return new ArrayList<>();
         }
         
-        return dataManager.getAllBookings().stream()
-                .filter(booking -> booking.getCustomer().equals(customer))
-                .collect(Collectors.toList());
+        return dataManager.getBookingsForCustomer(customer.getCustomerId());
     }
     
     /**
@@ -541,6 +770,8 @@ public class TravelAgencyController {
         customer.setEmail(email);
         customer.setPhone(phone);
         customer.setAddress(address);
+        dataManager.markModified(customer);
+        fireUpdated(customer);
         
         return true;
     }
@@ -569,6 +800,28 @@ public class TravelAgencyController {
         travelPackage.setDestination(destination);
         travelPackage.setDuration(duration);
         travelPackage.setAccommodation(accommodation);
+        dataManager.markModified(travelPackage);
+        fireUpdated(travelPackage);
+        
+        return true;
+    }
+    
+    /**
+     * Set the number of seats on each departure of a travel package.
+     * Existing bookings are kept even if they are over the new capacity.
+     * 
+     * @param travelPackage the package to update
+     * @param capacity the seats per departure, or 0 for unlimited
+     * @return true if update was successful
+     */
+    public boolean setPackageCapacity(TravelPackage travelPackage, int capacity) {
+        if (travelPackage == null || capacity < 0) {
+            return false;
+        }
+        
+        travelPackage.setCapacity(capacity);
+        dataManager.markModified(travelPackage);
+        fireUpdated(travelPackage);
         
         return true;
     }
@@ -584,7 +837,21 @@ public class TravelAgencyController {
             return false;
         }
         
-        return !getBookingsForPackage(travelPackage).isEmpty();
+        return countBookingsForPackage(travelPackage) > 0;
+    }
+    
+    /**
+     * Count the bookings of a travel package.
+     * 
+     * @param travelPackage the travel package
+     * @return the number of bookings
+     */
+    public int countBookingsForPackage(TravelPackage travelPackage) {
+        if (travelPackage == null) {
+            return 0;
+        }
+        
+        return dataManager.countBookingsForPackage(travelPackage.getServiceId());
     }
     
     /**
@@ -598,12 +865,7 @@ public class TravelAgencyController {
             return new ArrayList<>();
         }
         
-        return dataManager.getAllBookings().stream()
-                .filter(booking -> {
-                    TravelPackage pkg = booking.getPackage();
-                    return pkg != null && pkg.equals(travelPackage);
-                })
-                .collect(Collectors.toList());
+        return dataManager.getBookingsForPackage(travelPackage.getServiceId());
     }
     
     /**
@@ -617,7 +879,11 @@ public class TravelAgencyController {
             return false;
         }
         
-        return dataManager.removeBooking(booking);
+        boolean result = dataManager.removeBooking(booking);
+        if (result) {
+            fireDeleted(booking);
+        }
+        return result;
     }
     
     /**
@@ -638,16 +904,19 @@ public class TravelAgencyController {
      * @param numTravelers new number of travelers
      * @param status new status
      * @param specialRequests new special requests
-     * @return true if update was successful
+     * @return true if update was successful, false if there are not enough seats for the travelers
      */
     public boolean updateBooking(Booking booking, int numTravelers, BookingStatus status, String specialRequests) {
         if (booking == null) {
             return false;
         }
         
-        booking.setNumTravelers(numTravelers);
-        booking.updateStatus(status);
+        if (!booking.updateTravelers(numTravelers, status)) {
+            return false;
+        }
         booking.setSpecialRequests(specialRequests);
+        dataManager.markModified(booking);
+        fireUpdated(booking);
         
         return true;
     }
@@ -657,14 +926,18 @@ public class TravelAgencyController {
      * 
      * @param booking the booking to update
      * @param status the new status
-     * @return true if update was successful
+     * @return true if update was successful, false if reopening a cancelled booking needs seats that are gone
      */
     public boolean updateBookingStatus(Booking booking, BookingStatus status) {
         if (booking == null) {
             return false;
         }
         
-        booking.updateStatus(status);
+        if (!booking.updateStatus(status)) {
+            return false;
+        }
+        dataManager.markModified(booking);
+        fireUpdated(booking);
         return true;
     }
     
@@ -679,10 +952,10 @@ public class TravelAgencyController {
             return false;
         }
         
-        // Remove review from all packages that might contain it
-        for (TravelPackage pkg : getAllTravelPackages()) {
-            ArrayList<Review> reviews = pkg.getReviews();
-            reviews.remove(review);
+        // Detach the review from its package
+        TravelPackage travelPackage = dataManager.getPackageForReview(review);
+        if (travelPackage != null) {
+            travelPackage.removeReview(review);
         }
         
         // Remove from data manager
@@ -690,20 +963,112 @@ public class TravelAgencyController {
         
         if (result) {
             saveData();
+            fireDeleted(review);
+            if (travelPackage != null) {
+                fireUpdated(travelPackage);
+            }
         }
         
         return result;
     }
     
+    /**
+     * Update a review.
+     * 
+     * @param review the review to update
+     * @param rating new rating (1-5)
+     * @param comment new comment
+     * @return true if update was successful
+     */
+    public boolean updateReview(Review review, int rating, String comment) {
+        if (review == null) {
+            return false;
+        }
+        
+        review.setRating(rating);
+        review.setComment(comment);
+        dataManager.markModified(review);
+        fireUpdated(review);
+        
+        // The rating of the package reviewed has changed
+        TravelPackage travelPackage = dataManager.getPackageForReview(review);
+        if (travelPackage != null) {
+            fireUpdated(travelPackage);
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Update activity details.
+     * 
+     * @param activity the activity to update
+     * @param name new name
+     * @param location new location
+     * @param duration new duration in hours
+     * @param cost new cost
+     * @return true if update was successful
+     */
+    public boolean updateActivity(Activity activity, String name, String location, int duration, double cost) {
+        if (activity == null) {
+            return false;
+        }
+        
+        activity.setName(name);
+        activity.setLocation(location);
+        activity.setDuration(duration);
+        activity.setCost(cost);
+        dataManager.markModified(activity);
+        fireUpdated(activity);
+        
+        // The price of every package including the activity has changed
+        for (TravelPackage travelPackage : dataManager.getPackagesUsingActivity(activity)) {
+            fireUpdated(travelPackage);
+        }
+        
+        return true;
+    }
+    
     /**
      * Get all activities.
      * 
-     * @return ArrayList of all activities
+     * @return a read-only list of all activities
      */
-    public ArrayList<Activity> getActivities() {
+    public List<Activity> getActivities() {
         return dataManager.getActivities();
     }
     
+    /**
+     * Check if an activity is included in any travel package.
+     * 
+     * @param activity the activity to check
+     * @return true if a package includes the activity
+     */
+    public boolean isActivityInUse(Activity activity) {
+        return activity != null && dataManager.isActivityInUse(activity);
+    }
+    
+    /**
+     * Get the travel packages that include an activity.
+     * 
+     * @param activity the activity
+     * @return list of packages including the activity
+     */
+    public ArrayList<TravelPackage> getPackagesUsingActivity(Activity activity) {
+        return dataManager.getPackagesUsingActivity(activity);
+    }
+    
+    /**
+     * Get the itinerary days of a travel package that include an activity.
+     * 
+     * @param travelPackage the travel package
+     * @param activity the activity
+     * @return list of itinerary days including the activity
+     */
+    public ArrayList<ItineraryDay> getItineraryDaysWithActivity(TravelPackage travelPackage, Activity activity) {
+        return dataManager.getItineraryDaysWithActivity(travelPackage, activity);
+    }
+    
     /**
      * Remove an activity from the system.
      * 
@@ -716,14 +1081,16 @@ public class TravelAgencyController {
         }
         
         // First check if the activity is used in any package
-        for (TravelPackage pkg : getAllTravelPackages()) {
-            if (pkg.getActivities().contains(activity)) {
-                return false; // Cannot remove an activity that's in use
-            }
+        if (dataManager.isActivityInUse(activity)) {
+            return false; // Cannot remove an activity that's in use
         }
         
         // If not in use, remove it
-        return dataManager.removeActivity(activity);
+        boolean result = dataManager.removeActivity(activity);
+        if (result) {
+            fireDeleted(activity);
+        }
+        return result;
     }
     
     /**
@@ -731,9 +1098,9 @@ public class TravelAgencyController {
      * This ensures the JSON files only contain active data.
      */
     public void cleanupDataFiles() {
-        // We just need to save the current data to rewrite the files
-        // The DataManager will only save active entities from memory
-        dataManager.saveData();
-        System.out.println("Data files cleaned up successfully");
+        // Saving writes every collection with pending changes, including files that
+        // held records which could not be loaded; unchanged files are left alone
+        dataManager.requestSave();
+        System.out.println("Data files cleanup scheduled");
     }
 } 
\ No newline at end of file
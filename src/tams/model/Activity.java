@@ -1,5 +1,10 @@
 package tams.model;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+
 /**
  * Represents an activity that can be part of a travel package or itinerary.
  */
@@ -9,7 +14,10 @@ public class Activity {
     private String name;
     private String location;
     private int duration; // Duration in hours
-    private double cost;
+    private long costCents;
+    // Packages listing this activity, told when its cost changes. Held weakly so
+    // that a deleted package does not stay reachable through its activities
+    private final Set<TravelPackage> packages = Collections.newSetFromMap(new WeakHashMap<>());
     
     /**
      * Constructor for creating a new activity.
@@ -25,7 +33,7 @@ public class Activity {
         this.name = name;
         this.location = location;
         this.duration = duration;
-        this.cost = cost;
+        this.costCents = Money.toCents(cost);
     }
     
     /**
@@ -34,7 +42,16 @@ public class Activity {
      * @return the cost as a double
      */
     public double getCost() {
-        return cost;
+        return Money.toDollars(costCents);
+    }
+    
+    /**
+     * Get the cost of this activity in cents.
+     * 
+     * @return the cost in cents
+     */
+    public long getCostCents() {
+        return costCents;
     }
     
     // Getters and setters
@@ -68,7 +85,51 @@ public class Activity {
     }
     
     public void setCost(double cost) {
-        this.cost = cost;
+        setCostCents(Money.toCents(cost));
+    }
+    
+    /**
+     * Set the cost of this activity in cents.
+     * The packages that include the activity are told so they can update their price.
+     * 
+     * @param costCents the cost in cents
+     */
+    public void setCostCents(long costCents) {
+        if (costCents == this.costCents) {
+            return;
+        }
+        this.costCents = costCents;
+        
+        ArrayList<TravelPackage> containing;
+        synchronized (packages) {
+            containing = new ArrayList<>(packages);
+        }
+        for (TravelPackage travelPackage : containing) {
+            travelPackage.activityCostChanged();
+        }
+    }
+    
+    /**
+     * Register a package that lists this activity.
+     * Called by the package's activity list.
+     * 
+     * @param travelPackage the package
+     */
+    void addPackage(TravelPackage travelPackage) {
+        synchronized (packages) {
+            packages.add(travelPackage);
+        }
+    }
+    
+    /**
+     * Unregister a package that no longer lists this activity.
+     * 
+     * @param travelPackage the package
+     */
+    void removePackage(TravelPackage travelPackage) {
+        synchronized (packages) {
+            packages.remove(travelPackage);
+        }
     }
     
     @Override
@@ -88,6 +149,6 @@ public class Activity {
     @Override
     public String toString() {
         return String.format("%s - %s (%d hours) - $%.2f", 
-            name, location, duration, cost);
+            name, location, duration, getCost());
     }
 } 
\ No newline at end of file
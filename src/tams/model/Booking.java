@@ -1,5 +1,6 @@
 package tams.model;
 
+import java.time.LocalDate;
 import java.util.Date;
 
 /**
@@ -10,11 +11,19 @@ public class Booking {
     private String bookingId;
     private Customer customer;
     private TravelService service;
-    private Date date;
-    private BookingStatus status;
+    // Changed while holding this booking's lock, but read without it
+    private volatile Date date;
+    private volatile BookingStatus status;
     private Payment payment;
-    private int numTravelers;
+    private volatile int numTravelers;
     private String specialRequests;
+    private BookingListener listener;
+    // Seats held in the package's inventory, once the booking is counted there.
+    // Seats are only moved while holding this booking's lock, so that two agents
+    // changing the same booking cannot both move its seats from the same count.
+    private boolean seatsCounted;
+    private LocalDate seatsDeparture;
+    private int seatsHeld;
     
     /**
      * Constructor for creating a new booking.
@@ -63,12 +72,137 @@ public class Booking {
     }
     
     /**
-     * Update the status of this booking.
+     * Update the status of this booking, as long as the package has seats left
+     * for it, which only matters when reopening a cancelled booking.
      * 
      * @param newStatus the new status
+     * @return true if the status was changed, false if there are not enough seats left
      */
-    public void updateStatus(BookingStatus newStatus) {
-        this.status = newStatus;
+    public boolean updateStatus(BookingStatus newStatus) {
+        BookingStatus oldStatus;
+        synchronized (this) {
+            if (seatsCounted && !moveSeats(TravelPackage.departureDay(date), seatsWanted(numTravelers, newStatus), true)) {
+                return false;
+            }
+            oldStatus = status;
+            this.status = newStatus;
+        }
+        fireStatusChanged(oldStatus, newStatus);
+        return true;
+    }
+    
+    /**
+     * Change the number of travelers and the status together, as long as the
+     * package has seats left for any extra travelers on this booking's departure.
+     * 
+     * @param numTravelers the new number of travelers
+     * @param newStatus the new status
+     * @return true if the booking was changed, false if there are not enough seats left
+     */
+    public boolean updateTravelers(int numTravelers, BookingStatus newStatus) {
+        BookingStatus oldStatus;
+        synchronized (this) {
+            if (seatsCounted && !moveSeats(TravelPackage.departureDay(date), seatsWanted(numTravelers, newStatus), true)) {
+                return false;
+            }
+            oldStatus = status;
+            this.numTravelers = numTravelers;
+            this.status = newStatus;
+        }
+        fireStatusChanged(oldStatus, newStatus);
+        return true;
+    }
+    
+    /**
+     * Tell the listener about a status change. Called after the lock is released,
+     * as listeners take locks of their own, so changes made at the same time may
+     * be reported in either order.
+     */
+    private void fireStatusChanged(BookingStatus oldStatus, BookingStatus newStatus) {
+        if (listener != null && oldStatus != newStatus) {
+            listener.statusChanged(this, oldStatus);
+        }
+    }
+    
+    /**
+     * Start counting this booking against its package's seats, taking them only
+     * if enough are left on its departure date. Bookings of other services have
+     * no seats to take and always succeed.
+     * 
+     * @return true if the seats were taken, false if the departure is too full
+     */
+    public synchronized boolean reserveSeats() {
+        if (!seatsCounted) {
+            if (!moveSeats(TravelPackage.departureDay(date), seatsWanted(numTravelers, status), true)) {
+                return false;
+            }
+            seatsCounted = true;
+        }
+        return true;
+    }
+    
+    /**
+     * Start counting this booking against its package's seats whether or not
+     * there is room, for bookings that already exist, such as those loaded from file.
+     */
+    public synchronized void holdSeats() {
+        if (!seatsCounted) {
+            moveSeats(TravelPackage.departureDay(date), seatsWanted(numTravelers, status), false);
+            seatsCounted = true;
+        }
+    }
+    
+    /**
+     * Stop counting this booking against its package's seats and give back those it holds.
+     */
+    public synchronized void releaseSeats() {
+        if (seatsCounted) {
+            moveSeats(seatsDeparture, 0, false);
+            seatsCounted = false;
+        }
+    }
+    
+    private static int seatsWanted(int numTravelers, BookingStatus status) {
+        return status == BookingStatus.CANCELLED ? 0 : Math.max(1, numTravelers);
+    }
+    
+    /**
+     * Hold a number of seats on a departure in place of those held now. Extra
+     * seats are taken before any are given back, so a check against capacity
+     * never sees this booking's own seats as free. Must hold this booking's lock.
+     * 
+     * @param departure the departure date
+     * @param count the number of seats to hold
+     * @param checked true to fail rather than take seats beyond capacity
+     * @return true if the seats are now held
+     */
+    private boolean moveSeats(LocalDate departure, int count, boolean checked) {
+        TravelPackage travelPackage = getPackage();
+        if (travelPackage == null) {
+            return true;
+        }
+        SeatInventory inventory = travelPackage.getSeatInventory();
+        boolean sameDeparture = departure != null && departure.equals(seatsDeparture);
+        int extra = sameDeparture ? count - seatsHeld : count;
+        if (extra > 0) {
+            if (checked) {
+                if (!inventory.tryReserve(departure, extra)) {
+                    return false;
+                }
+            } else {
+                inventory.add(departure, extra);
+            }
+        }
+        if (sameDeparture) {
+            if (extra < 0) {
+                inventory.release(departure, -extra);
+            }
+        } else if (seatsHeld > 0) {
+            inventory.release(seatsDeparture, seatsHeld);
+        }
+        seatsDeparture = departure;
+        seatsHeld = count;
+        return true;
     }
     
     /**
@@ -87,8 +221,7 @@ public class Booking {
      */
     public boolean confirmBooking() {
         if (payment != null && payment.processPayment()) {
-            status = BookingStatus.CONFIRMED;
-            return true;
+            return updateStatus(BookingStatus.CONFIRMED);
         }
         return false;
     }
@@ -100,20 +233,45 @@ public class Booking {
      */
     public boolean cancelBooking() {
         // In a real system, we might check cancellation policy, apply fees, etc.
-        if (status != BookingStatus.CANCELLED) {
-            status = BookingStatus.CANCELLED;
-            return true;
+        BookingStatus oldStatus;
+        synchronized (this) {
+            // Checked under the lock so that of two agents cancelling at once only one succeeds
+            if (status == BookingStatus.CANCELLED) {
+                return false;
+            }
+            if (seatsCounted) {
+                // Giving back seats always succeeds
+                moveSeats(TravelPackage.departureDay(date), 0, false);
+            }
+            oldStatus = status;
+            this.status = BookingStatus.CANCELLED;
         }
-        return false;
+        fireStatusChanged(oldStatus, BookingStatus.CANCELLED);
+        return true;
     }
     
     /**
-     * Set the date of this booking.
+     * Set the date of this booking, as long as the package has seats left on
+     * the new departure.
      * 
      * @param date the new date
+     * @return true if the date was changed, false if there are not enough seats left
      */
-    public void setDate(Date date) {
-        this.date = new Date(date.getTime());
+    public boolean setDate(Date date) {
+        Date newDate = new Date(date.getTime());
+        Date oldDate;
+        synchronized (this) {
+            if (seatsCounted && !moveSeats(TravelPackage.departureDay(newDate), seatsWanted(numTravelers, status), true)) {
+                return false;
+            }
+            oldDate = this.date;
+            this.date = newDate;
+        }
+        // Outside the lock, as listeners take locks of their own
+        if (listener != null && !oldDate.equals(newDate)) {
+            listener.dateChanged(this, oldDate);
+        }
+        return true;
     }
     
     /**
@@ -125,6 +283,39 @@ public class Booking {
         return calculateTotal();
     }
     
+    /**
+     * Get the amount charged for this booking.
+     * Once a payment has completed this is the amount that was paid, so later
+     * price changes do not alter past revenue.
+     * 
+     * @return the paid amount, or the current total price if not paid
+     */
+    public double getChargedAmount() {
+        return Money.toDollars(getChargedAmountCents());
+    }
+    
+    /**
+     * Get the total price for this booking in cents.
+     * 
+     * @return the total price in cents
+     */
+    public long getTotalPriceCents() {
+        return service.calculateTotalPriceCents();
+    }
+    
+    /**
+     * Get the amount charged for this booking in cents.
+     * 
+     * @return the paid amount, or the current total price if not paid, in cents
+     * @see #getChargedAmount()
+     */
+    public long getChargedAmountCents() {
+        if (payment != null && payment.getStatus() == PaymentStatus.COMPLETED) {
+            return payment.getAmountCents();
+        }
+        return getTotalPriceCents();
+    }
+    
     /**
      * Get the travel package associated with this booking.
      * This is a convenience method for getting the service as a TravelPackage.
@@ -158,12 +349,18 @@ public class Booking {
     }
     
     /**
-     * Set the number of travelers.
+     * Set the number of travelers, as long as the package has seats left for
+     * any extra travelers.
      * 
      * @param numTravelers the number of travelers
+     * @return true if the number was changed, false if there are not enough seats left
      */
-    public void setNumTravelers(int numTravelers) {
+    public synchronized boolean setNumTravelers(int numTravelers) {
+        if (seatsCounted && !moveSeats(TravelPackage.departureDay(date), seatsWanted(numTravelers, status), true)) {
+            return false;
+        }
         this.numTravelers = numTravelers;
+        return true;
     }
     
     /**
@@ -210,6 +407,15 @@ public class Booking {
         return payment;
     }
     
+    /**
+     * Set the listener notified when this booking's status or date changes.
+     * 
+     * @param listener the listener, or null for none
+     */
+    public void setListener(BookingListener listener) {
+        this.listener = listener;
+    }
+    
     @Override
     public boolean equals(Object obj) {
         if (this == obj) return true;
@@ -0,0 +1,29 @@
+package tams.model;
+
+import java.util.Date;
+
+/**
+ * Callback for changes to a booking's indexed fields.
+ * Lets collections that file bookings by these fields keep themselves up to date
+ * when a booking is changed directly. Changes made to a booking at the same time
+ * may be reported in either order, so listeners should file the booking by its
+ * current fields rather than rely on the order of calls.
+ */
+public interface BookingListener {
+
+    /**
+     * Called after a booking's status has changed.
+     *
+     * @param booking the booking
+     * @param oldStatus the status before the change
+     */
+    void statusChanged(Booking booking, BookingStatus oldStatus);
+
+    /**
+     * Called after a booking's date has changed.
+     *
+     * @param booking the booking
+     * @param oldDate the date before the change
+     */
+    void dateChanged(Booking booking, Date oldDate);
+}
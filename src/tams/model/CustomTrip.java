@@ -64,10 +64,10 @@ public class CustomTrip extends TravelService implements Bookable {
     }
     
     @Override
-    public double calculateTotalPrice() {
-        double totalPrice = basePrice;
+    public long calculateTotalPriceCents() {
+        long totalPrice = basePriceCents;
         for (TravelService service : services) {
-            totalPrice += service.calculateTotalPrice();
+            totalPrice += service.calculateTotalPriceCents();
         }
         return totalPrice;
     }
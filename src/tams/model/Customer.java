@@ -1,6 +1,8 @@
 package tams.model;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Represents a customer in the travel agency system.
@@ -13,6 +15,7 @@ public class Customer {
     private String phone;
     private String address;
     private ArrayList<Booking> bookings;
+    private List<Booking> bookingsView;
     
     /**
      * Constructor for creating a new customer.
@@ -30,6 +33,7 @@ public class Customer {
         this.phone = phone;
         this.address = address;
         this.bookings = new ArrayList<>();
+        this.bookingsView = Collections.unmodifiableList(bookings);
     }
     
     /**
@@ -46,10 +50,10 @@ public class Customer {
     /**
      * Get the booking history for this customer.
      * 
-     * @return an ArrayList containing all bookings
+     * @return a read-only view of the bookings, which reflects later changes
      */
-    public ArrayList<Booking> getBookingHistory() {
-        return new ArrayList<>(bookings);
+    public List<Booking> getBookingHistory() {
+        return bookingsView;
     }
     
     // Getters and setters
@@ -1,6 +1,8 @@
 package tams.model;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Represents an itinerary for a travel package.
@@ -11,6 +13,7 @@ public class Itinerary {
     private String itineraryId;
     private String name;
     private ArrayList<ItineraryDay> days;
+    private List<ItineraryDay> daysView;
     
     /**
      * Constructor for creating a new itinerary.
@@ -22,6 +25,7 @@ public class Itinerary {
         this.itineraryId = itineraryId;
         this.name = name;
         this.days = new ArrayList<>();
+        this.daysView = Collections.unmodifiableList(days);
     }
     
     /**
@@ -67,10 +71,10 @@ public class Itinerary {
     /**
      * Get all days in this itinerary.
      * 
-     * @return an ArrayList of ItineraryDay objects
+     * @return a read-only view of the days, which reflects later changes
      */
-    public ArrayList<ItineraryDay> getDays() {
-        return new ArrayList<>(days);
+    public List<ItineraryDay> getDays() {
+        return daysView;
     }
     
     /**
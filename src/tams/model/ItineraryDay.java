@@ -1,6 +1,8 @@
 package tams.model;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Represents a single day in an itinerary.
@@ -10,6 +12,7 @@ public class ItineraryDay {
     
     private int dayNumber;
     private ArrayList<Activity> activities;
+    private List<Activity> activitiesView;
     private String notes;
     
     /**
@@ -20,6 +23,7 @@ public class ItineraryDay {
     public ItineraryDay(int dayNumber) {
         this.dayNumber = dayNumber;
         this.activities = new ArrayList<>();
+        this.activitiesView = Collections.unmodifiableList(activities);
         this.notes = "";
     }
     
@@ -68,10 +72,10 @@ public class ItineraryDay {
     /**
      * Get all activities scheduled for this day.
      * 
-     * @return an ArrayList of activities
+     * @return a read-only view of the activities, which reflects later changes
      */
-    public ArrayList<Activity> getActivities() {
-        return new ArrayList<>(activities);
+    public List<Activity> getActivities() {
+        return activitiesView;
     }
     
     /**
@@ -93,11 +97,11 @@ public class ItineraryDay {
      * @return total cost
      */
     public double getTotalCost() {
-        double totalCost = 0;
+        long totalCents = 0;
         for (Activity activity : activities) {
-            totalCost += activity.getCost();
+            totalCents += activity.getCostCents();
         }
-        return totalCost;
+        return Money.toDollars(totalCents);
     }
     
     // Getters and setters
@@ -0,0 +1,81 @@
+package tams.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Conversions for money amounts, which are held as whole cents in a long.
+ * Cents add up exactly, unlike binary fractions, and can be totalled in
+ * primitive accumulators without boxing.
+ */
+public final class Money {
+
+    private Money() {
+    }
+
+    /**
+     * Convert an amount in dollars to cents, rounding to the nearest cent.
+     *
+     * @param amount the amount in dollars
+     * @return the amount in cents
+     */
+    public static long toCents(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    /**
+     * Convert an exact decimal amount in dollars to cents, rounding half up.
+     *
+     * @param amount the amount in dollars
+     * @return the amount in cents
+     * @throws ArithmeticException if the amount does not fit in a long
+     */
+    public static long toCents(BigDecimal amount) {
+        return amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    /**
+     * Convert cents to dollars, for display and for callers that work in doubles.
+     *
+     * @param cents the amount in cents
+     * @return the amount in dollars
+     */
+    public static double toDollars(long cents) {
+        return cents / 100.0;
+    }
+
+    /**
+     * Convert cents to an exact decimal amount in dollars with two places.
+     *
+     * @param cents the amount in cents
+     * @return the amount in dollars
+     */
+    public static BigDecimal toDecimal(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    /**
+     * Parse an amount in dollars, such as "1234.5", to cents without going through a double.
+     *
+     * @param text the amount
+     * @return the amount in cents
+     * @throws NumberFormatException if the text is not a number or is out of range
+     */
+    public static long parse(String text) {
+        try {
+            return toCents(new BigDecimal(text.trim()));
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount out of range: " + text);
+        }
+    }
+
+    /**
+     * Format an amount with a dollar sign and two decimal places, such as "$1234.50".
+     *
+     * @param cents the amount in cents
+     * @return the formatted amount
+     */
+    public static String format(long cents) {
+        return (cents < 0 ? "-$" : "$") + toDecimal(Math.abs(cents)).toPlainString();
+    }
+}
@@ -0,0 +1,58 @@
+package tams.model;
+
+/**
+ * Revenue earned by one travel package, as shown in the revenue report.
+ */
+public class PackageRevenue {
+    
+    private final TravelPackage travelPackage;
+    private final long revenueCents;
+    private final int bookingCount;
+    
+    /**
+     * Constructor for a package's revenue totals.
+     * 
+     * @param travelPackage the package
+     * @param revenueCents the total revenue in cents
+     * @param bookingCount the number of bookings counted
+     */
+    public PackageRevenue(TravelPackage travelPackage, long revenueCents, int bookingCount) {
+        this.travelPackage = travelPackage;
+        this.revenueCents = revenueCents;
+        this.bookingCount = bookingCount;
+    }
+    
+    public TravelPackage getTravelPackage() {
+        return travelPackage;
+    }
+    
+    public long getRevenueCents() {
+        return revenueCents;
+    }
+    
+    public double getRevenue() {
+        return Money.toDollars(revenueCents);
+    }
+    
+    public int getBookingCount() {
+        return bookingCount;
+    }
+    
+    /**
+     * Get the average value of the counted bookings.
+     * 
+     * @return the average booking value, or 0 if there are no bookings
+     */
+    public double getAverageBookingValue() {
+        return Money.toDollars(getAverageBookingValueCents());
+    }
+    
+    /**
+     * Get the average value of the counted bookings in cents, rounded to the nearest cent.
+     * 
+     * @return the average booking value in cents, or 0 if there are no bookings
+     */
+    public long getAverageBookingValueCents() {
+        return bookingCount > 0 ? Math.round((double) revenueCents / bookingCount) : 0;
+    }
+}
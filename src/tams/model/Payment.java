@@ -8,7 +8,7 @@ import java.util.Date;
 public class Payment {
     
     private String paymentId;
-    private double amount;
+    private long amountCents;
     private PaymentMethod method;
     private PaymentStatus status;
     private Date paymentDate;
@@ -22,12 +22,30 @@ public class Payment {
      */
     public Payment(String paymentId, double amount, PaymentMethod method) {
         this.paymentId = paymentId;
-        this.amount = amount;
+        this.amountCents = Money.toCents(amount);
         this.method = method;
         this.status = PaymentStatus.PENDING;
         this.paymentDate = new Date();
     }
     
+    /**
+     * Constructor for restoring a stored payment.
+     * 
+     * @param paymentId the unique identifier for this payment
+     * @param amountCents the payment amount in cents
+     * @param method the payment method
+     * @param status the payment status
+     * @param paymentDate the date the payment was made
+     */
+    public Payment(String paymentId, long amountCents, PaymentMethod method, 
+                  PaymentStatus status, Date paymentDate) {
+        this.paymentId = paymentId;
+        this.amountCents = amountCents;
+        this.method = method;
+        this.status = status != null ? status : PaymentStatus.PENDING;
+        this.paymentDate = paymentDate != null ? new Date(paymentDate.getTime()) : new Date();
+    }
+    
     /**
      * Process this payment.
      * In a real system, this would integrate with a payment gateway.
@@ -39,7 +57,7 @@ public class Payment {
         // In a real system, this would communicate with a payment gateway
         
         // For demonstration, we'll simulate success based on certain conditions
-        if (amount > 0 && method != null) {
+        if (amountCents > 0 && method != null) {
             status = PaymentStatus.COMPLETED;
             return true;
         }
@@ -55,11 +73,19 @@ public class Payment {
     }
     
     public double getAmount() {
-        return amount;
+        return Money.toDollars(amountCents);
     }
     
     public void setAmount(double amount) {
-        this.amount = amount;
+        this.amountCents = Money.toCents(amount);
+    }
+    
+    public long getAmountCents() {
+        return amountCents;
+    }
+    
+    public void setAmountCents(long amountCents) {
+        this.amountCents = amountCents;
     }
     
     public PaymentMethod getMethod() {
@@ -85,6 +111,6 @@ public class Payment {
     @Override
     public String toString() {
         return String.format("Payment #%s: $%.2f via %s - Status: %s", 
-            paymentId, amount, method, status);
+            paymentId, getAmount(), method, status);
     }
 } 
\ No newline at end of file
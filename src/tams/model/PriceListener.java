@@ -0,0 +1,16 @@
+package tams.model;
+
+/**
+ * Callback for changes to a service's total price.
+ * Lets collections that order bookings by price keep themselves up to date
+ * when a base price, an included activity or an activity's cost is changed directly.
+ */
+public interface PriceListener {
+
+    /**
+     * Called after a service's total price may have changed.
+     *
+     * @param service the service
+     */
+    void priceChanged(TravelService service);
+}
@@ -0,0 +1,16 @@
+package tams.model;
+
+/**
+ * Callback for changes to a package's rating totals.
+ * Lets collections that rank packages by rating keep themselves up to date
+ * when reviews are added, removed or re-rated directly.
+ */
+public interface RatingListener {
+
+    /**
+     * Called after a package's review count or rating total has changed.
+     *
+     * @param travelPackage the package
+     */
+    void ratingsChanged(TravelPackage travelPackage);
+}
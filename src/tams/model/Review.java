@@ -12,6 +12,7 @@ public class Review {
     private int rating; // 1-5 stars
     private String comment;
     private Date date;
+    private TravelPackage travelPackage;
     
     /**
      * Constructor for creating a new review.
@@ -59,8 +60,12 @@ public class Review {
     }
     
     public void setRating(int rating) {
+        int oldRating = this.rating;
         // Ensure rating is between 1 and 5
         this.rating = Math.max(1, Math.min(5, rating));
+        if (travelPackage != null) {
+            travelPackage.ratingChanged(oldRating, this.rating);
+        }
     }
     
     public void setComment(String comment) {
@@ -71,6 +76,25 @@ public class Review {
         return new Date(date.getTime());
     }
     
+    /**
+     * Get the travel package this review was written for.
+     * 
+     * @return the package, or null if the review is not attached to one
+     */
+    public TravelPackage getTravelPackage() {
+        return travelPackage;
+    }
+    
+    /**
+     * Set the travel package this review was written for.
+     * Called by {@link TravelPackage#addReview(Review)}.
+     * 
+     * @param travelPackage the package
+     */
+    void setTravelPackage(TravelPackage travelPackage) {
+        this.travelPackage = travelPackage;
+    }
+    
     @Override
     public boolean equals(Object obj) {
         if (this == obj) return true;
@@ -0,0 +1,104 @@
+package tams.model;
+
+import java.time.LocalDate;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Seats taken on each departure date of a travel package, checked against the
+ * package's capacity per departure.
+ * Counts are updated with compare-and-set rather than under a lock, so bookings
+ * on different departures never wait for each other and bookings on the same
+ * departure only retry when they race for the same count.
+ */
+public class SeatInventory {
+
+    // Seats per departure; 0 means unlimited
+    private volatile int capacity;
+    // Seats taken by departure date. Counts are never removed, so a reservation
+    // can never update a count that has just been dropped from the map
+    private final ConcurrentHashMap<LocalDate, AtomicInteger> taken = new ConcurrentHashMap<>();
+
+    /**
+     * Take seats on a departure if enough are left.
+     *
+     * @param departure the departure date
+     * @param seats the number of seats
+     * @return true if the seats were taken, false if the departure is too full
+     */
+    public boolean tryReserve(LocalDate departure, int seats) {
+        AtomicInteger count = count(departure);
+        while (true) {
+            int current = count.get();
+            int limit = capacity;
+            if (limit > 0 && current + seats > limit) {
+                return false;
+            }
+            if (count.compareAndSet(current, current + seats)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Take seats on a departure whether or not there is room, for bookings that
+     * already exist, such as those loaded from file.
+     *
+     * @param departure the departure date
+     * @param seats the number of seats
+     */
+    public void add(LocalDate departure, int seats) {
+        count(departure).addAndGet(seats);
+    }
+
+    /**
+     * Give back seats taken on a departure.
+     *
+     * @param departure the departure date
+     * @param seats the number of seats
+     */
+    public void release(LocalDate departure, int seats) {
+        count(departure).addAndGet(-seats);
+    }
+
+    /**
+     * Get the number of seats taken on a departure.
+     *
+     * @param departure the departure date
+     * @return the seats taken
+     */
+    public int getTaken(LocalDate departure) {
+        AtomicInteger count = taken.get(departure);
+        return count != null ? count.get() : 0;
+    }
+
+    /**
+     * Get the number of seats left on a departure.
+     *
+     * @param departure the departure date
+     * @return the seats left, never negative, or Integer.MAX_VALUE if capacity is unlimited
+     */
+    public int getRemaining(LocalDate departure) {
+        int limit = capacity;
+        return limit > 0 ? Math.max(0, limit - getTaken(departure)) : Integer.MAX_VALUE;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Set the number of seats on each departure. Lowering it below the seats
+     * already taken keeps those bookings but stops new ones.
+     *
+     * @param capacity the seats per departure, or 0 for unlimited
+     */
+    public void setCapacity(int capacity) {
+        this.capacity = Math.max(0, capacity);
+    }
+
+    private AtomicInteger count(LocalDate departure) {
+        AtomicInteger count = taken.get(departure);
+        return count != null ? count : taken.computeIfAbsent(departure, d -> new AtomicInteger());
+    }
+}
@@ -1,6 +1,14 @@
 package tams.model;
 
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 import tams.model.interfaces.Bookable;
 import tams.model.interfaces.Reviewable;
 
@@ -15,8 +23,19 @@ public class TravelPackage extends TravelService implements Bookable, Reviewable
     private String accommodation;
     private ArrayList<Activity> activities;
     private ArrayList<Review> reviews;
+    private List<Review> reviewsView;
+    // Sum of the activity costs, recomputed only after the activity list or a cost changes
+    private final Object activityCostLock = new Object();
+    private long activityCostCents;
+    private boolean activityCostValid = false;
+    // Running totals over the reviews, kept up to date as they are added, removed or re-rated
+    private long ratingSum;
+    private final int[] ratingCounts = new int[5];
+    private RatingListener ratingListener;
     private Itinerary itinerary;
     private boolean available = true;
+    // Seats taken on each departure date by the bookings counted against this package
+    private final SeatInventory seats = new SeatInventory();
     
     /**
      * Constructor for creating a new travel package.
@@ -35,8 +54,9 @@ public class TravelPackage extends TravelService implements Bookable, Reviewable
         this.destination = destination;
         this.duration = duration;
         this.accommodation = accommodation;
-        this.activities = new ArrayList<>();
+        this.activities = new ActivityList();
         this.reviews = new ArrayList<>();
+        this.reviewsView = Collections.unmodifiableList(reviews);
         this.itinerary = new Itinerary(serviceId + "-itinerary", this.name + " Itinerary");
     }
     
@@ -64,12 +84,31 @@ public class TravelPackage extends TravelService implements Bookable, Reviewable
     }
     
     @Override
-    public double calculateTotalPrice() {
-        double activityCost = 0;
-        for (Activity activity : activities) {
-            activityCost += activity.getCost();
+    public long calculateTotalPriceCents() {
+        synchronized (activityCostLock) {
+            if (!activityCostValid) {
+                long sum = 0;
+                for (Activity activity : activities) {
+                    sum += activity.getCostCents();
+                }
+                activityCostCents = sum;
+                activityCostValid = true;
+            }
+            return basePriceCents + activityCostCents;
         }
-        return basePrice + activityCost;
+    }
+    
+    /**
+     * Drop the cached activity cost so the next price calculation sums it again,
+     * and tell the price listener.
+     * Called when the activity list changes and by {@link Activity#setCostCents(long)}.
+     */
+    void activityCostChanged() {
+        synchronized (activityCostLock) {
+            activityCostValid = false;
+        }
+        // Outside the lock, as listeners take locks of their own
+        firePriceChanged();
     }
     
     /**
@@ -94,17 +133,120 @@ public class TravelPackage extends TravelService implements Bookable, Reviewable
     
     @Override
     public boolean makeReservation() {
-        if (available) {
-            // In a real system, this would update availability based on capacity
-            return true;
-        }
-        return false;
+        // Seats are taken per departure by the booking, see Booking.reserveSeats
+        return available;
+    }
+    
+    /**
+     * Check if the package can be booked for a number of travelers on a departure date.
+     * 
+     * @param departure the departure date
+     * @param travelers the number of travelers
+     * @return true if the package is available and has enough seats left
+     */
+    public boolean checkAvailability(Date departure, int travelers) {
+        return available && seats.getRemaining(departureDay(departure)) >= travelers;
+    }
+    
+    /**
+     * Get the number of seats left on a departure date.
+     * 
+     * @param departure the departure date
+     * @return the seats left, or Integer.MAX_VALUE if capacity is unlimited
+     */
+    public int getSeatsRemaining(Date departure) {
+        return seats.getRemaining(departureDay(departure));
+    }
+    
+    /**
+     * Get the number of seats taken on a departure date.
+     * 
+     * @param departure the departure date
+     * @return the seats taken
+     */
+    public int getSeatsTaken(Date departure) {
+        return seats.getTaken(departureDay(departure));
+    }
+    
+    /**
+     * Get the number of seats on each departure.
+     * 
+     * @return the seats per departure, or 0 if unlimited
+     */
+    public int getCapacity() {
+        return seats.getCapacity();
+    }
+    
+    /**
+     * Set the number of seats on each departure.
+     * 
+     * @param capacity the seats per departure, or 0 for unlimited
+     */
+    public void setCapacity(int capacity) {
+        seats.setCapacity(capacity);
+    }
+    
+    SeatInventory getSeatInventory() {
+        return seats;
+    }
+    
+    /**
+     * Get the departure a date falls on, which is its calendar day in the local time zone.
+     * 
+     * @param date the date
+     * @return the departure day
+     */
+    static LocalDate departureDay(Date date) {
+        return date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
     }
     
     @Override
     public void addReview(Review review) {
         if (!reviews.contains(review)) {
             reviews.add(review);
+            review.setTravelPackage(this);
+            countRating(review.getRating(), 1);
+        }
+    }
+    
+    /**
+     * Remove a review from this package.
+     * 
+     * @param review the review to remove
+     * @return true if the review was attached to this package
+     */
+    public boolean removeReview(Review review) {
+        if (reviews.remove(review)) {
+            review.setTravelPackage(null);
+            countRating(review.getRating(), -1);
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Move a review's rating in the running totals.
+     * Called by {@link Review#setRating(int)} for reviews attached to this package.
+     * 
+     * @param oldRating the rating before the change
+     * @param newRating the rating after the change
+     */
+    void ratingChanged(int oldRating, int newRating) {
+        if (oldRating != newRating) {
+            ratingSum += newRating - oldRating;
+            ratingCounts[oldRating - 1]--;
+            ratingCounts[newRating - 1]++;
+            if (ratingListener != null) {
+                ratingListener.ratingsChanged(this);
+            }
+        }
+    }
+    
+    private void countRating(int rating, int delta) {
+        ratingSum += rating * delta;
+        ratingCounts[rating - 1] += delta;
+        if (ratingListener != null) {
+            ratingListener.ratingsChanged(this);
         }
     }
     
@@ -113,17 +255,48 @@ public class TravelPackage extends TravelService implements Bookable, Reviewable
         if (reviews.isEmpty()) {
             return 0;
         }
-        
-        double totalRating = 0;
-        for (Review review : reviews) {
-            totalRating += review.getRating();
-        }
-        return totalRating / reviews.size();
+        return (double) ratingSum / reviews.size();
+    }
+    
+    /**
+     * Get the number of reviews of this package.
+     * 
+     * @return the review count
+     */
+    public int getReviewCount() {
+        return reviews.size();
+    }
+    
+    /**
+     * Get the sum of the ratings of all reviews of this package.
+     * 
+     * @return the rating total
+     */
+    public long getRatingSum() {
+        return ratingSum;
+    }
+    
+    /**
+     * Get the number of reviews with each rating.
+     * 
+     * @return a new array whose element i counts the reviews rated i + 1 stars
+     */
+    public int[] getRatingHistogram() {
+        return ratingCounts.clone();
+    }
+    
+    /**
+     * Set the listener notified when this package's rating totals change.
+     * 
+     * @param ratingListener the listener, or null for none
+     */
+    public void setRatingListener(RatingListener ratingListener) {
+        this.ratingListener = ratingListener;
     }
     
     @Override
-    public ArrayList<Review> getReviews() {
-        return new ArrayList<>(reviews);
+    public List<Review> getReviews() {
+        return reviewsView;
     }
     
     public Itinerary getItinerary() {
@@ -158,6 +331,7 @@ public class TravelPackage extends TravelService implements Bookable, Reviewable
     
     /**
      * Get the activities in this package.
+     * The list may be changed directly; the package keeps its price up to date.
      * 
      * @return the list of activities
      */
@@ -174,4 +348,147 @@ public class TravelPackage extends TravelService implements Bookable, Reviewable
         return String.format("%s - %s (%d days) - $%.2f", 
             getName(), destination, duration, calculateTotalPrice());
     }
-} 
\ No newline at end of file
+    
+    /**
+     * Activity list that registers the package with the activities it holds, so
+     * that their cost changes reach it, and drops the cached cost on every change.
+     * Bulk changes compare the list before and after to find what was removed.
+     */
+    private class ActivityList extends ArrayList<Activity> {
+        
+        @Override
+        public boolean add(Activity activity) {
+            super.add(activity);
+            if (activity != null) {
+                activity.addPackage(TravelPackage.this);
+            }
+            activityCostChanged();
+            return true;
+        }
+        
+        @Override
+        public void add(int index, Activity activity) {
+            List<Activity> before = new ArrayList<>(this);
+            super.add(index, activity);
+            changed(before);
+        }
+        
+        @Override
+        public boolean addAll(Collection<? extends Activity> added) {
+            List<Activity> before = new ArrayList<>(this);
+            boolean result = super.addAll(added);
+            changed(before);
+            return result;
+        }
+        
+        @Override
+        public boolean addAll(int index, Collection<? extends Activity> added) {
+            List<Activity> before = new ArrayList<>(this);
+            boolean result = super.addAll(index, added);
+            changed(before);
+            return result;
+        }
+        
+        @Override
+        public Activity set(int index, Activity activity) {
+            List<Activity> before = new ArrayList<>(this);
+            Activity old = super.set(index, activity);
+            changed(before);
+            return old;
+        }
+        
+        @Override
+        public Activity remove(int index) {
+            List<Activity> before = new ArrayList<>(this);
+            Activity old = super.remove(index);
+            changed(before);
+            return old;
+        }
+        
+        @Override
+        public boolean remove(Object activity) {
+            List<Activity> before = new ArrayList<>(this);
+            boolean result = super.remove(activity);
+            changed(before);
+            return result;
+        }
+        
+        @Override
+        public void clear() {
+            List<Activity> before = new ArrayList<>(this);
+            super.clear();
+            changed(before);
+        }
+        
+        @Override
+        public boolean removeAll(Collection<?> removed) {
+            List<Activity> before = new ArrayList<>(this);
+            boolean result = super.removeAll(removed);
+            changed(before);
+            return result;
+        }
+        
+        @Override
+        public boolean retainAll(Collection<?> retained) {
+            List<Activity> before = new ArrayList<>(this);
+            boolean result = super.retainAll(retained);
+            changed(before);
+            return result;
+        }
+        
+        @Override
+        public boolean removeIf(Predicate<? super Activity> filter) {
+            List<Activity> before = new ArrayList<>(this);
+            boolean result = super.removeIf(filter);
+            changed(before);
+            return result;
+        }
+        
+        @Override
+        public void replaceAll(UnaryOperator<Activity> operator) {
+            List<Activity> before = new ArrayList<>(this);
+            super.replaceAll(operator);
+            changed(before);
+        }
+        
+        @Override
+        protected void removeRange(int fromIndex, int toIndex) {
+            List<Activity> before = new ArrayList<>(this);
+            super.removeRange(fromIndex, toIndex);
+            changed(before);
+        }
+        
+        @Override
+        public List<Activity> subList(int fromIndex, int toIndex) {
+            // Some sub-list changes bypass the methods above, so sub-lists are read-only
+            return Collections.unmodifiableList(super.subList(fromIndex, toIndex));
+        }
+        
+        /**
+         * Unregister from activities no longer in the list and register with the rest.
+         * Activities are compared by identity, since equal copies are distinct objects.
+         */
+        private void changed(List<Activity> before) {
+            for (Activity activity : before) {
+                if (activity != null && !containsInstance(activity)) {
+                    activity.removePackage(TravelPackage.this);
+                }
+            }
+            for (Activity activity : this) {
+                if (activity != null) {
+                    activity.addPackage(TravelPackage.this);
+                }
+            }
+            activityCostChanged();
+        }
+        
+        private boolean containsInstance(Activity activity) {
+            for (Activity held : this) {
+                if (held == activity) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
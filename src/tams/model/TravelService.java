@@ -15,8 +15,10 @@ public abstract class TravelService {
     /** A description of what this service offers */
     protected String description;
     
-    /** The base price of this service, before any additional calculations */
-    protected double basePrice;
+    /** The base price of this service in cents, before any additional calculations */
+    protected long basePriceCents;
+    
+    private PriceListener priceListener;
     
     /**
      * Constructor for creating a new travel service.
@@ -30,16 +32,25 @@ public abstract class TravelService {
         this.serviceId = serviceId;
         this.name = name;
         this.description = description;
-        this.basePrice = basePrice;
+        this.basePriceCents = Money.toCents(basePrice);
     }
     
     /**
-     * Abstract method to calculate the total price for this service.
+     * Abstract method to calculate the total price for this service in cents.
      * Each subclass must implement its own pricing logic.
      * 
+     * @return the total price in cents
+     */
+    public abstract long calculateTotalPriceCents();
+    
+    /**
+     * Calculate the total price for this service.
+     * 
      * @return the total price as a double
      */
-    public abstract double calculateTotalPrice();
+    public double calculateTotalPrice() {
+        return Money.toDollars(calculateTotalPriceCents());
+    }
     
     // Getters and setters
     
@@ -64,11 +75,39 @@ public abstract class TravelService {
     }
     
     public double getBasePrice() {
-        return basePrice;
+        return Money.toDollars(basePriceCents);
     }
     
     public void setBasePrice(double basePrice) {
-        this.basePrice = basePrice;
+        setBasePriceCents(Money.toCents(basePrice));
+    }
+    
+    public long getBasePriceCents() {
+        return basePriceCents;
+    }
+    
+    public void setBasePriceCents(long basePriceCents) {
+        this.basePriceCents = basePriceCents;
+        firePriceChanged();
+    }
+    
+    /**
+     * Set the listener told when the total price of this service may have changed.
+     * 
+     * @param priceListener the listener, or null for none
+     */
+    public void setPriceListener(PriceListener priceListener) {
+        this.priceListener = priceListener;
+    }
+    
+    /**
+     * Tell the listener that the total price may have changed.
+     * Subclasses call this when something their price is calculated from changes.
+     */
+    protected void firePriceChanged() {
+        if (priceListener != null) {
+            priceListener.priceChanged(this);
+        }
     }
     
     @Override
@@ -1,6 +1,6 @@
 package tams.model.interfaces;
 
-import java.util.ArrayList;
+import java.util.List;
 import tams.model.Review;
 
 /**
@@ -25,7 +25,7 @@ public interface Reviewable {
     /**
      * Get all reviews for this entity.
      * 
-     * @return an ArrayList containing all reviews
+     * @return a read-only list of all reviews
      */
-    ArrayList<Review> getReviews();
+    List<Review> getReviews();
 } 
\ No newline at end of file
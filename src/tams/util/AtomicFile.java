@@ -0,0 +1,273 @@
+package tams.util;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Crash-safe replacement of data files.
+ * A file is written in full to a temporary file next to it, forced to disk and
+ * then moved over the target in one step, so readers only ever see the old or
+ * the new content. Each file ends with a footer line holding the CRC-32 and
+ * length of the content before it, which is checked when the file is read.
+ * Files without a footer, such as hand-edited ones, are read unchecked.
+ */
+public class AtomicFile {
+
+    private static final String FOOTER_PREFIX = "\n#tams-crc32 ";
+    // Prefix, 8 hex digits, a space, up to 19 length digits and the newline
+    private static final int MAX_FOOTER_LENGTH = FOOTER_PREFIX.length() + 8 + 1 + 19 + 1;
+
+    private AtomicFile() {
+    }
+
+    /**
+     * Replace a file with new content.
+     *
+     * @param target the file to replace
+     * @param content the new content, without footer
+     * @throws IOException if the file cannot be written; the old file is then left untouched
+     */
+    public static void write(File target, byte[] content) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        byte[] footer = String.format("%s%08x %d\n", FOOTER_PREFIX, crc.getValue(), content.length)
+            .getBytes(StandardCharsets.US_ASCII);
+
+        File temp = new File(target.getPath() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer[] buffers = {ByteBuffer.wrap(content), ByteBuffer.wrap(footer)};
+                while (buffers[1].hasRemaining()) {
+                    channel.write(buffers);
+                }
+                channel.force(true);
+            }
+
+            try {
+                Files.move(temp.toPath(), target.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+
+        syncDirectory(target.getAbsoluteFile().getParentFile());
+    }
+
+    /**
+     * Get the checksum recorded in a file's footer.
+     *
+     * @param file the file
+     * @return the footer's checksum as hex, or null if the file has no footer
+     * @throws IOException if the file cannot be read
+     */
+    public static String readChecksum(File file) throws IOException {
+        Footer footer = readFooter(file);
+        return footer != null ? String.format("%08x", footer.crc) : null;
+    }
+
+    /**
+     * Open a file for reading its content without the footer.
+     * The checksum is verified once the content has been read to the end, or when
+     * the stream is closed; a mismatch is reported as an IOException.
+     *
+     * @param file the file to read
+     * @return a stream over the content
+     * @throws IOException if the file cannot be opened
+     */
+    public static InputStream openVerified(File file) throws IOException {
+        Footer footer = readFooter(file);
+        InputStream in = Files.newInputStream(file.toPath());
+        return footer != null ? new VerifyingInputStream(in, footer, file.getName()) : in;
+    }
+
+    /**
+     * Read a whole file into memory and verify its checksum.
+     *
+     * @param file the file to read
+     * @return a buffer over the content, without the footer
+     * @throws IOException if the file cannot be read or its checksum does not match
+     */
+    public static ByteBuffer readVerified(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            Footer footer = readFooter(file);
+            if (footer == null) {
+                return buffer;
+            }
+
+            buffer.limit((int) footer.length);
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate());
+            if (crc.getValue() != footer.crc) {
+                throw new IOException("Checksum mismatch in " + file.getName());
+            }
+            return buffer.slice();
+        }
+    }
+
+    /**
+     * Parse the footer at the end of a file.
+     *
+     * @param file the file
+     * @return the footer, or null if the file does not end with one
+     */
+    private static Footer readFooter(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            long size = raf.length();
+            int tailLength = (int) Math.min(size, MAX_FOOTER_LENGTH);
+            byte[] tail = new byte[tailLength];
+            raf.seek(size - tailLength);
+            raf.readFully(tail);
+
+            String text = new String(tail, StandardCharsets.US_ASCII);
+            int start = text.lastIndexOf(FOOTER_PREFIX);
+            if (start < 0 || !text.endsWith("\n")) {
+                return null;
+            }
+
+            String[] fields = text.substring(start + FOOTER_PREFIX.length(), text.length() - 1).split(" ");
+            try {
+                if (fields.length != 2) {
+                    return null;
+                }
+                long crc = Long.parseLong(fields[0], 16);
+                long length = Long.parseLong(fields[1]);
+                // The footer must directly follow the content it describes
+                if (length != size - tailLength + start) {
+                    return null;
+                }
+                return new Footer(crc, length);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Force a directory entry change, such as a rename, to disk.
+     * Not every platform allows opening a directory, in which case this does nothing.
+     */
+    private static void syncDirectory(File directory) {
+        if (directory == null) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Unsupported on this platform; the rename itself is still atomic
+        }
+    }
+
+    /**
+     * Checksum and content length stored in a file's footer.
+     */
+    private static class Footer {
+        final long crc;
+        final long length;
+
+        Footer(long crc, long length) {
+            this.crc = crc;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Stream over a file's content that stops before the footer and verifies the checksum.
+     */
+    private static class VerifyingInputStream extends FilterInputStream {
+        private final Footer footer;
+        private final String name;
+        private final CRC32 crc = new CRC32();
+        private long remaining;
+        private boolean verified = false;
+
+        VerifyingInputStream(InputStream in, Footer footer, String name) {
+            super(in);
+            this.footer = footer;
+            this.name = name;
+            this.remaining = footer.length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining == 0) {
+                verify();
+                return -1;
+            }
+            int count = in.read(b, off, (int) Math.min(len, remaining));
+            if (count == -1) {
+                throw new IOException(name + " is shorter than its footer records");
+            }
+            crc.update(b, off, count);
+            remaining -= count;
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Skipped bytes still have to be checksummed
+            byte[] discard = new byte[8192];
+            long skipped = 0;
+            while (skipped < n) {
+                int count = read(discard, 0, (int) Math.min(discard.length, n - skipped));
+                if (count == -1) {
+                    break;
+                }
+                skipped += count;
+            }
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                // Read whatever the caller left so the whole content is checked
+                skip(remaining);
+                verify();
+            } finally {
+                in.close();
+            }
+        }
+
+        private void verify() throws IOException {
+            if (!verified) {
+                verified = true;
+                if (crc.getValue() != footer.crc) {
+                    throw new IOException("Checksum mismatch in " + name);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,519 @@
+package tams.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import tams.model.*;
+
+/**
+ * Compact binary form of the whole data set.
+ * The file starts with a magic number and format version, followed by
+ * length-prefixed sections: a string table first, then one section per
+ * collection. Strings are stored once in the table and referenced by index,
+ * and entities refer to each other by their position in their section.
+ * Readers skip sections they do not recognise.
+ */
+public class BinarySnapshot {
+
+    /** Current format version, bumped whenever a section layout changes */
+    public static final int VERSION = 4;
+
+    // Version 1 stored only a payment ID with each booking
+    private static final int VERSION_PAYMENT_IDS = 1;
+    // Versions before 3 stored amounts as doubles rather than cents
+    private static final int VERSION_CENTS = 3;
+    // Versions before 4 had no package capacity
+    private static final int VERSION_CAPACITY = 4;
+
+    // "TAMS" in ASCII
+    private static final int MAGIC = 0x54414D53;
+
+    private static final int SECTION_STRINGS = 1;
+    private static final int SECTION_ACTIVITIES = 2;
+    private static final int SECTION_CUSTOMERS = 3;
+    private static final int SECTION_PACKAGES = 4;
+    private static final int SECTION_BOOKINGS = 5;
+    private static final int SECTION_REVIEWS = 6;
+    private static final int SECTION_PAYMENTS = 7;
+
+    // Index used for a null string or a missing reference
+    private static final int NONE = -1;
+
+    private final ArrayList<Activity> activities = new ArrayList<>();
+    private final ArrayList<Customer> customers = new ArrayList<>();
+    private final ArrayList<TravelPackage> packages = new ArrayList<>();
+    private final ArrayList<Payment> payments = new ArrayList<>();
+    private final ArrayList<Booking> bookings = new ArrayList<>();
+    private final ArrayList<Review> reviews = new ArrayList<>();
+
+    private BinarySnapshot() {
+    }
+
+    public ArrayList<Activity> getActivities() {
+        return activities;
+    }
+
+    public ArrayList<Customer> getCustomers() {
+        return customers;
+    }
+
+    public ArrayList<TravelPackage> getPackages() {
+        return packages;
+    }
+
+    public ArrayList<Booking> getBookings() {
+        return bookings;
+    }
+
+    public ArrayList<Review> getReviews() {
+        return reviews;
+    }
+
+    /**
+     * Write a snapshot of the given collections.
+     * Bookings whose customer or package is not in the snapshot are left out,
+     * as they could not be linked when the snapshot is read back.
+     *
+     * @param file the file to write
+     * @param activities the activities
+     * @param customers the customers
+     * @param packages the travel packages, with their reviews attached
+     * @param bookings the bookings
+     * @param reviews the reviews
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(File file, List<Activity> activities, List<Customer> customers,
+                             List<TravelPackage> packages, List<Booking> bookings,
+                             List<Review> reviews) throws IOException {
+        AtomicFile.write(file, encode(activities, customers, packages, bookings, reviews));
+    }
+
+    /**
+     * Encode a snapshot of the given collections without writing it.
+     *
+     * @param activities the activities
+     * @param customers the customers
+     * @param packages the travel packages, with their reviews attached
+     * @param bookings the bookings
+     * @param reviews the reviews
+     * @return the snapshot file content
+     */
+    public static byte[] encode(List<Activity> activities, List<Customer> customers,
+                                List<TravelPackage> packages, List<Booking> bookings,
+                                List<Review> reviews) {
+        try {
+            return encodeSections(activities, customers, packages, bookings, reviews);
+        } catch (IOException e) {
+            // Only in-memory streams are written to
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] encodeSections(List<Activity> activities, List<Customer> customers,
+                                         List<TravelPackage> packages, List<Booking> bookings,
+                                         List<Review> reviews) throws IOException {
+        StringTable strings = new StringTable();
+
+        Map<Activity, Integer> activityIndex = new IdentityHashMap<>();
+        ByteArrayOutputStream activitySection = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(activitySection);
+        out.writeInt(activities.size());
+        for (Activity activity : activities) {
+            activityIndex.put(activity, activityIndex.size());
+            out.writeInt(strings.indexOf(activity.getActivityId()));
+            out.writeInt(strings.indexOf(activity.getName()));
+            out.writeInt(strings.indexOf(activity.getLocation()));
+            out.writeInt(activity.getDuration());
+            out.writeLong(activity.getCostCents());
+        }
+
+        Map<Customer, Integer> customerIndex = new IdentityHashMap<>();
+        ByteArrayOutputStream customerSection = new ByteArrayOutputStream();
+        out = new DataOutputStream(customerSection);
+        out.writeInt(customers.size());
+        for (Customer customer : customers) {
+            customerIndex.put(customer, customerIndex.size());
+            out.writeInt(strings.indexOf(customer.getCustomerId()));
+            out.writeInt(strings.indexOf(customer.getName()));
+            out.writeInt(strings.indexOf(customer.getEmail()));
+            out.writeInt(strings.indexOf(customer.getPhone()));
+            out.writeInt(strings.indexOf(customer.getAddress()));
+        }
+
+        Map<TravelService, Integer> packageIndex = new IdentityHashMap<>();
+        ByteArrayOutputStream packageSection = new ByteArrayOutputStream();
+        out = new DataOutputStream(packageSection);
+        out.writeInt(packages.size());
+        for (TravelPackage travelPackage : packages) {
+            packageIndex.put(travelPackage, packageIndex.size());
+
+            out.writeInt(strings.indexOf(travelPackage.getServiceId()));
+            out.writeInt(strings.indexOf(travelPackage.getName()));
+            out.writeInt(strings.indexOf(travelPackage.getDescription()));
+            out.writeLong(travelPackage.getBasePriceCents());
+            out.writeInt(strings.indexOf(travelPackage.getDestination()));
+            out.writeInt(travelPackage.getDuration());
+            out.writeInt(strings.indexOf(travelPackage.getAccommodation()));
+            out.writeInt(travelPackage.getCapacity());
+            writeActivityRefs(out, travelPackage.getActivities(), activityIndex);
+
+            List<ItineraryDay> days = travelPackage.getItinerary().getDays();
+            out.writeInt(days.size());
+            for (ItineraryDay day : days) {
+                out.writeInt(day.getDayNumber());
+                out.writeInt(strings.indexOf(day.getNotes()));
+                writeActivityRefs(out, day.getActivities(), activityIndex);
+            }
+        }
+
+        ByteArrayOutputStream bookingSection = new ByteArrayOutputStream();
+        out = new DataOutputStream(bookingSection);
+        ArrayList<Booking> linkable = new ArrayList<>(bookings.size());
+        for (Booking booking : bookings) {
+            if (customerIndex.containsKey(booking.getCustomer()) && packageIndex.containsKey(booking.getService())) {
+                linkable.add(booking);
+            }
+        }
+        ByteArrayOutputStream paymentSection = new ByteArrayOutputStream();
+        DataOutputStream paymentOut = new DataOutputStream(paymentSection);
+        int paymentCount = 0;
+        for (Booking booking : linkable) {
+            if (booking.getPayment() != null) {
+                paymentCount++;
+            }
+        }
+        paymentOut.writeInt(paymentCount);
+
+        out.writeInt(linkable.size());
+        int paymentIndex = 0;
+        for (Booking booking : linkable) {
+            out.writeInt(strings.indexOf(booking.getBookingId()));
+            out.writeInt(customerIndex.get(booking.getCustomer()));
+            out.writeInt(packageIndex.get(booking.getService()));
+            out.writeInt(strings.indexOf(booking.getStatus().name()));
+            out.writeLong(booking.getDate() != null ? booking.getDate().getTime() : System.currentTimeMillis());
+            out.writeInt(booking.getNumTravelers());
+            out.writeInt(strings.indexOf(booking.getSpecialRequests()));
+
+            Payment payment = booking.getPayment();
+            if (payment != null) {
+                out.writeInt(paymentIndex++);
+                paymentOut.writeInt(strings.indexOf(payment.getPaymentId()));
+                paymentOut.writeLong(payment.getAmountCents());
+                paymentOut.writeInt(strings.indexOf(payment.getMethod() != null ? payment.getMethod().name() : null));
+                paymentOut.writeInt(strings.indexOf(payment.getStatus().name()));
+                paymentOut.writeLong(payment.getPaymentDate().getTime());
+            } else {
+                out.writeInt(NONE);
+            }
+        }
+
+        ByteArrayOutputStream reviewSection = new ByteArrayOutputStream();
+        out = new DataOutputStream(reviewSection);
+        ArrayList<Review> linkableReviews = new ArrayList<>(reviews.size());
+        for (Review review : reviews) {
+            if (customerIndex.containsKey(review.getCustomer())) {
+                linkableReviews.add(review);
+            }
+        }
+        out.writeInt(linkableReviews.size());
+        for (Review review : linkableReviews) {
+            out.writeInt(strings.indexOf(review.getReviewId()));
+            out.writeInt(customerIndex.get(review.getCustomer()));
+            out.writeInt(packageIndex.getOrDefault(review.getTravelPackage(), NONE));
+            out.writeInt(review.getRating());
+            out.writeInt(strings.indexOf(review.getComment()));
+        }
+
+        // The string table is only complete once every section has been encoded
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        out = new DataOutputStream(encoded);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        writeSection(out, SECTION_STRINGS, strings.encode());
+        writeSection(out, SECTION_ACTIVITIES, activitySection);
+        writeSection(out, SECTION_CUSTOMERS, customerSection);
+        writeSection(out, SECTION_PACKAGES, packageSection);
+        writeSection(out, SECTION_PAYMENTS, paymentSection);
+        writeSection(out, SECTION_BOOKINGS, bookingSection);
+        writeSection(out, SECTION_REVIEWS, reviewSection);
+        out.flush();
+        return encoded.toByteArray();
+    }
+
+    /**
+     * Read a snapshot, rebuilding the entities and the references between them.
+     * The file's checksum is verified before anything is decoded.
+     *
+     * @param file the file to read
+     * @return the loaded snapshot
+     * @throws IOException if the file cannot be read or is not a valid snapshot
+     */
+    public static BinarySnapshot read(File file) throws IOException {
+        ByteBuffer buffer = AtomicFile.readVerified(file);
+        try {
+            if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+                throw new IOException("Not a snapshot file: " + file.getName());
+            }
+            int version = buffer.getInt();
+            if (version < VERSION_PAYMENT_IDS || version > VERSION) {
+                throw new IOException("Unsupported snapshot version " + version);
+            }
+
+            BinarySnapshot snapshot = new BinarySnapshot();
+            String[] strings = new String[0];
+            while (buffer.hasRemaining()) {
+                int tag = buffer.getInt();
+                int length = buffer.getInt();
+                if (length < 0 || length > buffer.remaining()) {
+                    throw new IOException("Truncated snapshot section " + tag);
+                }
+                ByteBuffer section = buffer.slice();
+                section.limit(length);
+                buffer.position(buffer.position() + length);
+
+                switch (tag) {
+                    case SECTION_STRINGS: strings = readStrings(section); break;
+                    case SECTION_ACTIVITIES: snapshot.readActivities(section, strings, version); break;
+                    case SECTION_CUSTOMERS: snapshot.readCustomers(section, strings); break;
+                    case SECTION_PACKAGES: snapshot.readPackages(section, strings, version); break;
+                    case SECTION_PAYMENTS: snapshot.readPayments(section, strings, version); break;
+                    case SECTION_BOOKINGS: snapshot.readBookings(section, strings, version); break;
+                    case SECTION_REVIEWS: snapshot.readReviews(section, strings); break;
+                    default: // Written by a newer version, nothing we can use
+                }
+            }
+            return snapshot;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Corrupt snapshot file " + file.getName() + ": " + e, e);
+        }
+    }
+
+    private static void writeSection(DataOutputStream out, int tag, ByteArrayOutputStream section)
+            throws IOException {
+        out.writeInt(tag);
+        out.writeInt(section.size());
+        section.writeTo(out);
+    }
+
+    private static void writeActivityRefs(DataOutputStream out, List<Activity> refs,
+                                          Map<Activity, Integer> activityIndex) throws IOException {
+        out.writeInt(refs.size());
+        for (Activity activity : refs) {
+            out.writeInt(activityIndex.getOrDefault(activity, NONE));
+        }
+    }
+
+    private static String[] readStrings(ByteBuffer section) {
+        String[] strings = new String[section.getInt()];
+        byte[] bytes = new byte[64];
+        for (int i = 0; i < strings.length; i++) {
+            int length = section.getInt();
+            if (length > bytes.length) {
+                bytes = new byte[Math.max(length, bytes.length * 2)];
+            }
+            section.get(bytes, 0, length);
+            strings[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+        return strings;
+    }
+
+    private static String string(ByteBuffer section, String[] strings) {
+        int index = section.getInt();
+        return index == NONE ? null : strings[index];
+    }
+
+    private static long cents(ByteBuffer section, int version) {
+        return version < VERSION_CENTS ? Money.toCents(section.getDouble()) : section.getLong();
+    }
+
+    private void readActivities(ByteBuffer section, String[] strings, int version) {
+        int count = section.getInt();
+        activities.ensureCapacity(count);
+        for (int i = 0; i < count; i++) {
+            String id = string(section, strings);
+            String name = string(section, strings);
+            String location = string(section, strings);
+            int duration = section.getInt();
+            Activity activity = new Activity(id, name, location, duration, 0);
+            activity.setCostCents(cents(section, version));
+            activities.add(activity);
+        }
+    }
+
+    private void readCustomers(ByteBuffer section, String[] strings) {
+        int count = section.getInt();
+        customers.ensureCapacity(count);
+        for (int i = 0; i < count; i++) {
+            String id = string(section, strings);
+            String name = string(section, strings);
+            String email = string(section, strings);
+            String phone = string(section, strings);
+            String address = string(section, strings);
+            customers.add(new Customer(id, name, email, phone, address));
+        }
+    }
+
+    private void readPackages(ByteBuffer section, String[] strings, int version) {
+        int count = section.getInt();
+        packages.ensureCapacity(count);
+        for (int i = 0; i < count; i++) {
+            String id = string(section, strings);
+            String name = string(section, strings);
+            String description = string(section, strings);
+            long basePriceCents = cents(section, version);
+            String destination = string(section, strings);
+            int duration = section.getInt();
+            String accommodation = string(section, strings);
+            int capacity = version >= VERSION_CAPACITY ? section.getInt() : 0;
+
+            TravelPackage travelPackage = new TravelPackage(
+                id, name, description, 0, destination, duration, accommodation);
+            travelPackage.setBasePriceCents(basePriceCents);
+            travelPackage.setCapacity(capacity);
+            for (Activity activity : readActivityRefs(section)) {
+                travelPackage.addActivity(activity);
+            }
+
+            // Replace the default itinerary days with the stored ones
+            travelPackage.getItinerary().getModifiableDays().clear();
+            int dayCount = section.getInt();
+            for (int d = 0; d < dayCount; d++) {
+                ItineraryDay day = new ItineraryDay(section.getInt(), string(section, strings));
+                for (Activity activity : readActivityRefs(section)) {
+                    day.addActivity(activity);
+                }
+                travelPackage.getItinerary().addDay(day);
+            }
+
+            packages.add(travelPackage);
+        }
+    }
+
+    private ArrayList<Activity> readActivityRefs(ByteBuffer section) {
+        int count = section.getInt();
+        ArrayList<Activity> refs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int index = section.getInt();
+            if (index != NONE) {
+                refs.add(activities.get(index));
+            }
+        }
+        return refs;
+    }
+
+    private void readPayments(ByteBuffer section, String[] strings, int version) {
+        int count = section.getInt();
+        payments.ensureCapacity(count);
+        for (int i = 0; i < count; i++) {
+            String id = string(section, strings);
+            long amount = cents(section, version);
+            String method = string(section, strings);
+            PaymentStatus status = PaymentStatus.valueOf(string(section, strings));
+            Date date = new Date(section.getLong());
+            payments.add(new Payment(id, amount, method != null ? PaymentMethod.valueOf(method) : null,
+                status, date));
+        }
+    }
+
+    private void readBookings(ByteBuffer section, String[] strings, int version) {
+        int count = section.getInt();
+        bookings.ensureCapacity(count);
+        Map<String, BookingStatus> statuses = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            String id = string(section, strings);
+            Customer customer = customers.get(section.getInt());
+            TravelPackage travelPackage = packages.get(section.getInt());
+            BookingStatus status = statuses.computeIfAbsent(string(section, strings), BookingStatus::valueOf);
+            Date date = new Date(section.getLong());
+
+            Booking booking;
+            if (version == VERSION_PAYMENT_IDS) {
+                booking = new Booking(id, customer, travelPackage, date, status, 0, null);
+                String paymentId = string(section, strings);
+                // Assume the current price was paid until the snapshot is written again
+                if (paymentId != null) {
+                    Payment payment = new Payment(
+                        paymentId, travelPackage.calculateTotalPrice(), PaymentMethod.CREDIT_CARD);
+                    payment.setStatus(PaymentStatus.COMPLETED);
+                    booking.addPayment(payment);
+                }
+            } else {
+                int numTravelers = section.getInt();
+                String specialRequests = string(section, strings);
+                booking = new Booking(id, customer, travelPackage, date, status, numTravelers, specialRequests);
+                int payment = section.getInt();
+                if (payment != NONE) {
+                    booking.addPayment(payments.get(payment));
+                }
+            }
+
+            bookings.add(booking);
+            customer.addBooking(booking);
+        }
+    }
+
+    private void readReviews(ByteBuffer section, String[] strings) {
+        int count = section.getInt();
+        reviews.ensureCapacity(count);
+        for (int i = 0; i < count; i++) {
+            String id = string(section, strings);
+            Customer customer = customers.get(section.getInt());
+            int packageIndex = section.getInt();
+            int rating = section.getInt();
+            String comment = string(section, strings);
+
+            Review review = new Review(id, customer, rating, comment);
+            if (packageIndex != NONE) {
+                packages.get(packageIndex).addReview(review);
+            }
+            reviews.add(review);
+        }
+    }
+
+    /**
+     * Assigns each distinct string an index in first-use order.
+     */
+    private static class StringTable {
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final ArrayList<String> values = new ArrayList<>();
+
+        int indexOf(String value) {
+            if (value == null) {
+                return NONE;
+            }
+            Integer index = indexes.get(value);
+            if (index == null) {
+                index = values.size();
+                indexes.put(value, index);
+                values.add(value);
+            }
+            return index;
+        }
+
+        ByteArrayOutputStream encode() throws IOException {
+            ByteArrayOutputStream section = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(section);
+            out.writeInt(values.size());
+            for (String value : values) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            out.flush();
+            return section;
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package tams.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import tams.model.*;
+
+/**
+ * Bookings stored column by column in a memory-mapped file.
+ * Each booking is a row of primitives: customer index, package index, epoch day,
+ * status and amount in cents. Customers and packages are referenced by their
+ * position in ID tables at the start of the file. Scans read the columns straight
+ * from the mapped file, and {@link Booking} objects are only created on request.
+ */
+public class BookingColumnStore {
+
+    /** Current file layout version */
+    public static final int VERSION = 1;
+
+    // "TBKC" in ASCII
+    private static final int MAGIC = 0x54424B43;
+
+    private static final BookingStatus[] STATUSES = BookingStatus.values();
+
+    private final File file;
+    private final int rows;
+    private final Customer[] customerTable;
+    private final TravelPackage[] packageTable;
+
+    private final LongBuffer amountColumn;
+    private final IntBuffer customerColumn;
+    private final IntBuffer packageColumn;
+    private final IntBuffer dateColumn;
+    private final IntBuffer idOffsets;
+    private final ByteBuffer statusColumn;
+    private final ByteBuffer idBytes;
+
+    /**
+     * Constructor that slices the columns out of a mapped file.
+     *
+     * @param file the mapped file
+     * @param buffer the mapping, positioned after the ID tables
+     * @param rows the number of bookings
+     * @param customerTable customers by index
+     * @param packageTable packages by index
+     */
+    private BookingColumnStore(File file, ByteBuffer buffer, int rows,
+                               Customer[] customerTable, TravelPackage[] packageTable) {
+        this.file = file;
+        this.rows = rows;
+        this.customerTable = customerTable;
+        this.packageTable = packageTable;
+
+        // The long column comes first so that it starts on an 8-byte boundary
+        int position = align(buffer.position());
+        amountColumn = column(buffer, position, rows * 8L).asLongBuffer();
+        position += rows * 8;
+        customerColumn = column(buffer, position, rows * 4L).asIntBuffer();
+        position += rows * 4;
+        packageColumn = column(buffer, position, rows * 4L).asIntBuffer();
+        position += rows * 4;
+        dateColumn = column(buffer, position, rows * 4L).asIntBuffer();
+        position += rows * 4;
+        idOffsets = column(buffer, position, (rows + 1) * 4L).asIntBuffer();
+        position += (rows + 1) * 4;
+        statusColumn = column(buffer, position, rows);
+        position += rows;
+        idBytes = column(buffer, position, idOffsets.get(rows));
+    }
+
+    /**
+     * Write the bookings to a new column file and map it.
+     * Bookings whose customer or package is not in the given lists are left out.
+     *
+     * @param file the file to write; it must not be mapped already
+     * @param bookings the bookings
+     * @param customers the customers the bookings may refer to
+     * @param packages the packages the bookings may refer to
+     * @return the store over the new file
+     * @throws IOException if the file cannot be written
+     */
+    public static BookingColumnStore build(File file, List<Booking> bookings, List<Customer> customers,
+                                           List<TravelPackage> packages) throws IOException {
+        Map<Customer, Integer> customerIndex = indexOf(customers);
+        Map<TravelService, Integer> packageIndex = indexOf(packages);
+
+        ArrayList<Booking> rows = new ArrayList<>(bookings.size());
+        for (Booking booking : bookings) {
+            if (customerIndex.containsKey(booking.getCustomer()) && packageIndex.containsKey(booking.getService())) {
+                rows.add(booking);
+            }
+        }
+
+        byte[][] ids = new byte[rows.size()][];
+        int idLength = 0;
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = rows.get(i).getBookingId().getBytes(StandardCharsets.UTF_8);
+            idLength += ids[i].length;
+        }
+        byte[][] customerIds = new byte[customers.size()][];
+        for (int i = 0; i < customerIds.length; i++) {
+            customerIds[i] = customers.get(i).getCustomerId().getBytes(StandardCharsets.UTF_8);
+        }
+        byte[][] packageIds = new byte[packages.size()][];
+        for (int i = 0; i < packageIds.length; i++) {
+            packageIds[i] = packages.get(i).getServiceId().getBytes(StandardCharsets.UTF_8);
+        }
+
+        int count = rows.size();
+        long headerSize = 12 + tableSize(customerIds) + tableSize(packageIds);
+        long size = align(headerSize) + count * 8L + count * 12L + (count + 1) * 4L + count + idLength;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Too many bookings for a single column file");
+        }
+
+        ZoneId zone = ZoneId.systemDefault();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putInt(count);
+            putTable(buffer, customerIds);
+            putTable(buffer, packageIds);
+            int columnsStart = buffer.position();
+
+            buffer.position(align(columnsStart));
+            for (Booking booking : rows) {
+                buffer.putLong(booking.getChargedAmountCents());
+            }
+            for (Booking booking : rows) {
+                buffer.putInt(customerIndex.get(booking.getCustomer()));
+            }
+            for (Booking booking : rows) {
+                buffer.putInt(packageIndex.get(booking.getService()));
+            }
+            for (Booking booking : rows) {
+                buffer.putInt((int) toEpochDay(booking.getDate(), zone));
+            }
+            int offset = 0;
+            buffer.putInt(offset);
+            for (byte[] id : ids) {
+                offset += id.length;
+                buffer.putInt(offset);
+            }
+            for (Booking booking : rows) {
+                buffer.put((byte) booking.getStatus().ordinal());
+            }
+            for (byte[] id : ids) {
+                buffer.put(id);
+            }
+            buffer.force();
+
+            buffer.position(columnsStart);
+            return new BookingColumnStore(file, buffer, count,
+                customers.toArray(new Customer[0]), packages.toArray(new TravelPackage[0]));
+        }
+    }
+
+    /**
+     * Get the file backing this store.
+     *
+     * @return the column file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Get the number of bookings in the store.
+     *
+     * @return the row count
+     */
+    public int size() {
+        return rows;
+    }
+
+    /**
+     * Get the number of entries in the package table.
+     *
+     * @return the package count
+     */
+    public int getPackageCount() {
+        return packageTable.length;
+    }
+
+    /**
+     * Get a package by its index in the package table.
+     *
+     * @param index the package index
+     * @return the package, or null if it is no longer loaded
+     */
+    public TravelPackage getPackage(int index) {
+        return packageTable[index];
+    }
+
+    /**
+     * Get the amount of a booking in cents.
+     *
+     * @param row the row index
+     * @return the amount in cents
+     */
+    public long getAmountCents(int row) {
+        return amountColumn.get(row);
+    }
+
+    /**
+     * Get the status of a booking.
+     *
+     * @param row the row index
+     * @return the status
+     */
+    public BookingStatus getStatus(int row) {
+        return STATUSES[statusColumn.get(row)];
+    }
+
+    /**
+     * Create a booking object for one row.
+     * The booking is a detached copy; changes to it are not written back.
+     *
+     * @param row the row index
+     * @return the booking, or null if its customer or package is no longer loaded
+     */
+    public Booking getBooking(int row) {
+        Customer customer = customerTable[customerColumn.get(row)];
+        TravelPackage travelPackage = packageTable[packageColumn.get(row)];
+        if (customer == null || travelPackage == null) {
+            return null;
+        }
+
+        int start = idOffsets.get(row);
+        byte[] id = new byte[idOffsets.get(row + 1) - start];
+        for (int i = 0; i < id.length; i++) {
+            id[i] = idBytes.get(start + i);
+        }
+
+        Date date = Date.from(LocalDate.ofEpochDay(dateColumn.get(row))
+            .atStartOfDay(ZoneId.systemDefault()).toInstant());
+        return new Booking(new String(id, StandardCharsets.UTF_8), customer, travelPackage,
+            date, getStatus(row), 0, null);
+    }
+
+    /**
+     * Total the amounts and count the bookings of each package, over bookings
+     * with one of the given statuses. Reads only the status, package and amount columns.
+     *
+     * @param statuses the statuses to include
+     * @param amountCents receives the total in cents per package index
+     * @param counts receives the number of bookings per package index
+     */
+    public void sumByPackage(Set<BookingStatus> statuses, long[] amountCents, int[] counts) {
+        boolean[] included = new boolean[STATUSES.length];
+        for (BookingStatus status : statuses) {
+            included[status.ordinal()] = true;
+        }
+
+        for (int row = 0; row < rows; row++) {
+            if (included[statusColumn.get(row)]) {
+                int packageIndex = packageColumn.get(row);
+                amountCents[packageIndex] += amountColumn.get(row);
+                counts[packageIndex]++;
+            }
+        }
+    }
+
+    /**
+     * Convert a date to days since 1970-01-01 in the local time zone.
+     *
+     * @param date the date
+     * @param zone the time zone
+     * @return the epoch day
+     */
+    static long toEpochDay(Date date, ZoneId zone) {
+        return date.toInstant().atZone(zone).toLocalDate().toEpochDay();
+    }
+
+    private static <T> Map<T, Integer> indexOf(List<? extends T> entities) {
+        Map<T, Integer> index = new IdentityHashMap<>();
+        for (T entity : entities) {
+            index.put(entity, index.size());
+        }
+        return index;
+    }
+
+    private static ByteBuffer column(ByteBuffer buffer, int position, long length) {
+        ByteBuffer column = buffer.duplicate();
+        column.position(position);
+        column.limit(position + (int) length);
+        return column.slice();
+    }
+
+    private static int align(long position) {
+        return (int) ((position + 7) & ~7L);
+    }
+
+    private static long tableSize(byte[][] values) {
+        long size = 4;
+        for (byte[] value : values) {
+            size += 4 + value.length;
+        }
+        return size;
+    }
+
+    private static void putTable(ByteBuffer buffer, byte[][] values) {
+        buffer.putInt(values.length);
+        for (byte[] value : values) {
+            buffer.putInt(value.length);
+            buffer.put(value);
+        }
+    }
+}
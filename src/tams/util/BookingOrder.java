@@ -0,0 +1,26 @@
+package tams.util;
+
+/**
+ * Orders in which bookings can be paged through. Bookings with the same date
+ * or price are in booking ID order.
+ */
+public enum BookingOrder {
+    ID("Booking ID"),
+    DATE("Booking Date"),
+    PRICE("Price");
+
+    private final String displayName;
+
+    BookingOrder(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
@@ -0,0 +1,77 @@
+package tams.util;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Tracks which entities of one collection have changed since it was last saved.
+ */
+class ChangeSet {
+
+    /** IDs of entities added or modified since the last save */
+    final Set<String> changed = new LinkedHashSet<>();
+
+    /** IDs of entities removed since the last save */
+    final Set<String> removed = new LinkedHashSet<>();
+
+    /** Number of records currently in the collection's delta file */
+    int deltaRecords = 0;
+
+    /** Set when the whole file must be rewritten, e.g. to drop records that failed to load */
+    volatile boolean rewrite = false;
+
+    /** Set when the collection's file failed to load; the file is then not written until the next load */
+    volatile boolean unreadable = false;
+
+    /** Incremented on every change and never reset, so readers can tell if anything changed */
+    long version = 0;
+
+    /**
+     * Record that an entity was added or modified.
+     *
+     * @param id the entity ID
+     */
+    void markChanged(String id) {
+        removed.remove(id);
+        changed.add(id);
+        version++;
+    }
+
+    /**
+     * Record that an entity was removed.
+     *
+     * @param id the entity ID
+     */
+    void markRemoved(String id) {
+        changed.remove(id);
+        removed.add(id);
+        version++;
+    }
+
+    /**
+     * Check whether the collection needs to be written.
+     *
+     * @return true if anything changed since the last save
+     */
+    boolean isDirty() {
+        return rewrite || !changed.isEmpty() || !removed.isEmpty();
+    }
+
+    /**
+     * Get the number of pending entity changes.
+     *
+     * @return the number of changed plus removed entities
+     */
+    int size() {
+        return changed.size() + removed.size();
+    }
+
+    /**
+     * Forget all pending changes after a successful save.
+     */
+    void clear() {
+        changed.clear();
+        removed.clear();
+        rewrite = false;
+    }
+}
@@ -0,0 +1,369 @@
+package tams.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Append-only log of one-line records.
+ * Records are written by a single background thread that fsyncs them in groups,
+ * so many concurrent appends share one disk flush. A record is only acknowledged
+ * once it has been forced to disk. A batch that fails to write is kept and
+ * retried, together with anything queued since, until it reaches disk.
+ */
+public class DataJournal {
+
+    // Wait between attempts to write a batch that failed
+    private static final long RETRY_MILLIS = 1000;
+
+    private final File file;
+    // Replaced when the file is trimmed; guarded by ioLock
+    private FileChannel channel;
+
+    // Guards the pending queue and the sequence counters
+    private final Object lock = new Object();
+    // Held while writing to or truncating the file
+    private final Object ioLock = new Object();
+
+    private ArrayList<String> pending = new ArrayList<>();
+    private long appendedSeq = 0;
+    private long durableSeq = 0;
+    // Last record written to the file, and the file size after it; only changed while holding ioLock
+    private long writtenSeq = 0;
+    private long writtenSize = 0;
+    private int recordCount = 0;
+    // Last failed write, and the last record it covered
+    private IOException failure;
+    private long failedSeq = 0;
+    private boolean closed = false;
+
+    private final Thread writerThread;
+
+    /**
+     * Constructor that opens (or creates) the journal file.
+     *
+     * @param file the journal file
+     * @throws IOException if the file cannot be opened
+     */
+    public DataJournal(File file) throws IOException {
+        this.file = file;
+        endTornLine(file);
+        this.channel = open(file);
+        this.writtenSize = channel.size();
+
+        writerThread = new Thread(this::writeLoop, "tams-journal-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Queue a record for writing without waiting for it to reach disk.
+     *
+     * @param record a single-line record
+     * @return the sequence number to pass to {@link #awaitDurable(long)}
+     */
+    public long enqueue(String record) {
+        synchronized (lock) {
+            if (closed) {
+                throw new IllegalStateException("Journal is closed");
+            }
+            pending.add(record);
+            recordCount++;
+            lock.notifyAll();
+            return ++appendedSeq;
+        }
+    }
+
+    /**
+     * Block until the record with the given sequence number has been forced to disk,
+     * or until an attempt to write it has failed.
+     *
+     * @param seq the sequence number returned by {@link #enqueue(String)}
+     * @throws IOException if the record could not be written yet; it stays queued and is retried
+     */
+    public void awaitDurable(long seq) throws IOException {
+        synchronized (lock) {
+            while (durableSeq < seq && failedSeq < seq) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for journal write", e);
+                }
+            }
+            if (durableSeq < seq) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * Append a record and wait until it is durable.
+     *
+     * @param record a single-line record
+     * @throws IOException if the record could not be written yet; it stays queued and is retried
+     */
+    public void append(String record) throws IOException {
+        awaitDurable(enqueue(record));
+    }
+
+    /**
+     * Get the sequence number of the last record queued. Records queued later
+     * have higher numbers, so this marks everything appended so far for
+     * {@link #truncate(long)}.
+     *
+     * @return the sequence number, or 0 if nothing has been queued
+     */
+    public long getSequence() {
+        synchronized (lock) {
+            return appendedSeq;
+        }
+    }
+
+    /**
+     * Get the number of records the journal holds: those replayed or queued,
+     * less those dropped by {@link #truncate(long)}.
+     *
+     * @return the record count
+     */
+    public int getRecordCount() {
+        synchronized (lock) {
+            return recordCount;
+        }
+    }
+
+    /**
+     * Read every complete record currently in the journal file.
+     * A torn line left by a crash is passed through as-is, so handlers
+     * should skip records they cannot parse.
+     *
+     * @param handler called once per record, in append order
+     * @return the number of records replayed
+     * @throws IOException if the file cannot be read
+     */
+    public int replay(Consumer<String> handler) throws IOException {
+        int count = 0;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    handler.accept(line);
+                    count++;
+                }
+            }
+        }
+        synchronized (lock) {
+            recordCount += count;
+        }
+        return count;
+    }
+
+    /**
+     * Discard the records up to and including the given sequence number, once
+     * they have been folded into a snapshot; records queued after it are kept.
+     * Records up to it that are still queued are written as usual, which does
+     * no harm since every record holds the whole state it sets.
+     * A journal that still holds later records is rewritten beside the file and
+     * moved over it, so a crash leaves either the old or the trimmed journal.
+     *
+     * @param seq the last sequence number covered, from {@link #getSequence()}
+     * @throws IOException if the file cannot be truncated
+     */
+    public void truncate(long seq) throws IOException {
+        synchronized (ioLock) {
+            cutFailedWrite();
+            // Records are one per line in sequence order, so the later ones are the last lines
+            long keep = writtenSeq - seq;
+            if (keep <= 0) {
+                channel.truncate(0);
+                channel.force(true);
+                writtenSize = 0;
+            } else {
+                ArrayDeque<String> tail = new ArrayDeque<>();
+                try (BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        tail.addLast(line);
+                        if (tail.size() > keep) {
+                            tail.removeFirst();
+                        }
+                    }
+                }
+
+                StringBuilder sb = new StringBuilder();
+                for (String record : tail) {
+                    sb.append(record).append('\n');
+                }
+                File temp = new File(file.getPath() + ".tmp");
+                try (FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    ByteBuffer bytes = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+                    while (bytes.hasRemaining()) {
+                        out.write(bytes);
+                    }
+                    out.force(true);
+                }
+                try {
+                    Files.move(temp.toPath(), file.toPath(),
+                        StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+                FileChannel old = channel;
+                channel = open(file);
+                writtenSize = channel.size();
+                old.close();
+            }
+
+            synchronized (lock) {
+                recordCount = (int) Math.max(0, appendedSeq - seq);
+            }
+        }
+    }
+
+    /**
+     * Flush outstanding records and close the journal.
+     */
+    public void close() {
+        long last;
+        synchronized (lock) {
+            closed = true;
+            last = appendedSeq;
+            lock.notifyAll();
+        }
+        try {
+            awaitDurable(last);
+        } catch (IOException e) {
+            System.err.println("Error closing journal, records not written: " + e.getMessage());
+        }
+        try {
+            // A writer still retrying makes one last attempt before it stops
+            writerThread.join();
+            synchronized (ioLock) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing journal: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * End a torn final line left by a crash, so that the next record is appended
+     * on a line of its own instead of being joined to it and lost on replay.
+     * The torn record itself was never acknowledged.
+     */
+    private static void endTornLine(File file) throws IOException {
+        if (file.length() == 0) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.read(last, channel.size() - 1);
+            if (last.get(0) != '\n') {
+                channel.write(ByteBuffer.wrap(new byte[] {'\n'}), channel.size());
+                channel.force(true);
+            }
+        }
+    }
+
+    /**
+     * Cut off whatever part of a failed write reached the file, so that its retry
+     * does not leave a torn line in the middle of the journal.
+     * Must be called while holding ioLock.
+     */
+    private void cutFailedWrite() throws IOException {
+        if (channel.size() > writtenSize) {
+            channel.truncate(writtenSize);
+        }
+    }
+
+    private static FileChannel open(File file) throws IOException {
+        return FileChannel.open(file.toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Body of the writer thread: drain whatever has queued up, write it as one batch
+     * and force it to disk, then release every waiter covered by the batch.
+     * A batch that fails is retried after a pause, with the records queued meanwhile.
+     */
+    private void writeLoop() {
+        ArrayList<String> batch = new ArrayList<>();
+        long batchEnd;
+        while (true) {
+            synchronized (lock) {
+                while (batch.isEmpty() && pending.isEmpty() && !closed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (batch.isEmpty() && pending.isEmpty()) {
+                    return;
+                }
+                batch.addAll(pending);
+                pending = new ArrayList<>();
+                batchEnd = appendedSeq;
+            }
+
+            try {
+                synchronized (ioLock) {
+                    cutFailedWrite();
+                    StringBuilder sb = new StringBuilder();
+                    for (String record : batch) {
+                        sb.append(record).append('\n');
+                    }
+                    ByteBuffer bytes = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+                    while (bytes.hasRemaining()) {
+                        channel.write(bytes);
+                    }
+                    channel.force(false);
+                    writtenSize = channel.size();
+                    writtenSeq = batchEnd;
+                }
+                synchronized (lock) {
+                    durableSeq = Math.max(durableSeq, batchEnd);
+                    lock.notifyAll();
+                }
+                batch = new ArrayList<>();
+            } catch (IOException e) {
+                System.err.println("Error writing journal, retrying: " + e.getMessage());
+                synchronized (lock) {
+                    failure = e;
+                    failedSeq = batchEnd;
+                    lock.notifyAll();
+                    if (closed) {
+                        return;
+                    }
+                    // Wait out the pause even when new records wake us, and retry once more on close
+                    long retryAt = System.currentTimeMillis() + RETRY_MILLIS;
+                    long remaining;
+                    while (!closed && (remaining = retryAt - System.currentTimeMillis()) > 0) {
+                        try {
+                            lock.wait(remaining);
+                        } catch (InterruptedException ie) {
+                            return;
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
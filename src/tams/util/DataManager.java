@@ -1,19 +1,45 @@
 package tams.util;
 
+import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.text.ParseException;
+import java.time.ZoneId;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
+import org.json.simple.JSONValue;
 
 import tams.model.*;
 
@@ -29,12 +55,45 @@ public class DataManager {
     private static final String BOOKINGS_FILE = DATA_DIR + File.separator + "bookings.json";
     private static final String REVIEWS_FILE = DATA_DIR + File.separator + "reviews.json";
     private static final String ACTIVITIES_FILE = DATA_DIR + File.separator + "activities.json";
+    private static final String JOURNAL_FILE = DATA_DIR + File.separator + "journal.log";
+    private static final String SNAPSHOT_FILE = DATA_DIR + File.separator + "snapshot.bin";
     
-    private ArrayList<Customer> customers;
-    private ArrayList<TravelPackage> packages;
-    private ArrayList<Booking> bookings;
-    private ArrayList<Review> reviews;
-    private ArrayList<Activity> activities;
+    /** System property that turns on journal mode, e.g. -Dtams.journal=true */
+    public static final String JOURNAL_PROPERTY = "tams.journal";
+    
+    /** System property selecting the storage format, "json" (default) or "binary" */
+    public static final String FORMAT_PROPERTY = "tams.format";
+    
+    /** System property that turns on the memory-mapped booking columns, e.g. -Dtams.columns=true */
+    public static final String COLUMNS_PROPERTY = "tams.columns";
+    
+    // Suffix of the files backing the booking column store
+    private static final String COLUMNS_SUFFIX = ".columns";
+    
+    // Number of journal records after which the journal is folded into the snapshot
+    private static final int JOURNAL_COMPACT_THRESHOLD = 1000;
+    
+    // A collection's delta file is folded into its snapshot once it holds more records
+    // than this fraction of the collection (or the minimum, for small collections)
+    private static final double DELTA_RATIO = 0.1;
+    private static final int DELTA_MIN_RECORDS = 100;
+    
+    // Threads used to parse the data files at startup, one per file at most
+    private static final int LOAD_THREADS = Math.min(5, Runtime.getRuntime().availableProcessors());
+    // How often load progress is reported while the files are being parsed
+    private static final long PROGRESS_INTERVAL_MS = 50;
+    
+    private PublishingList<Customer> customers;
+    private PublishingList<TravelPackage> packages;
+    private PublishingList<Booking> bookings;
+    private PublishingList<Review> reviews;
+    private PublishingList<Activity> activities;
+    
+    // Readers get an immutable snapshot of the collections instead of locking. Writers
+    // hold this object's lock; any change to a collection drops the published snapshot,
+    // and the next reader builds a new one, recopying only the collections that changed
+    private volatile DataSnapshot snapshot;
+    private long snapshotVersion = 0;
     
     // Maps to quickly look up entities by ID
     private Map<String, Customer> customerMap;
@@ -42,35 +101,179 @@ public class DataManager {
     private Map<String, Activity> activityMap;
     private Map<String, Booking> bookingMap;
     private Map<String, Review> reviewMap;
+    private Map<String, Payment> paymentMap;
+    // Package each review was written for, by review ID
+    private Map<String, TravelPackage> reviewPackageMap;
+    
+    // Case-insensitive substring search over customer names, package names and destinations
+    private final TrigramIndex<Customer> customerNameIndex = new TrigramIndex<>();
+    private final TrigramIndex<TravelPackage> packageNameIndex = new TrigramIndex<>();
+    private final TrigramIndex<TravelPackage> destinationIndex = new TrigramIndex<>();
+    
+    // Customers in ID order, for paging through them. Read without locking, so
+    // fetching a page never waits for a load or a save
+    private final ConcurrentNavigableMap<String, Customer> customersById = new ConcurrentSkipListMap<>();
+    
+    // Packages using each activity, by activity ID: in their activity list, and in
+    // which of their itinerary days. Packages are re-filed whenever they are marked
+    // modified, so the index follows any change to their lists
+    private final Map<String, Set<TravelPackage>> packagesByActivity = new HashMap<>();
+    private final Map<String, Map<TravelPackage, List<ItineraryDay>>> daysByActivity = new HashMap<>();
+    private final Map<TravelPackage, Set<String>> activitiesFiled = new IdentityHashMap<>();
+    
+    // Reviewed packages by average rating; follows rating changes reported by the packages
+    private final RatingRanking packageRatings = new RatingRanking();
+    
+    // Bookings filed by ID, customer ID, package ID, status, date and price. These have their own lock
+    // because status and date changes are reported by the bookings themselves, which happens
+    // on the loader threads while the data manager is locked for loading
+    private final Object bookingIndexLock = new Object();
+    private final NavigableMap<String, Booking> bookingsById = new TreeMap<>();
+    private final Map<String, Set<Booking>> bookingsByCustomer = new HashMap<>();
+    // Bookings by package, also used to re-file a package's bookings when its price changes
+    private final Map<String, NavigableMap<String, Booking>> bookingsByPackage = new HashMap<>();
+    private final Map<BookingStatus, Set<Booking>> bookingsByStatus = new EnumMap<>(BookingStatus.class);
+    // Bookings by date, keyed by days since 1970-01-01 in the local time zone, then by ID
+    private final NavigableMap<Long, NavigableMap<String, Booking>> bookingsByDay = new TreeMap<>();
+    // Bookings by their package's total price in cents, then by ID, and the price each
+    // booked package's bookings are filed under
+    private final NavigableMap<Long, NavigableMap<String, Booking>> bookingsByPrice = new TreeMap<>();
+    private final Map<String, Long> pricesFiled = new HashMap<>();
+    private final BookingListener bookingIndexer = new BookingListener() {
+        @Override
+        public void statusChanged(Booking booking, BookingStatus oldStatus) {
+            synchronized (bookingIndexLock) {
+                unfile(bookingsByStatus, oldStatus, booking);
+                file(bookingsByStatus, booking.getStatus(), booking);
+            }
+        }
+        
+        @Override
+        public void dateChanged(Booking booking, Date oldDate) {
+            synchronized (bookingIndexLock) {
+                unfileById(bookingsByDay, epochDay(oldDate), booking);
+                fileById(bookingsByDay, epochDay(booking.getDate()), booking);
+            }
+        }
+    };
+    private final PriceListener bookingRepricer = service -> {
+        synchronized (bookingIndexLock) {
+            String serviceId = service.getServiceId();
+            Long oldPrice = pricesFiled.get(serviceId);
+            NavigableMap<String, Booking> filed = bookingsByPackage.get(serviceId);
+            // A package that was replaced under the same ID no longer files its bookings
+            if (oldPrice == null || filed == null || filed.firstEntry().getValue().getService() != service) {
+                return;
+            }
+            long price = service.calculateTotalPriceCents();
+            if (price != oldPrice) {
+                for (Booking booking : filed.values()) {
+                    unfileById(bookingsByPrice, oldPrice, booking);
+                    fileById(bookingsByPrice, price, booking);
+                }
+                pricesFiled.put(serviceId, price);
+            }
+        }
+    };
+    
+    // Optional observer notified while data files are streamed in
+    private LoadProgressListener progressListener;
+    
+    // True to store data in the binary snapshot; the JSON files are then only used
+    // to import data the first time and for export
+    private final boolean binaryFormat;
+    
+    // Column copy of the bookings for aggregate scans, only built when enabled
+    private final boolean columnsEnabled;
+    private BookingColumnStore bookingColumns;
+    private long bookingColumnsVersion = -1;
+    private long loadCount = 0;
+    
+    // Write-behind persistence: requested saves are written on a background thread
+    private final Object saveLock = new Object();
+    private Thread persistenceThread;
+    private long saveRequested = 0;
+    private long saveCompleted = 0;
+    private boolean lastSaveSucceeded = true;
+    // Captured saves are numbered and written strictly in that order, because each
+    // save's delta records are relative to the files the saves before it left on disk
+    private final Object writeOrder = new Object();
+    private long savesCaptured = 0;
+    private long savesWritten = 0;
+    private long lastFailedSave = 0;
+    
+    // Write-ahead journal, only present in journal mode
+    private DataJournal journal;
+    private ExecutorService compactor;
+    private boolean compactionScheduled = false;
+    
+    // Entities changed since each collection was last written
+    private final ChangeSet activityChanges = new ChangeSet();
+    private final ChangeSet customerChanges = new ChangeSet();
+    private final ChangeSet packageChanges = new ChangeSet();
+    private final ChangeSet bookingChanges = new ChangeSet();
+    private final ChangeSet reviewChanges = new ChangeSet();
     
     /**
      * Constructor that initializes the collections and creates data directory if needed.
      */
     public DataManager() {
-        customers = new ArrayList<>();
-        packages = new ArrayList<>();
-        bookings = new ArrayList<>();
-        reviews = new ArrayList<>();
-        activities = new ArrayList<>();
+        Runnable unpublish = () -> snapshot = null;
+        customers = new PublishingList<>(unpublish);
+        packages = new PublishingList<>(unpublish);
+        bookings = new PublishingList<>(unpublish);
+        reviews = new PublishingList<>(unpublish);
+        activities = new PublishingList<>(unpublish);
         
         customerMap = new HashMap<>();
         packageMap = new HashMap<>();
         activityMap = new HashMap<>();
         bookingMap = new HashMap<>();
         reviewMap = new HashMap<>();
+        paymentMap = new HashMap<>();
+        reviewPackageMap = new HashMap<>();
         
         // Ensure data directory exists
         File dataDir = new File(DATA_DIR);
         if (!dataDir.exists()) {
             dataDir.mkdir();
         }
+        
+        binaryFormat = "binary".equalsIgnoreCase(System.getProperty(FORMAT_PROPERTY));
+        columnsEnabled = Boolean.getBoolean(COLUMNS_PROPERTY);
+        
+        if (Boolean.getBoolean(JOURNAL_PROPERTY)) {
+            openJournal();
+        }
     }
     
     /**
      * Load all data from files.
+     * In binary format the snapshot is read if it exists; otherwise the JSON files are loaded.
      */
-    public void loadData() {
+    public synchronized void loadData() {
+        // Saves requested but not yet taken up by the persistence thread would be lost
+        // once the change sets are reset, so write them now; then let saves already
+        // captured reach disk before the files are read
+        boolean savePending;
+        synchronized (saveLock) {
+            savePending = saveCompleted < saveRequested;
+        }
+        if (savePending) {
+            saveData();
+        }
+        awaitCapturedWrites();
+        
         // Clear collections before loading
+        // Bookings still referenced elsewhere must no longer update the indexes
+        for (Booking booking : bookings) {
+            booking.setListener(null);
+        }
+        for (TravelPackage travelPackage : packages) {
+            travelPackage.setRatingListener(null);
+            travelPackage.setPriceListener(null);
+        }
+        
         customers.clear();
         packages.clear();
         bookings.clear();
@@ -80,18 +283,49 @@ public class DataManager {
         // Clear maps before loading
         customerMap.clear();
         packageMap.clear();
+        customerNameIndex.clear();
+        packageNameIndex.clear();
+        destinationIndex.clear();
+        customersById.clear();
+        packagesByActivity.clear();
+        daysByActivity.clear();
+        activitiesFiled.clear();
+        packageRatings.clear();
         bookingMap.clear();
         reviewMap.clear();
         activityMap.clear();
+        paymentMap.clear();
+        reviewPackageMap.clear();
+        synchronized (bookingIndexLock) {
+            bookingsById.clear();
+            bookingsByCustomer.clear();
+            bookingsByPackage.clear();
+            bookingsByStatus.clear();
+            bookingsByDay.clear();
+            bookingsByPrice.clear();
+            pricesFiled.clear();
+        }
+        
+        // Everything about to be loaded matches the files
+        for (ChangeSet changes : new ChangeSet[] {
+                activityChanges, customerChanges, packageChanges, bookingChanges, reviewChanges}) {
+            changes.clear();
+            changes.unreadable = false;
+        }
+        loadCount++;
+        
+        long start = System.nanoTime();
+        if (!binaryFormat || !new File(SNAPSHOT_FILE).exists() || !loadSnapshot()) {
+            loadJsonFiles();
+        }
         
-        // Load all data from files
-        loadActivities();
-        loadCustomers();
-        loadPackages();
-        loadBookings();
-        loadReviews();
+        // Re-apply mutations made since the snapshot was last written
+        if (journal != null) {
+            replayJournal();
+        }
         
-        System.out.println("Data loaded: " + packages.size() + " packages, " + 
+        System.out.println("Data loaded in " + (System.nanoTime() - start) / 1_000_000 + " ms: "
+                 + packages.size() + " packages, " + 
                  customers.size() + " customers, " + 
                  bookings.size() + " bookings, " + 
                  activities.size() + " activities, " + 
@@ -99,644 +333,2913 @@ public class DataManager {
     }
     
     /**
-     * Save all data to files.
-     */
-    public void saveData() {
-        saveActivities();
-        saveCustomers();
-        savePackages();
-        saveBookings();
-        saveReviews();
-    }
-    
-    /**
-     * Load activities from file.
+     * Load the JSON data files.
+     * The files are parsed in parallel, and each collection is linked to the ones it
+     * references as soon as those have finished loading: packages wait for activities,
+     * bookings and reviews wait for customers and packages.
      */
-    @SuppressWarnings("unchecked")
-    private void loadActivities() {
-        activities.clear();
-        activityMap.clear();
+    private void loadJsonFiles() {
+        LoadStage activityStage = new LoadStage("activities", ACTIVITIES_FILE, activityChanges);
+        LoadStage customerStage = new LoadStage("customers", CUSTOMERS_FILE, customerChanges);
+        LoadStage packageStage = new LoadStage("packages", PACKAGES_FILE, packageChanges);
+        LoadStage bookingStage = new LoadStage("bookings", BOOKINGS_FILE, bookingChanges);
+        LoadStage reviewStage = new LoadStage("reviews", REVIEWS_FILE, reviewChanges);
         
+        ExecutorService loader = Executors.newFixedThreadPool(LOAD_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "tams-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
         try {
-            File file = new File(ACTIVITIES_FILE);
-            if (!file.exists()) {
-                return;
-            }
+            // Parsing has no dependencies, so every file is read at once
+            CompletableFuture<ArrayList<Activity>> activitiesParsed = CompletableFuture.supplyAsync(
+                () -> parseFile(activityStage, this::readActivity), loader);
+            CompletableFuture<ArrayList<Customer>> customersParsed = CompletableFuture.supplyAsync(
+                () -> parseFile(customerStage, this::readCustomer), loader);
+            CompletableFuture<ArrayList<PendingPackage>> packagesParsed = CompletableFuture.supplyAsync(
+                () -> parseFile(packageStage, this::readPackage), loader);
+            CompletableFuture<ArrayList<PendingBooking>> bookingsParsed = CompletableFuture.supplyAsync(() -> {
+                SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+                return parseFile(bookingStage, reader -> readBooking(reader, dateFormat));
+            }, loader);
+            CompletableFuture<ArrayList<PendingReview>> reviewsParsed = CompletableFuture.supplyAsync(
+                () -> parseFile(reviewStage, this::readReview), loader);
             
-            JSONParser parser = new JSONParser();
-            JSONArray activitiesArray = (JSONArray) parser.parse(new FileReader(file));
+            // Linking follows the references between files, each followed by the
+            // changes saved since that file's last full write
+            CompletableFuture<Void> activitiesLoaded = activitiesParsed.thenAccept(
+                loaded -> registerActivities(loaded, activityStage));
+            CompletableFuture<Void> customersLoaded = customersParsed.thenAccept(
+                loaded -> registerCustomers(loaded, customerStage));
+            CompletableFuture<Void> packagesLoaded = packagesParsed.thenAcceptBoth(activitiesLoaded,
+                (loaded, ignored) -> linkPackages(loaded, packageStage));
+            CompletableFuture<Void> referencesLoaded = CompletableFuture.allOf(customersLoaded, packagesLoaded);
+            CompletableFuture<Void> bookingsLoaded = bookingsParsed.thenAcceptBoth(referencesLoaded,
+                (loaded, ignored) -> linkBookings(loaded, bookingStage));
+            CompletableFuture<Void> reviewsLoaded = reviewsParsed.thenAcceptBoth(referencesLoaded,
+                (loaded, ignored) -> linkReviews(loaded, reviewStage));
             
-            for (Object obj : activitiesArray) {
-                JSONObject activityJson = (JSONObject) obj;
-                
-                String id = (String) activityJson.get("id");
-                String name = (String) activityJson.get("name");
-                String location = (String) activityJson.get("location");
-                int duration = ((Long) activityJson.get("duration")).intValue();
-                double cost = ((Number) activityJson.get("cost")).doubleValue();
-                
-                Activity activity = new Activity(id, name, location, duration, cost);
-                activities.add(activity);
-                activityMap.put(id, activity);
-            }
-            System.out.println("Loaded " + activities.size() + " activities");
-        } catch (IOException | org.json.simple.parser.ParseException e) {
-            System.err.println("Error loading activities: " + e.getMessage());
+            waitForLoad(CompletableFuture.allOf(bookingsLoaded, reviewsLoaded),
+                activityStage, customerStage, packageStage, bookingStage, reviewStage);
+        } finally {
+            loader.shutdown();
+        }
+        
+        for (LoadStage stage : new LoadStage[] {activityStage, customerStage, packageStage, bookingStage, reviewStage}) {
+            System.out.println("Loaded " + stage.count + " " + stage.name
+                + " (parse " + stage.parseMillis + " ms, link " + stage.linkMillis + " ms)");
         }
     }
     
     /**
-     * Save activities to file.
+     * Load the binary snapshot.
+     * 
+     * @return true if the snapshot was read; false leaves the collections empty
      */
-    @SuppressWarnings("unchecked")
-    private void saveActivities() {
-        JSONArray activitiesArray = new JSONArray();
+    private boolean loadSnapshot() {
+        long start = System.nanoTime();
+        BinarySnapshot snapshot;
+        try {
+            snapshot = BinarySnapshot.read(new File(SNAPSHOT_FILE));
+        } catch (IOException e) {
+            System.err.println("Error loading snapshot, falling back to JSON files: " + e.getMessage());
+            preserveDamagedFile(new File(SNAPSHOT_FILE));
+            return false;
+        }
         
+        activities.addAll(snapshot.getActivities());
         for (Activity activity : activities) {
-            JSONObject activityJson = new JSONObject();
-            activityJson.put("id", activity.getActivityId());
-            activityJson.put("name", activity.getName());
-            activityJson.put("location", activity.getLocation());
-            activityJson.put("duration", activity.getDuration());
-            activityJson.put("cost", activity.getCost());
-            
-            activitiesArray.add(activityJson);
+            activityMap.put(activity.getActivityId(), activity);
         }
-        
-        try (FileWriter file = new FileWriter(ACTIVITIES_FILE)) {
-            file.write(activitiesArray.toJSONString());
-        } catch (IOException e) {
-            System.err.println("Error saving activities: " + e.getMessage());
+        customers.addAll(snapshot.getCustomers());
+        for (Customer customer : customers) {
+            customerMap.put(customer.getCustomerId(), customer);
+            indexText(customer);
+        }
+        packages.addAll(snapshot.getPackages());
+        for (TravelPackage travelPackage : packages) {
+            packageMap.put(travelPackage.getServiceId(), travelPackage);
+            indexText(travelPackage);
+            fileActivityUsage(travelPackage);
+            rankPackage(travelPackage);
+        }
+        bookings.addAll(snapshot.getBookings());
+        for (Booking booking : bookings) {
+            indexBooking(booking);
+        }
+        reviews.addAll(snapshot.getReviews());
+        for (Review review : reviews) {
+            reviewMap.put(review.getReviewId(), review);
+            indexReviewPackage(review);
         }
+        
+        System.out.println("Loaded snapshot in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return true;
     }
     
     /**
-     * Load customers from file.
+     * Set the listener notified of progress while data files are loaded.
+     * 
+     * @param progressListener the listener, or null to disable reporting
      */
-    @SuppressWarnings("unchecked")
-    private void loadCustomers() {
-        customers.clear();
-        customerMap.clear();
-        
-        try {
-            File file = new File(CUSTOMERS_FILE);
-            if (!file.exists()) {
-                return;
-            }
-            
-            JSONParser parser = new JSONParser();
-            JSONArray customersArray = (JSONArray) parser.parse(new FileReader(file));
-            
-            for (Object obj : customersArray) {
-                JSONObject customerJson = (JSONObject) obj;
-                
-                String id = (String) customerJson.get("id");
-                String name = (String) customerJson.get("name");
-                String email = (String) customerJson.get("email");
-                String phone = (String) customerJson.get("phone");
-                String address = (String) customerJson.get("address");
-                
-                // Use empty string as default if address is null
-                if (address == null) {
-                    address = "";
-                }
-                
-                Customer customer = new Customer(id, name, email, phone, address);
-                customers.add(customer);
-                customerMap.put(id, customer);
-            }
-            System.out.println("Loaded " + customers.size() + " customers");
-        } catch (IOException | org.json.simple.parser.ParseException e) {
-            System.err.println("Error loading customers: " + e.getMessage());
-        }
+    public void setProgressListener(LoadProgressListener progressListener) {
+        this.progressListener = progressListener;
     }
     
     /**
-     * Save customers to file.
+     * Wait for a parallel load to finish, reporting progress from the calling thread
+     * so that listeners never see callbacks from the loader threads.
+     * 
+     * @param done completes when every stage has been linked
+     * @param stages the stages being loaded
      */
-    @SuppressWarnings("unchecked")
-    private void saveCustomers() {
-        JSONArray customersArray = new JSONArray();
-        
-        for (Customer customer : customers) {
-            JSONObject customerJson = new JSONObject();
-            customerJson.put("id", customer.getCustomerId());
-            customerJson.put("name", customer.getName());
-            customerJson.put("email", customer.getEmail());
-            customerJson.put("phone", customer.getPhone());
-            customerJson.put("address", customer.getAddress());
-            
-            customersArray.add(customerJson);
+    private void waitForLoad(CompletableFuture<Void> done, LoadStage... stages) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                done.get(PROGRESS_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                break;
+            } catch (TimeoutException e) {
+                reportProgress(stages);
+            } catch (InterruptedException e) {
+                // The loader threads are still writing to the collections, so keep waiting
+                interrupted = true;
+            } catch (ExecutionException e) {
+                System.err.println("Error loading data: " + e.getCause());
+                break;
+            }
         }
+        reportProgress(stages);
         
-        try (FileWriter file = new FileWriter(CUSTOMERS_FILE)) {
-            file.write(customersArray.toJSONString());
-        } catch (IOException e) {
-            System.err.println("Error saving customers: " + e.getMessage());
+        if (interrupted) {
+            Thread.currentThread().interrupt();
         }
     }
     
     /**
-     * Load packages from file.
+     * Notify the progress listener of the combined progress of all stages.
+     * 
+     * @param stages the stages being loaded
      */
-    @SuppressWarnings("unchecked")
-    private void loadPackages() {
-        packages.clear();
-        packageMap.clear();
+    private void reportProgress(LoadStage... stages) {
+        if (progressListener == null) {
+            return;
+        }
         
-        try {
-            File file = new File(PACKAGES_FILE);
-            if (!file.exists()) {
-                return;
-            }
-            
-            JSONParser parser = new JSONParser();
-            JSONArray packagesArray = (JSONArray) parser.parse(new FileReader(file));
-            
-            for (Object obj : packagesArray) {
-                JSONObject packageJson = (JSONObject) obj;
-                
-                String id = (String) packageJson.get("id");
-                String name = (String) packageJson.get("name");
-                String description = (String) packageJson.get("description");
-                double basePrice = ((Number) packageJson.get("basePrice")).doubleValue();
-                String destination = (String) packageJson.get("destination");
-                int duration = ((Long) packageJson.get("duration")).intValue();
-                String accommodation = (String) packageJson.get("accommodation");
-                
-                TravelPackage travelPackage = new TravelPackage(
-                    id, name, description, basePrice, destination, duration, accommodation);
-                
-                // Add activities if present
-                JSONArray activitiesArray = (JSONArray) packageJson.get("activities");
-                if (activitiesArray != null) {
-                    for (Object actObj : activitiesArray) {
-                        String activityId = (String) actObj;
-                        Activity activity = activityMap.get(activityId);
-                        if (activity != null) {
-                            travelPackage.addActivity(activity);
-                        }
-                    }
-                }
-                
-                // Load itinerary if present
-                JSONObject itineraryJson = (JSONObject) packageJson.get("itinerary");
-                if (itineraryJson != null) {
-                    String itineraryId = (String) itineraryJson.get("id");
-                    String itineraryName = (String) itineraryJson.get("name");
-                    
-                    // Create a new itinerary
-                    Itinerary itinerary = new Itinerary(itineraryId, itineraryName);
-                    
-                    // Load days
-                    JSONArray daysArray = (JSONArray) itineraryJson.get("days");
-                    if (daysArray != null) {
-                        for (Object dayObj : daysArray) {
-                            JSONObject dayJson = (JSONObject) dayObj;
-                            
-                            int dayNumber = ((Long) dayJson.get("dayNumber")).intValue();
-                            String notes = (String) dayJson.get("notes");
-                            
-                            // Create a new day
-                            ItineraryDay day = new ItineraryDay(dayNumber, notes);
-                            
-                            // Add activities to the day
-                            JSONArray dayActivitiesArray = (JSONArray) dayJson.get("activities");
-                            if (dayActivitiesArray != null) {
-                                for (Object actObj : dayActivitiesArray) {
-                                    String activityId = (String) actObj;
-                                    Activity activity = activityMap.get(activityId);
-                                    if (activity != null) {
-                                        day.addActivity(activity);
-                                    }
-                                }
-                            }
-                            
-                            // Add the day to the itinerary
-                            itinerary.addDay(day);
-                        }
-                    }
-                    
-                    // Replace the default itinerary with our loaded one
-                    travelPackage.getItinerary().getDays().clear(); // Clear default days
-                    for (ItineraryDay day : itinerary.getDays()) {
-                        travelPackage.getItinerary().addDay(day);
-                    }
+        StringBuilder active = new StringBuilder();
+        long processed = 0;
+        long total = 0;
+        for (LoadStage stage : stages) {
+            processed += Math.min(stage.position, stage.size);
+            total += stage.size;
+            if (!stage.parsed) {
+                if (active.length() > 0) {
+                    active.append(", ");
                 }
-                
-                packages.add(travelPackage);
-                packageMap.put(id, travelPackage);
+                active.append(stage.name);
             }
-            System.out.println("Loaded " + packages.size() + " packages");
-        } catch (IOException | org.json.simple.parser.ParseException e) {
-            System.err.println("Error loading packages: " + e.getMessage());
         }
+        progressListener.onProgress(active.length() > 0 ? active.toString() : "data",
+            processed, Math.max(1, total));
     }
     
     /**
-     * Save packages to file.
+     * Parse every record of a data file, verifying its checksum.
+     * The checksum is only known to match once the whole file has been read, so
+     * records are kept only if the file reads cleanly to the end. A file that
+     * fails is not loaded at all: its collection stays empty and is marked
+     * unreadable, which leaves the file in place until the data is reloaded.
+     * 
+     * @param stage the stage to record progress and timing in
+     * @param recordReader reads one record from the stream
+     * @return the records read
      */
-    @SuppressWarnings("unchecked")
-    private void savePackages() {
-        JSONArray packagesArray = new JSONArray();
-        
-        System.out.println("Saving " + packages.size() + " packages to file");
+    private <T> ArrayList<T> parseFile(LoadStage stage, RecordReader<T> recordReader) {
+        ArrayList<T> records = new ArrayList<>();
+        long start = System.nanoTime();
         
-        for (TravelPackage travelPackage : packages) {
-            JSONObject packageJson = new JSONObject();
-            packageJson.put("id", travelPackage.getServiceId());
-            packageJson.put("name", travelPackage.getName());
-            packageJson.put("description", travelPackage.getDescription());
-            packageJson.put("basePrice", travelPackage.getBasePrice());
-            packageJson.put("destination", travelPackage.getDestination());
-            packageJson.put("duration", travelPackage.getDuration());
-            packageJson.put("accommodation", travelPackage.getAccommodation());
-            
-            // Save activities
-            JSONArray activitiesArray = new JSONArray();
-            for (Activity activity : travelPackage.getActivities()) {
-                activitiesArray.add(activity.getActivityId());
-            }
-            packageJson.put("activities", activitiesArray);
-            
-            // Save itinerary data
-            Itinerary itinerary = travelPackage.getItinerary();
-            if (itinerary != null) {
-                JSONObject itineraryJson = new JSONObject();
-                itineraryJson.put("id", itinerary.getItineraryId());
-                itineraryJson.put("name", itinerary.getName());
-                
-                // Save itinerary days
-                JSONArray daysArray = new JSONArray();
-                for (ItineraryDay day : itinerary.getDays()) {
-                    JSONObject dayJson = new JSONObject();
-                    dayJson.put("dayNumber", day.getDayNumber());
-                    dayJson.put("notes", day.getNotes());
-                    
-                    // Save day activities
-                    JSONArray dayActivitiesArray = new JSONArray();
-                    for (Activity activity : day.getActivities()) {
-                        dayActivitiesArray.add(activity.getActivityId());
-                    }
-                    dayJson.put("activities", dayActivitiesArray);
-                    
-                    daysArray.add(dayJson);
+        if (stage.file.exists()) {
+            // Closing the stream verifies the checksum of any content not yet read
+            try (JsonStreamReader reader = new JsonStreamReader(
+                    new InputStreamReader(AtomicFile.openVerified(stage.file), StandardCharsets.UTF_8))) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    records.add(recordReader.read(reader));
+                    stage.position = reader.getPosition();
                 }
-                itineraryJson.put("days", daysArray);
-                
-                packageJson.put("itinerary", itineraryJson);
+                reader.endArray();
+            } catch (IOException e) {
+                System.err.println("Error loading " + stage.name + ", leaving " + stage.file.getName()
+                    + " unloaded and unchanged until the data is reloaded: " + e.getMessage());
+                records.clear();
+                stage.changes.unreadable = true;
             }
-            
-            packagesArray.add(packageJson);
         }
         
-        try (FileWriter file = new FileWriter(PACKAGES_FILE)) {
-            file.write(packagesArray.toJSONString());
-            System.out.println("Successfully wrote " + packages.size() + " packages to file");
-        } catch (IOException e) {
-            System.err.println("Error saving packages: " + e.getMessage());
-        }
+        stage.parseMillis = (System.nanoTime() - start) / 1_000_000;
+        stage.position = stage.size;
+        stage.parsed = true;
+        return records;
     }
     
     /**
-     * Load bookings from file.
+     * Save all changed data to files, waiting until they are on disk.
+     * Collections with no changes are skipped; small change sets are appended to the
+     * collection's delta file instead of rewriting the whole file.
+     * In journal mode this also truncates the journal, since the files now cover it.
+     * 
+     * @return true if everything was written successfully
      */
-    @SuppressWarnings("unchecked")
-    private void loadBookings() {
-        bookings.clear();
-        bookingMap.clear();
-        
-        try {
-            File file = new File(BOOKINGS_FILE);
-            if (!file.exists()) {
-                return;
-            }
-            
-            JSONParser parser = new JSONParser();
-            JSONArray bookingsArray = (JSONArray) parser.parse(new FileReader(file));
-            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-            
-            for (Object obj : bookingsArray) {
-                JSONObject bookingJson = (JSONObject) obj;
-                
-                String id = (String) bookingJson.get("id");
-                String customerId = (String) bookingJson.get("customerId");
-                String serviceId = (String) bookingJson.get("serviceId");
-                String statusStr = (String) bookingJson.get("status");
-                String dateStr = (String) bookingJson.get("date");
-                
-                Customer customer = customerMap.get(customerId);
-                TravelService service = packageMap.get(serviceId);
-                
-                if (customer != null && service != null) {
-                    Date date = null;
-                    try {
-                        date = dateFormat.parse(dateStr);
-                    } catch (ParseException e) {
-                        date = new Date(); // Use current date as fallback
-                    }
-                    
-                    BookingStatus status = BookingStatus.valueOf(statusStr);
-                    
-                    Booking booking = new Booking(id, customer, service);
-                    booking.setDate(date);
-                    booking.updateStatus(status);
-                    
-                    // Add payment if present
-                    String paymentId = (String) bookingJson.get("paymentId");
-                    if (paymentId != null) {
-                        // In a real implementation, we would load payment details
-                        // For now, we'll create a dummy payment
-                        Payment payment = new Payment(
-                            paymentId, service.calculateTotalPrice(), PaymentMethod.CREDIT_CARD);
-                        payment.setStatus(PaymentStatus.COMPLETED);
-                        booking.addPayment(payment);
-                    }
-                    
-                    bookings.add(booking);
-                    bookingMap.put(id, booking);
-                    
-                    // Add booking to customer
-                    customer.addBooking(booking);
-                }
+    public synchronized boolean saveData() {
+        return writeSave(captureChanges());
+    }
+    
+    /**
+     * Ask for the changed data to be saved in the background.
+     * Returns immediately; requests made while a save is pending are merged into it.
+     * Use {@link #flush()} to wait for the data to reach disk.
+     */
+    public void requestSave() {
+        synchronized (saveLock) {
+            saveRequested++;
+            if (persistenceThread == null) {
+                persistenceThread = new Thread(this::persistLoop, "tams-persistence");
+                persistenceThread.setDaemon(true);
+                persistenceThread.start();
             }
-            System.out.println("Loaded " + bookings.size() + " bookings");
-        } catch (IOException | org.json.simple.parser.ParseException e) {
-            System.err.println("Error loading bookings: " + e.getMessage());
+            saveLock.notifyAll();
         }
     }
     
     /**
-     * Save bookings to file.
+     * Wait until every save requested so far has been written.
+     * 
+     * @return true if the last background save succeeded
      */
-    @SuppressWarnings("unchecked")
-    private void saveBookings() {
-        JSONArray bookingsArray = new JSONArray();
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-        
-        for (Booking booking : bookings) {
-            JSONObject bookingJson = new JSONObject();
-            bookingJson.put("id", booking.getBookingId());
-            bookingJson.put("customerId", booking.getCustomer().getCustomerId());
-            bookingJson.put("serviceId", booking.getService().getServiceId());
-            bookingJson.put("status", booking.getStatus().name());
-            bookingJson.put("date", dateFormat.format(booking.getDate()));
-            
-            if (booking.getPayment() != null) {
-                bookingJson.put("paymentId", booking.getPayment().getPaymentId());
-            } else {
-                bookingJson.put("paymentId", null);
+    public boolean flush() {
+        synchronized (saveLock) {
+            long target = saveRequested;
+            while (saveCompleted < target) {
+                try {
+                    saveLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
             }
-            
-            bookingsArray.add(bookingJson);
-        }
-        
-        try (FileWriter file = new FileWriter(BOOKINGS_FILE)) {
-            file.write(bookingsArray.toJSONString());
-        } catch (IOException e) {
-            System.err.println("Error saving bookings: " + e.getMessage());
+            return lastSaveSucceeded;
         }
     }
-    
+
     /**
-     * Load reviews from file.
+     * Wait for requested saves, then stop the background threads and close the journal.
+     * The data manager must not be changed afterwards.
+     *
+     * @return true if the last background save succeeded
      */
-    @SuppressWarnings("unchecked")
-    private void loadReviews() {
-        reviews.clear();
-        reviewMap.clear();
-        
-        try {
-            File file = new File(REVIEWS_FILE);
-            if (!file.exists()) {
-                return;
+    public boolean close() {
+        boolean saved = flush();
+        synchronized (saveLock) {
+            if (persistenceThread != null) {
+                persistenceThread.interrupt();
+                persistenceThread = null;
             }
-            
-            JSONParser parser = new JSONParser();
-            JSONArray reviewsArray = (JSONArray) parser.parse(new FileReader(file));
-            
-            for (Object obj : reviewsArray) {
-                JSONObject reviewJson = (JSONObject) obj;
-                
-                String id = (String) reviewJson.get("id");
-                String customerId = (String) reviewJson.get("customerId");
-                int rating = ((Long) reviewJson.get("rating")).intValue();
-                String comment = (String) reviewJson.get("comment");
-                String packageId = (String) reviewJson.get("packageId");
-                
-                Customer customer = customerMap.get(customerId);
-                TravelPackage travelPackage = packageMap.get(packageId);
-                
-                if (customer != null) {
-                    Review review = new Review(id, customer, rating, comment);
-                    
-                    reviews.add(review);
-                    reviewMap.put(id, review);
-                    
-                    // Add the review to the correct package if found
-                    if (travelPackage != null) {
-                        travelPackage.addReview(review);
-                    }
-                }
+        }
+        synchronized (this) {
+            if (journal != null) {
+                compactor.shutdownNow();
+                journal.close();
+                journal = null;
             }
-            System.out.println("Loaded " + reviews.size() + " reviews");
-        } catch (IOException | org.json.simple.parser.ParseException e) {
-            System.err.println("Error loading reviews: " + e.getMessage());
         }
+        return saved;
     }
-    
+
     /**
-     * Save reviews to file.
+     * Body of the persistence thread: wait for save requests and write each burst
+     * of them as a single save.
      */
-    @SuppressWarnings("unchecked")
-    private void saveReviews() {
-        JSONArray reviewsArray = new JSONArray();
-        
-        for (Review review : reviews) {
-            JSONObject reviewJson = new JSONObject();
-            reviewJson.put("id", review.getReviewId());
-            reviewJson.put("customerId", review.getCustomer().getCustomerId());
-            reviewJson.put("rating", review.getRating());
-            reviewJson.put("comment", review.getComment());
-            
-            // Find which package this review belongs to
-            String packageId = null;
-            for (TravelPackage pkg : packages) {
-                if (pkg.getReviews().contains(review)) {
-                    packageId = pkg.getServiceId();
-                    break;
+    private void persistLoop() {
+        while (true) {
+            long target;
+            synchronized (saveLock) {
+                while (saveCompleted == saveRequested) {
+                    try {
+                        saveLock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
                 }
+                target = saveRequested;
             }
             
-            reviewJson.put("packageId", packageId);
-            reviewsArray.add(reviewJson);
-        }
-        
-        try (FileWriter file = new FileWriter(REVIEWS_FILE)) {
-            file.write(reviewsArray.toJSONString());
-        } catch (IOException e) {
-            System.err.println("Error saving reviews: " + e.getMessage());
+            boolean saved;
+            try {
+                saved = writeBehind();
+            } catch (RuntimeException e) {
+                System.err.println("Error saving data: " + e);
+                saved = false;
+            }
+            
+            synchronized (saveLock) {
+                saveCompleted = target;
+                lastSaveSucceeded = saved;
+                saveLock.notifyAll();
+            }
         }
     }
     
-    // Getters for the collections
-    
-    public ArrayList<Customer> getCustomers() {
-        return new ArrayList<>(customers);
-    }
-    
-    public ArrayList<TravelPackage> getPackages() {
-        return new ArrayList<>(packages);
-    }
-    
-    public ArrayList<Booking> getBookings() {
-        return new ArrayList<>(bookings);
-    }
-    
-    public ArrayList<Review> getReviews() {
-        return new ArrayList<>(reviews);
-    }
-    
-    public ArrayList<Activity> getActivities() {
-        return new ArrayList<>(activities);
-    }
-    
-    // Methods to add items to collections
-    
-    public void addCustomer(Customer customer) {
-        customers.add(customer);
-        customerMap.put(customer.getCustomerId(), customer);
-    }
-    
-    public void addPackage(TravelPackage travelPackage) {
-        packages.add(travelPackage);
-        packageMap.put(travelPackage.getServiceId(), travelPackage);
-    }
-    
-    public void addBooking(Booking booking) {
-        bookings.add(booking);
-        bookingMap.put(booking.getBookingId(), booking);
-    }
-    
-    public void addReview(Review review) {
-        reviews.add(review);
-        reviewMap.put(review.getReviewId(), review);
-    }
-    
-    public void addActivity(Activity activity) {
-        activities.add(activity);
-        activityMap.put(activity.getActivityId(), activity);
-    }
-    
     /**
-     * Remove a package from the system.
+     * Save in the background. The changes are captured while holding the lock, and
+     * the disk writes happen after it is released so that callers never wait on disk.
      * 
-     * @param travelPackage the package to remove
-     * @return true if the package was successfully removed
+     * @return true if everything was written successfully
      */
-    public boolean removePackage(TravelPackage travelPackage) {
-        if (travelPackage == null) {
-            return false;
-        }
-        
-        String packageId = travelPackage.getServiceId();
-        boolean removed = packages.removeIf(p -> p.getServiceId().equals(packageId));
-        if (removed) {
-            packageMap.remove(packageId);
-            savePackages(); // Save changes immediately
+    private boolean writeBehind() {
+        PendingSave save;
+        synchronized (this) {
+            save = captureChanges();
         }
-        return removed;
+        return writeSave(save);
     }
     
     /**
-     * Remove a customer from the system.
+     * Perform a captured save and, in journal mode, drop the journal records it covers.
+     * Records added while the files were being written are kept for the next save.
      * 
-     * @param customer the customer to remove
-     * @return true if the customer was successfully removed
+     * @param save the captured save
+     * @return true if everything was written successfully
      */
-    public boolean removeCustomer(Customer customer) {
-        if (customer == null) {
-            return false;
-        }
+    private boolean writeSave(PendingSave save) {
+        boolean saved = performWrites(save);
         
-        String customerId = customer.getCustomerId();
-        boolean removed = customers.removeIf(c -> c.getCustomerId().equals(customerId));
-        if (removed) {
-            customerMap.remove(customerId);
+        // Only drop journal records once the files are known to contain them
+        if (journal != null && save.coversJournal) {
+            try {
+                journal.truncate(save.journalSequence);
+            } catch (IOException e) {
+                System.err.println("Error truncating journal: " + e.getMessage());
+            }
         }
-        return removed;
+        return saved;
     }
     
     /**
-     * Get all bookings.
+     * Write the whole data set to the JSON files, whatever the storage format.
      * 
-     * @return an ArrayList of all bookings
+     * @return true if every file was written successfully
      */
-    public ArrayList<Booking> getAllBookings() {
-        return getBookings();
+    public synchronized boolean exportJson() {
+        // Non-short-circuit so every file is attempted even if one fails
+        return exportJson(ACTIVITIES_FILE, activityChanges, this::encodeActivities)
+            & exportJson(CUSTOMERS_FILE, customerChanges, this::encodeCustomers)
+            & exportJson(PACKAGES_FILE, packageChanges, this::encodePackages)
+            & exportJson(BOOKINGS_FILE, bookingChanges, this::encodeBookings)
+            & exportJson(REVIEWS_FILE, reviewChanges, this::encodeReviews);
     }
     
     /**
-     * Remove a booking.
+     * Write the whole data set to the binary snapshot, whatever the storage format.
+     * Works from the published snapshot, so writers are not held up while it is written.
+     * 
+     * @return true if the snapshot was written successfully
+     */
+    public boolean exportSnapshot() {
+        DataSnapshot current = getSnapshot();
+        try {
+            BinarySnapshot.write(new File(SNAPSHOT_FILE), current.getActivities(), current.getCustomers(),
+                current.getPackages(), current.getBookings(), current.getReviews());
+        } catch (IOException e) {
+            System.err.println("Error saving snapshot: " + e.getMessage());
+            return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Rewrite one JSON file in full and drop its delta file.
+     * A file that could not be loaded is left as it is.
+     * 
+     * @param snapshotFile the collection's JSON file
+     * @param changes the collection's change set
+     * @param encoder produces the whole file content
+     * @return true if the file was written successfully
+     */
+    private boolean exportJson(String snapshotFile, ChangeSet changes, Supplier<String> encoder) {
+        if (changes.unreadable) {
+            System.err.println("Not saving " + snapshotFile + ": it could not be loaded");
+            return false;
+        }
+        try {
+            writeFile(snapshotFile, encoder.get());
+        } catch (IOException e) {
+            System.err.println("Error saving " + snapshotFile + ": " + e.getMessage());
+            return false;
+        }
+        File delta = deltaFile(snapshotFile);
+        if (delta.exists() && !delta.delete()) {
+            System.err.println("Could not remove folded delta file " + delta.getName());
+        }
+        changes.deltaRecords = 0;
+        
+        // In binary format the change sets track the snapshot, not the JSON files
+        if (!binaryFormat) {
+            changes.clear();
+        }
+        return true;
+    }
+    
+    /**
+     * Register parsed activities and apply their delta file.
+     * 
+     * @param loaded the activities read from file
+     * @param stage the stage to record timing in
+     */
+    private void registerActivities(ArrayList<Activity> loaded, LoadStage stage) {
+        long start = System.nanoTime();
+        activities.addAll(loaded);
+        for (Activity activity : loaded) {
+            activityMap.put(activity.getActivityId(), activity);
+        }
+        loadDelta(ACTIVITIES_FILE, activityChanges);
+        stage.finish(activities.size(), start);
+    }
+    
+    /**
+     * Read a single activity object from the stream.
+     * 
+     * @param reader the reader positioned at the start of the object
+     * @return the activity
+     * @throws IOException if the stream cannot be read
+     */
+    private Activity readActivity(JsonStreamReader reader) throws IOException {
+        String id = null;
+        String name = null;
+        String location = null;
+        int duration = 0;
+        long costCents = 0;
+        
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id": id = reader.nextString(); break;
+                case "name": name = reader.nextString(); break;
+                case "location": location = reader.nextString(); break;
+                case "duration": duration = (int) reader.nextLong(); break;
+                case "cost": costCents = Money.toCents(reader.nextDecimal()); break;
+                default: reader.skipValue();
+            }
+        }
+        reader.endObject();
+        
+        Activity activity = new Activity(id, name, location, duration, 0);
+        activity.setCostCents(costCents);
+        return activity;
+    }
+    
+    /**
+     * Encode all activities as the content of their JSON file.
+     * 
+     * @return the JSON text
+     */
+    @SuppressWarnings("unchecked")
+    private String encodeActivities() {
+        JSONArray activitiesArray = new JSONArray();
+        
+        for (Activity activity : activities) {
+            activitiesArray.add(toJson(activity));
+        }
+        
+        return activitiesArray.toJSONString();
+    }
+    
+    /**
+     * Convert an activity to its JSON form.
+     * 
+     * @param activity the activity
+     * @return the JSON object
+     */
+    @SuppressWarnings("unchecked")
+    private JSONObject toJson(Activity activity) {
+        JSONObject activityJson = new JSONObject();
+        activityJson.put("id", activity.getActivityId());
+        activityJson.put("name", activity.getName());
+        activityJson.put("location", activity.getLocation());
+        activityJson.put("duration", activity.getDuration());
+        activityJson.put("cost", Money.toDecimal(activity.getCostCents()));
+        return activityJson;
+    }
+    
+    /**
+     * Register parsed customers and apply their delta file.
+     * 
+     * @param loaded the customers read from file
+     * @param stage the stage to record timing in
+     */
+    private void registerCustomers(ArrayList<Customer> loaded, LoadStage stage) {
+        long start = System.nanoTime();
+        customers.addAll(loaded);
+        for (Customer customer : loaded) {
+            customerMap.put(customer.getCustomerId(), customer);
+            indexText(customer);
+        }
+        loadDelta(CUSTOMERS_FILE, customerChanges);
+        stage.finish(customers.size(), start);
+    }
+    
+    /**
+     * Read a single customer object from the stream.
+     * 
+     * @param reader the reader positioned at the start of the object
+     * @return the customer
+     * @throws IOException if the stream cannot be read
+     */
+    private Customer readCustomer(JsonStreamReader reader) throws IOException {
+        String id = null;
+        String name = null;
+        String email = null;
+        String phone = null;
+        String address = null;
+        
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id": id = reader.nextString(); break;
+                case "name": name = reader.nextString(); break;
+                case "email": email = reader.nextString(); break;
+                case "phone": phone = reader.nextString(); break;
+                case "address": address = reader.nextString(); break;
+                default: reader.skipValue();
+            }
+        }
+        reader.endObject();
+        
+        // Use empty string as default if address is null
+        if (address == null) {
+            address = "";
+        }
+        
+        return new Customer(id, name, email, phone, address);
+    }
+    
+    /**
+     * Encode all customers as the content of their JSON file.
+     * 
+     * @return the JSON text
+     */
+    @SuppressWarnings("unchecked")
+    private String encodeCustomers() {
+        JSONArray customersArray = new JSONArray();
+        
+        for (Customer customer : customers) {
+            customersArray.add(toJson(customer));
+        }
+        
+        return customersArray.toJSONString();
+    }
+    
+    /**
+     * Convert a customer to its JSON form.
+     * 
+     * @param customer the customer
+     * @return the JSON object
+     */
+    @SuppressWarnings("unchecked")
+    private JSONObject toJson(Customer customer) {
+        JSONObject customerJson = new JSONObject();
+        customerJson.put("id", customer.getCustomerId());
+        customerJson.put("name", customer.getName());
+        customerJson.put("email", customer.getEmail());
+        customerJson.put("phone", customer.getPhone());
+        customerJson.put("address", customer.getAddress());
+        return customerJson;
+    }
+    
+    /**
+     * Link parsed packages to their activities and apply their delta file.
+     * Must run after the activities have been loaded.
+     * 
+     * @param loaded the packages read from file
+     * @param stage the stage to record timing in
+     */
+    private void linkPackages(ArrayList<PendingPackage> loaded, LoadStage stage) {
+        long start = System.nanoTime();
+        // Writing these back would drop references to the activities that could not be read
+        if (activityChanges.unreadable) {
+            packageChanges.unreadable = true;
+        }
+        packages.ensureCapacity(loaded.size());
+        for (PendingPackage pending : loaded) {
+            TravelPackage travelPackage = linkPackage(pending);
+            packages.add(travelPackage);
+            packageMap.put(travelPackage.getServiceId(), travelPackage);
+            indexText(travelPackage);
+            fileActivityUsage(travelPackage);
+            rankPackage(travelPackage);
+        }
+        loadDelta(PACKAGES_FILE, packageChanges);
+        stage.finish(packages.size(), start);
+    }
+    
+    /**
+     * Read a single package object from the stream.
+     * Activity references are kept as IDs until {@link #linkPackage(PendingPackage)}.
+     * 
+     * @param reader the reader positioned at the start of the object
+     * @return the unlinked package
+     * @throws IOException if the stream cannot be read
+     */
+    private PendingPackage readPackage(JsonStreamReader reader) throws IOException {
+        PendingPackage pending = new PendingPackage();
+        
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id": pending.id = reader.nextString(); break;
+                case "name": pending.name = reader.nextString(); break;
+                case "description": pending.description = reader.nextString(); break;
+                case "basePrice": pending.basePriceCents = Money.toCents(reader.nextDecimal()); break;
+                case "destination": pending.destination = reader.nextString(); break;
+                case "duration": pending.duration = (int) reader.nextLong(); break;
+                case "accommodation": pending.accommodation = reader.nextString(); break;
+                case "capacity": pending.capacity = (int) reader.nextLong(); break;
+                case "activities": readActivityRefs(reader, pending.activityIds); break;
+                case "itinerary": pending.days = readItineraryDays(reader); break;
+                default: reader.skipValue();
+            }
+        }
+        reader.endObject();
+        
+        return pending;
+    }
+    
+    /**
+     * Build a package from its parsed form, resolving activity references against
+     * the loaded activities.
+     * 
+     * @param pending the parsed package
+     * @return the travel package
+     */
+    private TravelPackage linkPackage(PendingPackage pending) {
+        TravelPackage travelPackage = new TravelPackage(pending.id, pending.name, pending.description,
+            0, pending.destination, pending.duration, pending.accommodation);
+        travelPackage.setBasePriceCents(pending.basePriceCents);
+        travelPackage.setCapacity(pending.capacity);
+        for (Activity activity : resolveActivities(pending.activityIds)) {
+            travelPackage.addActivity(activity);
+        }
+        
+        // Replace the default itinerary days with the loaded ones
+        if (pending.days != null) {
+            travelPackage.getItinerary().getModifiableDays().clear();
+            for (PendingDay pendingDay : pending.days) {
+                ItineraryDay day = new ItineraryDay(pendingDay.dayNumber, pendingDay.notes);
+                for (Activity activity : resolveActivities(pendingDay.activityIds)) {
+                    day.addActivity(activity);
+                }
+                travelPackage.getItinerary().addDay(day);
+            }
+        }
+        
+        return travelPackage;
+    }
+    
+    /**
+     * Read the days of an itinerary object from the stream.
+     * 
+     * @param reader the reader positioned at the itinerary value
+     * @return the parsed days, or null if the itinerary is null
+     * @throws IOException if the stream cannot be read
+     */
+    private ArrayList<PendingDay> readItineraryDays(JsonStreamReader reader) throws IOException {
+        if (reader.peek() == JsonStreamReader.Token.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        
+        ArrayList<PendingDay> days = new ArrayList<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!"days".equals(reader.nextName()) || reader.peek() != JsonStreamReader.Token.BEGIN_ARRAY) {
+                reader.skipValue();
+                continue;
+            }
+            
+            reader.beginArray();
+            while (reader.hasNext()) {
+                PendingDay day = new PendingDay();
+                
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    switch (reader.nextName()) {
+                        case "dayNumber": day.dayNumber = (int) reader.nextLong(); break;
+                        case "notes": day.notes = reader.nextString(); break;
+                        case "activities": readActivityRefs(reader, day.activityIds); break;
+                        default: reader.skipValue();
+                    }
+                }
+                reader.endObject();
+                
+                days.add(day);
+            }
+            reader.endArray();
+        }
+        reader.endObject();
+        
+        return days;
+    }
+    
+    /**
+     * Read an array of activity IDs.
+     * 
+     * @param reader the reader positioned at the array value
+     * @param target the list to add the IDs to
+     * @throws IOException if the stream cannot be read
+     */
+    private void readActivityRefs(JsonStreamReader reader, ArrayList<String> target) throws IOException {
+        if (reader.peek() == JsonStreamReader.Token.NULL) {
+            reader.nextNull();
+            return;
+        }
+        
+        reader.beginArray();
+        while (reader.hasNext()) {
+            target.add(reader.nextString());
+        }
+        reader.endArray();
+    }
+    
+    /**
+     * Resolve activity IDs to loaded activities. Unknown IDs are skipped.
+     * 
+     * @param activityIds the IDs to resolve
+     * @return the matching activities, in order
+     */
+    private ArrayList<Activity> resolveActivities(ArrayList<String> activityIds) {
+        ArrayList<Activity> resolved = new ArrayList<>(activityIds.size());
+        for (String activityId : activityIds) {
+            Activity activity = activityMap.get(activityId);
+            if (activity != null) {
+                resolved.add(activity);
+            }
+        }
+        return resolved;
+    }
+    
+    /**
+     * Encode all packages as the content of their JSON file.
+     * 
+     * @return the JSON text
+     */
+    @SuppressWarnings("unchecked")
+    private String encodePackages() {
+        JSONArray packagesArray = new JSONArray();
+        
+        System.out.println("Saving " + packages.size() + " packages to file");
+        
+        for (TravelPackage travelPackage : packages) {
+            packagesArray.add(toJson(travelPackage));
+        }
+        
+        return packagesArray.toJSONString();
+    }
+    
+    /**
+     * Convert a travel package, including its itinerary, to its JSON form.
+     * 
+     * @param travelPackage the travel package
+     * @return the JSON object
+     */
+    @SuppressWarnings("unchecked")
+    private JSONObject toJson(TravelPackage travelPackage) {
+        JSONObject packageJson = new JSONObject();
+        packageJson.put("id", travelPackage.getServiceId());
+        packageJson.put("name", travelPackage.getName());
+        packageJson.put("description", travelPackage.getDescription());
+        packageJson.put("basePrice", Money.toDecimal(travelPackage.getBasePriceCents()));
+        packageJson.put("destination", travelPackage.getDestination());
+        packageJson.put("duration", travelPackage.getDuration());
+        packageJson.put("accommodation", travelPackage.getAccommodation());
+        packageJson.put("capacity", travelPackage.getCapacity());
+        
+        // Save activities
+        JSONArray activitiesArray = new JSONArray();
+        for (Activity activity : travelPackage.getActivities()) {
+            activitiesArray.add(activity.getActivityId());
+        }
+        packageJson.put("activities", activitiesArray);
+        
+        // Save itinerary data
+        Itinerary itinerary = travelPackage.getItinerary();
+        if (itinerary != null) {
+            JSONObject itineraryJson = new JSONObject();
+            itineraryJson.put("id", itinerary.getItineraryId());
+            itineraryJson.put("name", itinerary.getName());
+            
+            // Save itinerary days
+            JSONArray daysArray = new JSONArray();
+            for (ItineraryDay day : itinerary.getDays()) {
+                JSONObject dayJson = new JSONObject();
+                dayJson.put("dayNumber", day.getDayNumber());
+                dayJson.put("notes", day.getNotes());
+                
+                // Save day activities
+                JSONArray dayActivitiesArray = new JSONArray();
+                for (Activity activity : day.getActivities()) {
+                    dayActivitiesArray.add(activity.getActivityId());
+                }
+                dayJson.put("activities", dayActivitiesArray);
+                
+                daysArray.add(dayJson);
+            }
+            itineraryJson.put("days", daysArray);
+            
+            packageJson.put("itinerary", itineraryJson);
+        }
+        
+        return packageJson;
+    }
+    
+    /**
+     * Link parsed bookings to their customers and packages and apply their delta file.
+     * Must run after customers and packages have been loaded.
+     * 
+     * @param loaded the bookings read from file
+     * @param stage the stage to record timing in
+     */
+    private void linkBookings(ArrayList<PendingBooking> loaded, LoadStage stage) {
+        long start = System.nanoTime();
+        // Writing these back would drop the bookings of customers or packages that could not be read
+        if (customerChanges.unreadable || packageChanges.unreadable) {
+            bookingChanges.unreadable = true;
+        }
+        bookings.ensureCapacity(loaded.size());
+        for (PendingBooking pending : loaded) {
+            Booking booking = linkBooking(pending);
+            if (booking != null) {
+                bookings.add(booking);
+                indexBooking(booking);
+                
+                // Add booking to customer
+                booking.getCustomer().addBooking(booking);
+            } else {
+                // Drop the orphaned record from the file on the next save
+                bookingChanges.rewrite = true;
+            }
+        }
+        loadDelta(BOOKINGS_FILE, bookingChanges);
+        stage.finish(bookings.size(), start);
+    }
+    
+    /**
+     * Read a single booking object from the stream.
+     * 
+     * @param reader the reader positioned at the start of the object
+     * @param dateFormat the format used for the booking date
+     * @return the unlinked booking
+     * @throws IOException if the stream cannot be read
+     */
+    private PendingBooking readBooking(JsonStreamReader reader, SimpleDateFormat dateFormat) throws IOException {
+        PendingBooking pending = new PendingBooking();
+        String dateStr = null;
+        
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id": pending.id = reader.nextString(); break;
+                case "customerId": pending.customerId = reader.nextString(); break;
+                case "serviceId": pending.serviceId = reader.nextString(); break;
+                case "status": pending.status = reader.nextString(); break;
+                case "date": dateStr = reader.nextString(); break;
+                case "numTravelers": pending.numTravelers = (int) reader.nextLong(); break;
+                case "specialRequests": pending.specialRequests = reader.nextString(); break;
+                case "payment": pending.payment = readPayment(reader); break;
+                case "paymentId": pending.paymentId = reader.nextString(); break;
+                default: reader.skipValue();
+            }
+        }
+        reader.endObject();
+        
+        try {
+            pending.date = dateFormat.parse(dateStr);
+        } catch (ParseException | NullPointerException e) {
+            pending.date = new Date(); // Use current date as fallback
+        }
+        
+        return pending;
+    }
+    
+    /**
+     * Build a booking from its parsed form.
+     * 
+     * @param pending the parsed booking
+     * @return the booking, or null if its customer or package no longer exists
+     */
+    private Booking linkBooking(PendingBooking pending) {
+        Customer customer = customerMap.get(pending.customerId);
+        TravelService service = packageMap.get(pending.serviceId);
+        if (customer == null || service == null) {
+            return null;
+        }
+        
+        Booking booking = new Booking(pending.id, customer, service, pending.date,
+            BookingStatus.valueOf(pending.status), pending.numTravelers, pending.specialRequests);
+        
+        if (pending.payment != null) {
+            booking.addPayment(pending.payment);
+        } else if (pending.paymentId != null) {
+            // Files from before payment details were stored only hold the ID;
+            // assume the current price was paid until the booking is saved again
+            Payment payment = new Payment(
+                pending.paymentId, service.calculateTotalPrice(), PaymentMethod.CREDIT_CARD);
+            payment.setStatus(PaymentStatus.COMPLETED);
+            booking.addPayment(payment);
+        }
+        
+        return booking;
+    }
+    
+    /**
+     * Read a payment object stored with its booking.
+     * 
+     * @param reader the reader positioned at the payment value
+     * @return the payment, or null if the booking has none
+     * @throws IOException if the stream cannot be read
+     */
+    private Payment readPayment(JsonStreamReader reader) throws IOException {
+        if (reader.peek() == JsonStreamReader.Token.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        
+        String id = null;
+        long amountCents = 0;
+        PaymentMethod method = null;
+        PaymentStatus status = null;
+        Date date = null;
+        
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id": id = reader.nextString(); break;
+                case "amount": amountCents = Money.toCents(reader.nextDecimal()); break;
+                case "method": {
+                    String value = reader.nextString();
+                    method = value != null ? PaymentMethod.valueOf(value) : null;
+                    break;
+                }
+                case "status": status = PaymentStatus.valueOf(reader.nextString()); break;
+                case "date": date = new Date(reader.nextLong()); break;
+                default: reader.skipValue();
+            }
+        }
+        reader.endObject();
+        
+        return id != null ? new Payment(id, amountCents, method, status, date) : null;
+    }
+    
+    /**
+     * Convert a payment to its JSON form.
+     * The date is stored in milliseconds, as payments record the exact time.
+     * 
+     * @param payment the payment
+     * @return the JSON object
+     */
+    @SuppressWarnings("unchecked")
+    private JSONObject toJson(Payment payment) {
+        JSONObject paymentJson = new JSONObject();
+        paymentJson.put("id", payment.getPaymentId());
+        paymentJson.put("amount", Money.toDecimal(payment.getAmountCents()));
+        paymentJson.put("method", payment.getMethod() != null ? payment.getMethod().name() : null);
+        paymentJson.put("status", payment.getStatus().name());
+        paymentJson.put("date", payment.getPaymentDate().getTime());
+        return paymentJson;
+    }
+    
+    /**
+     * Encode all bookings as the content of their JSON file.
+     * 
+     * @return the JSON text
+     */
+    @SuppressWarnings("unchecked")
+    private String encodeBookings() {
+        JSONArray bookingsArray = new JSONArray();
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+        
+        for (Booking booking : bookings) {
+            bookingsArray.add(toJson(booking, dateFormat));
+        }
+        
+        return bookingsArray.toJSONString();
+    }
+    
+    /**
+     * Convert a booking to its JSON form.
+     * 
+     * @param booking the booking
+     * @param dateFormat the format used for the booking date
+     * @return the JSON object
+     */
+    @SuppressWarnings("unchecked")
+    private JSONObject toJson(Booking booking, SimpleDateFormat dateFormat) {
+        JSONObject bookingJson = new JSONObject();
+        bookingJson.put("id", booking.getBookingId());
+        bookingJson.put("customerId", booking.getCustomer().getCustomerId());
+        bookingJson.put("serviceId", booking.getService().getServiceId());
+        bookingJson.put("status", booking.getStatus().name());
+        bookingJson.put("date", dateFormat.format(booking.getDate()));
+        bookingJson.put("numTravelers", booking.getNumTravelers());
+        bookingJson.put("specialRequests", booking.getSpecialRequests());
+        bookingJson.put("payment", booking.getPayment() != null ? toJson(booking.getPayment()) : null);
+        
+        return bookingJson;
+    }
+    
+    /**
+     * Link parsed reviews to their customers and packages and apply their delta file.
+     * Must run after customers and packages have been loaded.
+     * 
+     * @param loaded the reviews read from file
+     * @param stage the stage to record timing in
+     */
+    private void linkReviews(ArrayList<PendingReview> loaded, LoadStage stage) {
+        long start = System.nanoTime();
+        // Writing these back would drop the reviews of customers or packages that could not be read
+        if (customerChanges.unreadable || packageChanges.unreadable) {
+            reviewChanges.unreadable = true;
+        }
+        reviews.ensureCapacity(loaded.size());
+        for (PendingReview pending : loaded) {
+            Review review = linkReview(pending);
+            if (review != null) {
+                reviews.add(review);
+                reviewMap.put(review.getReviewId(), review);
+                
+                // Add the review to the correct package if found
+                TravelPackage travelPackage = packageMap.get(pending.packageId);
+                if (travelPackage != null) {
+                    travelPackage.addReview(review);
+                    reviewPackageMap.put(review.getReviewId(), travelPackage);
+                }
+            } else {
+                // Drop the orphaned record from the file on the next save
+                reviewChanges.rewrite = true;
+            }
+        }
+        loadDelta(REVIEWS_FILE, reviewChanges);
+        stage.finish(reviews.size(), start);
+    }
+    
+    /**
+     * Read a single review object from the stream.
+     * 
+     * @param reader the reader positioned at the start of the object
+     * @return the unlinked review
+     * @throws IOException if the stream cannot be read
+     */
+    private PendingReview readReview(JsonStreamReader reader) throws IOException {
+        PendingReview pending = new PendingReview();
+        
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id": pending.id = reader.nextString(); break;
+                case "customerId": pending.customerId = reader.nextString(); break;
+                case "rating": pending.rating = (int) reader.nextLong(); break;
+                case "comment": pending.comment = reader.nextString(); break;
+                case "packageId": pending.packageId = reader.nextString(); break;
+                default: reader.skipValue();
+            }
+        }
+        reader.endObject();
+        
+        return pending;
+    }
+    
+    /**
+     * Build a review from its parsed form. The review is not attached to its package.
+     * 
+     * @param pending the parsed review
+     * @return the review, or null if its customer no longer exists
+     */
+    private Review linkReview(PendingReview pending) {
+        Customer customer = customerMap.get(pending.customerId);
+        if (customer == null) {
+            return null;
+        }
+        return new Review(pending.id, customer, pending.rating, pending.comment);
+    }
+    
+    /**
+     * Encode all reviews as the content of their JSON file.
+     * 
+     * @return the JSON text
+     */
+    @SuppressWarnings("unchecked")
+    private String encodeReviews() {
+        JSONArray reviewsArray = new JSONArray();
+        
+        for (Review review : reviews) {
+            reviewsArray.add(toJson(review));
+        }
+        
+        return reviewsArray.toJSONString();
+    }
+    
+    /**
+     * Convert a review to its JSON form.
+     * 
+     * @param review the review
+     * @return the JSON object
+     */
+    @SuppressWarnings("unchecked")
+    private JSONObject toJson(Review review) {
+        JSONObject reviewJson = new JSONObject();
+        reviewJson.put("id", review.getReviewId());
+        reviewJson.put("customerId", review.getCustomer().getCustomerId());
+        reviewJson.put("rating", review.getRating());
+        reviewJson.put("comment", review.getComment());
+        
+        // Reviews of a package that has since been removed are written without one
+        TravelPackage travelPackage = reviewPackageMap.get(review.getReviewId());
+        String packageId = null;
+        if (travelPackage != null && packageMap.get(travelPackage.getServiceId()) == travelPackage) {
+            packageId = travelPackage.getServiceId();
+        }
+        
+        reviewJson.put("packageId", packageId);
+        return reviewJson;
+    }
+    
+    /**
+     * Replace a data file with new content, atomically and durably.
+     * 
+     * @param path the file to write
+     * @param content the full file content
+     * @throws IOException if the file cannot be written; the old file is then left in place
+     */
+    private void writeFile(String path, String content) throws IOException {
+        AtomicFile.write(new File(path), content.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Keep a copy of a data file that failed to load, since the next save replaces it
+     * with whatever could be read.
+     * 
+     * @param file the damaged file
+     */
+    private void preserveDamagedFile(File file) {
+        File copy = new File(file.getPath() + ".damaged-" + System.currentTimeMillis());
+        try {
+            Files.copy(file.toPath(), copy.toPath());
+            System.err.println("Kept a copy of the damaged file as " + copy.getName());
+        } catch (IOException e) {
+            System.err.println("Could not copy damaged file " + file.getName() + ": " + e.getMessage());
+        }
+    }
+    
+    // Getters for the collections
+    
+    /**
+     * Get a consistent view of all collections that can be read without locking.
+     * Only the first call after a change waits for the lock, to build the view.
+     * The view fixes which entities are in each collection, but not their fields;
+     * see {@link DataSnapshot}.
+     * 
+     * @return the current snapshot
+     */
+    public DataSnapshot getSnapshot() {
+        DataSnapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            // Every change is made under this lock, so nothing can change while building
+            current = snapshot;
+            if (current == null) {
+                current = new DataSnapshot(++snapshotVersion,
+                    activities.publish(),
+                    customers.publish(),
+                    packages.publish(),
+                    bookings.publish(),
+                    reviews.publish());
+                snapshot = current;
+            }
+            return current;
+        }
+    }
+    
+    public List<Customer> getCustomers() {
+        return getSnapshot().getCustomers();
+    }
+    
+    public List<TravelPackage> getPackages() {
+        return getSnapshot().getPackages();
+    }
+    
+    public List<Booking> getBookings() {
+        return getSnapshot().getBookings();
+    }
+    
+    public List<Review> getReviews() {
+        return getSnapshot().getReviews();
+    }
+    
+    public List<Activity> getActivities() {
+        return getSnapshot().getActivities();
+    }
+    
+    // Methods to add items to collections
+    
+    public void addCustomer(Customer customer) {
+        long ticket;
+        synchronized (this) {
+            customers.add(customer);
+            customerMap.put(customer.getCustomerId(), customer);
+            indexText(customer);
+            customerChanges.markChanged(customer.getCustomerId());
+            ticket = journalPut(customer);
+        }
+        awaitJournal(ticket);
+    }
+    
+    public void addPackage(TravelPackage travelPackage) {
+        long ticket;
+        synchronized (this) {
+            packages.add(travelPackage);
+            packageMap.put(travelPackage.getServiceId(), travelPackage);
+            indexText(travelPackage);
+            fileActivityUsage(travelPackage);
+            rankPackage(travelPackage);
+            packageChanges.markChanged(travelPackage.getServiceId());
+            ticket = journalPut(travelPackage);
+        }
+        awaitJournal(ticket);
+    }
+    
+    public void addBooking(Booking booking) {
+        long ticket;
+        synchronized (this) {
+            bookings.add(booking);
+            indexBooking(booking);
+            bookingChanges.markChanged(booking.getBookingId());
+            ticket = journalPut(booking);
+        }
+        awaitJournal(ticket);
+    }
+    
+    public void addReview(Review review) {
+        long ticket;
+        synchronized (this) {
+            reviews.add(review);
+            reviewMap.put(review.getReviewId(), review);
+            indexReviewPackage(review);
+            reviewChanges.markChanged(review.getReviewId());
+            ticket = journalPut(review);
+        }
+        awaitJournal(ticket);
+    }
+    
+    public void addActivity(Activity activity) {
+        long ticket;
+        synchronized (this) {
+            activities.add(activity);
+            activityMap.put(activity.getActivityId(), activity);
+            activityChanges.markChanged(activity.getActivityId());
+            ticket = journalPut(activity);
+        }
+        awaitJournal(ticket);
+    }
+    
+    /**
+     * Record that an entity already in the system has been changed in place.
+     * In journal mode the new state is appended to the journal; otherwise
+     * the change is written by the next saveData().
+     * 
+     * @param entity the changed customer, package, booking, review or activity
+     */
+    public void markModified(Object entity) {
+        long ticket;
+        synchronized (this) {
+            if (entity instanceof Booking) {
+                // A payment may have been added since the booking was registered
+                indexPayment((Booking) entity);
+            } else if (entity instanceof Review) {
+                indexReviewPackage((Review) entity);
+            } else if (entity instanceof Customer || entity instanceof TravelPackage) {
+                // Names and destinations may have changed
+                indexText(entity);
+                if (entity instanceof TravelPackage) {
+                    // So may the activities and itinerary
+                    fileActivityUsage((TravelPackage) entity);
+                }
+            }
+            changesFor(entity).markChanged(idOf(entity));
+            ticket = journalPut(entity);
+        }
+        awaitJournal(ticket);
+    }
+    
+    /**
+     * Look up a payment by its ID.
+     * 
+     * @param paymentId the payment ID
+     * @return the payment, or null if no loaded booking has it
+     */
+    public synchronized Payment getPayment(String paymentId) {
+        return paymentMap.get(paymentId);
+    }
+    
+    /**
+     * Look up the package a review was written for.
+     * 
+     * @param review the review
+     * @return the package, or null if the review has none
+     */
+    public synchronized TravelPackage getPackageForReview(Review review) {
+        return reviewPackageMap.get(review.getReviewId());
+    }
+    
+    /**
+     * Record a review's package in the review-to-package index.
+     * 
+     * @param review the review
+     */
+    private void indexReviewPackage(Review review) {
+        if (review.getTravelPackage() != null) {
+            reviewPackageMap.put(review.getReviewId(), review.getTravelPackage());
+        } else {
+            reviewPackageMap.remove(review.getReviewId());
+        }
+    }
+    
+    /**
+     * Find customers whose name contains a text, ignoring case.
+     * 
+     * @param text the text to look for
+     * @return the matching customers
+     */
+    public ArrayList<Customer> searchCustomersByName(String text) {
+        return new ArrayList<>(customerNameIndex.search(text));
+    }
+    
+    /**
+     * Find packages whose name contains a text, ignoring case.
+     * 
+     * @param text the text to look for
+     * @return the matching packages
+     */
+    public ArrayList<TravelPackage> searchPackagesByName(String text) {
+        return new ArrayList<>(packageNameIndex.search(text));
+    }
+    
+    /**
+     * Find packages whose destination contains a text, ignoring case.
+     * 
+     * @param text the text to look for
+     * @return the matching packages
+     */
+    public ArrayList<TravelPackage> searchPackagesByDestination(String text) {
+        return new ArrayList<>(destinationIndex.search(text));
+    }
+    
+    /**
+     * Index the searchable text of a customer or package, replacing what it was
+     * indexed under. Customers are also filed by ID here for paging.
+     * 
+     * @param entity the customer or package
+     */
+    private void indexText(Object entity) {
+        if (entity instanceof Customer) {
+            Customer customer = (Customer) entity;
+            customerNameIndex.put(customer, customer.getName());
+            customersById.put(customer.getCustomerId(), customer);
+        } else if (entity instanceof TravelPackage) {
+            TravelPackage travelPackage = (TravelPackage) entity;
+            packageNameIndex.put(travelPackage, travelPackage.getName());
+            destinationIndex.put(travelPackage, travelPackage.getDestination());
+        }
+    }
+    
+    /**
+     * Remove a customer or package from the text indexes, and a customer from the ID index.
+     * 
+     * @param entity the customer or package, or null
+     */
+    private void unindexText(Object entity) {
+        if (entity instanceof Customer) {
+            Customer customer = (Customer) entity;
+            customerNameIndex.remove(customer);
+            customersById.remove(customer.getCustomerId(), customer);
+        } else if (entity instanceof TravelPackage) {
+            packageNameIndex.remove((TravelPackage) entity);
+            destinationIndex.remove((TravelPackage) entity);
+        }
+    }
+    
+    /**
+     * Check whether any package includes an activity.
+     * 
+     * @param activity the activity
+     * @return true if the activity is in at least one package's activity list
+     */
+    public synchronized boolean isActivityInUse(Activity activity) {
+        return packagesByActivity.containsKey(activity.getActivityId());
+    }
+    
+    /**
+     * Get the packages that include an activity.
+     * 
+     * @param activity the activity
+     * @return the packages with the activity in their activity list
+     */
+    public synchronized ArrayList<TravelPackage> getPackagesUsingActivity(Activity activity) {
+        Set<TravelPackage> using = packagesByActivity.get(activity.getActivityId());
+        return using != null ? new ArrayList<>(using) : new ArrayList<>();
+    }
+    
+    /**
+     * Get the itinerary days of a package that schedule an activity.
+     * 
+     * @param travelPackage the package
+     * @param activity the activity
+     * @return the days with the activity, in day order
+     */
+    public synchronized ArrayList<ItineraryDay> getItineraryDaysWithActivity(TravelPackage travelPackage,
+                                                                             Activity activity) {
+        Map<TravelPackage, List<ItineraryDay>> scheduled = daysByActivity.get(activity.getActivityId());
+        List<ItineraryDay> days = scheduled != null ? scheduled.get(travelPackage) : null;
+        return days != null ? new ArrayList<>(days) : new ArrayList<>();
+    }
+    
+    /**
+     * Get the packages with the highest average rating.
+     * 
+     * @param limit the maximum number of packages to return
+     * @return reviewed packages, highest average rating first
+     */
+    public ArrayList<TravelPackage> getTopRatedPackages(int limit) {
+        return new ArrayList<>(packageRatings.top(limit));
+    }
+    
+    /**
+     * File a package under the activities in its activity list and itinerary,
+     * replacing what it was filed under before.
+     * 
+     * @param travelPackage the package
+     */
+    private void fileActivityUsage(TravelPackage travelPackage) {
+        unfileActivityUsage(travelPackage);
+        
+        Set<String> filed = new HashSet<>();
+        for (Activity activity : travelPackage.getActivities()) {
+            packagesByActivity.computeIfAbsent(activity.getActivityId(), k -> new LinkedHashSet<>())
+                .add(travelPackage);
+            filed.add(activity.getActivityId());
+        }
+        for (ItineraryDay day : travelPackage.getItinerary().getModifiableDays()) {
+            for (Activity activity : day.getActivities()) {
+                List<ItineraryDay> days = daysByActivity
+                    .computeIfAbsent(activity.getActivityId(), k -> new IdentityHashMap<>())
+                    .computeIfAbsent(travelPackage, k -> new ArrayList<>());
+                if (!days.contains(day)) {
+                    days.add(day);
+                }
+                filed.add(activity.getActivityId());
+            }
+        }
+        if (!filed.isEmpty()) {
+            activitiesFiled.put(travelPackage, filed);
+        }
+    }
+    
+    /**
+     * Have the rating ranking follow a package's reviews.
+     * 
+     * @param travelPackage the package
+     */
+    private void rankPackage(TravelPackage travelPackage) {
+        travelPackage.setRatingListener(packageRatings);
+        packageRatings.update(travelPackage);
+    }
+    
+    /**
+     * Take a package out of the rating ranking.
+     * 
+     * @param travelPackage the package, or null
+     */
+    private void unrankPackage(TravelPackage travelPackage) {
+        if (travelPackage != null) {
+            travelPackage.setRatingListener(null);
+            packageRatings.remove(travelPackage);
+        }
+    }
+    
+    /**
+     * Remove a package from the activity usage index.
+     * 
+     * @param travelPackage the package, or null
+     */
+    private void unfileActivityUsage(TravelPackage travelPackage) {
+        Set<String> filed = travelPackage != null ? activitiesFiled.remove(travelPackage) : null;
+        if (filed == null) {
+            return;
+        }
+        for (String activityId : filed) {
+            Set<TravelPackage> using = packagesByActivity.get(activityId);
+            if (using != null && using.remove(travelPackage) && using.isEmpty()) {
+                packagesByActivity.remove(activityId);
+            }
+            Map<TravelPackage, List<ItineraryDay>> scheduled = daysByActivity.get(activityId);
+            if (scheduled != null && scheduled.remove(travelPackage) != null && scheduled.isEmpty()) {
+                daysByActivity.remove(activityId);
+            }
+        }
+    }
+    
+    /**
+     * Get the bookings made by a customer.
+     * 
+     * @param customerId the customer ID
+     * @return the customer's bookings
+     */
+    public ArrayList<Booking> getBookingsForCustomer(String customerId) {
+        synchronized (bookingIndexLock) {
+            return copyOf(bookingsByCustomer.get(customerId));
+        }
+    }
+    
+    /**
+     * Count the bookings made by a customer without copying them.
+     * 
+     * @param customerId the customer ID
+     * @return the number of bookings
+     */
+    public int countBookingsForCustomer(String customerId) {
+        synchronized (bookingIndexLock) {
+            Set<Booking> filed = bookingsByCustomer.get(customerId);
+            return filed != null ? filed.size() : 0;
+        }
+    }
+    
+    /**
+     * Get the bookings of a travel package.
+     * 
+     * @param packageId the package ID
+     * @return the package's bookings
+     */
+    public ArrayList<Booking> getBookingsForPackage(String packageId) {
+        synchronized (bookingIndexLock) {
+            NavigableMap<String, Booking> filed = bookingsByPackage.get(packageId);
+            return copyOf(filed != null ? filed.values() : null);
+        }
+    }
+    
+    /**
+     * Count the bookings of a travel package without copying them.
+     * 
+     * @param packageId the package ID
+     * @return the number of bookings
+     */
+    public int countBookingsForPackage(String packageId) {
+        synchronized (bookingIndexLock) {
+            NavigableMap<String, Booking> filed = bookingsByPackage.get(packageId);
+            return filed != null ? filed.size() : 0;
+        }
+    }
+    
+    /**
+     * Get the bookings with a status.
+     * 
+     * @param status the status
+     * @return the bookings currently in that status
+     */
+    public ArrayList<Booking> getBookingsByStatus(BookingStatus status) {
+        synchronized (bookingIndexLock) {
+            return copyOf(bookingsByStatus.get(status));
+        }
+    }
+    
+    /**
+     * Get the bookings dated within a range of days, in date order.
+     * 
+     * @param from the first day to include, or null for no lower bound
+     * @param to the last day to include, or null for no upper bound
+     * @return the bookings dated on or between the two days
+     */
+    public ArrayList<Booking> getBookingsBetween(Date from, Date to) {
+        synchronized (bookingIndexLock) {
+            NavigableMap<Long, NavigableMap<String, Booking>> range = bookingsByDay;
+            if (from != null) {
+                range = range.tailMap(epochDay(from), true);
+            }
+            if (to != null) {
+                range = range.headMap(epochDay(to), true);
+            }
+            
+            ArrayList<Booking> result = new ArrayList<>();
+            for (NavigableMap<String, Booking> day : range.values()) {
+                result.addAll(day.values());
+            }
+            return result;
+        }
+    }
+    
+    /**
+     * Get the bookings dated on or after a day, in date order.
+     * 
+     * @param day the first day to include
+     * @return the bookings from that day on
+     */
+    public ArrayList<Booking> getBookingsOnOrAfter(Date day) {
+        return getBookingsBetween(day, null);
+    }
+    
+    /**
+     * Get a page of customers in ID order.
+     * 
+     * @param after the cursor of the previous page, or null for the first page
+     * @param limit the most customers to return
+     * @return the page
+     */
+    public Page<Customer> getCustomersPage(Page.Cursor after, int limit) {
+        NavigableMap<String, Customer> rest = after != null ? customersById.tailMap(after.getId(), false) : customersById;
+        ArrayList<Customer> items = new ArrayList<>(Math.min(limit, 1024));
+        if (!take(rest, limit, items) || items.isEmpty()) {
+            return new Page<>(items, null);
+        }
+        return new Page<>(items, new Page.Cursor(0, items.get(items.size() - 1).getCustomerId()));
+    }
+    
+    /**
+     * Get a page of bookings in an order. Each page is found from the indexes
+     * in time that depends on the page size rather than on the number of bookings.
+     * A booking whose date or price changes between pages moves in the order,
+     * so it may be skipped or seen twice.
+     * 
+     * @param order the order, which must be the same for every page
+     * @param after the cursor of the previous page, or null for the first page
+     * @param limit the most bookings to return
+     * @return the page
+     */
+    public Page<Booking> getBookingsPage(BookingOrder order, Page.Cursor after, int limit) {
+        ArrayList<Booking> items = new ArrayList<>(Math.min(limit, 1024));
+        boolean more;
+        switch (order) {
+            case DATE:
+                more = pageByKey(bookingsByDay, after, limit, items);
+                break;
+            case PRICE:
+                more = pageByKey(bookingsByPrice, after, limit, items);
+                break;
+            default:
+                synchronized (bookingIndexLock) {
+                    NavigableMap<String, Booking> rest = after != null ? bookingsById.tailMap(after.getId(), false) : bookingsById;
+                    more = take(rest, limit, items);
+                }
+                break;
+        }
+        if (!more || items.isEmpty()) {
+            return new Page<>(items, null);
+        }
+        
+        Booking last = items.get(items.size() - 1);
+        long key = 0;
+        if (order == BookingOrder.DATE) {
+            key = epochDay(last.getDate());
+        } else if (order == BookingOrder.PRICE) {
+            // The price the booking is filed under, which the next page seeks to
+            synchronized (bookingIndexLock) {
+                Long price = pricesFiled.get(last.getService().getServiceId());
+                key = price != null ? price : last.getTotalPriceCents();
+            }
+        }
+        return new Page<>(items, new Page.Cursor(key, last.getBookingId()));
+    }
+    
+    /**
+     * Fill a page of bookings from an index keyed by date or price, then by ID,
+     * seeking to the cursor's key and ID.
+     * 
+     * @return true if there are bookings after the page
+     */
+    private boolean pageByKey(NavigableMap<Long, NavigableMap<String, Booking>> index, Page.Cursor after,
+            int limit, List<Booking> items) {
+        synchronized (bookingIndexLock) {
+            NavigableMap<Long, NavigableMap<String, Booking>> keys = after != null
+                ? index.tailMap(after.getKey(), true) : index;
+            for (Map.Entry<Long, NavigableMap<String, Booking>> key : keys.entrySet()) {
+                NavigableMap<String, Booking> filed = key.getValue();
+                if (after != null && key.getKey() == after.getKey()) {
+                    filed = filed.tailMap(after.getId(), false);
+                }
+                if (take(filed, limit, items)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+    
+    /**
+     * Add entities in order until a page is full.
+     * 
+     * @param filed the entities to take from, in ID order
+     * @param limit the size of a full page
+     * @param items the page
+     * @return true if the page filled up with entities left over
+     */
+    private static <T> boolean take(NavigableMap<String, T> filed, int limit, List<T> items) {
+        for (T entity : filed.values()) {
+            if (items.size() == limit) {
+                return true;
+            }
+            items.add(entity);
+        }
+        return false;
+    }
+    
+    private static ArrayList<Booking> copyOf(Collection<Booking> indexed) {
+        return indexed != null ? new ArrayList<>(indexed) : new ArrayList<>();
+    }
+    
+    /**
+     * Register a booking in the ID map and the secondary indexes.
+     * 
+     * @param booking the booking
+     */
+    private void indexBooking(Booking booking) {
+        bookingMap.put(booking.getBookingId(), booking);
+        indexPayment(booking);
+        synchronized (bookingIndexLock) {
+            bookingsById.put(booking.getBookingId(), booking);
+            file(bookingsByCustomer, booking.getCustomer().getCustomerId(), booking);
+            fileById(bookingsByPackage, booking.getService().getServiceId(), booking);
+            file(bookingsByStatus, booking.getStatus(), booking);
+            fileById(bookingsByDay, epochDay(booking.getDate()), booking);
+            // Every booking of a package is filed under the price its first one was
+            TravelService service = booking.getService();
+            long price = pricesFiled.computeIfAbsent(service.getServiceId(), id -> service.calculateTotalPriceCents());
+            fileById(bookingsByPrice, price, booking);
+        }
+        booking.getService().setPriceListener(bookingRepricer);
+        booking.setListener(bookingIndexer);
+        booking.holdSeats();
+    }
+    
+    /**
+     * Remove a booking from the ID map and the secondary indexes.
+     * 
+     * @param booking the booking
+     */
+    private void unindexBooking(Booking booking) {
+        booking.setListener(null);
+        booking.releaseSeats();
+        bookingMap.remove(booking.getBookingId());
+        unindexPayment(booking);
+        synchronized (bookingIndexLock) {
+            bookingsById.remove(booking.getBookingId(), booking);
+            unfile(bookingsByCustomer, booking.getCustomer().getCustomerId(), booking);
+            String serviceId = booking.getService().getServiceId();
+            unfileById(bookingsByPackage, serviceId, booking);
+            unfile(bookingsByStatus, booking.getStatus(), booking);
+            unfileById(bookingsByDay, epochDay(booking.getDate()), booking);
+            Long price = pricesFiled.get(serviceId);
+            if (price != null) {
+                unfileById(bookingsByPrice, price, booking);
+                if (!bookingsByPackage.containsKey(serviceId)) {
+                    pricesFiled.remove(serviceId);
+                }
+            }
+        }
+    }
+    
+    private static long epochDay(Date date) {
+        return BookingColumnStore.toEpochDay(date, ZoneId.systemDefault());
+    }
+    
+    private static <K> void file(Map<K, Set<Booking>> index, K key, Booking booking) {
+        index.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(booking);
+    }
+    
+    private static <K> void unfile(Map<K, Set<Booking>> index, K key, Booking booking) {
+        Set<Booking> filed = index.get(key);
+        if (filed != null && filed.remove(booking) && filed.isEmpty()) {
+            index.remove(key);
+        }
+    }
+    
+    private static <K> void fileById(Map<K, NavigableMap<String, Booking>> index, K key, Booking booking) {
+        index.computeIfAbsent(key, k -> new TreeMap<>()).put(booking.getBookingId(), booking);
+    }
+    
+    private static <K> void unfileById(Map<K, NavigableMap<String, Booking>> index, K key, Booking booking) {
+        NavigableMap<String, Booking> filed = index.get(key);
+        if (filed != null && filed.remove(booking.getBookingId(), booking) && filed.isEmpty()) {
+            index.remove(key);
+        }
+    }
+    
+    /**
+     * Add a booking's payment to the payment index.
+     * 
+     * @param booking the booking
+     */
+    private void indexPayment(Booking booking) {
+        if (booking.getPayment() != null) {
+            paymentMap.put(booking.getPayment().getPaymentId(), booking.getPayment());
+        }
+    }
+    
+    /**
+     * Remove a booking's payment from the payment index.
+     * 
+     * @param booking the booking
+     */
+    private void unindexPayment(Booking booking) {
+        if (booking.getPayment() != null) {
+            paymentMap.remove(booking.getPayment().getPaymentId());
+        }
+    }
+    
+    /**
+     * Get the bookings as memory-mapped columns for aggregate scans.
+     * The columns are rebuilt when a booking, customer, package or activity has
+     * changed since they were last built, since any of these can change a row.
+     * 
+     * @return the column store, or null if it is disabled or could not be built
+     */
+    public synchronized BookingColumnStore getBookingColumns() {
+        if (!columnsEnabled) {
+            return null;
+        }
+        
+        long version = loadCount + activityChanges.version + customerChanges.version
+            + packageChanges.version + bookingChanges.version;
+        if (bookingColumns != null && bookingColumnsVersion == version) {
+            return bookingColumns;
+        }
+        
+        try {
+            File file = File.createTempFile("bookings-", COLUMNS_SUFFIX, new File(DATA_DIR));
+            bookingColumns = BookingColumnStore.build(file, bookings, customers, packages);
+            bookingColumnsVersion = version;
+        } catch (IOException e) {
+            System.err.println("Error building booking columns: " + e.getMessage());
+            bookingColumns = null;
+            return null;
+        }
+        
+        // Older generations may still be mapped, in which case some platforms refuse
+        // to delete them; they are retried on the next rebuild
+        File[] stale = new File(DATA_DIR).listFiles((dir, name) -> name.endsWith(COLUMNS_SUFFIX));
+        if (stale != null) {
+            for (File file : stale) {
+                if (!file.equals(bookingColumns.getFile())) {
+                    file.delete();
+                }
+            }
+        }
+        return bookingColumns;
+    }
+    
+    /**
+     * Remove a package from the system.
+     * 
+     * @param travelPackage the package to remove
+     * @return true if the package was successfully removed
+     */
+    public boolean removePackage(TravelPackage travelPackage) {
+        if (travelPackage == null) {
+            return false;
+        }
+        
+        long ticket = 0;
+        boolean removed;
+        synchronized (this) {
+            String packageId = travelPackage.getServiceId();
+            removed = packages.removeIf(p -> p.getServiceId().equals(packageId));
+            if (removed) {
+                TravelPackage indexed = packageMap.remove(packageId);
+                unindexText(indexed);
+                unfileActivityUsage(indexed);
+                unrankPackage(indexed);
+                packageChanges.markRemoved(packageId);
+                if (journal != null) {
+                    ticket = journalRemove("package", packageId);
+                } else {
+                    requestSave(); // Save changes in the background
+                }
+            }
+        }
+        awaitJournal(ticket);
+        return removed;
+    }
+    
+    /**
+     * Remove a customer from the system.
+     * 
+     * @param customer the customer to remove
+     * @return true if the customer was successfully removed
+     */
+    public boolean removeCustomer(Customer customer) {
+        if (customer == null) {
+            return false;
+        }
+        
+        long ticket = 0;
+        boolean removed;
+        synchronized (this) {
+            String customerId = customer.getCustomerId();
+            removed = customers.removeIf(c -> c.getCustomerId().equals(customerId));
+            if (removed) {
+                unindexText(customerMap.remove(customerId));
+                customerChanges.markRemoved(customerId);
+                ticket = journalRemove("customer", customerId);
+            }
+        }
+        awaitJournal(ticket);
+        return removed;
+    }
+    
+    /**
+     * Get all bookings.
+     * 
+     * @return a read-only list of all bookings
+     */
+    public List<Booking> getAllBookings() {
+        return getBookings();
+    }
+    
+    /**
+     * Remove a booking.
      * 
      * @param booking the booking to remove
      * @return true if successfully removed, false otherwise
      */
-    public boolean removeBooking(Booking booking) {
-        if (booking == null) {
-            return false;
+    public boolean removeBooking(Booking booking) {
+        if (booking == null) {
+            return false;
+        }
+        
+        long ticket = 0;
+        boolean result;
+        synchronized (this) {
+            String bookingId = booking.getBookingId();
+            Booking indexed = bookingMap.get(bookingId);
+            if (indexed != null) {
+                unindexBooking(indexed);
+            }
+            result = bookings.remove(booking);
+            
+            if (result) {
+                bookingChanges.markRemoved(bookingId);
+                if (journal != null) {
+                    ticket = journalRemove("booking", bookingId);
+                } else {
+                    requestSave();
+                }
+            }
+        }
+        awaitJournal(ticket);
+        return result;
+    }
+    
+    /**
+     * Remove a review.
+     * 
+     * @param review the review to remove
+     * @return true if successfully removed, false otherwise
+     */
+    public boolean removeReview(Review review) {
+        if (review == null) {
+            return false;
+        }
+        
+        long ticket = 0;
+        boolean result;
+        synchronized (this) {
+            String reviewId = review.getReviewId();
+            reviewMap.remove(reviewId);
+            reviewPackageMap.remove(reviewId);
+            result = reviews.remove(review);
+            
+            if (result) {
+                reviewChanges.markRemoved(reviewId);
+                if (journal != null) {
+                    ticket = journalRemove("review", reviewId);
+                } else {
+                    requestSave();
+                }
+            }
+        }
+        awaitJournal(ticket);
+        return result;
+    }
+    
+    /**
+     * Remove an activity from the system.
+     * 
+     * @param activity the activity to remove
+     * @return true if the activity was successfully removed
+     */
+    public boolean removeActivity(Activity activity) {
+        if (activity == null) {
+            return false;
+        }
+        
+        long ticket = 0;
+        boolean removed;
+        synchronized (this) {
+            String activityId = activity.getActivityId();
+            removed = activities.removeIf(a -> a.getActivityId().equals(activityId));
+            if (removed) {
+                // Take the activity out of the itinerary days that still schedule it;
+                // only those days and their packages are touched
+                Map<TravelPackage, List<ItineraryDay>> scheduled = daysByActivity.get(activityId);
+                if (scheduled != null) {
+                    for (Map.Entry<TravelPackage, List<ItineraryDay>> entry : new ArrayList<>(scheduled.entrySet())) {
+                        for (ItineraryDay day : entry.getValue()) {
+                            day.removeActivityById(activityId);
+                        }
+                        TravelPackage travelPackage = entry.getKey();
+                        fileActivityUsage(travelPackage);
+                        packageChanges.markChanged(travelPackage.getServiceId());
+                        ticket = journalPut(travelPackage);
+                    }
+                }
+                
+                activityMap.remove(activityId);
+                activityChanges.markRemoved(activityId);
+                if (journal != null) {
+                    ticket = journalRemove("activity", activityId);
+                } else {
+                    requestSave();
+                }
+            }
+        }
+        awaitJournal(ticket);
+        return removed;
+    }
+    
+    // Journal support
+    
+    /**
+     * Check whether mutations are being recorded in the write-ahead journal.
+     * 
+     * @return true if journal mode is enabled
+     */
+    public boolean isJournalEnabled() {
+        return journal != null;
+    }
+    
+    /**
+     * Open the journal file and start the background compactor.
+     */
+    private void openJournal() {
+        try {
+            journal = new DataJournal(new File(JOURNAL_FILE));
+            compactor = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "tams-journal-compactor");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } catch (IOException e) {
+            System.err.println("Error opening journal, falling back to snapshot saves: " + e.getMessage());
+            journal = null;
+        }
+    }
+    
+    /**
+     * Queue a record holding the current state of an entity.
+     * 
+     * @param entity the entity to record
+     * @return the journal sequence number, or 0 if journal mode is off
+     */
+    private long journalPut(Object entity) {
+        if (journal == null) {
+            return 0;
+        }
+        return appendRecord(putRecord(entity));
+    }
+    
+    /**
+     * Build a record holding the current state of an entity.
+     * 
+     * @param entity the entity
+     * @return the single-line record
+     */
+    private String putRecord(Object entity) {
+        String type;
+        JSONObject data;
+        if (entity instanceof Customer) {
+            type = "customer";
+            data = toJson((Customer) entity);
+        } else if (entity instanceof TravelPackage) {
+            type = "package";
+            data = toJson((TravelPackage) entity);
+        } else if (entity instanceof Booking) {
+            type = "booking";
+            data = toJson((Booking) entity, new SimpleDateFormat("yyyy-MM-dd"));
+        } else if (entity instanceof Review) {
+            type = "review";
+            data = toJson((Review) entity);
+        } else if (entity instanceof Activity) {
+            type = "activity";
+            data = toJson((Activity) entity);
+        } else {
+            throw new IllegalArgumentException("Unsupported entity: " + entity);
         }
         
-        String bookingId = booking.getBookingId();
-        bookingMap.remove(bookingId);
-        boolean result = bookings.remove(booking);
+        // Fields are written in a fixed order so replay knows the type before the data
+        return "{\"op\":\"put\",\"type\":\"" + type + "\",\"data\":" + data.toJSONString() + "}";
+    }
+    
+    /**
+     * Queue a record for the removal of an entity.
+     * 
+     * @param type the entity type
+     * @param id the entity ID
+     * @return the journal sequence number, or 0 if journal mode is off
+     */
+    private long journalRemove(String type, String id) {
+        if (journal == null) {
+            return 0;
+        }
+        return appendRecord(removeRecord(type, id));
+    }
+    
+    /**
+     * Build a record for the removal of an entity.
+     * 
+     * @param type the entity type
+     * @param id the entity ID
+     * @return the single-line record
+     */
+    private String removeRecord(String type, String id) {
+        return "{\"op\":\"remove\",\"type\":\"" + type + "\",\"id\":" + JSONValue.toJSONString(id) + "}";
+    }
+    
+    /**
+     * Queue a journal record and schedule compaction once the journal grows large.
+     * Must be called while holding this object's lock.
+     * 
+     * @param record the record
+     * @return the journal sequence number
+     */
+    private long appendRecord(String record) {
+        long ticket = journal.enqueue(record);
+        if (journal.getRecordCount() >= JOURNAL_COMPACT_THRESHOLD && !compactionScheduled) {
+            compactionScheduled = true;
+            compactor.execute(this::compactJournal);
+        }
+        return ticket;
+    }
+    
+    /**
+     * Wait until a journal record has been forced to disk.
+     * Must be called without holding this object's lock so that concurrent writers
+     * can share one flush.
+     * 
+     * @param ticket the sequence number, or 0 if nothing was journaled
+     */
+    private void awaitJournal(long ticket) {
+        if (ticket == 0) {
+            return;
+        }
+        try {
+            journal.awaitDurable(ticket);
+        } catch (IOException e) {
+            // The journal keeps retrying the record; meanwhile save the change to the data files
+            System.err.println("Error writing journal, saving instead: " + e.getMessage());
+            requestSave();
+        }
+    }
+    
+    /**
+     * Fold the journal into the JSON snapshot files and truncate it.
+     */
+    private synchronized void compactJournal() {
+        compactionScheduled = false;
+        System.out.println("Compacting journal (" + journal.getRecordCount() + " records)");
+        saveData();
+    }
+    
+    /**
+     * Apply every record in the journal on top of the loaded snapshot.
+     */
+    private void replayJournal() {
+        try {
+            int count = journal.replay(record -> applyJournalRecord(record, true));
+            if (count > 0) {
+                System.out.println("Replayed " + count + " journal records");
+            }
+        } catch (IOException e) {
+            System.err.println("Error replaying journal: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Apply a single journal or delta record.
+     * 
+     * @param record the record line
+     * @param track true to mark the affected entity as changed, so the next save writes it
+     */
+    private void applyJournalRecord(String record, boolean track) {
+        try (JsonStreamReader reader = new JsonStreamReader(new StringReader(record))) {
+            String op = null;
+            String type = null;
+            
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "op": op = reader.nextString(); break;
+                    case "type": type = reader.nextString(); break;
+                    case "data":
+                        if ("put".equals(op) && type != null) {
+                            applyPut(type, reader, track);
+                        } else {
+                            reader.skipValue();
+                        }
+                        break;
+                    case "id":
+                        String id = reader.nextString();
+                        if ("remove".equals(op) && type != null) {
+                            applyRemove(type, id, track);
+                        }
+                        break;
+                    default: reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Skipping unreadable journal record: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Insert or update an entity from a journal record.
+     * Existing objects are updated in place so that references to them stay valid.
+     * 
+     * @param type the entity type
+     * @param reader the reader positioned at the entity data
+     * @param track true to mark the entity as changed
+     * @throws IOException if the record cannot be read
+     */
+    private void applyPut(String type, JsonStreamReader reader, boolean track) throws IOException {
+        Object applied;
+        switch (type) {
+            case "activity": {
+                Activity loaded = readActivity(reader);
+                Activity existing = activityMap.get(loaded.getActivityId());
+                if (existing == null) {
+                    activities.add(loaded);
+                    activityMap.put(loaded.getActivityId(), loaded);
+                } else {
+                    existing.setName(loaded.getName());
+                    existing.setLocation(loaded.getLocation());
+                    existing.setDuration(loaded.getDuration());
+                    existing.setCostCents(loaded.getCostCents());
+                }
+                applied = existing != null ? existing : loaded;
+                break;
+            }
+            case "customer": {
+                Customer loaded = readCustomer(reader);
+                Customer existing = customerMap.get(loaded.getCustomerId());
+                if (existing == null) {
+                    customers.add(loaded);
+                    customerMap.put(loaded.getCustomerId(), loaded);
+                } else {
+                    existing.setName(loaded.getName());
+                    existing.setEmail(loaded.getEmail());
+                    existing.setPhone(loaded.getPhone());
+                    existing.setAddress(loaded.getAddress());
+                }
+                applied = existing != null ? existing : loaded;
+                indexText(applied);
+                break;
+            }
+            case "package": {
+                TravelPackage loaded = linkPackage(readPackage(reader));
+                TravelPackage existing = packageMap.get(loaded.getServiceId());
+                if (existing == null) {
+                    packages.add(loaded);
+                    packageMap.put(loaded.getServiceId(), loaded);
+                } else {
+                    existing.setName(loaded.getName());
+                    existing.setDescription(loaded.getDescription());
+                    existing.setBasePriceCents(loaded.getBasePriceCents());
+                    existing.setDestination(loaded.getDestination());
+                    existing.setDuration(loaded.getDuration());
+                    existing.setAccommodation(loaded.getAccommodation());
+                    existing.setCapacity(loaded.getCapacity());
+                    existing.getActivities().clear();
+                    existing.getActivities().addAll(loaded.getActivities());
+                    existing.getItinerary().getModifiableDays().clear();
+                    existing.getItinerary().getModifiableDays().addAll(loaded.getItinerary().getDays());
+                }
+                applied = existing != null ? existing : loaded;
+                indexText(applied);
+                fileActivityUsage((TravelPackage) applied);
+                rankPackage((TravelPackage) applied);
+                break;
+            }
+            case "booking": {
+                Booking loaded = linkBooking(readBooking(reader, new SimpleDateFormat("yyyy-MM-dd")));
+                if (loaded == null) {
+                    return;
+                }
+                Booking existing = bookingMap.get(loaded.getBookingId());
+                if (existing == null) {
+                    bookings.add(loaded);
+                    indexBooking(loaded);
+                    loaded.getCustomer().addBooking(loaded);
+                } else {
+                    unindexPayment(existing);
+                    // The record is what was saved, so its seats are held whether or not they fit
+                    existing.releaseSeats();
+                    existing.setDate(loaded.getDate());
+                    existing.updateStatus(loaded.getStatus());
+                    existing.setNumTravelers(loaded.getNumTravelers());
+                    existing.holdSeats();
+                    existing.setSpecialRequests(loaded.getSpecialRequests());
+                    existing.addPayment(loaded.getPayment());
+                }
+                indexPayment(existing != null ? existing : loaded);
+                applied = existing != null ? existing : loaded;
+                break;
+            }
+            case "review": {
+                PendingReview pending = readReview(reader);
+                Review loaded = linkReview(pending);
+                if (loaded == null) {
+                    return;
+                }
+                Review existing = reviewMap.get(loaded.getReviewId());
+                if (existing == null) {
+                    reviews.add(loaded);
+                    reviewMap.put(loaded.getReviewId(), loaded);
+                    TravelPackage travelPackage = packageMap.get(pending.packageId);
+                    if (travelPackage != null) {
+                        travelPackage.addReview(loaded);
+                        reviewPackageMap.put(loaded.getReviewId(), travelPackage);
+                    }
+                } else {
+                    existing.setRating(loaded.getRating());
+                    existing.setComment(loaded.getComment());
+                }
+                applied = existing != null ? existing : loaded;
+                break;
+            }
+            default:
+                reader.skipValue();
+                return;
+        }
         
-        if (result) {
-            saveBookings();
+        if (track) {
+            changesFor(applied).markChanged(idOf(applied));
+        }
+    }
+    
+    /**
+     * Remove an entity named in a journal record.
+     * 
+     * @param type the entity type
+     * @param id the entity ID
+     * @param track true to mark the entity as removed
+     */
+    private void applyRemove(String type, String id, boolean track) {
+        ChangeSet changes;
+        switch (type) {
+            case "activity":
+                activities.remove(activityMap.remove(id));
+                changes = activityChanges;
+                break;
+            case "customer": {
+                Customer removed = customerMap.remove(id);
+                customers.remove(removed);
+                unindexText(removed);
+                changes = customerChanges;
+                break;
+            }
+            case "package": {
+                TravelPackage removed = packageMap.remove(id);
+                packages.remove(removed);
+                unindexText(removed);
+                unfileActivityUsage(removed);
+                unrankPackage(removed);
+                changes = packageChanges;
+                break;
+            }
+            case "booking": {
+                Booking removed = bookingMap.get(id);
+                if (removed != null) {
+                    bookings.remove(removed);
+                    unindexBooking(removed);
+                }
+                changes = bookingChanges;
+                break;
+            }
+            case "review": {
+                Review removed = reviewMap.remove(id);
+                reviews.remove(removed);
+                TravelPackage travelPackage = reviewPackageMap.remove(id);
+                if (travelPackage != null && removed != null) {
+                    travelPackage.removeReview(removed);
+                }
+                changes = reviewChanges;
+                break;
+            }
+            default:
+                return;
         }
         
-        return result;
+        if (track) {
+            changes.markRemoved(id);
+        }
+    }
+    
+    // Change tracking and delta files
+    
+    /**
+     * Get the change set for the collection an entity belongs to.
+     * 
+     * @param entity the entity
+     * @return the change set
+     */
+    private ChangeSet changesFor(Object entity) {
+        if (entity instanceof Customer) {
+            return customerChanges;
+        } else if (entity instanceof TravelPackage) {
+            return packageChanges;
+        } else if (entity instanceof Booking) {
+            return bookingChanges;
+        } else if (entity instanceof Review) {
+            return reviewChanges;
+        } else if (entity instanceof Activity) {
+            return activityChanges;
+        }
+        throw new IllegalArgumentException("Unsupported entity: " + entity);
     }
     
     /**
-     * Remove a review.
+     * Get the ID of an entity.
      * 
-     * @param review the review to remove
-     * @return true if successfully removed, false otherwise
+     * @param entity the entity
+     * @return the entity ID
      */
-    public boolean removeReview(Review review) {
-        if (review == null) {
+    private String idOf(Object entity) {
+        if (entity instanceof Customer) {
+            return ((Customer) entity).getCustomerId();
+        } else if (entity instanceof TravelService) {
+            return ((TravelService) entity).getServiceId();
+        } else if (entity instanceof Booking) {
+            return ((Booking) entity).getBookingId();
+        } else if (entity instanceof Review) {
+            return ((Review) entity).getReviewId();
+        } else if (entity instanceof Activity) {
+            return ((Activity) entity).getActivityId();
+        }
+        throw new IllegalArgumentException("Unsupported entity: " + entity);
+    }
+    
+    /**
+     * Work out the file writes needed to save every changed collection.
+     * The change sets are cleared as if the writes succeeded; a write that fails
+     * marks its collection for a full rewrite on the next save. Collections whose
+     * file could not be loaded keep their changes and are not written, and the
+     * save then counts as failed.
+     * 
+     * @return the writes to perform, in order
+     */
+    private PendingSave captureChanges() {
+        ArrayList<PendingWrite> writes = new ArrayList<>();
+        
+        if (binaryFormat) {
+            // Everything lives in the one snapshot file
+            boolean dirty = activityChanges.isDirty() || customerChanges.isDirty() || packageChanges.isDirty()
+                || bookingChanges.isDirty() || reviewChanges.isDirty();
+            boolean unreadable = activityChanges.unreadable || customerChanges.unreadable
+                || packageChanges.unreadable || bookingChanges.unreadable || reviewChanges.unreadable;
+            if (unreadable) {
+                // A snapshot without the unreadable collections would replace the files on the next load
+                System.err.println("Not saving snapshot: some data files could not be loaded");
+                return newSave(writes, false);
+            }
+            if (dirty || !new File(SNAPSHOT_FILE).exists()) {
+                writes.add(new PendingWrite(new File(SNAPSHOT_FILE), activityChanges,
+                    BinarySnapshot.encode(activities, customers, packages, bookings, reviews), null));
+                activityChanges.clear();
+                customerChanges.clear();
+                packageChanges.clear();
+                bookingChanges.clear();
+                reviewChanges.clear();
+            }
+            return newSave(writes, true);
+        }
+        
+        // Non-short-circuit so every collection is captured even if one is held back
+        boolean complete = captureChanges("activity", activityChanges, ACTIVITIES_FILE, activities.size(),
+                activityMap, this::encodeActivities, writes)
+            & captureChanges("customer", customerChanges, CUSTOMERS_FILE, customers.size(),
+                customerMap, this::encodeCustomers, writes)
+            & captureChanges("package", packageChanges, PACKAGES_FILE, packages.size(),
+                packageMap, this::encodePackages, writes)
+            & captureChanges("booking", bookingChanges, BOOKINGS_FILE, bookings.size(),
+                bookingMap, this::encodeBookings, writes)
+            & captureChanges("review", reviewChanges, REVIEWS_FILE, reviews.size(),
+                reviewMap, this::encodeReviews, writes);
+        return newSave(writes, complete);
+    }
+    
+    /**
+     * Number a captured save and note what it covers: the journal records added so
+     * far, and the saves already written when it was captured.
+     * 
+     * @param writes the writes to perform, in order
+     * @param complete false if some changes were held back
+     * @return the save
+     */
+    private PendingSave newSave(ArrayList<PendingWrite> writes, boolean complete) {
+        long written;
+        synchronized (writeOrder) {
+            written = savesWritten;
+        }
+        return new PendingSave(++savesCaptured, writes, complete,
+            journal != null ? journal.getSequence() : 0, written);
+    }
+    
+    /**
+     * Work out the write needed to save one collection.
+     * Nothing is written if the collection is clean. Small change sets are appended
+     * to the delta file; once the delta grows too large the full file is rewritten.
+     * 
+     * @param type the entity type used in delta records
+     * @param changes the pending changes
+     * @param snapshotFile the collection's JSON file
+     * @param collectionSize the number of entities in the collection
+     * @param index the ID lookup map for the collection
+     * @param encoder produces the whole JSON file content
+     * @param writes the list to add the write to
+     * @return false if the changes were held back because the file could not be loaded
+     */
+    private boolean captureChanges(String type, ChangeSet changes, String snapshotFile, int collectionSize,
+                                   Map<String, ?> index, Supplier<String> encoder, ArrayList<PendingWrite> writes) {
+        if (!changes.isDirty()) {
+            return true;
+        }
+        if (changes.unreadable) {
+            System.err.println("Not saving " + type + " changes: " + snapshotFile + " could not be loaded");
             return false;
         }
         
-        String reviewId = review.getReviewId();
-        reviewMap.remove(reviewId);
-        boolean result = reviews.remove(review);
+        File snapshot = new File(snapshotFile);
+        File delta = deltaFile(snapshotFile);
+        int deltaLimit = Math.max(DELTA_MIN_RECORDS, (int) (collectionSize * DELTA_RATIO));
         
-        if (result) {
-            saveReviews();
+        if (!changes.rewrite && snapshot.exists() && changes.deltaRecords + changes.size() <= deltaLimit) {
+            ArrayList<String> lines = new ArrayList<>();
+            boolean newDelta = changes.deltaRecords == 0;
+            for (String id : changes.removed) {
+                lines.add(removeRecord(type, id));
+            }
+            for (String id : changes.changed) {
+                Object entity = index.get(id);
+                if (entity != null) {
+                    lines.add(putRecord(entity));
+                }
+            }
+            
+            writes.add(new PendingWrite(delta, changes, lines, newDelta ? snapshot : null));
+            changes.deltaRecords += changes.size();
+            changes.clear();
+            return true;
         }
         
-        return result;
+        writes.add(new PendingWrite(snapshot, changes, encoder.get().getBytes(StandardCharsets.UTF_8), delta));
+        changes.deltaRecords = 0;
+        changes.clear();
+        return true;
     }
     
     /**
-     * Remove an activity from the system.
+     * Wait until every captured save has been written.
+     */
+    private void awaitCapturedWrites() {
+        boolean interrupted = false;
+        synchronized (writeOrder) {
+            while (savesWritten != savesCaptured) {
+                try {
+                    writeOrder.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Perform captured writes, once every save captured before them has been written.
+     * Must not lock the data manager: a save holding it may be waiting for this one.
      * 
-     * @param activity the activity to remove
-     * @return true if the activity was successfully removed
+     * @return true if every write succeeded and nothing was held back
      */
-    public boolean removeActivity(Activity activity) {
-        if (activity == null) {
-            return false;
+    private boolean performWrites(PendingSave save) {
+        boolean interrupted = false;
+        synchronized (writeOrder) {
+            while (savesWritten != save.sequence - 1) {
+                try {
+                    writeOrder.wait();
+                } catch (InterruptedException e) {
+                    // Skipping our turn would stall every later save, so keep waiting
+                    interrupted = true;
+                }
+            }
         }
         
-        String activityId = activity.getActivityId();
-        boolean removed = activities.removeIf(a -> a.getActivityId().equals(activityId));
-        if (removed) {
-            activityMap.remove(activityId);
-            saveActivities();
+        boolean saved = save.complete;
+        try {
+            for (PendingWrite write : save.writes) {
+                try {
+                    if (write.content != null) {
+                        AtomicFile.write(write.file, write.content);
+                        if (write.foldedDelta != null && write.foldedDelta.exists() && !write.foldedDelta.delete()) {
+                            System.err.println("Could not remove folded delta file " + write.foldedDelta.getName());
+                        }
+                    } else if (write.base != null) {
+                        // Earlier saves have all been written, so the file on disk is the base
+                        ArrayList<String> lines = new ArrayList<>(write.lines.size() + 1);
+                        lines.add(deltaHeader(write.base));
+                        lines.addAll(write.lines);
+                        appendLines(write.file, lines, true);
+                    } else {
+                        appendLines(write.file, write.lines, false);
+                    }
+                } catch (IOException e) {
+                    System.err.println("Error saving " + write.file.getName() + ": " + e.getMessage());
+                    write.changes.rewrite = true;
+                    saved = false;
+                }
+            }
+        } finally {
+            synchronized (writeOrder) {
+                if (!saved) {
+                    lastFailedSave = save.sequence;
+                }
+                // A save that failed after this one was captured left changes out of it,
+                // flagged for a rewrite only once it was too late to be included
+                save.coversJournal = saved && lastFailedSave <= save.writtenBefore;
+                savesWritten = save.sequence;
+                writeOrder.notifyAll();
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
         }
-        return removed;
+        return saved;
+    }
+    
+    /**
+     * Apply a collection's delta file on top of its freshly loaded snapshot.
+     * A delta written against a different version of the snapshot is discarded.
+     * 
+     * @param snapshotFile the collection's JSON file
+     * @param changes the collection's change set
+     */
+    private void loadDelta(String snapshotFile, ChangeSet changes) {
+        changes.deltaRecords = 0;
+        // The delta only makes sense on top of its snapshot
+        if (changes.unreadable) {
+            return;
+        }
+        
+        File delta = deltaFile(snapshotFile);
+        if (!delta.exists()) {
+            return;
+        }
+        
+        boolean stale = false;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(delta), StandardCharsets.UTF_8))) {
+            String header = reader.readLine();
+            if (header == null || !header.equals(deltaHeader(new File(snapshotFile)))) {
+                stale = true;
+            } else {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isEmpty()) {
+                        applyJournalRecord(line, false);
+                        changes.deltaRecords++;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error loading " + delta.getName() + ": " + e.getMessage());
+        }
+        
+        if (stale) {
+            System.out.println("Discarding stale delta file " + delta.getName());
+            delta.delete();
+        }
+    }
+    
+    /**
+     * Get the delta file that belongs to a collection's JSON file.
+     * 
+     * @param snapshotFile the collection's JSON file
+     * @return the delta file
+     */
+    private File deltaFile(String snapshotFile) {
+        return new File(snapshotFile.replace(".json", ".delta"));
+    }
+    
+    /**
+     * Build the first line of a delta file, identifying the snapshot it applies to
+     * by its checksum, or by size and time for files written without one.
+     * 
+     * @param snapshot the collection's JSON file
+     * @return the header record
+     */
+    private String deltaHeader(File snapshot) {
+        try {
+            String checksum = AtomicFile.readChecksum(snapshot);
+            if (checksum != null) {
+                return "{\"op\":\"base\",\"crc32\":\"" + checksum + "\"}";
+            }
+        } catch (IOException e) {
+            // Fall back to size and time, which a missing file also has
+        }
+        return "{\"op\":\"base\",\"length\":" + snapshot.length()
+            + ",\"modified\":" + snapshot.lastModified() + "}";
+    }
+    
+    /**
+     * Append lines to a file and force them to disk.
+     * 
+     * @param file the file to append to
+     * @param lines the lines to append
+     * @param truncate true to start the file afresh
+     * @throws IOException if the file cannot be written
+     */
+    private void appendLines(File file, ArrayList<String> lines, boolean truncate) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file, !truncate);
+             Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+            for (String line : lines) {
+                writer.write(line);
+                writer.write('\n');
+            }
+            writer.flush();
+            out.getFD().sync();
+        }
+    }
+    
+    /**
+     * Reads one record of a data file.
+     */
+    private interface RecordReader<T> {
+        T read(JsonStreamReader reader) throws IOException;
+    }
+    
+    /**
+     * Progress and timing of loading one data file.
+     * Position and parse state are written by a loader thread and read by the thread
+     * reporting progress.
+     */
+    private static class LoadStage {
+        final String name;
+        final File file;
+        final ChangeSet changes;
+        final long size;
+        volatile long position = 0;
+        volatile boolean parsed = false;
+        long parseMillis = 0;
+        long linkMillis = 0;
+        int count = 0;
+        
+        LoadStage(String name, String path, ChangeSet changes) {
+            this.name = name;
+            this.file = new File(path);
+            this.changes = changes;
+            this.size = file.exists() ? file.length() : 0;
+        }
+        
+        void finish(int count, long linkStart) {
+            this.count = count;
+            this.linkMillis = (System.nanoTime() - linkStart) / 1_000_000;
+        }
+    }
+    
+    /**
+     * A file write captured by a save, performed after the lock is released.
+     */
+    private static class PendingWrite {
+        final File file;
+        // Marked for a full rewrite if the write fails
+        final ChangeSet changes;
+        // Full replacement content, or null to append lines
+        final byte[] content;
+        final File foldedDelta;
+        final ArrayList<String> lines;
+        // Snapshot a new delta file is based on, or null to append to the existing one
+        final File base;
+        
+        PendingWrite(File file, ChangeSet changes, byte[] content, File foldedDelta) {
+            this.file = file;
+            this.changes = changes;
+            this.content = content;
+            this.foldedDelta = foldedDelta;
+            this.lines = null;
+            this.base = null;
+        }
+        
+        PendingWrite(File file, ChangeSet changes, ArrayList<String> lines, File base) {
+            this.file = file;
+            this.changes = changes;
+            this.content = null;
+            this.foldedDelta = null;
+            this.lines = lines;
+            this.base = base;
+        }
+    }
+    
+    /**
+     * The writes captured by one save, numbered in the order they were captured.
+     */
+    private static class PendingSave {
+        final long sequence;
+        final ArrayList<PendingWrite> writes;
+        // False if some changes were held back rather than captured
+        final boolean complete;
+        // Last journal record whose change the save contains
+        final long journalSequence;
+        // Number of saves already written when this one was captured
+        final long writtenBefore;
+        // Set once written: whether the files now hold everything up to journalSequence
+        boolean coversJournal;
+        
+        PendingSave(long sequence, ArrayList<PendingWrite> writes, boolean complete,
+                    long journalSequence, long writtenBefore) {
+            this.sequence = sequence;
+            this.writes = writes;
+            this.complete = complete;
+            this.journalSequence = journalSequence;
+            this.writtenBefore = writtenBefore;
+        }
+    }
+    
+    /**
+     * A package read from file whose activity references are not yet resolved.
+     */
+    private static class PendingPackage {
+        String id;
+        String name;
+        String description;
+        long basePriceCents;
+        String destination;
+        int duration;
+        String accommodation;
+        int capacity;
+        final ArrayList<String> activityIds = new ArrayList<>();
+        ArrayList<PendingDay> days;
+    }
+    
+    /**
+     * An itinerary day read from file whose activity references are not yet resolved.
+     */
+    private static class PendingDay {
+        int dayNumber;
+        String notes = "";
+        final ArrayList<String> activityIds = new ArrayList<>();
+    }
+    
+    /**
+     * A booking read from file whose customer and package are not yet resolved.
+     */
+    private static class PendingBooking {
+        String id;
+        String customerId;
+        String serviceId;
+        String status;
+        Date date;
+        int numTravelers;
+        String specialRequests;
+        Payment payment;
+        // Only set in files written before payment details were stored
+        String paymentId;
+    }
+    
+    /**
+     * A review read from file whose customer and package are not yet resolved.
+     */
+    private static class PendingReview {
+        String id;
+        String customerId;
+        int rating;
+        String comment;
+        String packageId;
     }
-} 
\ No newline at end of file
+}
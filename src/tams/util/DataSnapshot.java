@@ -0,0 +1,77 @@
+package tams.util;
+
+import java.util.List;
+
+import tams.model.*;
+
+/**
+ * Consistent, immutable view of the data manager's collections at one moment.
+ * A snapshot can be read from any thread without locking and never changes;
+ * later changes to the data are published as a new snapshot.
+ * <p>
+ * The consistency covers which entities each collection holds, not what the
+ * entities hold. They are the live objects, and some edits are made to them in
+ * place outside the data manager's lock: the controller sets a customer's
+ * fields in updateCustomer, and a package's reviews change through
+ * TravelPackage.addReview. A reader may see such an entity part way through
+ * an edit, or see its fields change between two reads of the same snapshot.
+ */
+public class DataSnapshot {
+
+    private final long version;
+    private final List<Activity> activities;
+    private final List<Customer> customers;
+    private final List<TravelPackage> packages;
+    private final List<Booking> bookings;
+    private final List<Review> reviews;
+
+    /**
+     * Constructor that takes already immutable lists.
+     *
+     * @param version the publication number, increasing with each snapshot
+     * @param activities the activities
+     * @param customers the customers
+     * @param packages the travel packages
+     * @param bookings the bookings
+     * @param reviews the reviews
+     */
+    DataSnapshot(long version, List<Activity> activities, List<Customer> customers,
+                 List<TravelPackage> packages, List<Booking> bookings, List<Review> reviews) {
+        this.version = version;
+        this.activities = activities;
+        this.customers = customers;
+        this.packages = packages;
+        this.bookings = bookings;
+        this.reviews = reviews;
+    }
+
+    /**
+     * Get the publication number of this snapshot.
+     * A snapshot with a higher number was taken after more changes.
+     *
+     * @return the version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public List<Activity> getActivities() {
+        return activities;
+    }
+
+    public List<Customer> getCustomers() {
+        return customers;
+    }
+
+    public List<TravelPackage> getPackages() {
+        return packages;
+    }
+
+    public List<Booking> getBookings() {
+        return bookings;
+    }
+
+    public List<Review> getReviews() {
+        return reviews;
+    }
+}
@@ -0,0 +1,452 @@
+package tams.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+
+/**
+ * Minimal pull-style JSON tokenizer.
+ * Reads one token at a time from the underlying reader so that callers can
+ * build model objects directly without materialising the whole document.
+ */
+public class JsonStreamReader implements Closeable {
+
+    /**
+     * The kinds of tokens returned by {@link #peek()}.
+     */
+    public enum Token {
+        BEGIN_ARRAY,
+        END_ARRAY,
+        BEGIN_OBJECT,
+        END_OBJECT,
+        NAME,
+        STRING,
+        NUMBER,
+        BOOLEAN,
+        NULL,
+        END_DOCUMENT
+    }
+
+    // Lexical scopes kept on the nesting stack
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_ARRAY = 2;
+    private static final int NONEMPTY_ARRAY = 3;
+    private static final int EMPTY_OBJECT = 4;
+    private static final int DANGLING_NAME = 5;
+    private static final int NONEMPTY_OBJECT = 6;
+
+    private final Reader in;
+    private final char[] buffer = new char[8192];
+    private int pos = 0;
+    private int limit = 0;
+    private long charsBeforeBuffer = 0;
+
+    private int[] stack = new int[32];
+    private int depth = 0;
+
+    private Token peeked;
+    private String peekedString;
+    private boolean peekedBoolean;
+    private final StringBuilder scratch = new StringBuilder();
+
+    /**
+     * Constructor for creating a new stream reader.
+     *
+     * @param in the character source to tokenize
+     */
+    public JsonStreamReader(Reader in) {
+        this.in = in;
+        stack[depth++] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * Get the type of the next token without consuming it.
+     *
+     * @return the next token type
+     * @throws IOException if the input cannot be read or is malformed
+     */
+    public Token peek() throws IOException {
+        if (peeked != null) {
+            return peeked;
+        }
+
+        int scope = stack[depth - 1];
+        if (scope == EMPTY_ARRAY) {
+            stack[depth - 1] = NONEMPTY_ARRAY;
+        } else if (scope == NONEMPTY_ARRAY) {
+            int c = nextNonWhitespace();
+            if (c == ']') {
+                return peeked = Token.END_ARRAY;
+            }
+            if (c != ',') {
+                throw syntaxError("Expected ',' or ']'");
+            }
+        } else if (scope == EMPTY_OBJECT || scope == NONEMPTY_OBJECT) {
+            stack[depth - 1] = DANGLING_NAME;
+            int c = nextNonWhitespace();
+            if (c == '}') {
+                return peeked = Token.END_OBJECT;
+            }
+            if (scope == NONEMPTY_OBJECT) {
+                if (c != ',') {
+                    throw syntaxError("Expected ',' or '}'");
+                }
+                c = nextNonWhitespace();
+            }
+            if (c != '"') {
+                throw syntaxError("Expected a field name");
+            }
+            peekedString = readString();
+            return peeked = Token.NAME;
+        } else if (scope == DANGLING_NAME) {
+            stack[depth - 1] = NONEMPTY_OBJECT;
+            if (nextNonWhitespace() != ':') {
+                throw syntaxError("Expected ':'");
+            }
+        } else if (scope == EMPTY_DOCUMENT) {
+            stack[depth - 1] = NONEMPTY_DOCUMENT;
+        } else if (scope == NONEMPTY_DOCUMENT) {
+            if (skipWhitespace() == -1) {
+                return peeked = Token.END_DOCUMENT;
+            }
+            throw syntaxError("Unexpected content after the top-level value");
+        }
+
+        int c = nextNonWhitespace();
+        switch (c) {
+            case ']':
+                if (scope == EMPTY_ARRAY) {
+                    return peeked = Token.END_ARRAY;
+                }
+                throw syntaxError("Unexpected ']'");
+            case '[':
+                return peeked = Token.BEGIN_ARRAY;
+            case '{':
+                return peeked = Token.BEGIN_OBJECT;
+            case '"':
+                peekedString = readString();
+                return peeked = Token.STRING;
+            case 't':
+                expectLiteral("rue");
+                peekedBoolean = true;
+                return peeked = Token.BOOLEAN;
+            case 'f':
+                expectLiteral("alse");
+                peekedBoolean = false;
+                return peeked = Token.BOOLEAN;
+            case 'n':
+                expectLiteral("ull");
+                return peeked = Token.NULL;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    peekedString = readNumber((char) c);
+                    return peeked = Token.NUMBER;
+                }
+                throw syntaxError("Unexpected character '" + (char) c + "'");
+        }
+    }
+
+    /**
+     * Consume the opening bracket of an array.
+     */
+    public void beginArray() throws IOException {
+        expect(Token.BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+    }
+
+    /**
+     * Consume the closing bracket of the current array.
+     */
+    public void endArray() throws IOException {
+        expect(Token.END_ARRAY);
+        depth--;
+    }
+
+    /**
+     * Consume the opening brace of an object.
+     */
+    public void beginObject() throws IOException {
+        expect(Token.BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+    }
+
+    /**
+     * Consume the closing brace of the current object.
+     */
+    public void endObject() throws IOException {
+        expect(Token.END_OBJECT);
+        depth--;
+    }
+
+    /**
+     * Check whether the current array or object has another element.
+     *
+     * @return true if another element follows
+     */
+    public boolean hasNext() throws IOException {
+        Token token = peek();
+        return token != Token.END_ARRAY && token != Token.END_OBJECT && token != Token.END_DOCUMENT;
+    }
+
+    /**
+     * Consume the next field name.
+     *
+     * @return the field name
+     */
+    public String nextName() throws IOException {
+        expect(Token.NAME);
+        return peekedString;
+    }
+
+    /**
+     * Consume the next string value. JSON null is returned as null.
+     *
+     * @return the string value, or null
+     */
+    public String nextString() throws IOException {
+        Token token = peek();
+        if (token == Token.NULL) {
+            peeked = null;
+            return null;
+        }
+        if (token != Token.STRING && token != Token.NUMBER) {
+            throw syntaxError("Expected a string but was " + token);
+        }
+        peeked = null;
+        return peekedString;
+    }
+
+    /**
+     * Consume the next numeric value as a long.
+     *
+     * @return the value
+     */
+    public long nextLong() throws IOException {
+        expect(Token.NUMBER);
+        try {
+            return Long.parseLong(peekedString);
+        } catch (NumberFormatException e) {
+            return (long) parseDouble(peekedString);
+        }
+    }
+
+    /**
+     * Consume the next numeric value as a double.
+     *
+     * @return the value
+     */
+    public double nextDouble() throws IOException {
+        expect(Token.NUMBER);
+        return parseDouble(peekedString);
+    }
+
+    /**
+     * Consume the next numeric value as an exact decimal.
+     * Unlike {@link #nextDouble()} this keeps amounts such as 0.10 exact.
+     *
+     * @return the value
+     */
+    public BigDecimal nextDecimal() throws IOException {
+        expect(Token.NUMBER);
+        try {
+            return new BigDecimal(peekedString);
+        } catch (NumberFormatException e) {
+            throw syntaxError("Malformed number '" + peekedString + "'");
+        }
+    }
+
+    /**
+     * Consume the next boolean value.
+     *
+     * @return the value
+     */
+    public boolean nextBoolean() throws IOException {
+        expect(Token.BOOLEAN);
+        return peekedBoolean;
+    }
+
+    /**
+     * Consume a JSON null.
+     */
+    public void nextNull() throws IOException {
+        expect(Token.NULL);
+    }
+
+    /**
+     * Skip the next value, including any nested arrays or objects.
+     */
+    public void skipValue() throws IOException {
+        int nesting = 0;
+        do {
+            switch (peek()) {
+                case BEGIN_ARRAY:
+                    beginArray();
+                    nesting++;
+                    break;
+                case BEGIN_OBJECT:
+                    beginObject();
+                    nesting++;
+                    break;
+                case END_ARRAY:
+                    endArray();
+                    nesting--;
+                    break;
+                case END_OBJECT:
+                    endObject();
+                    nesting--;
+                    break;
+                case END_DOCUMENT:
+                    throw syntaxError("Unexpected end of document");
+                default:
+                    peeked = null;
+            }
+        } while (nesting > 0);
+    }
+
+    /**
+     * Get the number of characters consumed so far.
+     *
+     * @return the character offset into the input
+     */
+    public long getPosition() {
+        return charsBeforeBuffer + pos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        peeked = null;
+        depth = 0;
+        in.close();
+    }
+
+    private void expect(Token expected) throws IOException {
+        Token token = peek();
+        if (token != expected) {
+            throw syntaxError("Expected " + expected + " but was " + token);
+        }
+        peeked = null;
+    }
+
+    private void push(int scope) {
+        if (depth == stack.length) {
+            int[] grown = new int[depth * 2];
+            System.arraycopy(stack, 0, grown, 0, depth);
+            stack = grown;
+        }
+        stack[depth++] = scope;
+    }
+
+    private int read() throws IOException {
+        if (pos == limit) {
+            charsBeforeBuffer += limit;
+            pos = 0;
+            limit = 0;
+            int count = in.read(buffer, 0, buffer.length);
+            if (count <= 0) {
+                return -1;
+            }
+            limit = count;
+        }
+        return buffer[pos++];
+    }
+
+    private int skipWhitespace() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c == ' ' || c == '\t' || c == '\n' || c == '\r');
+        if (c != -1) {
+            // read() never refills between returning a character and this point
+            pos--;
+        }
+        return c;
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        int c = skipWhitespace();
+        if (c == -1) {
+            throw syntaxError("Unexpected end of input");
+        }
+        pos++;
+        return c;
+    }
+
+    private void expectLiteral(String rest) throws IOException {
+        for (int i = 0; i < rest.length(); i++) {
+            if (read() != rest.charAt(i)) {
+                throw syntaxError("Malformed literal");
+            }
+        }
+    }
+
+    private String readString() throws IOException {
+        scratch.setLength(0);
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                throw syntaxError("Unterminated string");
+            }
+            if (c == '"') {
+                return scratch.toString();
+            }
+            if (c == '\\') {
+                int escaped = read();
+                switch (escaped) {
+                    case '"': scratch.append('"'); break;
+                    case '\\': scratch.append('\\'); break;
+                    case '/': scratch.append('/'); break;
+                    case 'b': scratch.append('\b'); break;
+                    case 'f': scratch.append('\f'); break;
+                    case 'n': scratch.append('\n'); break;
+                    case 'r': scratch.append('\r'); break;
+                    case 't': scratch.append('\t'); break;
+                    case 'u':
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int digit = Character.digit(read(), 16);
+                            if (digit < 0) {
+                                throw syntaxError("Malformed unicode escape");
+                            }
+                            code = (code << 4) | digit;
+                        }
+                        scratch.append((char) code);
+                        break;
+                    default:
+                        throw syntaxError("Invalid escape sequence");
+                }
+            } else {
+                scratch.append((char) c);
+            }
+        }
+    }
+
+    private String readNumber(char first) throws IOException {
+        scratch.setLength(0);
+        scratch.append(first);
+        while (true) {
+            int c = read();
+            if ((c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+                scratch.append((char) c);
+            } else {
+                if (c != -1) {
+                    pos--;
+                }
+                return scratch.toString();
+            }
+        }
+    }
+
+    private double parseDouble(String text) throws IOException {
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            throw syntaxError("Malformed number '" + text + "'");
+        }
+    }
+
+    private IOException syntaxError(String message) {
+        return new IOException(message + " at position " + getPosition());
+    }
+}
@@ -0,0 +1,16 @@
+package tams.util;
+
+/**
+ * Callback for reporting progress while data files are being loaded.
+ */
+public interface LoadProgressListener {
+
+    /**
+     * Called periodically while a data file is being read.
+     *
+     * @param stage the name of the collection being loaded (e.g. "bookings")
+     * @param processed the number of characters consumed so far
+     * @param total the total size of the file
+     */
+    void onProgress(String stage, long processed, long total);
+}
@@ -0,0 +1,70 @@
+package tams.util;
+
+import java.util.List;
+
+/**
+ * One page of a keyset query: the entities found, in order, and a cursor to
+ * the page after them. A page is found by seeking to its cursor in an index
+ * rather than by counting rows from the start, so every page costs about the
+ * same to fetch, and entities added or removed before it do not shift it.
+ *
+ * @param <T> the type of entity
+ */
+public class Page<T> {
+
+    /**
+     * Position just after the last entity of a page, in the sort order of the
+     * query that returned it. Only meaningful to a query with the same order.
+     */
+    public static final class Cursor {
+
+        // The sort key, such as a day or a price; unused when sorting by ID alone
+        private final long key;
+        // The ID of the last entity, which breaks ties between equal keys
+        private final String id;
+
+        Cursor(long key, String id) {
+            this.key = key;
+            this.id = id;
+        }
+
+        long getKey() {
+            return key;
+        }
+
+        String getId() {
+            return id;
+        }
+    }
+
+    private final List<T> items;
+    private final Cursor next;
+
+    /**
+     * Constructor.
+     *
+     * @param items the entities on this page
+     * @param next the cursor to the next page, or null if this is the last
+     */
+    Page(List<T> items, Cursor next) {
+        this.items = items;
+        this.next = next;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * Get the cursor to pass for the next page.
+     *
+     * @return the cursor, or null if there are no more pages
+     */
+    public Cursor getNext() {
+        return next;
+    }
+
+    public boolean hasNext() {
+        return next != null;
+    }
+}
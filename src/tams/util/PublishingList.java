@@ -0,0 +1,146 @@
+package tams.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * List owned by the data manager that hands out immutable copies of itself.
+ * A copy is made on the first request after a change and shared until the
+ * next change, and every change also tells the owner that its published
+ * view is out of date. Changes must be made while the owner is locked.
+ *
+ * @param <T> the type of entity held
+ */
+class PublishingList<T> extends ArrayList<T> {
+
+    private final Runnable onChange;
+    // Copy handed out since the last change, or null
+    private List<T> published;
+
+    /**
+     * Constructor for an empty list.
+     *
+     * @param onChange called after every change
+     */
+    PublishingList(Runnable onChange) {
+        this.onChange = onChange;
+    }
+
+    /**
+     * Get an immutable copy of the list's current content.
+     *
+     * @return the copy, shared until the list next changes
+     */
+    List<T> publish() {
+        if (published == null) {
+            published = Collections.unmodifiableList(new ArrayList<>(this));
+        }
+        return published;
+    }
+
+    private void changed() {
+        published = null;
+        onChange.run();
+    }
+
+    @Override
+    public boolean add(T element) {
+        super.add(element);
+        changed();
+        return true;
+    }
+
+    @Override
+    public void add(int index, T element) {
+        super.add(index, element);
+        changed();
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends T> added) {
+        boolean result = super.addAll(added);
+        changed();
+        return result;
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends T> added) {
+        boolean result = super.addAll(index, added);
+        changed();
+        return result;
+    }
+
+    @Override
+    public T set(int index, T element) {
+        T old = super.set(index, element);
+        changed();
+        return old;
+    }
+
+    @Override
+    public T remove(int index) {
+        T old = super.remove(index);
+        changed();
+        return old;
+    }
+
+    @Override
+    public boolean remove(Object element) {
+        boolean result = super.remove(element);
+        if (result) {
+            changed();
+        }
+        return result;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        changed();
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> removed) {
+        boolean result = super.removeAll(removed);
+        changed();
+        return result;
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> retained) {
+        boolean result = super.retainAll(retained);
+        changed();
+        return result;
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super T> filter) {
+        boolean result = super.removeIf(filter);
+        if (result) {
+            changed();
+        }
+        return result;
+    }
+
+    @Override
+    public void replaceAll(UnaryOperator<T> operator) {
+        super.replaceAll(operator);
+        changed();
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        super.removeRange(fromIndex, toIndex);
+        changed();
+    }
+
+    @Override
+    public List<T> subList(int fromIndex, int toIndex) {
+        // Some sub-list changes bypass the methods above, so sub-lists are read-only
+        return Collections.unmodifiableList(super.subList(fromIndex, toIndex));
+    }
+}
@@ -0,0 +1,128 @@
+package tams.util;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import tams.model.RatingListener;
+import tams.model.TravelPackage;
+
+/**
+ * Travel packages with at least one review, kept ordered by average rating.
+ * Each package is held under the rating totals it had when last updated, so a
+ * package's position can be found and moved without looking at its reviews.
+ * Registered as a package's {@link RatingListener}, the ranking follows every
+ * review added, removed or re-rated.
+ */
+public class RatingRanking implements RatingListener {
+
+    // Highest average first, then most reviewed, then by package ID
+    private final TreeSet<Entry> ranked = new TreeSet<>();
+    private final Map<TravelPackage, Entry> entries = new IdentityHashMap<>();
+
+    /**
+     * Add a package, or move it to match its current rating totals.
+     * Packages without reviews are left out of the ranking.
+     *
+     * @param travelPackage the package
+     */
+    public synchronized void update(TravelPackage travelPackage) {
+        Entry old = entries.remove(travelPackage);
+        if (old != null) {
+            ranked.remove(old);
+        }
+        if (travelPackage.getReviewCount() > 0) {
+            Entry entry = new Entry(travelPackage, travelPackage.getRatingSum(), travelPackage.getReviewCount());
+            entries.put(travelPackage, entry);
+            ranked.add(entry);
+        }
+    }
+
+    @Override
+    public void ratingsChanged(TravelPackage travelPackage) {
+        update(travelPackage);
+    }
+
+    /**
+     * Remove a package from the ranking.
+     *
+     * @param travelPackage the package, or null
+     */
+    public synchronized void remove(TravelPackage travelPackage) {
+        Entry old = travelPackage != null ? entries.remove(travelPackage) : null;
+        if (old != null) {
+            ranked.remove(old);
+        }
+    }
+
+    /**
+     * Remove every package.
+     */
+    public synchronized void clear() {
+        ranked.clear();
+        entries.clear();
+    }
+
+    /**
+     * Get the best rated packages.
+     *
+     * @param limit the maximum number of packages to return
+     * @return the packages, highest average rating first
+     */
+    public synchronized List<TravelPackage> top(int limit) {
+        ArrayList<TravelPackage> result = new ArrayList<>(Math.min(limit, ranked.size()));
+        for (Entry entry : ranked) {
+            if (result.size() >= limit) {
+                break;
+            }
+            result.add(entry.travelPackage);
+        }
+        return result;
+    }
+
+    /**
+     * Get the number of ranked packages.
+     *
+     * @return the number of packages with at least one review
+     */
+    public synchronized int size() {
+        return ranked.size();
+    }
+
+    /**
+     * A package with the rating totals it is ranked under.
+     */
+    private static class Entry implements Comparable<Entry> {
+        final TravelPackage travelPackage;
+        final long ratingSum;
+        final int reviewCount;
+
+        Entry(TravelPackage travelPackage, long ratingSum, int reviewCount) {
+            this.travelPackage = travelPackage;
+            this.ratingSum = ratingSum;
+            this.reviewCount = reviewCount;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            // Compare the averages exactly by cross-multiplying
+            int byAverage = Long.compare(other.ratingSum * reviewCount, ratingSum * other.reviewCount);
+            if (byAverage != 0) {
+                return byAverage;
+            }
+            int byCount = Integer.compare(other.reviewCount, reviewCount);
+            if (byCount != 0) {
+                return byCount;
+            }
+            int byId = travelPackage.getServiceId().compareTo(other.travelPackage.getServiceId());
+            if (byId != 0) {
+                return byId;
+            }
+            // Distinct packages sharing an ID, such as during replay, must not collapse
+            return Integer.compare(System.identityHashCode(travelPackage),
+                System.identityHashCode(other.travelPackage));
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package tams.util;
+
+/**
+ * Command-line tool that converts the data set between the JSON files and the
+ * binary snapshot.
+ * <p>
+ * Usage: {@code java tams.util.SnapshotConverter to-binary|to-json}
+ */
+public class SnapshotConverter {
+
+    public static void main(String[] args) {
+        if (args.length != 1 || !("to-binary".equals(args[0]) || "to-json".equals(args[0]))) {
+            System.err.println("Usage: SnapshotConverter to-binary|to-json");
+            System.exit(2);
+        }
+
+        boolean toBinary = "to-binary".equals(args[0]);
+
+        // Load from the format being converted from
+        System.setProperty(DataManager.FORMAT_PROPERTY, toBinary ? "json" : "binary");
+        DataManager dataManager = new DataManager();
+        dataManager.loadData();
+
+        boolean converted = toBinary ? dataManager.exportSnapshot() : dataManager.exportJson();
+        if (!converted) {
+            System.err.println("Conversion failed");
+            System.exit(1);
+        }
+        System.out.println("Converted data " + (toBinary ? "to the binary snapshot" : "to JSON files"));
+    }
+}
@@ -0,0 +1,142 @@
+package tams.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Inverted index answering case-insensitive substring queries over one text
+ * field of a set of entities.
+ * Every entity is filed under each three-character sequence (trigram) of its
+ * lowercased text. A query is answered by intersecting the entities filed under
+ * the query's trigrams, starting from the shortest list, and checking the few
+ * candidates left against the full text. Queries shorter than three characters
+ * have no trigrams and fall back to checking every entity.
+ *
+ * @param <T> the type of entity indexed
+ */
+public class TrigramIndex<T> {
+
+    // Current lowercased text of each entity, for replacing and verifying
+    private final Map<T, String> texts = new LinkedHashMap<>();
+    // Entities by trigram, each packed into a long as three 16-bit characters
+    private final Map<Long, Set<T>> postings = new HashMap<>();
+
+    /**
+     * Add an entity, or replace the text it is indexed under.
+     *
+     * @param entity the entity
+     * @param text the text to index; null is indexed as empty
+     */
+    public synchronized void put(T entity, String text) {
+        String lower = text != null ? text.toLowerCase() : "";
+        String old = texts.put(entity, lower);
+        if (old != null) {
+            if (old.equals(lower)) {
+                return;
+            }
+            for (long trigram : trigrams(old)) {
+                Set<T> filed = postings.get(trigram);
+                if (filed != null && filed.remove(entity) && filed.isEmpty()) {
+                    postings.remove(trigram);
+                }
+            }
+        }
+        for (long trigram : trigrams(lower)) {
+            postings.computeIfAbsent(trigram, k -> new LinkedHashSet<>()).add(entity);
+        }
+    }
+
+    /**
+     * Remove an entity from the index.
+     *
+     * @param entity the entity
+     */
+    public synchronized void remove(T entity) {
+        String old = texts.remove(entity);
+        if (old == null) {
+            return;
+        }
+        for (long trigram : trigrams(old)) {
+            Set<T> filed = postings.get(trigram);
+            if (filed != null && filed.remove(entity) && filed.isEmpty()) {
+                postings.remove(trigram);
+            }
+        }
+    }
+
+    /**
+     * Remove every entity.
+     */
+    public synchronized void clear() {
+        texts.clear();
+        postings.clear();
+    }
+
+    /**
+     * Find the entities whose text contains a query, ignoring case.
+     *
+     * @param query the text to look for; an empty query matches everything
+     * @return the matching entities
+     */
+    public synchronized List<T> search(String query) {
+        String lower = query.toLowerCase();
+        ArrayList<T> result = new ArrayList<>();
+        Set<Long> queryTrigrams = trigrams(lower);
+        if (queryTrigrams.isEmpty()) {
+            for (Map.Entry<T, String> entry : texts.entrySet()) {
+                if (entry.getValue().contains(lower)) {
+                    result.add(entry.getKey());
+                }
+            }
+            return result;
+        }
+
+        ArrayList<Set<T>> lists = new ArrayList<>(queryTrigrams.size());
+        for (long trigram : queryTrigrams) {
+            Set<T> filed = postings.get(trigram);
+            if (filed == null) {
+                return result;
+            }
+            lists.add(filed);
+        }
+        lists.sort((a, b) -> Integer.compare(a.size(), b.size()));
+
+        for (T candidate : lists.get(0)) {
+            boolean inAll = true;
+            for (int i = 1; i < lists.size() && inAll; i++) {
+                inAll = lists.get(i).contains(candidate);
+            }
+            // Trigrams in any order would match, so the text itself has the final say
+            if (inAll && texts.get(candidate).contains(lower)) {
+                result.add(candidate);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the number of entities in the index.
+     *
+     * @return the entity count
+     */
+    public synchronized int size() {
+        return texts.size();
+    }
+
+    private static Set<Long> trigrams(String text) {
+        if (text.length() < 3) {
+            return Collections.emptySet();
+        }
+        Set<Long> trigrams = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            trigrams.add(((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2));
+        }
+        return trigrams;
+    }
+}
@@ -5,6 +5,8 @@ import javax.swing.table.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
 
 import tams.controller.TravelAgencyController;
 import tams.model.*;
@@ -16,7 +18,8 @@ public class ActivitiesPanel extends BasePanel {
     
     // Table components
     private JTable activitiesTable;
-    private DefaultTableModel tableModel;
+    private EntityTableModel<Activity> tableModel;
+    private TableRowSorter<EntityTableModel<Activity>> sorter;
     
     // Filter components
     private JTextField nameField;
@@ -46,6 +49,9 @@ public class ActivitiesPanel extends BasePanel {
     public ActivitiesPanel(TravelAgencyController controller, MainWindow mainWindow) {
         super(controller, mainWindow);
         isInitialized = true;
+        
+        // Patch the table when activities change rather than finding every row again
+        controller.addChangeListener(Activity.class, event -> patchRows(tableModel, event));
     }
     
     @Override
@@ -78,6 +84,9 @@ public class ActivitiesPanel extends BasePanel {
         JLabel costLabel = new JLabel("Max Cost: $200");
         costRangeSlider.addChangeListener(e -> {
             costLabel.setText("Max Cost: $" + costRangeSlider.getValue());
+            if (!costRangeSlider.getValueIsAdjusting()) {
+                applyFilters();
+            }
         });
         costPanel.add(costRangeSlider, BorderLayout.CENTER);
         costPanel.add(costLabel, BorderLayout.SOUTH);
@@ -99,6 +108,7 @@ public class ActivitiesPanel extends BasePanel {
         
         searchButton.addActionListener(e -> applyFilters());
         clearButton.addActionListener(e -> clearFilters());
+        filterWhileTyping(this::applyFilters, nameField, locationField, minDurationField, maxDurationField);
         
         buttonPanel.add(searchButton);
         buttonPanel.add(clearButton);
@@ -126,25 +136,24 @@ public class ActivitiesPanel extends BasePanel {
         headerPanel.setBorder(BorderFactory.createEmptyBorder(0, 0, 10, 0));
         headerPanel.add(new JLabel("Activities", JLabel.LEFT), BorderLayout.WEST);
         
-        // Create the table
-        String[] columnNames = {"ID", "Name", "Location", "Duration (Hours)", "Cost"};
-        tableModel = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false; // Make table cells non-editable
-            }
-        };
+        // Create the table; cells are formatted from the activity as they are drawn
+        tableModel = new EntityTableModel<Activity>()
+            .addColumn("ID", Activity::getActivityId)
+            .addColumn("Name", Activity::getName)
+            .addColumn("Location", Activity::getLocation)
+            .addColumn("Duration (Hours)", Activity::getDuration)
+            .addColumn("Cost", activity -> String.format("$%.2f", activity.getCost()));
         
         activitiesTable = new JTable(tableModel);
+        sorter = createFilterSorter(activitiesTable, tableModel);
         activitiesTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         activitiesTable.getSelectionModel().addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting()) {
+                // The selection is lost when the filters hide the selected row
                 int selectedRow = activitiesTable.getSelectedRow();
-                if (selectedRow != -1) {
-                    String activityId = (String) tableModel.getValueAt(selectedRow, 0);
-                    selectedActivity = findActivityById(activityId);
-                    updateButtonStates();
-                }
+                selectedActivity = selectedRow != -1
+                    ? tableModel.getRow(activitiesTable.convertRowIndexToModel(selectedRow)) : null;
+                updateButtonStates();
             }
         });
         
@@ -215,41 +224,22 @@ public class ActivitiesPanel extends BasePanel {
             return;
         }
         
-        // Clear the table
-        tableModel.setRowCount(0);
-        
-        // Get activities from controller (filtered if applied)
-        ArrayList<Activity> activities = getFilteredActivities();
-        
-        // Populate the table
-        for (Activity activity : activities) {
-            Object[] rowData = {
-                activity.getActivityId(),
-                activity.getName(),
-                activity.getLocation(),
-                activity.getDuration(),
-                String.format("$%.2f", activity.getCost())
-            };
-            tableModel.addRow(rowData);
-        }
-        
-        // Update status
-        updateStatus("Loaded " + activities.size() + " activities");
-        
         // Update button states
         selectedActivity = null;
         updateButtonStates();
+        
+        showActivities(true);
     }
     
     /**
-     * Apply the filters and refresh the data.
+     * Apply the filters to the activities already shown.
      */
     private void applyFilters() {
-        refreshData();
+        showActivities(false);
     }
     
     /**
-     * Clear all filters and refresh the data.
+     * Clear all filters and show every activity.
      */
     private void clearFilters() {
         // Reset all filter fields
@@ -259,19 +249,26 @@ public class ActivitiesPanel extends BasePanel {
         minDurationField.setText("1");
         maxDurationField.setText("24");
         
-        // Refresh the data
-        refreshData();
+        // Show every activity again
+        applyFilters();
     }
     
     /**
-     * Get activities filtered by the current filter settings.
+     * Show the activities matching the current filter settings.
      * 
-     * @return filtered list of activities
+     * @param reload true to fetch the activities again
      */
-    private ArrayList<Activity> getFilteredActivities() {
-        ArrayList<Activity> allActivities = controller.getActivities();
-        ArrayList<Activity> filteredActivities = new ArrayList<>();
-        
+    private void showActivities(boolean reload) {
+        showFiltered(sorter, controller.getActivities(), controller::getActivities,
+            currentFilter(), reload, count -> updateStatus("Loaded " + count + " activities"));
+    }
+    
+    /**
+     * Get the test for the current filter settings. The filter fields are read now.
+     * 
+     * @return the test an activity must pass to be shown
+     */
+    private Predicate<Activity> currentFilter() {
         // Get filter values
         String name = nameField.getText().trim().toLowerCase();
         String location = locationField.getText().trim().toLowerCase();
@@ -291,49 +288,28 @@ public class ActivitiesPanel extends BasePanel {
         } catch (NumberFormatException e) {
             maxDuration = Integer.MAX_VALUE;
         }
+        int shortest = minDuration;
+        int longest = maxDuration;
         
-        // Apply filters
-        for (Activity activity : allActivities) {
+        return activity -> {
             // Skip if name doesn't match
             if (!name.isEmpty() && !activity.getName().toLowerCase().contains(name)) {
-                continue;
+                return false;
             }
             
             // Skip if location doesn't match
             if (!location.isEmpty() && !activity.getLocation().toLowerCase().contains(location)) {
-                continue;
+                return false;
             }
             
             // Skip if cost is too high
             if (activity.getCost() > maxCost) {
-                continue;
+                return false;
             }
             
             // Skip if duration is outside range
-            if (activity.getDuration() < minDuration || activity.getDuration() > maxDuration) {
-                continue;
-            }
-            
-            // Activity passed all filters
-            filteredActivities.add(activity);
-        }
-        
-        return filteredActivities;
-    }
-    
-    /**
-     * Find an activity by its ID.
-     * 
-     * @param activityId the ID to search for
-     * @return the found Activity or null
-     */
-    private Activity findActivityById(String activityId) {
-        for (Activity activity : controller.getActivities()) {
-            if (activity.getActivityId().equals(activityId)) {
-                return activity;
-            }
-        }
-        return null;
+            return activity.getDuration() >= shortest && activity.getDuration() <= longest;
+        };
     }
     
     /**
@@ -405,9 +381,6 @@ public class ActivitiesPanel extends BasePanel {
             // Save data
             controller.saveData();
             
-            // Refresh the table
-            refreshData();
-            
             // Close the dialog
             dialog.dispose();
             
@@ -496,17 +469,11 @@ public class ActivitiesPanel extends BasePanel {
             }
             
             // Update the activity
-            selectedActivity.setName(name);
-            selectedActivity.setLocation(location);
-            selectedActivity.setDuration(duration);
-            selectedActivity.setCost(cost);
+            controller.updateActivity(selectedActivity, name, location, duration, cost);
             
             // Save data
             controller.saveData();
             
-            // Refresh the table
-            refreshData();
-            
             // Close the dialog
             dialog.dispose();
             
@@ -542,15 +509,7 @@ public class ActivitiesPanel extends BasePanel {
         
         if (result == JOptionPane.YES_OPTION) {
             // Check if the activity is used in any packages
-            boolean isUsed = false;
-            for (TravelPackage pkg : controller.getAllTravelPackages()) {
-                if (pkg.getActivities().contains(selectedActivity)) {
-                    isUsed = true;
-                    break;
-                }
-            }
-            
-            if (isUsed) {
+            if (controller.isActivityInUse(selectedActivity)) {
                 JOptionPane.showMessageDialog(this,
                     "Cannot delete this activity because it is used in one or more travel packages.",
                     "Deletion Error",
@@ -563,8 +522,8 @@ public class ActivitiesPanel extends BasePanel {
             boolean success = controller.removeActivity(selectedActivity);
             
             if (success) {
-                // Refresh the table
-                refreshData();
+                selectedActivity = null;
+                updateButtonStates();
                 
                 // Update status
                 updateStatus("Activity deleted: " + activityName);
@@ -627,13 +586,11 @@ public class ActivitiesPanel extends BasePanel {
         packagesPanel.setAlignmentX(Component.LEFT_ALIGNMENT);
         
         boolean foundInPackage = false;
-        for (TravelPackage pkg : controller.getAllTravelPackages()) {
-            if (pkg.getActivities().contains(selectedActivity)) {
-                JLabel packageLabel = new JLabel(pkg.getName() + " (" + pkg.getServiceId() + ")");
-                packageLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
-                packagesPanel.add(packageLabel);
-                foundInPackage = true;
-            }
+        for (TravelPackage pkg : controller.getPackagesUsingActivity(selectedActivity)) {
+            JLabel packageLabel = new JLabel(pkg.getName() + " (" + pkg.getServiceId() + ")");
+            packageLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
+            packagesPanel.add(packageLabel);
+            foundInPackage = true;
         }
         
         if (!foundInPackage) {
@@ -1,7 +1,21 @@
 package tams.view;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.table.TableRowSorter;
+import javax.swing.text.JTextComponent;
 import java.awt.*;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
+import tams.controller.EntityChangeEvent;
 import tams.controller.TravelAgencyController;
 
 /**
@@ -18,6 +32,22 @@ public abstract class BasePanel extends JPanel {
     protected JPanel contentPanel;
     protected JPanel buttonPanel;
     
+    // Tables of up to this many entities hold them all and are filtered in place
+    protected static final int LIVE_FILTER_LIMIT = 50_000;
+    // How long typing must pause before the filters are applied
+    private static final int TYPING_DELAY_MS = 150;
+    // Marks a table holding every entity, filtered by its row sorter
+    private static final Predicate<Object> SHOW_ALL = entity -> true;
+    
+    // The query filling this panel's table, if one is still running
+    private TableQuery<?> currentQuery;
+    // Pages rows into this panel's table as it is scrolled, if it is too large to load
+    private TablePager<?> currentPager;
+    // The filter each table's rows were last found with
+    private final Map<EntityTableModel<?>, Predicate<?>> shownFilters = new HashMap<>();
+    // Applies the filters once typing pauses
+    private Timer typingTimer;
+    
     /**
      * Constructor for the base panel.
      * 
@@ -77,6 +107,286 @@ public abstract class BasePanel extends JPanel {
      */
     public abstract void refreshData();
     
+    /**
+     * Apply the filters whenever the text in any of the fields changes, once
+     * typing has paused, so results follow what is typed without a search
+     * for every key.
+     * 
+     * @param applyFilters applies the current filter settings
+     * @param fields the filter fields to watch
+     */
+    protected void filterWhileTyping(Runnable applyFilters, JTextComponent... fields) {
+        typingTimer = new Timer(TYPING_DELAY_MS, e -> applyFilters.run());
+        typingTimer.setRepeats(false);
+        
+        DocumentListener listener = new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                typingTimer.restart();
+            }
+            
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                typingTimer.restart();
+            }
+            
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                typingTimer.restart();
+            }
+        };
+        for (JTextComponent field : fields) {
+            field.getDocument().addDocumentListener(listener);
+        }
+    }
+    
+    /**
+     * Create a row sorter that only filters a table, leaving the rows in model order.
+     * Rows are filtered again when they are updated, so an entity that has
+     * changed is hidden or shown to match.
+     * 
+     * @param table the table
+     * @param model the table's model
+     * @return the sorter, installed on the table
+     */
+    protected <T> TableRowSorter<EntityTableModel<T>> createFilterSorter(JTable table, EntityTableModel<T> model) {
+        TableRowSorter<EntityTableModel<T>> sorter = new TableRowSorter<>(model);
+        for (int column = 0; column < model.getColumnCount(); column++) {
+            sorter.setSortable(column, false);
+        }
+        sorter.setSortsOnUpdates(true);
+        table.setRowSorter(sorter);
+        return sorter;
+    }
+    
+    /**
+     * Show the entities that pass a filter. Up to {@link #LIVE_FILTER_LIMIT}
+     * entities are all held by the model and the filter is applied by the row
+     * sorter, so changing it re-creates no rows and needs no query. Larger
+     * collections are searched in the background from index-backed candidates.
+     * Must be called on the Event Dispatch Thread.
+     * 
+     * @param sorter the table's row sorter
+     * @param all every entity that could be shown
+     * @param candidates finds the entities worth testing on a worker thread, when there are too many to hold
+     * @param filter the test
+     * @param reload true to fetch the rows again even if the model already holds them
+     * @param onDone called on the Event Dispatch Thread with the number of rows shown
+     */
+    protected <T> void showFiltered(TableRowSorter<EntityTableModel<T>> sorter, List<T> all,
+                                    Callable<? extends Collection<? extends T>> candidates,
+                                    Predicate<? super T> filter, boolean reload, IntConsumer onDone) {
+        stopTyping();
+        
+        EntityTableModel<T> model = sorter.getModel();
+        if (all.size() > LIVE_FILTER_LIMIT) {
+            sorter.setRowFilter(null);
+            runQuery(model, candidates, filter, onDone);
+            return;
+        }
+        
+        if (reload || shownFilters.get(model) != SHOW_ALL) {
+            cancelQuery();
+            shownFilters.put(model, SHOW_ALL);
+            model.setRows(all);
+        }
+        sorter.setRowFilter(new RowFilter<EntityTableModel<T>, Integer>() {
+            @Override
+            public boolean include(Entry<? extends EntityTableModel<T>, ? extends Integer> entry) {
+                return filter.test(entry.getModel().getRow(entry.getIdentifier()));
+            }
+        });
+        onDone.accept(sorter.getViewRowCount());
+    }
+    
+    /**
+     * Show a collection too large to load in full a page at a time, fetching
+     * more as the table is scrolled. Rows already shown are patched when their
+     * entities change; new entities appear when the page they fall in is reached.
+     * Must be called on the Event Dispatch Thread.
+     * 
+     * @param sorter the table's row sorter
+     * @param scrollPane the scroll pane holding the table
+     * @param source fetches the pages on a worker thread
+     * @param onLoaded called on the Event Dispatch Thread with the number of rows loaded so far
+     */
+    protected <T> void showPages(TableRowSorter<EntityTableModel<T>> sorter, JScrollPane scrollPane,
+                                 TablePager.PageSource<T> source, IntConsumer onLoaded) {
+        stopTyping();
+        cancelQuery();
+        
+        EntityTableModel<T> model = sorter.getModel();
+        sorter.setRowFilter(null);
+        // Only the rows already paged in are patched; the rest are found when their page is
+        shownFilters.put(model, (Predicate<T>) entity -> model.indexOf(entity) >= 0);
+        
+        TablePager<T> pager = new TablePager<>(model, scrollPane.getVerticalScrollBar(), source, onLoaded);
+        currentPager = pager;
+        pager.start();
+    }
+    
+    /**
+     * Stop waiting to apply the filters; anything typed so far is about to be applied.
+     */
+    private void stopTyping() {
+        if (typingTimer != null) {
+            typingTimer.stop();
+        }
+    }
+    
+    /**
+     * Empty a table and fill it in the background with the candidates that pass
+     * a filter. The filter is kept so that changes to single entities can be
+     * patched into the table later. Must be called on the Event Dispatch Thread.
+     * 
+     * @param model the table model to fill
+     * @param candidates finds the entities to test, on a worker thread
+     * @param filter the test, which may run on either thread
+     * @param onDone called on the Event Dispatch Thread with the number of rows found
+     */
+    protected <T> void runQuery(EntityTableModel<T> model, Callable<? extends Collection<? extends T>> candidates,
+                                Predicate<? super T> filter, IntConsumer onDone) {
+        shownFilters.put(model, filter);
+        runQuery(model, query -> query.addMatching(candidates.call(), filter), onDone);
+    }
+    
+    /**
+     * Empty a table and fill it from a query run in the background, cancelling
+     * any query this panel still has running. Progress is shown in the status bar.
+     * Must be called on the Event Dispatch Thread.
+     * 
+     * @param model the table model to fill
+     * @param query finds the rows on a worker thread
+     * @param onDone called on the Event Dispatch Thread with the number of rows found
+     */
+    private <T> void runQuery(EntityTableModel<T> model, TableQuery.Query<T> query, IntConsumer onDone) {
+        cancelQuery();
+        model.setRows(Collections.emptyList());
+        
+        TableQuery<T> worker = new TableQuery<>(model, query, onDone);
+        currentQuery = worker;
+        if (mainWindow != null) {
+            mainWindow.showProgress(worker, "0%", 0);
+        }
+        worker.addPropertyChangeListener(e -> {
+            if ("progress".equals(e.getPropertyName()) && !worker.isDone()) {
+                if (mainWindow != null) {
+                    mainWindow.showProgress(worker, e.getNewValue() + "%", (Integer) e.getNewValue());
+                }
+            } else if ("state".equals(e.getPropertyName()) && e.getNewValue() == SwingWorker.StateValue.DONE) {
+                queryFinished(worker);
+            }
+        });
+        worker.execute();
+    }
+    
+    /**
+     * Cancel the query or paging this panel has running, if any.
+     */
+    private void cancelQuery() {
+        // Not interrupted: the query may be waiting on the data manager, which keeps waiting when interrupted
+        if (currentQuery != null) {
+            currentQuery.cancel(false);
+            currentQuery = null;
+        }
+        if (currentPager != null) {
+            currentPager.stop();
+            currentPager = null;
+        }
+    }
+    
+    /**
+     * Patch a table for a change to one entity instead of finding all its rows
+     * again. A created or updated entity is shown if it passes the table's filter
+     * and removed if it no longer does; a deleted entity is removed.
+     * Changes made off the Event Dispatch Thread are patched on it.
+     * 
+     * @param model the table model to patch
+     * @param event the change
+     */
+    protected <T> void patchRows(EntityTableModel<T> model, EntityChangeEvent<T> event) {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(() -> patchRows(model, event));
+            return;
+        }
+        
+        @SuppressWarnings("unchecked")
+        Predicate<? super T> filter = (Predicate<? super T>) shownFilters.get(model);
+        if (filter == null) {
+            // Not filled yet; the change will be found when it is
+            return;
+        }
+        if (currentQuery != null) {
+            // The running query may or may not have seen the change, so find the rows again
+            refreshData();
+            return;
+        }
+        
+        T entity = event.getEntity();
+        if (event.getType() != EntityChangeEvent.Type.DELETED && filter.test(entity)) {
+            if (!model.updateRow(entity)) {
+                model.addRow(entity);
+            }
+        } else {
+            model.removeRow(entity);
+        }
+    }
+    
+    /**
+     * Redraw the row showing an entity after something shown in it has changed,
+     * such as a customer's booking count. The row is not filtered again.
+     * 
+     * @param model the table model
+     * @param entity the entity shown in the row
+     */
+    protected <T> void redrawRow(EntityTableModel<T> model, T entity) {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(() -> redrawRow(model, entity));
+            return;
+        }
+        model.updateRow(entity);
+    }
+    
+    /**
+     * Redraw every row after an entity shown in many rows has changed, such as
+     * the customer named in bookings. Only the rows on screen are drawn again,
+     * and the rows are not filtered again.
+     * 
+     * @param model the table model
+     */
+    protected void redrawRows(EntityTableModel<?> model) {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(() -> redrawRows(model));
+            return;
+        }
+        if (model.getRowCount() > 0) {
+            model.fireTableRowsUpdated(0, model.getRowCount() - 1);
+        }
+    }
+    
+    /**
+     * Clear up after a query has finished, been cancelled or failed.
+     * 
+     * @param worker the query
+     */
+    private void queryFinished(TableQuery<?> worker) {
+        if (mainWindow != null) {
+            mainWindow.hideProgress(worker);
+        }
+        if (currentQuery == worker) {
+            currentQuery = null;
+        }
+        if (!worker.isCancelled()) {
+            try {
+                worker.get();
+            } catch (ExecutionException e) {
+                updateStatus("Error loading data: " + e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
     /**
      * Utility method to create a standardized button.
      * 
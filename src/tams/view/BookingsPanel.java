@@ -6,12 +6,16 @@ import javax.swing.border.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.*;
 import java.util.List;
+import java.util.function.Predicate;
 
 import tams.controller.TravelAgencyController;
 import tams.exceptions.*;
 import tams.model.*;
+import tams.util.BookingOrder;
 
 /**
  * Panel for managing travel bookings.
@@ -20,12 +24,16 @@ public class BookingsPanel extends BasePanel {
     
     // Table components
     private JTable bookingsTable;
-    private DefaultTableModel tableModel;
+    private EntityTableModel<Booking> tableModel;
+    private TableRowSorter<EntityTableModel<Booking>> sorter;
+    private JScrollPane scrollPane;
     
     // Filter components
     private JTextField customerField;
     private JTextField packageField;
     private JComboBox<BookingStatus> statusComboBox;
+    private JTextField fromDateField;
+    private JTextField toDateField;
     private JButton searchButton;
     private JButton clearButton;
     
@@ -53,6 +61,12 @@ public class BookingsPanel extends BasePanel {
     public BookingsPanel(TravelAgencyController controller, MainWindow mainWindow) {
         super(controller, mainWindow);
         isInitialized = true;
+        
+        // Patch the table when bookings change rather than finding every row again,
+        // and redraw the names shown when a customer or package changes
+        controller.addChangeListener(Booking.class, event -> patchRows(tableModel, event));
+        controller.addChangeListener(Customer.class, event -> redrawRows(tableModel));
+        controller.addChangeListener(TravelPackage.class, event -> redrawRows(tableModel));
     }
     
     @Override
@@ -97,6 +111,16 @@ public class BookingsPanel extends BasePanel {
         });
         statusPanel.add(statusComboBox, BorderLayout.CENTER);
         
+        // Booking date range filter
+        JPanel datePanel = new JPanel(new GridLayout(2, 2, 5, 5));
+        datePanel.setBorder(BorderFactory.createTitledBorder("Booking Date (yyyy-MM-dd)"));
+        fromDateField = new JTextField(10);
+        toDateField = new JTextField(10);
+        datePanel.add(new JLabel("From:"));
+        datePanel.add(fromDateField);
+        datePanel.add(new JLabel("To:"));
+        datePanel.add(toDateField);
+        
         // Search and clear buttons
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
         searchButton = new JButton("Search");
@@ -104,6 +128,8 @@ public class BookingsPanel extends BasePanel {
         
         searchButton.addActionListener(e -> applyFilters());
         clearButton.addActionListener(e -> clearFilters());
+        filterWhileTyping(this::applyFilters, customerField, packageField, fromDateField, toDateField);
+        statusComboBox.addActionListener(e -> applyFilters());
         
         buttonPanel.add(searchButton);
         buttonPanel.add(clearButton);
@@ -115,6 +141,8 @@ public class BookingsPanel extends BasePanel {
         filterPanel.add(Box.createVerticalStrut(10));
         filterPanel.add(statusPanel);
         filterPanel.add(Box.createVerticalStrut(10));
+        filterPanel.add(datePanel);
+        filterPanel.add(Box.createVerticalStrut(10));
         filterPanel.add(buttonPanel);
         filterPanel.add(Box.createVerticalGlue());
     }
@@ -129,25 +157,25 @@ public class BookingsPanel extends BasePanel {
         headerPanel.setBorder(BorderFactory.createEmptyBorder(0, 0, 10, 0));
         headerPanel.add(new JLabel("Bookings", JLabel.LEFT), BorderLayout.WEST);
         
-        // Create the table
-        String[] columnNames = {"ID", "Customer", "Package", "Status", "Booking Date", "Price"};
-        tableModel = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false; // Make table cells non-editable
-            }
-        };
+        // Create the table; cells are formatted from the booking as they are drawn
+        tableModel = new EntityTableModel<Booking>()
+            .addColumn("ID", Booking::getBookingId)
+            .addColumn("Customer", booking -> booking.getCustomer().getName())
+            .addColumn("Package", booking -> booking.getPackage().getName())
+            .addColumn("Status", booking -> booking.getStatus().getDisplayName())
+            .addColumn("Booking Date", booking -> dateFormat.format(booking.getBookingDate()))
+            .addColumn("Price", booking -> String.format("$%.2f", booking.getTotalPrice()));
         
         bookingsTable = new JTable(tableModel);
+        sorter = createFilterSorter(bookingsTable, tableModel);
         bookingsTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         bookingsTable.getSelectionModel().addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting()) {
+                // The selection is lost when the filters hide the selected row
                 int selectedRow = bookingsTable.getSelectedRow();
-                if (selectedRow != -1) {
-                    String bookingId = (String) tableModel.getValueAt(selectedRow, 0);
-                    selectedBooking = findBookingById(bookingId);
-                    updateButtonStates();
-                }
+                selectedBooking = selectedRow != -1
+                    ? tableModel.getRow(bookingsTable.convertRowIndexToModel(selectedRow)) : null;
+                updateButtonStates();
             }
         });
         
@@ -160,7 +188,7 @@ public class BookingsPanel extends BasePanel {
         bookingsTable.getColumnModel().getColumn(5).setPreferredWidth(100);  // Price
         
         // Add table to a scroll pane
-        JScrollPane scrollPane = createScrollPane(bookingsTable);
+        scrollPane = createScrollPane(bookingsTable);
         
         // Add components to content panel
         contentPanel.add(headerPanel, BorderLayout.NORTH);
@@ -223,124 +251,175 @@ public class BookingsPanel extends BasePanel {
     @Override
     public void refreshData() {
         if (isInitialized && mainWindow != null) {
-            // Clear the table
-            tableModel.setRowCount(0);
-            
-            // Get bookings filtered by current filter settings
-            ArrayList<Booking> bookings = getFilteredBookings();
-            
-            // Add bookings to the table
-            for (Booking booking : bookings) {
-                Customer customer = booking.getCustomer();
-                TravelPackage pkg = booking.getPackage();
-                
-                Object[] row = {
-                    booking.getBookingId(),
-                    customer.getName(),
-                    pkg.getName(),
-                    booking.getStatus().getDisplayName(),
-                    dateFormat.format(booking.getBookingDate()),
-                    String.format("$%.2f", booking.getTotalPrice())
-                };
-                tableModel.addRow(row);
-            }
-            
-            // Update status
-            updateStatus("Bookings loaded: " + bookings.size());
-            
             // Clear selection
             selectedBooking = null;
             updateButtonStates();
+            
+            showBookings(true);
         }
     }
     
     /**
-     * Apply the current filters and refresh the data.
+     * Apply the current filters to the bookings already shown.
      */
     private void applyFilters() {
-        refreshData();
+        showBookings(false);
     }
     
     /**
-     * Clear all filters and refresh the data.
+     * Clear all filters and show every booking.
      */
     private void clearFilters() {
         customerField.setText("");
         packageField.setText("");
         statusComboBox.setSelectedIndex(0);
+        fromDateField.setText("");
+        toDateField.setText("");
         
-        refreshData();
+        applyFilters();
     }
     
     /**
-     * Get bookings filtered by the current filter settings.
+     * Show the bookings matching the current filter settings. The indexes narrow
+     * the bookings down in the background when there are too many to filter in
+     * place, and with no filters set that many bookings are paged in by date as
+     * the table is scrolled.
      * 
-     * @return filtered list of bookings
+     * @param reload true to fetch the bookings again
      */
-    private ArrayList<Booking> getFilteredBookings() {
-        ArrayList<Booking> allBookings = controller.getAllBookings();
-        ArrayList<Booking> filteredBookings = new ArrayList<>();
-        
+    private void showBookings(boolean reload) {
+        String customerFilter = customerField.getText().trim();
+        String packageFilter = packageField.getText().trim();
+        BookingStatus statusFilter = (BookingStatus) statusComboBox.getSelectedItem();
+        Date fromDate = parseDateFilter(fromDateField);
+        Date toDate = parseDateFilter(toDateField);
+        List<Booking> all = controller.getAllBookings();
+        
+        if (all.size() > LIVE_FILTER_LIMIT && customerFilter.isEmpty() && packageFilter.isEmpty()
+                && statusFilter == null && fromDate == null && toDate == null) {
+            int total = all.size();
+            showPages(sorter, scrollPane, (after, limit) -> controller.getBookingsPage(BookingOrder.DATE, after, limit),
+                count -> updateStatus("Bookings loaded: " + count + " of " + total + " by date, scroll for more"));
+            return;
+        }
+        showFiltered(sorter, all,
+            () -> findCandidates(customerFilter, packageFilter, fromDate, toDate, statusFilter),
+            currentFilter(), reload, count -> updateStatus("Bookings loaded: " + count));
+    }
+    
+    /**
+     * Get the test for the current filter settings. The filter fields are read now.
+     * 
+     * @return the test a booking must pass to be shown
+     */
+    private Predicate<Booking> currentFilter() {
         // Get filter values
         String customerFilter = customerField.getText().trim().toLowerCase();
         String packageFilter = packageField.getText().trim().toLowerCase();
         BookingStatus statusFilter = (BookingStatus) statusComboBox.getSelectedItem();
-        
-        // Apply filters
-        for (Booking booking : allBookings) {
-            boolean includeBooking = true;
-            
-            // Filter by customer
-            if (!customerFilter.isEmpty() && 
+        Date fromDate = parseDateFilter(fromDateField);
+        Date toDate = parseDateFilter(toDateField);
+        LocalDate fromDay = fromDate != null ? dayOf(fromDate) : null;
+        LocalDate toDay = toDate != null ? dayOf(toDate) : null;
+        
+        return booking -> {
+            // Filter by customer and package name, ignoring case like the search index
+            if (!customerFilter.isEmpty() &&
                 !booking.getCustomer().getName().toLowerCase().contains(customerFilter)) {
-                includeBooking = false;
+                return false;
             }
-            
-            // Filter by package
-            if (!packageFilter.isEmpty() && 
+            if (!packageFilter.isEmpty() &&
                 !booking.getPackage().getName().toLowerCase().contains(packageFilter)) {
-                includeBooking = false;
+                return false;
             }
             
             // Filter by status
             if (statusFilter != null && booking.getStatus() != statusFilter) {
-                includeBooking = false;
+                return false;
+            }
+            
+            // Filter by date, compared by day
+            if (fromDay != null || toDay != null) {
+                LocalDate day = dayOf(booking.getDate());
+                if ((fromDay != null && day.isBefore(fromDay)) || (toDay != null && day.isAfter(toDay))) {
+                    return false;
+                }
             }
             
-            if (includeBooking) {
-                filteredBookings.add(booking);
+            return true;
+        };
+    }
+    
+    /**
+     * Get the calendar day of a date in the local time zone.
+     * 
+     * @param date the date
+     * @return the day
+     */
+    private static LocalDate dayOf(Date date) {
+        return date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+    
+    /**
+     * Find the bookings worth checking against the filters. Starts from the bookings
+     * of the matching customers or packages, so only those have to be checked
+     * against the other filters.
+     * 
+     * @param customerFilter the customer name filter, or empty
+     * @param packageFilter the package name filter, or empty
+     * @param fromDate the earliest travel date, or null
+     * @param toDate the latest travel date, or null
+     * @param statusFilter the status filter, or null
+     * @return the candidate bookings
+     */
+    private List<Booking> findCandidates(String customerFilter, String packageFilter,
+                                         Date fromDate, Date toDate, BookingStatus statusFilter) {
+        List<Booking> candidates;
+        if (!customerFilter.isEmpty()) {
+            candidates = new ArrayList<>();
+            for (Customer customer : controller.searchCustomersByName(customerFilter)) {
+                candidates.addAll(controller.getBookingsForCustomer(customer));
+            }
+        } else if (!packageFilter.isEmpty()) {
+            candidates = new ArrayList<>();
+            for (TravelPackage pkg : controller.searchPackagesByName(packageFilter)) {
+                candidates.addAll(controller.getBookingsForPackage(pkg));
             }
+        } else if (fromDate != null || toDate != null) {
+            candidates = controller.searchBookingsByDate(fromDate, toDate);
+        } else if (statusFilter != null) {
+            candidates = controller.searchBookingsByStatus(statusFilter);
+        } else {
+            candidates = controller.getAllBookings();
         }
-        
-        return filteredBookings;
+        return candidates;
     }
     
     /**
-     * Find a booking by its ID.
+     * Parse the date typed into a date filter field.
      * 
-     * @param bookingId the booking ID to find
-     * @return the found Booking or null
+     * @param field the field
+     * @return the date, or null if the field is empty or not a valid date
      */
-    private Booking findBookingById(String bookingId) {
-        for (Booking booking : controller.getAllBookings()) {
-            if (booking.getBookingId().equals(bookingId)) {
-                return booking;
-            }
+    private Date parseDateFilter(JTextField field) {
+        String text = field.getText().trim();
+        if (text.isEmpty()) {
+            return null;
+        }
+        try {
+            return dateFormat.parse(text);
+        } catch (java.text.ParseException e) {
+            return null;
         }
-        return null;
     }
     
     /**
      * Show dialog to add a new booking.
      */
     private void showAddBookingDialog() {
-        // Make sure we have fresh data by cleaning up and reloading
-        controller.cleanupDataFiles();
-        controller.loadData();
-        
         // Get available customers and packages
-        ArrayList<Customer> customers = controller.getAllCustomers();
-        ArrayList<TravelPackage> packages = controller.getAllTravelPackages();
+        List<Customer> customers = controller.getAllCustomers();
+        List<TravelPackage> packages = controller.getAllTravelPackages();
         
         if (customers.isEmpty()) {
             JOptionPane.showMessageDialog(this, 
@@ -462,7 +541,6 @@ public class BookingsPanel extends BasePanel {
                 );
                 
                 dialog.dispose();
-                refreshData();
                 updateStatus("Booking created for " + customer.getName());
                 
             } catch (Exception ex) {
@@ -589,19 +667,23 @@ public class BookingsPanel extends BasePanel {
                 String requestsText = specialRequestsField.getText().trim();
                 
                 // Update the booking
-                controller.updateBooking(
+                if (!controller.updateBooking(
                     selectedBooking,
                     numTravelers,
                     status,
                     requestsText
-                );
+                )) {
+                    JOptionPane.showMessageDialog(dialog, 
+                        "There are not enough seats left on this departure.",
+                        "Update Booking", JOptionPane.WARNING_MESSAGE);
+                    return;
+                }
                 
-                // Store booking details before refreshing
                 String customerName = selectedBooking.getCustomer().getName();
                 String packageName = selectedBooking.getPackage().getName();
                 
                 dialog.dispose();
-                refreshData();
+                updateButtonStates();
                 updateStatus("Booking updated for " + customerName + " - " + packageName);
                 
             } catch (Exception ex) {
@@ -648,7 +730,8 @@ public class BookingsPanel extends BasePanel {
                 if (success) {
                     String customerName = selectedBooking.getCustomer().getName();
                     String packageName = selectedBooking.getPackage().getName();
-                    refreshData();
+                    selectedBooking = null;
+                    updateButtonStates();
                     updateStatus("Booking deleted for " + customerName + " - " + packageName);
                 } else {
                     JOptionPane.showMessageDialog(this, 
@@ -789,14 +872,18 @@ public class BookingsPanel extends BasePanel {
                 }
                 
                 // Update the booking status
-                controller.updateBookingStatus(selectedBooking, newStatus);
+                if (!controller.updateBookingStatus(selectedBooking, newStatus)) {
+                    JOptionPane.showMessageDialog(dialog, 
+                        "There are not enough seats left on this departure.",
+                        "Update Status", JOptionPane.WARNING_MESSAGE);
+                    return;
+                }
                 
-                // Store information before refreshing
                 String statusName = newStatus.getDisplayName();
                 String customerName = selectedBooking.getCustomer().getName();
                 
                 dialog.dispose();
-                refreshData();
+                updateButtonStates();
                 updateStatus("Booking status for " + customerName + " updated to " + statusName);
                 
             } catch (Exception ex) {
@@ -913,7 +1000,7 @@ public class BookingsPanel extends BasePanel {
                 if (success) {
                     String customerName = selectedBooking.getCustomer().getName();
                     dialog.dispose();
-                    refreshData();
+                    updateButtonStates();
                     updateStatus("Payment processed successfully for " + customerName);
                 } else {
                     JOptionPane.showMessageDialog(dialog,
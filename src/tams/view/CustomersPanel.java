@@ -7,6 +7,7 @@ import java.awt.*;
 import java.awt.event.*;
 import java.util.*;
 import java.util.List;
+import java.util.function.Predicate;
 
 import tams.controller.TravelAgencyController;
 import tams.model.*;
@@ -18,7 +19,9 @@ public class CustomersPanel extends BasePanel {
     
     // Table components
     private JTable customersTable;
-    private DefaultTableModel tableModel;
+    private EntityTableModel<Customer> tableModel;
+    private TableRowSorter<EntityTableModel<Customer>> sorter;
+    private JScrollPane scrollPane;
     
     // Filter components
     private JTextField nameField;
@@ -46,6 +49,11 @@ public class CustomersPanel extends BasePanel {
     public CustomersPanel(TravelAgencyController controller, MainWindow mainWindow) {
         super(controller, mainWindow);
         isInitialized = true;
+        
+        // Patch the table when customers change rather than finding every row again,
+        // and redraw a customer's booking count when their bookings change
+        controller.addChangeListener(Customer.class, event -> patchRows(tableModel, event));
+        controller.addChangeListener(Booking.class, event -> redrawRow(tableModel, event.getEntity().getCustomer()));
     }
     
     @Override
@@ -80,6 +88,7 @@ public class CustomersPanel extends BasePanel {
         
         searchButton.addActionListener(e -> applyFilters());
         clearButton.addActionListener(e -> clearFilters());
+        filterWhileTyping(this::applyFilters, nameField, emailField, phoneField);
         
         buttonPanel.add(searchButton);
         buttonPanel.add(clearButton);
@@ -105,25 +114,24 @@ public class CustomersPanel extends BasePanel {
         headerPanel.setBorder(BorderFactory.createEmptyBorder(0, 0, 10, 0));
         headerPanel.add(new JLabel("Customers", JLabel.LEFT), BorderLayout.WEST);
         
-        // Create the table
-        String[] columnNames = {"ID", "Name", "Email", "Phone", "Bookings"};
-        tableModel = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false; // Make table cells non-editable
-            }
-        };
+        // Create the table; cells are read from the customer as they are drawn
+        tableModel = new EntityTableModel<Customer>()
+            .addColumn("ID", Customer::getCustomerId)
+            .addColumn("Name", Customer::getName)
+            .addColumn("Email", Customer::getEmail)
+            .addColumn("Phone", Customer::getPhone)
+            .addColumn("Bookings", Integer.class, controller::countBookingsForCustomer);
         
         customersTable = new JTable(tableModel);
+        sorter = createFilterSorter(customersTable, tableModel);
         customersTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         customersTable.getSelectionModel().addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting()) {
+                // The selection is lost when the filters hide the selected row
                 int selectedRow = customersTable.getSelectedRow();
-                if (selectedRow != -1) {
-                    String customerId = (String) tableModel.getValueAt(selectedRow, 0);
-                    selectedCustomer = findCustomerById(customerId);
-                    updateButtonStates();
-                }
+                selectedCustomer = selectedRow != -1
+                    ? tableModel.getRow(customersTable.convertRowIndexToModel(selectedRow)) : null;
+                updateButtonStates();
             }
         });
         
@@ -135,7 +143,7 @@ public class CustomersPanel extends BasePanel {
         customersTable.getColumnModel().getColumn(4).setPreferredWidth(80);   // Bookings
         
         // Add table to a scroll pane
-        JScrollPane scrollPane = createScrollPane(customersTable);
+        scrollPane = createScrollPane(customersTable);
         
         // Add components to content panel
         contentPanel.add(headerPanel, BorderLayout.NORTH);
@@ -192,111 +200,88 @@ public class CustomersPanel extends BasePanel {
     @Override
     public void refreshData() {
         if (isInitialized && mainWindow != null) {
-            // Clear the table
-            tableModel.setRowCount(0);
-            
-            // Get customers filtered by current filter settings
-            ArrayList<Customer> customers = getFilteredCustomers();
-            
-            // Add customers to the table
-            for (Customer customer : customers) {
-                // Get booking count for this customer
-                int bookingCount = controller.getBookingsForCustomer(customer).size();
-                
-                Object[] row = {
-                    customer.getCustomerId(),
-                    customer.getName(),
-                    customer.getEmail(),
-                    customer.getPhone(),
-                    bookingCount
-                };
-                tableModel.addRow(row);
-            }
-            
-            // Update status
-            updateStatus("Customers loaded: " + customers.size());
-            
             // Clear selection
             selectedCustomer = null;
             updateButtonStates();
+            
+            showCustomers(true);
         }
     }
     
     /**
-     * Apply the current filters and refresh the data.
+     * Apply the current filters to the customers already shown.
      */
     private void applyFilters() {
-        refreshData();
+        showCustomers(false);
     }
     
     /**
-     * Clear all filters and refresh the data.
+     * Clear all filters and show every customer.
      */
     private void clearFilters() {
         nameField.setText("");
         emailField.setText("");
         phoneField.setText("");
         
-        refreshData();
+        applyFilters();
     }
     
     /**
-     * Get customers filtered by the current filter settings.
+     * Show the customers matching the current filter settings. The name filter
+     * is answered by the search index when there are too many customers to
+     * filter in place, and with no filters set that many customers are paged
+     * in by ID as the table is scrolled.
      * 
-     * @return filtered list of customers
+     * @param reload true to fetch the customers again
      */
-    private ArrayList<Customer> getFilteredCustomers() {
-        ArrayList<Customer> allCustomers = controller.getAllCustomers();
-        ArrayList<Customer> filteredCustomers = new ArrayList<>();
-        
+    private void showCustomers(boolean reload) {
+        String name = nameField.getText().trim();
+        List<Customer> all = controller.getAllCustomers();
+        
+        if (all.size() > LIVE_FILTER_LIMIT && name.isEmpty()
+                && emailField.getText().trim().isEmpty() && phoneField.getText().trim().isEmpty()) {
+            int total = all.size();
+            showPages(sorter, scrollPane, controller::getCustomersPage,
+                count -> updateStatus("Customers loaded: " + count + " of " + total + ", scroll for more"));
+            return;
+        }
+        showFiltered(sorter, all,
+            () -> name.isEmpty() ? controller.getAllCustomers() : controller.searchCustomersByName(name),
+            currentFilter(), reload, count -> updateStatus("Customers loaded: " + count));
+    }
+    
+    /**
+     * Get the test for the current filter settings. The filter fields are read now.
+     * 
+     * @return the test a customer must pass to be shown
+     */
+    private Predicate<Customer> currentFilter() {
         // Get filter values
         String nameFilter = nameField.getText().trim().toLowerCase();
         String emailFilter = emailField.getText().trim().toLowerCase();
         String phoneFilter = phoneField.getText().trim().toLowerCase();
         
-        // Apply filters
-        for (Customer customer : allCustomers) {
-            boolean includeCustomer = true;
-            
+        return customer -> {
             // Filter by name
             if (!nameFilter.isEmpty() && 
                 !customer.getName().toLowerCase().contains(nameFilter)) {
-                includeCustomer = false;
+                return false;
             }
             
             // Filter by email
             if (!emailFilter.isEmpty() && 
                 !customer.getEmail().toLowerCase().contains(emailFilter)) {
-                includeCustomer = false;
+                return false;
             }
             
             // Filter by phone
             if (!phoneFilter.isEmpty() && 
                 !customer.getPhone().contains(phoneFilter)) {
-                includeCustomer = false;
+                return false;
             }
             
-            if (includeCustomer) {
-                filteredCustomers.add(customer);
-            }
-        }
-        
-        return filteredCustomers;
-    }
-    
-    /**
-     * Find a customer by their ID.
-     * 
-     * @param customerId the customer ID to find
-     * @return the found Customer or null
-     */
-    private Customer findCustomerById(String customerId) {
-        for (Customer customer : controller.getAllCustomers()) {
-            if (customer.getCustomerId().equals(customerId)) {
-                return customer;
-            }
-        }
-        return null;
+            return true;
+        };
     }
     
     /**
@@ -363,7 +348,6 @@ public class CustomersPanel extends BasePanel {
                 Customer newCustomer = controller.createCustomer(name, email, phone, address);
                 
                 dialog.dispose();
-                refreshData();
                 updateStatus("Customer created: " + newCustomer.getName());
                 
             } catch (Exception ex) {
@@ -451,12 +435,8 @@ public class CustomersPanel extends BasePanel {
                     address
                 );
                 
-                // Store the name before we refresh
-                String customerName = name;
-                
                 dialog.dispose();
-                refreshData();
-                updateStatus("Customer updated: " + customerName);
+                updateStatus("Customer updated: " + name);
                 
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(dialog, 
@@ -499,7 +479,8 @@ public class CustomersPanel extends BasePanel {
                 
                 if (success) {
                     String customerName = selectedCustomer.getName();
-                    refreshData();
+                    selectedCustomer = null;
+                    updateButtonStates();
                     updateStatus("Customer deleted: " + customerName);
                 } else {
                     JOptionPane.showMessageDialog(this, 
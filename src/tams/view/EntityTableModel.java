@@ -0,0 +1,204 @@
+package tams.view;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Read-only table model whose rows are the entities themselves.
+ * Cell values are worked out from the entity only when the table asks for
+ * them, which is for the rows on screen, so setting a list of any size costs
+ * no more than holding on to it. Rows can also be inserted, updated and removed
+ * one at a time, firing an event for just that row. Rows are found through an
+ * index of the entities, built the first time a row is looked up after the rows
+ * are replaced and kept up to date from then on.
+ *
+ * @param <T> the type of entity shown in each row
+ */
+public class EntityTableModel<T> extends AbstractTableModel {
+
+    private final List<String> columnNames = new ArrayList<>();
+    private final List<Class<?>> columnClasses = new ArrayList<>();
+    private final List<Function<? super T, ?>> columnValues = new ArrayList<>();
+
+    // The rows as given, until a single-row change needs a list of our own
+    private List<T> rows = Collections.emptyList();
+    private boolean rowsOwned = false;
+    // Row of each entity, or null until a row is first looked up
+    private Map<T, Integer> rowIndex;
+
+    /**
+     * Add a column whose values are shown as they are.
+     *
+     * @param name the column heading
+     * @param value computes the cell value from a row's entity
+     * @return this model
+     */
+    public EntityTableModel<T> addColumn(String name, Function<? super T, ?> value) {
+        return addColumn(name, Object.class, value);
+    }
+
+    /**
+     * Add a column whose values share a type, which the table uses to sort and render them.
+     *
+     * @param name the column heading
+     * @param type the class of the cell values
+     * @param value computes the cell value from a row's entity
+     * @return this model
+     */
+    public EntityTableModel<T> addColumn(String name, Class<?> type, Function<? super T, ?> value) {
+        columnNames.add(name);
+        columnClasses.add(type);
+        columnValues.add(value);
+        return this;
+    }
+
+    /**
+     * Replace all rows. The list is used as it is rather than copied, so it must
+     * not change afterwards other than through this model.
+     *
+     * @param rows the entities to show
+     */
+    public void setRows(List<T> rows) {
+        this.rows = rows;
+        this.rowsOwned = false;
+        this.rowIndex = null;
+        fireTableDataChanged();
+    }
+
+    /**
+     * Get the entity shown in a row.
+     *
+     * @param rowIndex the row index in the model
+     * @return the entity
+     */
+    public T getRow(int rowIndex) {
+        return rows.get(rowIndex);
+    }
+
+    /**
+     * Find the row showing an entity.
+     *
+     * @param entity the entity
+     * @return the row index in the model, or -1 if it is not shown
+     */
+    public int indexOf(T entity) {
+        if (rowIndex == null) {
+            rowIndex = new HashMap<>(rows.size() * 4 / 3 + 1);
+            indexRows(0);
+        }
+        Integer index = rowIndex.get(entity);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * Add a row at the end.
+     *
+     * @param entity the entity to show
+     */
+    public void addRow(T entity) {
+        ownRows().add(entity);
+        if (rowIndex != null) {
+            indexRows(rows.size() - 1);
+        }
+        fireTableRowsInserted(rows.size() - 1, rows.size() - 1);
+    }
+
+    /**
+     * Add rows at the end, with one event for all of them.
+     *
+     * @param entities the entities to show
+     */
+    public void addRows(List<? extends T> entities) {
+        if (entities.isEmpty()) {
+            return;
+        }
+        int first = rows.size();
+        ownRows().addAll(entities);
+        if (rowIndex != null) {
+            indexRows(first);
+        }
+        fireTableRowsInserted(first, rows.size() - 1);
+    }
+
+    /**
+     * Redraw the row showing an entity after the entity has changed.
+     *
+     * @param entity the entity
+     * @return true if the entity is shown
+     */
+    public boolean updateRow(T entity) {
+        int index = indexOf(entity);
+        if (index < 0) {
+            return false;
+        }
+        fireTableRowsUpdated(index, index);
+        return true;
+    }
+
+    /**
+     * Remove the row showing an entity.
+     *
+     * @param entity the entity
+     * @return true if the entity was shown
+     */
+    public boolean removeRow(T entity) {
+        int index = indexOf(entity);
+        if (index < 0) {
+            return false;
+        }
+        ownRows().remove(index);
+        // The rows after it have moved up one
+        rowIndex.remove(entity);
+        indexRows(index);
+        fireTableRowsDeleted(index, index);
+        return true;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnNames.size();
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columnNames.get(column);
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return columnClasses.get(column);
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        return columnValues.get(columnIndex).apply(rows.get(rowIndex));
+    }
+
+    /**
+     * Index the rows from a position to the end. An entity shown more than once
+     * is found at its first row.
+     */
+    private void indexRows(int from) {
+        for (int i = from; i < rows.size(); i++) {
+            rowIndex.merge(rows.get(i), i, Math::min);
+        }
+    }
+
+    private List<T> ownRows() {
+        if (!rowsOwned) {
+            rows = new ArrayList<>(rows);
+            rowsOwned = true;
+        }
+        return rows;
+    }
+}
@@ -39,6 +39,9 @@ public class MainWindow extends JFrame {
     // Status bar - initialize statusLabel immediately to prevent NullPointerException
     private JPanel statusBar;
     private JLabel statusLabel = new JLabel("Initializing...");
+    private JProgressBar progressBar;
+    // The loader or panel whose work the progress bar is showing
+    private Object progressOwner;
     
     // Add a class-level array to track initialized tabs
     private boolean[] tabInitialized = new boolean[6];
@@ -47,9 +50,6 @@ public class MainWindow extends JFrame {
      * Constructor for the main window.
      */
     public MainWindow() {
-        // Initialize controller
-        controller = new TravelAgencyController();
-        
         // Set up the frame
         setTitle("Travel Agency Management System");
         setSize(1000, 700);
@@ -76,7 +76,11 @@ public class MainWindow extends JFrame {
             addWindowListener(new WindowAdapter() {
                 @Override
                 public void windowClosing(WindowEvent e) {
-                    controller.saveData();
+                    if (controller != null) {
+                        // Write pending changes and wait for them before the application exits
+                        controller.saveData();
+                        controller.flush();
+                    }
                 }
             });
         } catch (Exception e) {
@@ -88,77 +92,104 @@ public class MainWindow extends JFrame {
     }
     
     /**
-     * Create the tabs after the frame is displayed.
-     * This prevents initialization issues.
+     * Load the data in the background and create the tabs once it is ready.
+     * The window stays responsive while the data files are read.
      */
     public void createTabs() {
-        SwingUtilities.invokeLater(() -> {
-            try {
-                updateStatus("Creating panels...");
-                
-                // Create all panel instances first without loading data
-                packagesPanel = new PackagesPanel(controller, this);
-                customersPanel = new CustomersPanel(controller, this);
-                bookingsPanel = new BookingsPanel(controller, this);
-                activitiesPanel = new ActivitiesPanel(controller, this);
-                reportsPanel = new ReportsPanel(controller, this);
-                reviewsPanel = new ReviewsPanel(controller, this);
-                
-                // Add panels to the tabbed pane
-                tabbedPane.addTab("Packages", new ImageIcon(), packagesPanel, "Manage travel packages");
-                tabbedPane.addTab("Activities", new ImageIcon(), activitiesPanel, "Manage activities");
-                tabbedPane.addTab("Customers", new ImageIcon(), customersPanel, "Manage customers");
-                tabbedPane.addTab("Bookings", new ImageIcon(), bookingsPanel, "Manage bookings");
-                tabbedPane.addTab("Reports", new ImageIcon(), reportsPanel, "View reports");
-                tabbedPane.addTab("Reviews", new ImageIcon(), reviewsPanel, "Manage reviews");
-                
-                // Initialize only the first tab (Packages)
-                packagesPanel.refreshData();
-                tabInitialized[0] = true;
-                
-                // Add change listener to update status when tab changes and load data when first visited
-                tabbedPane.addChangeListener(e -> {
-                    int index = tabbedPane.getSelectedIndex();
-                    if (index != -1) {
-                        updateStatus("Viewing " + tabbedPane.getTitleAt(index));
+        SwingWorker<TravelAgencyController, Void> loader = new SwingWorker<TravelAgencyController, Void>() {
+            @Override
+            protected TravelAgencyController doInBackground() {
+                return new TravelAgencyController((stage, processed, total) ->
+                    SwingUtilities.invokeLater(() -> showLoadProgress(this, stage, processed, total)));
+            }
+            
+            @Override
+            protected void done() {
+                hideProgress(this);
+                try {
+                    controller = get();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    updateStatus("Error loading data: " + e.getMessage());
+                    return;
+                }
+                addTabs();
+            }
+        };
+        showProgress(loader, "Loading data...", 0);
+        loader.execute();
+    }
+    
+    /**
+     * Create the panels and add them as tabs once the data has been loaded.
+     * Runs on the Event Dispatch Thread.
+     */
+    private void addTabs() {
+        try {
+            updateStatus("Creating panels...");
+            
+            // Create all panel instances first without loading data
+            packagesPanel = new PackagesPanel(controller, this);
+            customersPanel = new CustomersPanel(controller, this);
+            bookingsPanel = new BookingsPanel(controller, this);
+            activitiesPanel = new ActivitiesPanel(controller, this);
+            reportsPanel = new ReportsPanel(controller, this);
+            reviewsPanel = new ReviewsPanel(controller, this);
+            
+            // Add panels to the tabbed pane
+            tabbedPane.addTab("Packages", new ImageIcon(), packagesPanel, "Manage travel packages");
+            tabbedPane.addTab("Activities", new ImageIcon(), activitiesPanel, "Manage activities");
+            tabbedPane.addTab("Customers", new ImageIcon(), customersPanel, "Manage customers");
+            tabbedPane.addTab("Bookings", new ImageIcon(), bookingsPanel, "Manage bookings");
+            tabbedPane.addTab("Reports", new ImageIcon(), reportsPanel, "View reports");
+            tabbedPane.addTab("Reviews", new ImageIcon(), reviewsPanel, "Manage reviews");
+            
+            // Initialize only the first tab (Packages)
+            packagesPanel.refreshData();
+            tabInitialized[0] = true;
+            
+            // Add change listener to update status when tab changes and load data when first visited
+            tabbedPane.addChangeListener(e -> {
+                int index = tabbedPane.getSelectedIndex();
+                if (index != -1) {
+                    updateStatus("Viewing " + tabbedPane.getTitleAt(index));
+                    
+                    // Load data for the tab if it hasn't been initialized yet
+                    if (!tabInitialized[index]) {
+                        updateStatus("Loading data for " + tabbedPane.getTitleAt(index) + "...");
                         
-                        // Load data for the tab if it hasn't been initialized yet
-                        if (!tabInitialized[index]) {
-                            updateStatus("Loading data for " + tabbedPane.getTitleAt(index) + "...");
-                            
-                            switch (index) {
-                                case 0: // Packages
-                                    if (packagesPanel != null) packagesPanel.refreshData();
-                                    break;
-                                case 1: // Activities
-                                    if (activitiesPanel != null) activitiesPanel.refreshData();
-                                    break;
-                                case 2: // Customers
-                                    if (customersPanel != null) customersPanel.refreshData();
-                                    break;
-                                case 3: // Bookings
-                                    if (bookingsPanel != null) bookingsPanel.refreshData();
-                                    break;
-                                case 4: // Reports
-                                    if (reportsPanel != null) reportsPanel.refreshData();
-                                    break;
-                                case 5: // Reviews
-                                    if (reviewsPanel != null) reviewsPanel.refreshData();
-                                    break;
-                            }
-                            
-                            tabInitialized[index] = true;
-                            updateStatus("Viewing " + tabbedPane.getTitleAt(index));
+                        switch (index) {
+                            case 0: // Packages
+                                if (packagesPanel != null) packagesPanel.refreshData();
+                                break;
+                            case 1: // Activities
+                                if (activitiesPanel != null) activitiesPanel.refreshData();
+                                break;
+                            case 2: // Customers
+                                if (customersPanel != null) customersPanel.refreshData();
+                                break;
+                            case 3: // Bookings
+                                if (bookingsPanel != null) bookingsPanel.refreshData();
+                                break;
+                            case 4: // Reports
+                                if (reportsPanel != null) reportsPanel.refreshData();
+                                break;
+                            case 5: // Reviews
+                                if (reviewsPanel != null) reviewsPanel.refreshData();
+                                break;
                         }
+                        
+                        tabInitialized[index] = true;
+                        updateStatus("Viewing " + tabbedPane.getTitleAt(index));
                     }
-                });
-                
-                updateStatus("Ready");
-            } catch (Exception e) {
-                e.printStackTrace();
-                updateStatus("Error creating tabs: " + e.getMessage());
-            }
-        });
+                }
+            });
+            
+            updateStatus("Ready");
+        } catch (Exception e) {
+            e.printStackTrace();
+            updateStatus("Error creating tabs: " + e.getMessage());
+        }
     }
     
     /**
@@ -171,13 +202,18 @@ public class MainWindow extends JFrame {
         fileMenu = new JMenu("File");
         JMenuItem saveItem = new JMenuItem("Save");
         saveItem.addActionListener(e -> {
-            controller.saveData();
-            updateStatus("Data saved successfully");
+            if (controller != null) {
+                controller.saveData();
+                updateStatus("Saving data...");
+            }
         });
         
         JMenuItem exitItem = new JMenuItem("Exit");
         exitItem.addActionListener(e -> {
-            controller.saveData();
+            if (controller != null) {
+                controller.saveData();
+                controller.flush();
+            }
             System.exit(0);
         });
         
@@ -246,6 +282,62 @@ public class MainWindow extends JFrame {
         statusLabel.setBorder(BorderFactory.createEmptyBorder(2, 5, 2, 5));
         
         statusBar.add(statusLabel, BorderLayout.WEST);
+        
+        // Progress bar shown only while data is being loaded or a panel is running a query
+        progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(true);
+        progressBar.setVisible(false);
+        statusBar.add(progressBar, BorderLayout.EAST);
+    }
+    
+    /**
+     * Show the progress of loading the data files.
+     * 
+     * @param loader the worker loading the data
+     * @param stage the collection being loaded
+     * @param processed the number of characters read so far
+     * @param total the size of the file
+     */
+    private void showLoadProgress(Object loader, String stage, long processed, long total) {
+        if (progressOwner != loader) {
+            // Loading finished before this update was delivered
+            return;
+        }
+        int percent = (int) (processed * 100 / Math.max(1, total));
+        statusLabel.setText("Loading " + stage + "...");
+        showProgress(loader, stage + " " + percent + "%", percent);
+    }
+    
+    /**
+     * Show work in progress in the status bar, taking the progress bar over from
+     * any earlier owner. Must be called on the Event Dispatch Thread.
+     * 
+     * @param owner the loader or panel doing the work
+     * @param text the text shown on the progress bar
+     * @param percent the percentage done
+     */
+    public void showProgress(Object owner, String text, int percent) {
+        progressOwner = owner;
+        progressBar.setValue(percent);
+        progressBar.setString(text);
+        if (!progressBar.isVisible()) {
+            progressBar.setVisible(true);
+            statusBar.revalidate();
+        }
+    }
+    
+    /**
+     * Hide the progress bar if it is still showing an owner's work.
+     * Must be called on the Event Dispatch Thread.
+     * 
+     * @param owner the loader or panel whose work has finished
+     */
+    public void hideProgress(Object owner) {
+        if (progressOwner == owner) {
+            progressOwner = null;
+            progressBar.setVisible(false);
+            statusBar.revalidate();
+        }
     }
     
     /**
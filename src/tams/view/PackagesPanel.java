@@ -5,7 +5,9 @@ import javax.swing.table.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Vector;
+import java.util.function.Predicate;
 
 import tams.controller.TravelAgencyController;
 import tams.model.*;
@@ -17,7 +19,8 @@ public class PackagesPanel extends BasePanel {
     
     // Table components
     private JTable packagesTable;
-    private DefaultTableModel tableModel;
+    private EntityTableModel<TravelPackage> tableModel;
+    private TableRowSorter<EntityTableModel<TravelPackage>> sorter;
     
     // Filter components
     private JTextField destinationField;
@@ -48,6 +51,9 @@ public class PackagesPanel extends BasePanel {
     public PackagesPanel(TravelAgencyController controller, MainWindow mainWindow) {
         super(controller, mainWindow);
         isInitialized = true;
+        
+        // Patch the table when packages change rather than finding every row again
+        controller.addChangeListener(TravelPackage.class, event -> patchRows(tableModel, event));
     }
     
     @Override
@@ -74,6 +80,9 @@ public class PackagesPanel extends BasePanel {
         JLabel priceLabel = new JLabel("Max Price: $5000");
         priceRangeSlider.addChangeListener(e -> {
             priceLabel.setText("Max Price: $" + priceRangeSlider.getValue());
+            if (!priceRangeSlider.getValueIsAdjusting()) {
+                applyFilters();
+            }
         });
         pricePanel.add(priceRangeSlider, BorderLayout.CENTER);
         pricePanel.add(priceLabel, BorderLayout.SOUTH);
@@ -95,6 +104,7 @@ public class PackagesPanel extends BasePanel {
         
         searchButton.addActionListener(e -> applyFilters());
         clearButton.addActionListener(e -> clearFilters());
+        filterWhileTyping(this::applyFilters, destinationField, minDaysField, maxDaysField);
         
         buttonPanel.add(searchButton);
         buttonPanel.add(clearButton);
@@ -120,25 +130,24 @@ public class PackagesPanel extends BasePanel {
         headerPanel.setBorder(BorderFactory.createEmptyBorder(0, 0, 10, 0));
         headerPanel.add(new JLabel("Travel Packages", JLabel.LEFT), BorderLayout.WEST);
         
-        // Create the table
-        String[] columnNames = {"ID", "Name", "Destination", "Duration", "Price"};
-        tableModel = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false; // Make table cells non-editable
-            }
-        };
+        // Create the table; cells are formatted from the package as they are drawn
+        tableModel = new EntityTableModel<TravelPackage>()
+            .addColumn("ID", TravelPackage::getServiceId)
+            .addColumn("Name", TravelPackage::getName)
+            .addColumn("Destination", TravelPackage::getDestination)
+            .addColumn("Duration", pkg -> pkg.getDuration() + " days")
+            .addColumn("Price", pkg -> String.format("$%.2f", pkg.getBasePrice()));
         
         packagesTable = new JTable(tableModel);
+        sorter = createFilterSorter(packagesTable, tableModel);
         packagesTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         packagesTable.getSelectionModel().addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting()) {
+                // The selection is lost when the filters hide the selected row
                 int selectedRow = packagesTable.getSelectedRow();
-                if (selectedRow != -1) {
-                    String packageId = (String) tableModel.getValueAt(selectedRow, 0);
-                    selectedPackage = findPackageById(packageId);
-                    updateButtonStates();
-                }
+                selectedPackage = selectedRow != -1
+                    ? tableModel.getRow(packagesTable.convertRowIndexToModel(selectedRow)) : null;
+                updateButtonStates();
             }
         });
         
@@ -217,42 +226,23 @@ public class PackagesPanel extends BasePanel {
     @Override
     public void refreshData() {
         if (isInitialized && mainWindow != null) {
-            // Clear the table
-            tableModel.setRowCount(0);
-            
-            // Get packages filtered by current filter settings
-            ArrayList<TravelPackage> packages = getFilteredPackages();
-            
-            // Add packages to the table
-            for (TravelPackage pkg : packages) {
-                Object[] row = {
-                    pkg.getServiceId(),
-                    pkg.getName(),
-                    pkg.getDestination(),
-                    pkg.getDuration() + " days",
-                    String.format("$%.2f", pkg.getBasePrice())
-                };
-                tableModel.addRow(row);
-            }
-            
-            // Update status
-            updateStatus("Packages loaded: " + packages.size());
-            
             // Clear selection
             selectedPackage = null;
             updateButtonStates();
+            
+            showPackages(true);
         }
     }
     
     /**
-     * Apply the current filters and refresh the data.
+     * Apply the current filters to the packages already shown.
      */
     private void applyFilters() {
-        refreshData();
+        showPackages(false);
     }
     
     /**
-     * Clear all filters and refresh the data.
+     * Clear all filters and show every package.
      */
     private void clearFilters() {
         destinationField.setText("");
@@ -260,18 +250,28 @@ public class PackagesPanel extends BasePanel {
         minDaysField.setText("1");
         maxDaysField.setText("30");
         
-        refreshData();
+        applyFilters();
     }
     
     /**
-     * Get packages filtered by the current filter settings.
+     * Show the packages matching the current filter settings. The destination
+     * filter is answered by the search index when there are too many packages
+     * to filter in place.
      * 
-     * @return filtered list of packages
+     * @param reload true to fetch the packages again
      */
-    private ArrayList<TravelPackage> getFilteredPackages() {
-        ArrayList<TravelPackage> allPackages = controller.getAllTravelPackages();
-        ArrayList<TravelPackage> filteredPackages = new ArrayList<>();
-        
+    private void showPackages(boolean reload) {
+        String destination = destinationField.getText().trim();
+        showFiltered(sorter, controller.getAllTravelPackages(), () -> findCandidates(destination),
+            currentFilter(), reload, count -> updateStatus("Packages loaded: " + count));
+    }
+    
+    /**
+     * Get the test for the current filter settings. The filter fields are read now.
+     * 
+     * @return the test a package must pass to be shown
+     */
+    private Predicate<TravelPackage> currentFilter() {
         // Get filter values
         String destination = destinationField.getText().trim().toLowerCase();
         int maxPrice = priceRangeSlider.getValue();
@@ -289,48 +289,36 @@ public class PackagesPanel extends BasePanel {
         } catch (NumberFormatException e) {
             maxDays = 30;
         }
+        int shortest = minDays;
+        int longest = maxDays;
         
-        // Apply filters
-        for (TravelPackage pkg : allPackages) {
-            boolean includePackage = true;
-            
-            // Filter by destination
-            if (!destination.isEmpty() && 
-                !pkg.getDestination().toLowerCase().contains(destination)) {
-                includePackage = false;
+        return pkg -> {
+            // Filter by destination, ignoring case like the search index
+            if (!destination.isEmpty() && !pkg.getDestination().toLowerCase().contains(destination)) {
+                return false;
             }
             
             // Filter by price
             if (pkg.getBasePrice() > maxPrice) {
-                includePackage = false;
+                return false;
             }
             
             // Filter by duration
-            if (pkg.getDuration() < minDays || pkg.getDuration() > maxDays) {
-                includePackage = false;
-            }
-            
-            if (includePackage) {
-                filteredPackages.add(pkg);
-            }
-        }
-        
-        return filteredPackages;
+            return pkg.getDuration() >= shortest && pkg.getDuration() <= longest;
+        };
     }
     
     /**
-     * Find a package by its ID.
+     * Find the packages worth testing against the filters. The destination
+     * filter is answered by the search index.
      * 
-     * @param packageId the package ID to find
-     * @return the found TravelPackage or null
+     * @param destination the destination filter, or empty
+     * @return the candidate packages
      */
-    private TravelPackage findPackageById(String packageId) {
-        for (TravelPackage pkg : controller.getAllTravelPackages()) {
-            if (pkg.getServiceId().equals(packageId)) {
-                return pkg;
-            }
-        }
-        return null;
+    private List<TravelPackage> findCandidates(String destination) {
+        return destination.isEmpty()
+            ? controller.getAllTravelPackages()
+            : controller.searchPackagesByDestination(destination);
     }
     
     /**
@@ -423,7 +411,6 @@ public class PackagesPanel extends BasePanel {
                     name, description, price, destination, duration, accommodation);
                 
                 dialog.dispose();
-                refreshData();
                 updateStatus("Package added: " + newPackage.getName());
                 
             } catch (Exception ex) {
@@ -450,7 +437,7 @@ public class PackagesPanel extends BasePanel {
         JDialog dialog = new JDialog(mainWindow, "Edit Package", true);
         dialog.setLayout(new BorderLayout());
         
-        JPanel formPanel = new JPanel(new GridLayout(6, 2, 10, 10));
+        JPanel formPanel = new JPanel(new GridLayout(7, 2, 10, 10));
         formPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
         
         JTextField nameField = new JTextField(selectedPackage.getName(), 20);
@@ -459,6 +446,7 @@ public class PackagesPanel extends BasePanel {
         JTextField priceField = new JTextField(String.valueOf(selectedPackage.getBasePrice()), 20);
         JTextField durationField = new JTextField(String.valueOf(selectedPackage.getDuration()), 20);
         JTextField accommodationField = new JTextField(selectedPackage.getAccommodation(), 20);
+        JTextField capacityField = new JTextField(String.valueOf(selectedPackage.getCapacity()), 20);
         
         formPanel.add(new JLabel("Name:"));
         formPanel.add(nameField);
@@ -472,6 +460,8 @@ public class PackagesPanel extends BasePanel {
         formPanel.add(durationField);
         formPanel.add(new JLabel("Accommodation:"));
         formPanel.add(accommodationField);
+        formPanel.add(new JLabel("Seats per departure (0 = unlimited):"));
+        formPanel.add(capacityField);
         
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
         JButton saveButton = new JButton("Save");
@@ -527,39 +517,29 @@ public class PackagesPanel extends BasePanel {
                     return;
                 }
                 
+                int capacity;
+                try {
+                    capacity = Integer.parseInt(capacityField.getText().trim());
+                    if (capacity < 0) {
+                        throw new NumberFormatException();
+                    }
+                } catch (NumberFormatException ex) {
+                    JOptionPane.showMessageDialog(dialog, 
+                        "Seats per departure must be zero or a positive integer.",
+                        "Validation Error", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                
                 // Update the package
-                selectedPackage.setName(name);
-                selectedPackage.setDescription(description);
-                selectedPackage.setBasePrice(price);
-                selectedPackage.setDestination(destination);
-                selectedPackage.setDuration(duration);
-                selectedPackage.setAccommodation(accommodation);
+                controller.updateTravelPackage(selectedPackage, name, description, price,
+                    destination, duration, accommodation);
+                controller.setPackageCapacity(selectedPackage, capacity);
                 
                 // Save data
                 controller.saveData();
                 
-                // Store the package ID before refreshing
-                String packageId = selectedPackage.getServiceId();
-                String packageName = selectedPackage.getName();
-                
                 dialog.dispose();
-                refreshData();
-                
-                // Find and reselect the edited package
-                TravelPackage editedPackage = findPackageById(packageId);
-                if (editedPackage != null) {
-                    selectedPackage = editedPackage;
-                    // Find the row index of the edited package
-                    for (int i = 0; i < tableModel.getRowCount(); i++) {
-                        if (tableModel.getValueAt(i, 0).equals(packageId)) {
-                            packagesTable.setRowSelectionInterval(i, i);
-                            break;
-                        }
-                    }
-                }
-                
-                updateButtonStates();
-                updateStatus("Package updated: " + packageName);
+                updateStatus("Package updated: " + selectedPackage.getName());
                 
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(dialog, 
@@ -588,15 +568,7 @@ public class PackagesPanel extends BasePanel {
         if (confirm == JOptionPane.YES_OPTION) {
             try {
                 // Check if there are any bookings for this package
-                boolean hasBookings = false;
-                for (Booking booking : controller.getAllBookings()) {
-                    if (booking.getService().equals(selectedPackage)) {
-                        hasBookings = true;
-                        break;
-                    }
-                }
-                
-                if (hasBookings) {
+                if (controller.isPackageInUse(selectedPackage)) {
                     JOptionPane.showMessageDialog(this, 
                         "Cannot delete package because it has active bookings.",
                         "Delete Error", JOptionPane.ERROR_MESSAGE);
@@ -606,13 +578,11 @@ public class PackagesPanel extends BasePanel {
                 // Store package name before deletion
                 String packageName = selectedPackage.getName();
                 
-                // Delete the package from the controller
+                // Delete the package from the controller; every panel showing it is told
                 controller.deletePackage(selectedPackage);
                 
-                // Clean up data files to ensure deleted packages don't appear in dropdown lists
-                controller.cleanupDataFiles();
-                
-                refreshData();
+                selectedPackage = null;
+                updateButtonStates();
                 updateStatus("Package deleted: " + packageName);
             } catch (Exception e) {
                 JOptionPane.showMessageDialog(this, 
@@ -637,6 +607,8 @@ public class PackagesPanel extends BasePanel {
         details.append("Duration: ").append(selectedPackage.getDuration()).append(" days\n\n");
         details.append("Price: $").append(String.format("%.2f", selectedPackage.getPrice())).append("\n\n");
         details.append("Accommodation: ").append(selectedPackage.getAccommodation()).append("\n\n");
+        details.append("Seats per departure: ").append(selectedPackage.getCapacity() > 0
+            ? String.valueOf(selectedPackage.getCapacity()) : "Unlimited").append("\n\n");
         details.append("Description: ").append(selectedPackage.getDescription()).append("\n\n");
         
         // Display activities
@@ -715,7 +687,7 @@ public class PackagesPanel extends BasePanel {
         final TravelPackage packageRef = selectedPackage;
         
         // Debug: Print information about available activities
-        ArrayList<Activity> availableActivities = controller.getActivities();
+        List<Activity> availableActivities = controller.getActivities();
         System.out.println("Available activities from controller: " + availableActivities.size());
         for (Activity activity : availableActivities) {
             System.out.println(" - " + activity.getName() + " (" + activity.getActivityId() + ")");
@@ -981,6 +953,7 @@ public class PackagesPanel extends BasePanel {
                     
                     // Save the data after removal
                     try {
+                        controller.markModified(packageRef);
                         controller.saveData();
                     } catch (Exception ex) {
                         System.err.println("Error saving data after day removal: " + ex.getMessage());
@@ -1079,6 +1052,7 @@ public class PackagesPanel extends BasePanel {
                     }
                     
                     // Save the data
+                    controller.markModified(packageRef);
                     controller.saveData();
                     
                     // Select the newly added day
@@ -1133,7 +1107,6 @@ public class PackagesPanel extends BasePanel {
                 controller.saveData();
                 
                 dialog.dispose();
-                refreshData();
                 updateStatus("Itinerary updated for " + packageRef.getName());
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(dialog, 
@@ -1183,7 +1156,7 @@ public class PackagesPanel extends BasePanel {
         availablePanel.setBorder(BorderFactory.createTitledBorder("Available Activities"));
         
         // Get all activities from controller
-        ArrayList<Activity> allActivities = controller.getActivities();
+        List<Activity> allActivities = controller.getActivities();
         
         // Create model for available activities (activities not in package)
         DefaultListModel<Activity> availableActivitiesModel = new DefaultListModel<>();
@@ -1269,7 +1242,7 @@ public class PackagesPanel extends BasePanel {
                 for (int i = indices.length - 1; i >= 0; i--) {
                     Activity activity = availableActivitiesModel.get(indices[i]);
                     // Add to package
-                    selectedPackage.addActivity(activity);
+                    controller.addActivityToPackage(selectedPackage, activity);
                     // Update models
                     packageActivitiesModel.addElement(activity);
                     availableActivitiesModel.remove(indices[i]);
@@ -1288,9 +1261,6 @@ public class PackagesPanel extends BasePanel {
                 boolean itineraryConflict = false;
                 StringBuilder conflictingActivities = new StringBuilder();
                 
-                // Get the itinerary to check if activities are used
-                Itinerary itinerary = selectedPackage.getItinerary();
-                
                 // Create a list to hold activities to remove
                 ArrayList<Activity> activitiesToRemove = new ArrayList<>();
                 
@@ -1299,20 +1269,12 @@ public class PackagesPanel extends BasePanel {
                     Activity activity = packageActivitiesModel.getElementAt(indices[i]);
                     
                     // Check if the activity is used in any itinerary day
-                    boolean isUsed = false;
-                    if (itinerary != null) {
-                        for (ItineraryDay day : itinerary.getDays()) {
-                            if (day.getActivities().contains(activity)) {
-                                isUsed = true;
-                                itineraryConflict = true;
-                                conflictingActivities.append("\n- ").append(activity.getName())
-                                    .append(" (used in Day ").append(day.getDayNumber()).append(")");
-                                break;
-                            }
-                        }
-                    }
-                    
-                    if (!isUsed) {
+                    ArrayList<ItineraryDay> usedIn = controller.getItineraryDaysWithActivity(selectedPackage, activity);
+                    if (!usedIn.isEmpty()) {
+                        itineraryConflict = true;
+                        conflictingActivities.append("\n- ").append(activity.getName())
+                            .append(" (used in Day ").append(usedIn.get(0).getDayNumber()).append(")");
+                    } else {
                         activitiesToRemove.add(activity);
                     }
                 }
@@ -1362,11 +1324,7 @@ public class PackagesPanel extends BasePanel {
         });
         
         // Done button action
-        doneButton.addActionListener(e -> {
-            dialog.dispose();
-            // Refresh the package data
-            refreshData();
-        });
+        doneButton.addActionListener(e -> dialog.dispose());
         
         // Show the dialog
         dialog.setVisible(true);
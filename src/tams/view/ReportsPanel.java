@@ -90,7 +90,7 @@ public class ReportsPanel extends BasePanel {
             parameterPanel.setLayout(new FlowLayout(FlowLayout.LEFT, 5, 5));
             
             // Add customer selection dropdown
-            ArrayList<Customer> customers = controller.getAllCustomers();
+            List<Customer> customers = controller.getAllCustomers();
             if (!customers.isEmpty()) {
                 JLabel customerLabel = new JLabel("Select Customer:");
                 
@@ -139,6 +139,18 @@ public class ReportsPanel extends BasePanel {
             statusComboBox.setMaximumSize(new Dimension(160, 25));
             parameterPanel.add(statusLabel);
             parameterPanel.add(statusComboBox);
+            
+            // Optional booking date range
+            JTextField fromDateField = new JTextField(10);
+            fromDateField.setName("fromDateField");
+            fromDateField.setToolTipText("yyyy-MM-dd, leave empty for no limit");
+            JTextField toDateField = new JTextField(10);
+            toDateField.setName("toDateField");
+            toDateField.setToolTipText("yyyy-MM-dd, leave empty for no limit");
+            parameterPanel.add(new JLabel("From:"));
+            parameterPanel.add(fromDateField);
+            parameterPanel.add(new JLabel("To:"));
+            parameterPanel.add(toDateField);
         } else {
             // Reset to default grid layout for other report types
             parameterPanel.setLayout(new GridLayout(0, 1, 5, 5));
@@ -235,45 +247,18 @@ public class ReportsPanel extends BasePanel {
             }
         };
         
-        // Calculate revenue for each package
-        Map<TravelPackage, Double> packageRevenue = new HashMap<>();
-        Map<TravelPackage, Integer> packageBookingCount = new HashMap<>();
-        
-        for (Booking booking : controller.getAllBookings()) {
-            if (booking.getPackage() != null && 
-                (booking.getStatus() == BookingStatus.COMPLETED || 
-                 booking.getStatus() == BookingStatus.CONFIRMED)) {
-                
-                TravelPackage pkg = booking.getPackage();
-                
-                // Increment revenue
-                double bookingValue = booking.getTotalPrice();
-                packageRevenue.put(pkg, packageRevenue.getOrDefault(pkg, 0.0) + bookingValue);
-                
-                // Increment booking count
-                packageBookingCount.put(pkg, packageBookingCount.getOrDefault(pkg, 0) + 1);
-            }
-        }
-        
-        // Populate the table
-        List<TravelPackage> packages = new ArrayList<>(packageRevenue.keySet());
-        packages.sort((p1, p2) -> Double.compare(packageRevenue.get(p2), packageRevenue.get(p1)));
-        
-        double totalRevenue = 0.0;
-        for (TravelPackage pkg : packages) {
-            double revenue = packageRevenue.get(pkg);
-            int bookingCount = packageBookingCount.get(pkg);
-            double averageValue = bookingCount > 0 ? revenue / bookingCount : 0;
-            
+        // Revenue for each package, highest first
+        long totalRevenueCents = 0;
+        for (PackageRevenue packageRevenue : controller.getRevenueByPackage()) {
             Object[] rowData = {
-                pkg.getName(),
-                String.format("$%.2f", revenue),
-                bookingCount,
-                String.format("$%.2f", averageValue)
+                packageRevenue.getTravelPackage().getName(),
+                Money.format(packageRevenue.getRevenueCents()),
+                packageRevenue.getBookingCount(),
+                Money.format(packageRevenue.getAverageBookingValueCents())
             };
             tableModel.addRow(rowData);
             
-            totalRevenue += revenue;
+            totalRevenueCents += packageRevenue.getRevenueCents();
         }
         
         // Create the table and add it to a scroll pane
@@ -297,14 +282,20 @@ public class ReportsPanel extends BasePanel {
      * Display bookings by status report.
      */
     private void displayBookingsByStatusReport() {
-        // Get the selected status from the parameter panel
+        // Get the selected status and date range from the parameter panel
         BookingStatus selectedStatus = null;
+        Date fromDate = null;
+        Date toDate = null;
+        SimpleDateFormat parameterFormat = new SimpleDateFormat("yyyy-MM-dd");
         for (Component comp : parameterPanel.getComponents()) {
             if (comp instanceof JComboBox && "statusComboBox".equals(comp.getName())) {
                 @SuppressWarnings("unchecked")
                 JComboBox<BookingStatus> comboBox = (JComboBox<BookingStatus>) comp;
                 selectedStatus = (BookingStatus) comboBox.getSelectedItem();
-                break;
+            } else if (comp instanceof JTextField && "fromDateField".equals(comp.getName())) {
+                fromDate = parseDate(parameterFormat, ((JTextField) comp).getText());
+            } else if (comp instanceof JTextField && "toDateField".equals(comp.getName())) {
+                toDate = parseDate(parameterFormat, ((JTextField) comp).getText());
             }
         }
         
@@ -312,8 +303,18 @@ public class ReportsPanel extends BasePanel {
             selectedStatus = BookingStatus.CONFIRMED; // Default if not found
         }
         
-        // Get bookings with the selected status
-        ArrayList<Booking> bookings = controller.searchBookingsByStatus(selectedStatus);
+        // Get bookings with the selected status, within the date range if one is given
+        ArrayList<Booking> bookings;
+        if (fromDate != null || toDate != null) {
+            bookings = new ArrayList<>();
+            for (Booking booking : controller.searchBookingsByDate(fromDate, toDate)) {
+                if (booking.getStatus() == selectedStatus) {
+                    bookings.add(booking);
+                }
+            }
+        } else {
+            bookings = controller.searchBookingsByStatus(selectedStatus);
+        }
         
         // Create the table model
         String[] columnNames = {"Booking ID", "Customer", "Package", "Date", "Total Price"};
@@ -326,7 +327,7 @@ public class ReportsPanel extends BasePanel {
         
         // Populate the table
         SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-        double totalRevenue = 0.0;
+        long totalRevenueCents = 0;
         
         for (Booking booking : bookings) {
             TravelPackage pkg = booking.getPackage();
@@ -336,10 +337,10 @@ public class ReportsPanel extends BasePanel {
                     booking.getCustomer().getName(),
                     pkg.getName(),
                     dateFormat.format(booking.getDate()),
-                    String.format("$%.2f", booking.getTotalPrice())
+                    Money.format(booking.getChargedAmountCents())
                 };
                 tableModel.addRow(rowData);
-                totalRevenue += booking.getTotalPrice();
+                totalRevenueCents += booking.getChargedAmountCents();
             }
         }
         
@@ -360,6 +361,24 @@ public class ReportsPanel extends BasePanel {
         reportContentPanel.add(reportPanel, BorderLayout.CENTER);
     }
     
+    /**
+     * Parse a date report parameter.
+     * 
+     * @param format the expected date format
+     * @param text the text entered
+     * @return the date, or null if the text is empty or not a valid date
+     */
+    private Date parseDate(SimpleDateFormat format, String text) {
+        if (text == null || text.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return format.parse(text.trim());
+        } catch (java.text.ParseException e) {
+            return null;
+        }
+    }
+    
     /**
      * Display top rated packages report.
      */
@@ -372,23 +391,12 @@ public class ReportsPanel extends BasePanel {
         
         reportContentPanel.add(titleLabel, BorderLayout.NORTH);
         
-        // Get all packages
-        ArrayList<TravelPackage> packages = controller.getAllTravelPackages();
-        
         // Create the table model
         String[] columnNames = {"Rank", "Package", "Average Rating", "Number of Reviews", "Price"};
         DefaultTableModel tableModel = new DefaultTableModel(columnNames, 0);
         
-        // Filter packages with at least one review
-        List<TravelPackage> ratedPackages = new ArrayList<>();
-        for (TravelPackage pkg : packages) {
-            if (!pkg.getReviews().isEmpty()) {
-                ratedPackages.add(pkg);
-            }
-        }
-        
-        // Sort packages by average rating
-        ratedPackages.sort((p1, p2) -> Double.compare(p2.getAverageRating(), p1.getAverageRating()));
+        // Packages with at least one review, already ranked by average rating
+        List<TravelPackage> ratedPackages = controller.getTopRatedPackages(Integer.MAX_VALUE);
         
         // Populate the table
         for (int i = 0; i < ratedPackages.size(); i++) {
@@ -397,8 +405,8 @@ public class ReportsPanel extends BasePanel {
                 i + 1,
                 pkg.getName(),
                 String.format("%.1f", pkg.getAverageRating()),
-                pkg.getReviews().size(),
-                String.format("$%.2f", pkg.getPrice())
+                pkg.getReviewCount(),
+                Money.format(pkg.calculateTotalPriceCents())
             };
             tableModel.addRow(rowData);
         }
@@ -448,7 +456,7 @@ public class ReportsPanel extends BasePanel {
                     pkg.getName(),
                     dateFormat.format(booking.getDate()),
                     booking.getStatus().getDisplayName(),
-                    String.format("$%.2f", booking.getTotalPrice())
+                    Money.format(booking.getChargedAmountCents())
                 };
                 tableModel.addRow(rowData);
             }
@@ -480,15 +488,15 @@ public class ReportsPanel extends BasePanel {
         titleLabel.setHorizontalAlignment(JLabel.CENTER);
         
         // Get all packages and bookings
-        ArrayList<TravelPackage> packages = controller.getAllTravelPackages();
-        ArrayList<Booking> allBookings = controller.getAllBookings();
+        List<TravelPackage> packages = controller.getAllTravelPackages();
+        List<Booking> allBookings = controller.getAllBookings();
         
-        // Count bookings per package
-        Map<TravelPackage, Integer> packageBookingCount = new HashMap<>();
+        // Count bookings per package, in mutable counters rather than boxed Integers
+        Map<TravelPackage, int[]> packageBookingCount = new HashMap<>();
         for (Booking booking : allBookings) {
             TravelPackage pkg = booking.getPackage();
             if (pkg != null) {
-                packageBookingCount.put(pkg, packageBookingCount.getOrDefault(pkg, 0) + 1);
+                packageBookingCount.computeIfAbsent(pkg, p -> new int[1])[0]++;
             }
         }
         
@@ -499,20 +507,20 @@ public class ReportsPanel extends BasePanel {
         // Sort packages by booking count
         List<TravelPackage> sortedPackages = new ArrayList<>(packageBookingCount.keySet());
         sortedPackages.sort((p1, p2) -> Integer.compare(
-            packageBookingCount.getOrDefault(p2, 0), 
-            packageBookingCount.getOrDefault(p1, 0)
+            packageBookingCount.get(p2)[0], 
+            packageBookingCount.get(p1)[0]
         ));
         
         // Add packages with bookings
         int rank = 1;
         for (TravelPackage pkg : sortedPackages) {
-            int bookingCount = packageBookingCount.getOrDefault(pkg, 0);
+            int bookingCount = packageBookingCount.get(pkg)[0];
             Object[] rowData = {
                 rank++,
                 pkg.getName(),
                 bookingCount,
                 pkg.getDestination(),
-                String.format("$%.2f", pkg.getPrice())
+                Money.format(pkg.calculateTotalPriceCents())
             };
             tableModel.addRow(rowData);
         }
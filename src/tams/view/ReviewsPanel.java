@@ -1,7 +1,6 @@
 package tams.view;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableRowSorter;
 import java.awt.*;
 import java.awt.event.ActionEvent;
@@ -12,6 +11,7 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.Predicate;
 
 import tams.controller.TravelAgencyController;
 import tams.model.Customer;
@@ -24,7 +24,7 @@ import tams.model.TravelPackage;
 public class ReviewsPanel extends BasePanel {
     
     private JTable reviewsTable;
-    private DefaultTableModel tableModel;
+    private EntityTableModel<Review> tableModel;
     
     private JComboBox<String> packageComboBox;
     private JComboBox<Integer> ratingComboBox;
@@ -39,6 +39,9 @@ public class ReviewsPanel extends BasePanel {
     private Review selectedReview;
     private boolean isInitialized = false;
     
+    // Date format for the table
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+    
     /**
      * Constructor for creating a new ReviewsPanel.
      * 
@@ -48,6 +51,15 @@ public class ReviewsPanel extends BasePanel {
     public ReviewsPanel(TravelAgencyController controller, MainWindow mainWindow) {
         super(controller, mainWindow);
         
+        // Patch the table when reviews change rather than finding every row again.
+        // A package change may be a new or renamed package for the filter list.
+        controller.addChangeListener(Review.class, event -> patchRows(tableModel, event));
+        controller.addChangeListener(TravelPackage.class, event -> {
+            SwingUtilities.invokeLater(this::updatePackageFilter);
+            redrawRows(tableModel);
+        });
+        controller.addChangeListener(Customer.class, event -> redrawRows(tableModel));
+        
         // Call refreshData explicitly to load reviews when panel is created
         SwingUtilities.invokeLater(() -> {
             refreshData();
@@ -68,7 +80,7 @@ public class ReviewsPanel extends BasePanel {
         controlsPanel.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
         
         // Create a list of package names including "All Packages"
-        ArrayList<TravelPackage> allPackages = controller.getAllTravelPackages();
+        List<TravelPackage> allPackages = controller.getAllTravelPackages();
         String[] packageNames = new String[allPackages.size() + 1];
         packageNames[0] = "All Packages";
         for (int i = 0; i < allPackages.size(); i++) {
@@ -105,22 +117,18 @@ public class ReviewsPanel extends BasePanel {
         contentPanel = new JPanel(new BorderLayout());
         contentPanel.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
         
-        // Create the table model with column names
-        String[] columnNames = {"ID", "Package", "Customer", "Rating", "Date", "Comment"};
-        tableModel = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false; // Make the table non-editable
-            }
-            
-            @Override
-            public Class<?> getColumnClass(int column) {
-                if (column == 3) {
-                    return Integer.class; // Make the rating column sortable as integers
-                }
-                return String.class;
-            }
-        };
+        // Create the table model; cells are formatted from the review as they are drawn,
+        // and the rating column sorts as integers
+        tableModel = new EntityTableModel<Review>()
+            .addColumn("ID", String.class, Review::getReviewId)
+            .addColumn("Package", String.class, review -> {
+                TravelPackage pkg = controller.getPackageForReview(review);
+                return pkg != null ? pkg.getName() : "Unknown";
+            })
+            .addColumn("Customer", String.class, review -> review.getCustomer().getName())
+            .addColumn("Rating", Integer.class, Review::getRating)
+            .addColumn("Date", String.class, review -> dateFormat.format(review.getDate()))
+            .addColumn("Comment", String.class, review -> formatComment(review.getComment()));
         
         // Create the table and add it to a scroll pane
         reviewsTable = new JTable(tableModel);
@@ -136,15 +144,14 @@ public class ReviewsPanel extends BasePanel {
         reviewsTable.getColumnModel().getColumn(5).setPreferredWidth(300); // Comment
         
         // Create a sorter for the table
-        TableRowSorter<DefaultTableModel> sorter = new TableRowSorter<>(tableModel);
+        TableRowSorter<EntityTableModel<Review>> sorter = new TableRowSorter<>(tableModel);
         reviewsTable.setRowSorter(sorter);
         
         // Add a listener to detect row selection
         reviewsTable.getSelectionModel().addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting() && reviewsTable.getSelectedRow() != -1) {
                 int selectedRow = reviewsTable.convertRowIndexToModel(reviewsTable.getSelectedRow());
-                String reviewId = (String) tableModel.getValueAt(selectedRow, 0);
-                selectedReview = findReviewById(reviewId);
+                selectedReview = tableModel.getRow(selectedRow);
                 updateButtonStates();
             }
         });
@@ -205,70 +212,51 @@ public class ReviewsPanel extends BasePanel {
     
     @Override
     public void refreshData() {
-        // Clear the table
         if (tableModel != null) {
-            tableModel.setRowCount(0);
+            updatePackageFilter();
             
-            // Update package filter dropdown to include any new packages
-            if (packageComboBox != null) {
-                String selectedPackage = (String) packageComboBox.getSelectedItem();
-                packageComboBox.removeAllItems();
-                
-                // Add "All Packages" as the first item
-                packageComboBox.addItem("All Packages");
-                
-                // Add all current packages
-                for (TravelPackage pkg : controller.getAllTravelPackages()) {
-                    packageComboBox.addItem(pkg.getName());
-                }
-                
-                // Restore previous selection if it still exists
-                if (selectedPackage != null) {
-                    boolean found = false;
-                    for (int i = 0; i < packageComboBox.getItemCount(); i++) {
-                        if (selectedPackage.equals(packageComboBox.getItemAt(i))) {
-                            packageComboBox.setSelectedIndex(i);
-                            found = true;
-                            break;
-                        }
-                    }
-                    // If previous selection not found, default to "All Packages"
-                    if (!found) {
-                        packageComboBox.setSelectedIndex(0);
-                    }
-                }
-            }
+            // Reset selection
+            selectedReview = null;
+            updateButtonStates();
+            
+            // Show all reviews from the controller, filled in from the background
+            runQuery(tableModel, controller::getReviews, review -> true,
+                count -> updateStatus(count + " reviews"));
+        }
+    }
+    
+    /**
+     * Update the package filter dropdown to list the current packages,
+     * keeping the package selected if it still exists.
+     */
+    private void updatePackageFilter() {
+        if (packageComboBox != null) {
+            String selectedPackage = (String) packageComboBox.getSelectedItem();
+            packageComboBox.removeAllItems();
             
-            // Get all reviews from the controller
-            ArrayList<Review> reviews = controller.getReviews();
+            // Add "All Packages" as the first item
+            packageComboBox.addItem("All Packages");
+            
+            // Add all current packages
+            for (TravelPackage pkg : controller.getAllTravelPackages()) {
+                packageComboBox.addItem(pkg.getName());
+            }
             
-            // Populate the table with review data
-            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-            for (Review review : reviews) {
-                // Find which package this review belongs to
-                String packageName = "Unknown";
-                for (TravelPackage pkg : controller.getAllTravelPackages()) {
-                    if (pkg.getReviews().contains(review)) {
-                        packageName = pkg.getName();
+            // Restore previous selection if it still exists
+            if (selectedPackage != null) {
+                boolean found = false;
+                for (int i = 0; i < packageComboBox.getItemCount(); i++) {
+                    if (selectedPackage.equals(packageComboBox.getItemAt(i))) {
+                        packageComboBox.setSelectedIndex(i);
+                        found = true;
                         break;
                     }
                 }
-                
-                Object[] rowData = {
-                    review.getReviewId(),
-                    packageName,
-                    review.getCustomer().getName(),
-                    review.getRating(),
-                    dateFormat.format(review.getDate()),
-                    formatComment(review.getComment())
-                };
-                tableModel.addRow(rowData);
+                // If previous selection not found, default to "All Packages"
+                if (!found) {
+                    packageComboBox.setSelectedIndex(0);
+                }
             }
-            
-            // Reset selection
-            selectedReview = null;
-            updateButtonStates();
-            updateStatus(reviews.size() + " reviews");
         }
     }
     
@@ -292,39 +280,9 @@ public class ReviewsPanel extends BasePanel {
         String packageName = (String) packageComboBox.getSelectedItem();
         int minRating = (Integer) ratingComboBox.getSelectedItem();
         
-        // Clear the table
-        tableModel.setRowCount(0);
-        
-        // Get filtered reviews
-        ArrayList<Review> filteredReviews = getFilteredReviews(packageName, minRating);
-        
-        // Populate the table
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-        for (Review review : filteredReviews) {
-            // Find which package this review belongs to
-            String pkgName = "Unknown";
-            for (TravelPackage pkg : controller.getAllTravelPackages()) {
-                if (pkg.getReviews().contains(review)) {
-                    pkgName = pkg.getName();
-                    break;
-                }
-            }
-            
-            // Only add reviews that match the package filter (if not "All Packages")
-            if ("All Packages".equals(packageName) || pkgName.equals(packageName)) {
-                Object[] rowData = {
-                    review.getReviewId(),
-                    pkgName,
-                    review.getCustomer().getName(),
-                    review.getRating(),
-                    dateFormat.format(review.getDate()),
-                    formatComment(review.getComment())
-                };
-                tableModel.addRow(rowData);
-            }
-        }
-        
-        updateStatus(filteredReviews.size() + " reviews found");
+        // Find the reviews matching the package and rating filters in the background
+        runQuery(tableModel, controller::getReviews, reviewFilter(packageName, minRating),
+            count -> updateStatus(count + " reviews found"));
     }
     
     /**
@@ -337,53 +295,27 @@ public class ReviewsPanel extends BasePanel {
     }
     
     /**
-     * Get a filtered list of reviews based on selected criteria.
+     * Get the test for the selected criteria.
      * 
      * @param packageName the selected package name or "All Packages"
      * @param minRating the minimum rating
-     * @return a filtered list of reviews
+     * @return the test a review must pass to be shown
      */
-    private ArrayList<Review> getFilteredReviews(String packageName, int minRating) {
-        ArrayList<Review> allReviews = controller.getReviews();
-        ArrayList<Review> filteredReviews = new ArrayList<>();
-        
-        for (Review review : allReviews) {
+    private Predicate<Review> reviewFilter(String packageName, int minRating) {
+        return review -> {
             // Skip reviews with ratings lower than the minimum
             if (minRating > 0 && review.getRating() < minRating) {
-                continue;
+                return false;
             }
             
             // If package filter is specified, check if review belongs to that package
             if (!"All Packages".equals(packageName)) {
-                boolean found = false;
-                for (TravelPackage pkg : controller.getAllTravelPackages()) {
-                    if (pkg.getName().equals(packageName) && pkg.getReviews().contains(review)) {
-                        found = true;
-                        break;
-                    }
-                }
-                if (!found) continue;
+                TravelPackage pkg = controller.getPackageForReview(review);
+                if (pkg == null || !pkg.getName().equals(packageName)) return false;
             }
             
-            filteredReviews.add(review);
-        }
-        
-        return filteredReviews;
-    }
-    
-    /**
-     * Find a review by its ID.
-     * 
-     * @param reviewId the ID to search for
-     * @return the Review object, or null if not found
-     */
-    private Review findReviewById(String reviewId) {
-        for (Review review : controller.getReviews()) {
-            if (review.getReviewId().equals(reviewId)) {
-                return review;
-            }
-        }
-        return null;
+            return true;
+        };
     }
     
     /**
@@ -397,8 +329,8 @@ public class ReviewsPanel extends BasePanel {
         formPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
         
         // Create combo boxes for customer and package selection
-        ArrayList<Customer> customers = controller.getAllCustomers();
-        ArrayList<TravelPackage> packages = controller.getAllTravelPackages();
+        List<Customer> customers = controller.getAllCustomers();
+        List<TravelPackage> packages = controller.getAllTravelPackages();
         
         if (customers.isEmpty() || packages.isEmpty()) {
             JOptionPane.showMessageDialog(this, 
@@ -459,12 +391,10 @@ public class ReviewsPanel extends BasePanel {
                 // Create the review
                 Review newReview = controller.addReview(travelPackage, customer, rating, comment);
                 
-                // Store customer and package names before refreshing
                 String customerName = customer.getName();
                 String packageName = travelPackage.getName();
                 
                 dialog.dispose();
-                refreshData();
                 updateStatus("Review added for " + customerName + " on " + packageName);
                 
             } catch (Exception ex) {
@@ -541,14 +471,11 @@ public class ReviewsPanel extends BasePanel {
                 }
                 
                 // Update the review
-                selectedReview.setRating(rating);
-                selectedReview.setComment(comment);
+                controller.updateReview(selectedReview, rating, comment);
                 
-                // Store customer name before refreshing
                 String customerName = selectedReview.getCustomer().getName();
                 
                 dialog.dispose();
-                refreshData();
                 updateStatus("Review updated for " + customerName);
                 
             } catch (Exception ex) {
@@ -584,7 +511,8 @@ public class ReviewsPanel extends BasePanel {
                 boolean success = controller.deleteReview(selectedReview);
                 
                 if (success) {
-                    refreshData();
+                    selectedReview = null;
+                    updateButtonStates();
                     updateStatus("Review deleted for " + customerName);
                 } else {
                     JOptionPane.showMessageDialog(this, 
@@ -607,23 +535,18 @@ public class ReviewsPanel extends BasePanel {
             return;
         }
         
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        SimpleDateFormat detailFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
         
         // Find which package this review belongs to
-        String packageName = "Unknown";
-        for (TravelPackage pkg : controller.getAllTravelPackages()) {
-            if (pkg.getReviews().contains(selectedReview)) {
-                packageName = pkg.getName();
-                break;
-            }
-        }
+        TravelPackage pkg = controller.getPackageForReview(selectedReview);
+        String packageName = pkg != null ? pkg.getName() : "Unknown";
         
         StringBuilder details = new StringBuilder();
         details.append("Review ID: ").append(selectedReview.getReviewId()).append("\n\n");
         details.append("Package: ").append(packageName).append("\n\n");
         details.append("Customer: ").append(selectedReview.getCustomer().getName()).append("\n\n");
         details.append("Rating: ").append(selectedReview.getRating()).append(" stars\n\n");
-        details.append("Date: ").append(dateFormat.format(selectedReview.getDate())).append("\n\n");
+        details.append("Date: ").append(detailFormat.format(selectedReview.getDate())).append("\n\n");
         details.append("Comment:\n").append(selectedReview.getComment());
         
         JTextArea textArea = new JTextArea(details.toString());
@@ -0,0 +1,151 @@
+package tams.view;
+
+import javax.swing.JScrollBar;
+import javax.swing.SwingWorker;
+import java.awt.event.AdjustmentListener;
+import java.util.Collections;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.IntConsumer;
+
+import tams.util.Page;
+
+/**
+ * Fills an {@link EntityTableModel} one page at a time as its table is
+ * scrolled, for collections too large to load in full.
+ * The first page is shown when paging starts. Each page after it is fetched on
+ * a worker thread as soon as the one before it is shown, so it is usually ready
+ * by the time the table is scrolled near its last row. Only the pages scrolled
+ * through are ever loaded.
+ *
+ * @param <T> the type of entity in the table
+ */
+public class TablePager<T> {
+
+    /**
+     * Where the pages come from.
+     *
+     * @param <T> the type of entity paged through
+     */
+    public interface PageSource<T> {
+
+        /**
+         * Fetch a page. Called on a worker thread.
+         *
+         * @param after the cursor returned with the previous page, or null for the first page
+         * @param limit the most entities to return
+         * @return the page
+         * @throws Exception if the page cannot be fetched
+         */
+        Page<T> fetch(Page.Cursor after, int limit) throws Exception;
+    }
+
+    // Rows fetched at a time
+    public static final int PAGE_SIZE = 200;
+
+    private final EntityTableModel<T> model;
+    private final JScrollBar scrollBar;
+    private final PageSource<T> source;
+    private final IntConsumer onLoaded;
+    private final AdjustmentListener scrollListener = e -> showFetchedIfNeeded();
+
+    private SwingWorker<Page<T>, Void> fetching;
+    // The next page, once fetched and until it is shown
+    private Page<T> fetched;
+    private boolean stopped = false;
+
+    /**
+     * Create a pager. The table is not touched until it is started.
+     *
+     * @param model the table model to fill
+     * @param scrollBar the vertical scroll bar of the table's scroll pane
+     * @param source fetches the pages
+     * @param onLoaded called on the Event Dispatch Thread with the number of
+     *                 rows loaded so far, each time a page is shown
+     */
+    public TablePager(EntityTableModel<T> model, JScrollBar scrollBar, PageSource<T> source, IntConsumer onLoaded) {
+        this.model = model;
+        this.scrollBar = scrollBar;
+        this.source = source;
+        this.onLoaded = onLoaded;
+    }
+
+    /**
+     * Empty the table and fetch the first page. Must be called on the Event Dispatch Thread.
+     */
+    public void start() {
+        model.setRows(Collections.emptyList());
+        scrollBar.addAdjustmentListener(scrollListener);
+        fetch(null);
+    }
+
+    /**
+     * Stop fetching pages. The rows already shown are left in the table.
+     * Must be called on the Event Dispatch Thread.
+     */
+    public void stop() {
+        stopped = true;
+        scrollBar.removeAdjustmentListener(scrollListener);
+        if (fetching != null) {
+            fetching.cancel(false);
+        }
+    }
+
+    private void fetch(Page.Cursor after) {
+        SwingWorker<Page<T>, Void> worker = new SwingWorker<Page<T>, Void>() {
+            @Override
+            protected Page<T> doInBackground() throws Exception {
+                return source.fetch(after, PAGE_SIZE);
+            }
+
+            @Override
+            protected void done() {
+                if (!stopped && !isCancelled()) {
+                    fetched(this);
+                }
+            }
+        };
+        fetching = worker;
+        worker.execute();
+    }
+
+    private void fetched(SwingWorker<Page<T>, Void> worker) {
+        fetching = null;
+        try {
+            fetched = worker.get();
+        } catch (InterruptedException | CancellationException e) {
+            return;
+        } catch (ExecutionException e) {
+            System.err.println("Error fetching page: " + e.getCause());
+            e.getCause().printStackTrace();
+            return;
+        }
+
+        // The first page is shown straight away; later ones once they are scrolled to
+        if (model.getRowCount() == 0) {
+            showFetched();
+        } else {
+            showFetchedIfNeeded();
+        }
+    }
+
+    private void showFetchedIfNeeded() {
+        // Within a screen of the last row, or the rows do not fill the screen
+        if (fetched != null && scrollBar.isShowing()
+                && scrollBar.getValue() + 2 * scrollBar.getVisibleAmount() >= scrollBar.getMaximum()) {
+            showFetched();
+        }
+    }
+
+    private void showFetched() {
+        Page<T> page = fetched;
+        fetched = null;
+        model.addRows(page.getItems());
+        onLoaded.accept(model.getRowCount());
+
+        // Fetch the next page while this one is looked at
+        if (page.hasNext()) {
+            fetch(page.getNext());
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package tams.view;
+
+import javax.swing.SwingWorker;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
+
+/**
+ * Background query that fills an {@link EntityTableModel}.
+ * The query runs on a worker thread and hands its rows to the Event Dispatch
+ * Thread in chunks as they are found, so the table fills in while the scan goes
+ * on and the window stays responsive. A query that has been cancelled stops at
+ * its next row and adds nothing more to the table.
+ *
+ * @param <T> the type of entity in the table
+ */
+public class TableQuery<T> extends SwingWorker<Integer, List<T>> {
+
+    /**
+     * The work done by a query on the worker thread.
+     *
+     * @param <T> the type of entity found
+     */
+    public interface Query<T> {
+
+        /**
+         * Find the rows, passing each to {@link TableQuery#add} or
+         * {@link TableQuery#addMatching}. Anything read from Swing components
+         * must be read before the query starts.
+         *
+         * @param query the running query
+         * @throws Exception if the rows cannot be found
+         */
+        void run(TableQuery<T> query) throws Exception;
+    }
+
+    // Rows handed to the table at a time
+    private static final int CHUNK_SIZE = 500;
+
+    private final EntityTableModel<T> model;
+    private final Query<T> query;
+    private final IntConsumer onDone;
+    private List<T> chunk = new ArrayList<>(CHUNK_SIZE);
+    private int found = 0;
+
+    /**
+     * Create a query. The table is not touched until it is started.
+     *
+     * @param model the table model to fill
+     * @param query the work to do on the worker thread
+     * @param onDone called on the Event Dispatch Thread with the number of rows
+     *               found, unless the query is cancelled or fails
+     */
+    public TableQuery(EntityTableModel<T> model, Query<T> query, IntConsumer onDone) {
+        this.model = model;
+        this.query = query;
+        this.onDone = onDone;
+    }
+
+    /**
+     * Add a row to the table.
+     *
+     * @param row the entity
+     */
+    public void add(T row) {
+        chunk.add(row);
+        found++;
+        if (chunk.size() >= CHUNK_SIZE) {
+            flush();
+        }
+    }
+
+    /**
+     * Add every candidate that passes a test, reporting progress through the
+     * candidates and stopping early if the query is cancelled.
+     *
+     * @param candidates the entities to test
+     * @param test the test
+     */
+    public void addMatching(Collection<? extends T> candidates, Predicate<? super T> test) {
+        int total = candidates.size();
+        int scanned = 0;
+        for (T candidate : candidates) {
+            if (isCancelled()) {
+                return;
+            }
+            if (test.test(candidate)) {
+                add(candidate);
+            }
+            scanned++;
+            setProgress((int) ((long) scanned * 100 / total));
+        }
+    }
+
+    @Override
+    protected Integer doInBackground() throws Exception {
+        query.run(this);
+        flush();
+        return found;
+    }
+
+    @Override
+    protected void process(List<List<T>> chunks) {
+        // Chunks still queued when the query was cancelled belong to a table that has been reset
+        if (isCancelled()) {
+            return;
+        }
+        for (List<T> rows : chunks) {
+            model.addRows(rows);
+        }
+    }
+
+    @Override
+    protected void done() {
+        if (isCancelled()) {
+            return;
+        }
+        try {
+            onDone.accept(get());
+        } catch (InterruptedException | CancellationException e) {
+            // Replaced by a newer query
+        } catch (ExecutionException e) {
+            System.err.println("Error running query: " + e.getCause());
+            e.getCause().printStackTrace();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void flush() {
+        if (!chunk.isEmpty() && !isCancelled()) {
+            publish(chunk);
+            chunk = new ArrayList<>(CHUNK_SIZE);
+        }
+    }
+}
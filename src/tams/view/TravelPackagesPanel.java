@@ -8,6 +8,7 @@ import java.awt.event.*;
 import java.text.NumberFormat;
 import java.util.*;
 import java.util.List;
+import java.util.function.Predicate;
 
 import tams.controller.TravelAgencyController;
 import tams.model.*;
@@ -19,7 +20,7 @@ public class TravelPackagesPanel extends BasePanel {
     
     // Table components
     private JTable packagesTable;
-    private DefaultTableModel tableModel;
+    private EntityTableModel<TravelPackage> tableModel;
     
     // Filter components
     private JTextField nameField;
@@ -48,6 +49,9 @@ public class TravelPackagesPanel extends BasePanel {
     public TravelPackagesPanel(TravelAgencyController controller, MainWindow mainWindow) {
         super(controller, mainWindow);
         isInitialized = true;
+        
+        // Patch the table when packages change rather than finding every row again
+        controller.addChangeListener(TravelPackage.class, event -> patchRows(tableModel, event));
     }
     
     @Override
@@ -122,14 +126,14 @@ public class TravelPackagesPanel extends BasePanel {
         headerPanel.setBorder(BorderFactory.createEmptyBorder(0, 0, 10, 0));
         headerPanel.add(new JLabel("Travel Packages", JLabel.LEFT), BorderLayout.WEST);
         
-        // Create the table
-        String[] columnNames = {"ID", "Name", "Destination", "Duration", "Price", "Bookings"};
-        tableModel = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false; // Make table cells non-editable
-            }
-        };
+        // Create the table; cells are formatted from the package as they are drawn
+        tableModel = new EntityTableModel<TravelPackage>()
+            .addColumn("ID", TravelPackage::getServiceId)
+            .addColumn("Name", TravelPackage::getName)
+            .addColumn("Destination", TravelPackage::getDestination)
+            .addColumn("Duration", pkg -> pkg.getDuration() + " days")
+            .addColumn("Price", pkg -> String.format("$%.2f", pkg.getPrice()))
+            .addColumn("Bookings", Integer.class, controller::countBookingsForPackage);
         
         packagesTable = new JTable(tableModel);
         packagesTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
@@ -137,8 +141,7 @@ public class TravelPackagesPanel extends BasePanel {
             if (!e.getValueIsAdjusting()) {
                 int selectedRow = packagesTable.getSelectedRow();
                 if (selectedRow != -1) {
-                    String packageId = (String) tableModel.getValueAt(selectedRow, 0);
-                    selectedPackage = findPackageById(packageId);
+                    selectedPackage = tableModel.getRow(selectedRow);
                     updateButtonStates();
                 }
             }
@@ -210,34 +213,15 @@ public class TravelPackagesPanel extends BasePanel {
     @Override
     public void refreshData() {
         if (isInitialized && mainWindow != null) {
-            // Clear the table
-            tableModel.setRowCount(0);
-            
-            // Get packages filtered by current filter settings
-            ArrayList<TravelPackage> packages = getFilteredPackages();
-            
-            // Add packages to the table
-            for (TravelPackage pkg : packages) {
-                // Get booking count for this package
-                int bookingCount = controller.getBookingsForPackage(pkg).size();
-                
-                Object[] row = {
-                    pkg.getServiceId(),
-                    pkg.getName(),
-                    pkg.getDestination(),
-                    pkg.getDuration() + " days",
-                    String.format("$%.2f", pkg.getPrice()),
-                    bookingCount
-                };
-                tableModel.addRow(row);
-            }
-            
-            // Update status
-            updateStatus("Packages loaded: " + packages.size());
-            
             // Clear selection
             selectedPackage = null;
             updateButtonStates();
+            
+            // Find the packages matching the current filter settings in the background
+            String nameFilter = nameField.getText().trim();
+            String destFilter = destinationField.getText().trim();
+            runQuery(tableModel, () -> findCandidates(nameFilter, destFilter), currentFilter(),
+                count -> updateStatus("Packages loaded: " + count));
         }
     }
     
@@ -261,62 +245,46 @@ public class TravelPackagesPanel extends BasePanel {
     }
     
     /**
-     * Get packages filtered by the current filter settings.
+     * Get the test for the current filter settings. The filter fields are read now.
      * 
-     * @return filtered list of packages
+     * @return the test a package must pass to be shown
      */
-    private ArrayList<TravelPackage> getFilteredPackages() {
-        ArrayList<TravelPackage> allPackages = controller.getAllTravelPackages();
-        ArrayList<TravelPackage> filteredPackages = new ArrayList<>();
-        
+    private Predicate<TravelPackage> currentFilter() {
         // Get filter values
         String nameFilter = nameField.getText().trim().toLowerCase();
         String destFilter = destinationField.getText().trim().toLowerCase();
         double minPrice = (Double) minPriceSpinner.getValue();
         double maxPrice = (Double) maxPriceSpinner.getValue();
         
-        // Apply filters
-        for (TravelPackage pkg : allPackages) {
-            boolean includePackage = true;
-            
-            // Filter by name
-            if (!nameFilter.isEmpty() && 
-                !pkg.getName().toLowerCase().contains(nameFilter)) {
-                includePackage = false;
+        return pkg -> {
+            // Filter by name and destination, ignoring case like the search index
+            if (!nameFilter.isEmpty() && !pkg.getName().toLowerCase().contains(nameFilter)) {
+                return false;
             }
-            
-            // Filter by destination
-            if (!destFilter.isEmpty() && 
-                !pkg.getDestination().toLowerCase().contains(destFilter)) {
-                includePackage = false;
+            if (!destFilter.isEmpty() && !pkg.getDestination().toLowerCase().contains(destFilter)) {
+                return false;
             }
             
             // Filter by price range
-            if (pkg.getPrice() < minPrice || pkg.getPrice() > maxPrice) {
-                includePackage = false;
-            }
-            
-            if (includePackage) {
-                filteredPackages.add(pkg);
-            }
-        }
-        
-        return filteredPackages;
+            return pkg.getPrice() >= minPrice && pkg.getPrice() <= maxPrice;
+        };
     }
     
     /**
-     * Find a package by its ID.
+     * Find the packages worth testing against the filters. Text filters are
+     * answered by the search index.
      * 
-     * @param packageId the package ID to find
-     * @return the found TravelPackage or null
+     * @param nameFilter the name filter, or empty
+     * @param destFilter the destination filter, or empty
+     * @return the candidate packages
      */
-    private TravelPackage findPackageById(String packageId) {
-        for (TravelPackage pkg : controller.getAllTravelPackages()) {
-            if (pkg.getServiceId().equals(packageId)) {
-                return pkg;
-            }
+    private List<TravelPackage> findCandidates(String nameFilter, String destFilter) {
+        if (!nameFilter.isEmpty()) {
+            return controller.searchPackagesByName(nameFilter);
+        } else if (!destFilter.isEmpty()) {
+            return controller.searchPackagesByDestination(destFilter);
         }
-        return null;
+        return controller.getAllTravelPackages();
     }
     
     /**
@@ -395,7 +363,6 @@ public class TravelPackagesPanel extends BasePanel {
                     name, description, price, destination, duration, accommodation);
                 
                 dialog.dispose();
-                refreshData();
                 updateStatus("Package created: " + newPackage.getName());
                 
             } catch (Exception ex) {
@@ -499,12 +466,8 @@ public class TravelPackagesPanel extends BasePanel {
                     accommodation
                 );
                 
-                // Store the name before we refresh
-                String packageName = name;
-                
                 dialog.dispose();
-                refreshData();
-                updateStatus("Package updated: " + packageName);
+                updateStatus("Package updated: " + name);
                 
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(dialog, 
@@ -547,7 +510,8 @@ public class TravelPackagesPanel extends BasePanel {
                 
                 if (success) {
                     String packageName = selectedPackage.getName();
-                    refreshData();
+                    selectedPackage = null;
+                    updateButtonStates();
                     updateStatus("Package deleted: " + packageName);
                 } else {
                     JOptionPane.showMessageDialog(this, 
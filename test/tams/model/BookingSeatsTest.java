@@ -0,0 +1,206 @@
+package tams.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that bookings never hold more seats than a departure has, and that the
+ * seats a booking holds always match its travelers, status and date, however
+ * many agents change bookings at once.
+ */
+public class BookingSeatsTest {
+
+    private static final long DAY = 24L * 60 * 60 * 1000;
+    private static final Date FIRST = new Date(1800000000000L);
+    private static final Date SECOND = new Date(FIRST.getTime() + 7 * DAY);
+
+    private final Customer customer = new Customer("C1", "Test Customer", "test@example.com", "555-0100", "Here");
+
+    private static TravelPackage packageWithSeats(int capacity) {
+        TravelPackage travelPackage = new TravelPackage("P1", "Test", "Test package", 100, "Anywhere", 3, "Hotel");
+        travelPackage.setCapacity(capacity);
+        return travelPackage;
+    }
+
+    private Booking booking(String id, TravelPackage travelPackage, int travelers, BookingStatus status) {
+        return new Booking(id, customer, travelPackage, FIRST, status, travelers, null);
+    }
+
+    @Test
+    public void agentsRacingForTheLastSeatsNeverOverbook() throws Exception {
+        TravelPackage travelPackage = packageWithSeats(50);
+        AtomicInteger reserved = new AtomicInteger();
+
+        runConcurrently(16, 25, (thread, round) -> {
+            Booking booking = booking("B" + thread + "-" + round, travelPackage, 1, BookingStatus.PENDING);
+            if (booking.reserveSeats()) {
+                reserved.incrementAndGet();
+            }
+        });
+
+        assertEquals(50, reserved.get());
+        assertEquals(50, travelPackage.getSeatsTaken(FIRST));
+    }
+
+    @Test
+    public void concurrentChangesToOneBookingKeepItsSeatsInLine() throws Exception {
+        TravelPackage travelPackage = packageWithSeats(8);
+        Booking booking = booking("B1", travelPackage, 2, BookingStatus.PENDING);
+        assertTrue(booking.reserveSeats());
+        BookingStatus[] statuses = BookingStatus.values();
+
+        runConcurrently(8, 5000, (thread, round) -> {
+            Random random = new Random(thread * 100003L + round);
+            switch (random.nextInt(4)) {
+                case 0:
+                    booking.updateTravelers(1 + random.nextInt(10), statuses[random.nextInt(statuses.length)]);
+                    break;
+                case 1:
+                    booking.setNumTravelers(1 + random.nextInt(10));
+                    break;
+                case 2:
+                    booking.updateStatus(statuses[random.nextInt(statuses.length)]);
+                    break;
+                default:
+                    booking.setDate(random.nextBoolean() ? FIRST : SECOND);
+                    break;
+            }
+            assertTrue(travelPackage.getSeatsTaken(FIRST) <= 8);
+            assertTrue(travelPackage.getSeatsTaken(SECOND) <= 8);
+        });
+
+        int wanted = booking.getStatus() == BookingStatus.CANCELLED ? 0 : booking.getNumTravelers();
+        Date held = booking.getDate();
+        Date other = held.equals(FIRST) ? SECOND : FIRST;
+        assertEquals(wanted, travelPackage.getSeatsTaken(held));
+        assertEquals(0, travelPackage.getSeatsTaken(other));
+
+        booking.releaseSeats();
+        assertEquals(0, travelPackage.getSeatsTaken(FIRST));
+        assertEquals(0, travelPackage.getSeatsTaken(SECOND));
+    }
+
+    @Test
+    public void onlyOneOfManyConcurrentCancellationsSucceeds() throws Exception {
+        TravelPackage travelPackage = packageWithSeats(10);
+        for (int round = 0; round < 200; round++) {
+            Booking booking = booking("B" + round, travelPackage, 2, BookingStatus.CONFIRMED);
+            assertTrue(booking.reserveSeats());
+            AtomicInteger cancelled = new AtomicInteger();
+            AtomicInteger notified = new AtomicInteger();
+            booking.setListener(new BookingListener() {
+                @Override
+                public void statusChanged(Booking changed, BookingStatus oldStatus) {
+                    notified.incrementAndGet();
+                }
+
+                @Override
+                public void dateChanged(Booking changed, Date oldDate) {
+                }
+            });
+
+            runConcurrently(8, 1, (thread, ignored) -> {
+                if (booking.cancelBooking()) {
+                    cancelled.incrementAndGet();
+                }
+            });
+
+            assertEquals(1, cancelled.get());
+            assertEquals(1, notified.get());
+            assertEquals(0, travelPackage.getSeatsTaken(FIRST));
+        }
+    }
+
+    @Test
+    public void settersRefuseChangesThatNeedSeatsThatAreGone() {
+        TravelPackage travelPackage = packageWithSeats(3);
+        Booking full = booking("B1", travelPackage, 3, BookingStatus.CONFIRMED);
+        Booking cancelled = booking("B2", travelPackage, 1, BookingStatus.CANCELLED);
+        assertTrue(full.reserveSeats());
+        assertTrue(cancelled.reserveSeats());
+
+        // Reopening needs a seat
+        assertFalse(cancelled.updateStatus(BookingStatus.PENDING));
+        assertEquals(BookingStatus.CANCELLED, cancelled.getStatus());
+        assertFalse(cancelled.confirmBooking());
+
+        // More travelers need more seats
+        assertFalse(full.setNumTravelers(4));
+        assertEquals(3, full.getNumTravelers());
+
+        // Moving frees the first departure, and fewer travelers always fit
+        assertTrue(full.setDate(SECOND));
+        assertEquals(0, travelPackage.getSeatsTaken(FIRST));
+        assertEquals(3, travelPackage.getSeatsTaken(SECOND));
+        assertTrue(cancelled.updateStatus(BookingStatus.PENDING));
+        assertEquals(1, travelPackage.getSeatsTaken(FIRST));
+        assertFalse(cancelled.setDate(SECOND));
+        assertTrue(full.setNumTravelers(2));
+        assertTrue(cancelled.setDate(SECOND));
+        assertEquals(3, travelPackage.getSeatsTaken(SECOND));
+    }
+
+    @Test
+    public void uncountedBookingsChangeFreely() {
+        TravelPackage travelPackage = packageWithSeats(1);
+        Booking booking = booking("B1", travelPackage, 1, BookingStatus.PENDING);
+
+        assertTrue(booking.setNumTravelers(5));
+        assertTrue(booking.setDate(SECOND));
+        assertEquals(0, travelPackage.getSeatsTaken(SECOND));
+
+        // Existing bookings are held whether or not they fit
+        booking.holdSeats();
+        assertEquals(5, travelPackage.getSeatsTaken(SECOND));
+    }
+
+    /**
+     * A step run by many threads at once.
+     */
+    private interface Step {
+        void run(int thread, int round) throws Exception;
+    }
+
+    private static void runConcurrently(int threads, int rounds, Step step) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> tasks = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                tasks.add(pool.submit(() -> {
+                    start.await();
+                    for (int round = 0; round < rounds; round++) {
+                        step.run(thread, round);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> task : tasks) {
+                try {
+                    task.get(60, TimeUnit.SECONDS);
+                } catch (ExecutionException e) {
+                    throw new AssertionError("Thread failed: " + e.getCause(), e.getCause());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package tams.model;
+
+import java.time.LocalDate;
+import java.util.Date;
+
+/**
+ * Measures seat bookkeeping under contention: the lock-free counts of a
+ * package's seat inventory, and seat moves on bookings, each with every
+ * thread on the same departure or booking and with each on its own.
+ * Not run with the tests; run its main method to print the throughput.
+ */
+public class SeatContentionBenchmark {
+
+    private static final long OPERATIONS = 2_000_000;
+    private static final long DAY = 24L * 60 * 60 * 1000;
+
+    /**
+     * The work of one thread.
+     */
+    private interface Worker {
+        void run(int thread) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("CPUs: " + Runtime.getRuntime().availableProcessors());
+        for (int threads : new int[] {1, 2, 4, 8}) {
+            for (boolean shared : new boolean[] {true, false}) {
+                benchmarkInventory(threads, shared);
+            }
+        }
+        for (int threads : new int[] {1, 2, 4, 8}) {
+            for (boolean shared : new boolean[] {true, false}) {
+                benchmarkBookings(threads, shared);
+            }
+        }
+    }
+
+    private static void benchmarkInventory(int threads, boolean shared) throws Exception {
+        SeatInventory inventory = new SeatInventory();
+        LocalDate first = LocalDate.of(2027, 1, 1);
+        double seconds = time(threads, thread -> {
+            LocalDate departure = shared ? first : first.plusDays(thread);
+            for (long i = 0; i < OPERATIONS; i++) {
+                inventory.tryReserve(departure, 1);
+                inventory.release(departure, 1);
+            }
+        });
+        report("inventory reserve+release", threads, shared ? "same departure" : "own departure", seconds);
+    }
+
+    private static void benchmarkBookings(int threads, boolean shared) throws Exception {
+        TravelPackage travelPackage = new TravelPackage("P1", "Bench", "Benchmark package", 100, "Anywhere", 3, "Hotel");
+        Customer customer = new Customer("C1", "Bench", "bench@example.com", "555-0100", "Here");
+        Booking[] bookings = new Booking[threads];
+        for (int t = 0; t < threads; t++) {
+            Date departure = new Date(1800000000000L + (shared ? 0 : t * DAY));
+            bookings[t] = shared && t > 0 ? bookings[0]
+                : new Booking("B" + t, customer, travelPackage, departure, BookingStatus.PENDING, 1, null);
+            bookings[t].reserveSeats();
+        }
+        double seconds = time(threads, thread -> {
+            Booking booking = bookings[thread];
+            for (long i = 0; i < OPERATIONS; i++) {
+                booking.setNumTravelers(2 + (int) (i & 1));
+            }
+        });
+        report("booking traveler changes", threads, shared ? "same booking" : "own booking", seconds);
+    }
+
+    private static double time(int threads, Worker worker) throws Exception {
+        Thread[] running = new Thread[threads];
+        Exception[] failure = new Exception[1];
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            running[t] = new Thread(() -> {
+                try {
+                    worker.run(thread);
+                } catch (Exception e) {
+                    failure[0] = e;
+                }
+            });
+            running[t].start();
+        }
+        for (Thread thread : running) {
+            thread.join();
+        }
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        return (System.nanoTime() - start) / 1e9;
+    }
+
+    private static void report(String what, int threads, String sharing, double seconds) {
+        System.out.printf("%s, %d threads, %s: %.1f M/s%n",
+            what, threads, sharing, threads * OPERATIONS / seconds / 1e6);
+    }
+}
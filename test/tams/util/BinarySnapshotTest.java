@@ -0,0 +1,393 @@
+package tams.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import tams.model.Activity;
+import tams.model.Booking;
+import tams.model.BookingStatus;
+import tams.model.Customer;
+import tams.model.ItineraryDay;
+import tams.model.Payment;
+import tams.model.PaymentMethod;
+import tams.model.PaymentStatus;
+import tams.model.Review;
+import tams.model.TravelPackage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that the binary snapshot holds everything the JSON files do, and that
+ * snapshots written by earlier format versions can still be read.
+ */
+public class BinarySnapshotTest {
+
+    private static final long BOOKED_AT = 1700000000000L;
+    private static final long PAID_AT = 1700000360000L;
+
+    private File dataDir;
+    private final List<DataManager> managers = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        dataDir = TestData.reset();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        System.clearProperty(DataManager.FORMAT_PROPERTY);
+        for (DataManager dataManager : managers) {
+            dataManager.close();
+        }
+    }
+
+    @Test
+    public void jsonSurvivesRoundTripThroughSnapshot() throws IOException {
+        DataManager original = newDataManager();
+        original.loadData();
+        addEntitiesNotInSampleData(original);
+        // The background save must not write the JSON files back once they are deleted
+        assertTrue(original.flush());
+        List<String> expected = describe(original);
+
+        // JSON -> snapshot, then load the snapshot alone
+        assertTrue(original.exportSnapshot());
+        deleteJsonFiles();
+        System.setProperty(DataManager.FORMAT_PROPERTY, "binary");
+        DataManager fromSnapshot = newDataManager();
+        fromSnapshot.loadData();
+        assertEquals(expected, describe(fromSnapshot));
+
+        // Snapshot -> JSON, then load the JSON alone
+        assertTrue(fromSnapshot.exportJson());
+        assertTrue(new File(dataDir, "snapshot.bin").delete());
+        System.clearProperty(DataManager.FORMAT_PROPERTY);
+        DataManager fromJson = newDataManager();
+        fromJson.loadData();
+        assertEquals(expected, describe(fromJson));
+    }
+
+    @Test
+    public void readsVersion1Snapshot() throws IOException {
+        BinarySnapshot snapshot = BinarySnapshot.read(writeLegacy(1));
+        assertLegacyEntities(snapshot);
+
+        // Version 1 kept only the payment ID; the package price is assumed paid
+        Booking booking = snapshot.getBookings().get(0);
+        assertEquals(1, booking.getNumTravelers());
+        assertEquals("", booking.getSpecialRequests());
+        Payment payment = booking.getPayment();
+        assertNotNull(payment);
+        assertEquals("PAY1", payment.getPaymentId());
+        assertEquals(PaymentStatus.COMPLETED, payment.getStatus());
+        assertEquals(snapshot.getPackages().get(0).calculateTotalPriceCents(), payment.getAmountCents());
+    }
+
+    @Test
+    public void readsVersion2Snapshot() throws IOException {
+        BinarySnapshot snapshot = BinarySnapshot.read(writeLegacy(2));
+        assertLegacyEntities(snapshot);
+        assertLegacyPayment(snapshot);
+    }
+
+    @Test
+    public void readsVersion3Snapshot() throws IOException {
+        BinarySnapshot snapshot = BinarySnapshot.read(writeLegacy(3));
+        assertLegacyEntities(snapshot);
+        assertLegacyPayment(snapshot);
+    }
+
+    @Test
+    public void rejectsUnknownVersion() throws IOException {
+        File file = new File(dataDir, "snapshot.bin");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0x54414D53);
+        out.writeInt(BinarySnapshot.VERSION + 1);
+        AtomicFile.write(file, bytes.toByteArray());
+
+        try {
+            BinarySnapshot.read(file);
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("version"));
+            return;
+        }
+        throw new AssertionError("Snapshot of an unknown version was read");
+    }
+
+    private DataManager newDataManager() {
+        DataManager dataManager = new DataManager();
+        managers.add(dataManager);
+        return dataManager;
+    }
+
+    private void addEntitiesNotInSampleData(DataManager dataManager) {
+        // Non-ASCII text, a capacity, and a booking with every optional field set
+        Customer customer = new Customer("Cunicode", "Zoë Ødegård", "zoe@example.com", "+47 555 0101", "Løkkeveien 3, Ålesund");
+        dataManager.addCustomer(customer);
+
+        TravelPackage travelPackage = dataManager.getPackages().get(0);
+        travelPackage.setCapacity(12);
+
+        Booking booking = new Booking("Bunicode", customer, travelPackage, new Date(BOOKED_AT),
+            BookingStatus.CONFIRMED, 3, "Vegetarian — no nuts");
+        Payment payment = new Payment("Punicode", 2599.5, PaymentMethod.PAYPAL);
+        payment.setStatus(PaymentStatus.REFUNDED);
+        booking.addPayment(payment);
+        customer.addBooking(booking);
+        dataManager.addBooking(booking);
+    }
+
+    private void deleteJsonFiles() {
+        for (File file : dataDir.listFiles((dir, name) -> name.endsWith(".json"))) {
+            assertTrue(file.delete());
+        }
+    }
+
+    /**
+     * Describe every stored field of every entity, one line per entity, sorted
+     * so that two data sets with the same entities describe the same.
+     * Booking dates are compared by day, the precision of the JSON files.
+     */
+    private static List<String> describe(DataManager dataManager) {
+        SimpleDateFormat day = new SimpleDateFormat("yyyy-MM-dd");
+        List<String> lines = new ArrayList<>();
+
+        for (Activity activity : dataManager.getActivities()) {
+            lines.add(join("activity", activity.getActivityId(), activity.getName(), activity.getLocation(),
+                activity.getDuration(), activity.getCostCents()));
+        }
+        for (Customer customer : dataManager.getCustomers()) {
+            lines.add(join("customer", customer.getCustomerId(), customer.getName(), customer.getEmail(),
+                customer.getPhone(), customer.getAddress()));
+        }
+        for (TravelPackage travelPackage : dataManager.getPackages()) {
+            List<String> days = new ArrayList<>();
+            for (ItineraryDay itineraryDay : travelPackage.getItinerary().getDays()) {
+                days.add(join("day", itineraryDay.getDayNumber(), itineraryDay.getNotes(),
+                    activityIds(itineraryDay.getActivities())));
+            }
+            lines.add(join("package", travelPackage.getServiceId(), travelPackage.getName(),
+                travelPackage.getDescription(), travelPackage.getBasePriceCents(), travelPackage.getDestination(),
+                travelPackage.getDuration(), travelPackage.getAccommodation(), travelPackage.getCapacity(),
+                activityIds(travelPackage.getActivities()), days));
+        }
+        for (Booking booking : dataManager.getBookings()) {
+            Payment payment = booking.getPayment();
+            lines.add(join("booking", booking.getBookingId(), booking.getCustomer().getCustomerId(),
+                booking.getService().getServiceId(), booking.getStatus(), day.format(booking.getDate()),
+                booking.getNumTravelers(), booking.getSpecialRequests(),
+                payment == null ? null : join("payment", payment.getPaymentId(), payment.getAmountCents(),
+                    payment.getMethod(), payment.getStatus(), payment.getPaymentDate().getTime())));
+        }
+        for (Review review : dataManager.getReviews()) {
+            TravelPackage travelPackage = dataManager.getPackageForReview(review);
+            lines.add(join("review", review.getReviewId(), review.getCustomer().getCustomerId(),
+                travelPackage != null ? travelPackage.getServiceId() : null, review.getRating(),
+                review.getComment()));
+        }
+
+        assertFalse(lines.isEmpty());
+        Collections.sort(lines);
+        return lines;
+    }
+
+    private static List<String> activityIds(List<Activity> activities) {
+        List<String> ids = new ArrayList<>();
+        for (Activity activity : activities) {
+            ids.add(activity.getActivityId());
+        }
+        return ids;
+    }
+
+    private static String join(Object... fields) {
+        StringBuilder line = new StringBuilder();
+        for (Object field : fields) {
+            line.append(field).append('|');
+        }
+        return line.toString();
+    }
+
+    private static void assertLegacyEntities(BinarySnapshot snapshot) {
+        Activity activity = snapshot.getActivities().get(0);
+        assertEquals("Snorkeling", activity.getName());
+        assertEquals(4550, activity.getCostCents());
+
+        Customer customer = snapshot.getCustomers().get(0);
+        assertEquals("Zoë Ødegård", customer.getName());
+
+        TravelPackage travelPackage = snapshot.getPackages().get(0);
+        assertEquals(129999, travelPackage.getBasePriceCents());
+        assertEquals(0, travelPackage.getCapacity());
+        assertSame(activity, travelPackage.getActivities().get(0));
+        assertEquals(1, travelPackage.getItinerary().getDays().size());
+        assertEquals("Arrive", travelPackage.getItinerary().getDays().get(0).getNotes());
+        assertSame(activity, travelPackage.getItinerary().getDays().get(0).getActivities().get(0));
+
+        Booking booking = snapshot.getBookings().get(0);
+        assertSame(customer, booking.getCustomer());
+        assertSame(travelPackage, booking.getService());
+        assertEquals(BookingStatus.CONFIRMED, booking.getStatus());
+        assertEquals(BOOKED_AT, booking.getDate().getTime());
+
+        Review review = snapshot.getReviews().get(0);
+        assertSame(customer, review.getCustomer());
+        assertSame(travelPackage, review.getTravelPackage());
+        assertEquals(5, review.getRating());
+    }
+
+    private static void assertLegacyPayment(BinarySnapshot snapshot) {
+        Booking booking = snapshot.getBookings().get(0);
+        assertEquals(2, booking.getNumTravelers());
+        assertEquals("Window seat", booking.getSpecialRequests());
+        Payment payment = booking.getPayment();
+        assertEquals("PAY1", payment.getPaymentId());
+        assertEquals(129999, payment.getAmountCents());
+        assertEquals(PaymentMethod.BANK_TRANSFER, payment.getMethod());
+        assertEquals(PaymentStatus.PENDING, payment.getStatus());
+        assertEquals(PAID_AT, payment.getPaymentDate().getTime());
+    }
+
+    /**
+     * Write a snapshot the way the given earlier format version laid it out:
+     * one activity, customer, package, booking and review.
+     */
+    private File writeLegacy(int version) throws IOException {
+        Map<String, Integer> stringIndex = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+
+        ByteArrayOutputStream activities = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(activities);
+        out.writeInt(1);
+        writeStrings(out, stringIndex, strings, "A1", "Snorkeling", "Reef");
+        out.writeInt(3);
+        writeAmount(out, version, 45.50);
+
+        ByteArrayOutputStream customers = new ByteArrayOutputStream();
+        out = new DataOutputStream(customers);
+        out.writeInt(1);
+        writeStrings(out, stringIndex, strings, "C1", "Zoë Ødegård", "zoe@example.com", "555-0101", "Ålesund");
+
+        ByteArrayOutputStream packages = new ByteArrayOutputStream();
+        out = new DataOutputStream(packages);
+        out.writeInt(1);
+        writeStrings(out, stringIndex, strings, "P1", "Reef Week", "A week on the reef");
+        writeAmount(out, version, 1299.99);
+        writeStrings(out, stringIndex, strings, "Cairns");
+        out.writeInt(7);
+        writeStrings(out, stringIndex, strings, "Hotel");
+        out.writeInt(1);
+        out.writeInt(0);
+        out.writeInt(1);
+        out.writeInt(1);
+        writeStrings(out, stringIndex, strings, "Arrive");
+        out.writeInt(1);
+        out.writeInt(0);
+
+        ByteArrayOutputStream payments = new ByteArrayOutputStream();
+        out = new DataOutputStream(payments);
+        out.writeInt(1);
+        writeStrings(out, stringIndex, strings, "PAY1");
+        writeAmount(out, version, 1299.99);
+        writeStrings(out, stringIndex, strings, "BANK_TRANSFER", "PENDING");
+        out.writeLong(PAID_AT);
+
+        ByteArrayOutputStream bookings = new ByteArrayOutputStream();
+        out = new DataOutputStream(bookings);
+        out.writeInt(1);
+        writeStrings(out, stringIndex, strings, "B1");
+        out.writeInt(0);
+        out.writeInt(0);
+        writeStrings(out, stringIndex, strings, "CONFIRMED");
+        out.writeLong(BOOKED_AT);
+        if (version == 1) {
+            writeStrings(out, stringIndex, strings, "PAY1");
+        } else {
+            out.writeInt(2);
+            writeStrings(out, stringIndex, strings, "Window seat");
+            out.writeInt(0);
+        }
+
+        ByteArrayOutputStream reviews = new ByteArrayOutputStream();
+        out = new DataOutputStream(reviews);
+        out.writeInt(1);
+        writeStrings(out, stringIndex, strings, "R1");
+        out.writeInt(0);
+        out.writeInt(0);
+        out.writeInt(5);
+        writeStrings(out, stringIndex, strings, "Great");
+
+        ByteArrayOutputStream table = new ByteArrayOutputStream();
+        out = new DataOutputStream(table);
+        out.writeInt(strings.size());
+        for (String value : strings) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        out = new DataOutputStream(file);
+        out.writeInt(0x54414D53);
+        out.writeInt(version);
+        writeSection(out, 1, table);
+        writeSection(out, 2, activities);
+        writeSection(out, 3, customers);
+        writeSection(out, 4, packages);
+        if (version > 1) {
+            writeSection(out, 7, payments);
+        }
+        writeSection(out, 5, bookings);
+        writeSection(out, 6, reviews);
+
+        File snapshotFile = new File(dataDir, "snapshot-v" + version + ".bin");
+        AtomicFile.write(snapshotFile, file.toByteArray());
+        return snapshotFile;
+    }
+
+    private static void writeStrings(DataOutputStream out, Map<String, Integer> stringIndex,
+                                     List<String> strings, String... values) throws IOException {
+        for (String value : values) {
+            Integer index = stringIndex.get(value);
+            if (index == null) {
+                index = strings.size();
+                stringIndex.put(value, index);
+                strings.add(value);
+            }
+            out.writeInt(index);
+        }
+    }
+
+    private static void writeAmount(DataOutputStream out, int version, double amount) throws IOException {
+        if (version < 3) {
+            out.writeDouble(amount);
+        } else {
+            out.writeLong(Math.round(amount * 100));
+        }
+    }
+
+    private static void writeSection(DataOutputStream out, int tag, ByteArrayOutputStream section)
+            throws IOException {
+        out.writeInt(tag);
+        out.writeInt(section.size());
+        section.writeTo(out);
+    }
+}
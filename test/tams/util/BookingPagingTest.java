@@ -0,0 +1,115 @@
+package tams.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+import tams.model.Activity;
+import tams.model.Booking;
+import tams.model.BookingStatus;
+import tams.model.Customer;
+import tams.model.TravelPackage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that paging bookings by price matches a full sort, including after
+ * package prices change.
+ */
+public class BookingPagingTest {
+
+    private static final int PAGE_SIZE = 7;
+
+    private DataManager dataManager;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        TestData.reset();
+        dataManager = new DataManager();
+        dataManager.loadData();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        // Let the saves the changes asked for finish before the next test clears the data
+        dataManager.close();
+    }
+
+    @Test
+    public void priceOrderFollowsPackagePriceChanges() {
+        Customer customer = new Customer("Cpage", "Paging Customer", "page@example.com", "555-0150", "Here");
+        dataManager.addCustomer(customer);
+        Activity activity = new Activity("Apage", "Paging Tour", "Anywhere", 2, 40);
+        dataManager.addActivity(activity);
+
+        // Two packages share a price, so their bookings interleave by ID
+        TravelPackage cheap = addPackage("Ppage1", 100);
+        TravelPackage same = addPackage("Ppage2", 100);
+        TravelPackage dear = addPackage("Ppage3", 900);
+        TravelPackage[] packages = {cheap, same, dear};
+        for (int i = 0; i < 30; i++) {
+            Booking booking = new Booking("Bpage" + (100 + i), customer, packages[i % 3], new Date(),
+                BookingStatus.PENDING, 1, null);
+            customer.addBooking(booking);
+            dataManager.addBooking(booking);
+        }
+        assertEquals(sortedByPrice(), pageThrough());
+
+        // Base price and activity cost changes both move a package's bookings
+        dear.setBasePrice(50);
+        assertEquals(sortedByPrice(), pageThrough());
+        cheap.getActivities().add(activity);
+        assertEquals(sortedByPrice(), pageThrough());
+        activity.setCost(2000);
+        assertEquals(sortedByPrice(), pageThrough());
+
+        // A package's last booking removed and a new one added are filed at its current price
+        for (Booking booking : dataManager.getBookingsForPackage("Ppage2")) {
+            assertTrue(dataManager.removeBooking(booking));
+        }
+        same.setBasePrice(5000);
+        Booking late = new Booking("Bpage999", customer, same, new Date(), BookingStatus.PENDING, 1, null);
+        customer.addBooking(late);
+        dataManager.addBooking(late);
+        List<String> ids = pageThrough();
+        assertEquals(sortedByPrice(), ids);
+        assertEquals("Bpage999", ids.get(ids.size() - 1));
+    }
+
+    private TravelPackage addPackage(String id, double basePrice) {
+        TravelPackage travelPackage = new TravelPackage(id, "Paging " + id, "Paging test package", basePrice,
+            "Anywhere", 3, "Hotel");
+        dataManager.addPackage(travelPackage);
+        return travelPackage;
+    }
+
+    private List<String> pageThrough() {
+        List<String> ids = new ArrayList<>();
+        Page.Cursor cursor = null;
+        do {
+            Page<Booking> page = dataManager.getBookingsPage(BookingOrder.PRICE, cursor, PAGE_SIZE);
+            for (Booking booking : page.getItems()) {
+                ids.add(booking.getBookingId());
+            }
+            cursor = page.getNext();
+        } while (cursor != null);
+        return ids;
+    }
+
+    private List<String> sortedByPrice() {
+        List<Booking> bookings = new ArrayList<>(dataManager.getBookings());
+        bookings.sort(Comparator.comparingLong(Booking::getTotalPriceCents).thenComparing(Booking::getBookingId));
+        List<String> ids = new ArrayList<>();
+        for (Booking booking : bookings) {
+            ids.add(booking.getBookingId());
+        }
+        return ids;
+    }
+}
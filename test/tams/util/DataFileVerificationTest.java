@@ -0,0 +1,110 @@
+package tams.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import tams.model.Customer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that a data file failing its checksum is refused rather than partly
+ * loaded, and is left in place rather than overwritten.
+ */
+public class DataFileVerificationTest {
+
+    private File dataDir;
+    private final List<DataManager> managers = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        dataDir = TestData.reset();
+
+        // Rewrite the sample files with checksum footers
+        DataManager dataManager = newDataManager();
+        dataManager.loadData();
+        assertTrue(dataManager.exportJson());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        // Let the saves the changes asked for finish before the next test clears the data
+        for (DataManager dataManager : managers) {
+            dataManager.close();
+        }
+    }
+
+    @Test
+    public void damagedFileIsRefusedAndLeftInPlace() throws IOException {
+        File customers = new File(dataDir, "customers.json");
+        File bookings = new File(dataDir, "bookings.json");
+        byte[] damaged = damage(customers);
+        byte[] bookingsBefore = Files.readAllBytes(bookings.toPath());
+
+        DataManager dataManager = newDataManager();
+        dataManager.loadData();
+
+        // None of the records read before the mismatch was found are kept
+        assertTrue(dataManager.getCustomers().isEmpty());
+
+        // Saving must not replace the damaged file, nor drop the bookings of its customers
+        dataManager.addCustomer(new Customer("Cnew", "New Customer", "new@example.com", "555-0100", "Here"));
+        assertFalse(dataManager.saveData());
+        assertFalse(dataManager.exportJson());
+        assertArrayEquals(damaged, Files.readAllBytes(customers.toPath()));
+        assertArrayEquals(bookingsBefore, Files.readAllBytes(bookings.toPath()));
+        assertEquals(0, dataDir.listFiles((dir, name) -> name.contains(".damaged-")).length);
+    }
+
+    @Test
+    public void restoredFileLoadsAndSavesAgain() throws IOException {
+        File customers = new File(dataDir, "customers.json");
+        byte[] original = Files.readAllBytes(customers.toPath());
+        damage(customers);
+
+        DataManager dataManager = newDataManager();
+        dataManager.loadData();
+        assertTrue(dataManager.getCustomers().isEmpty());
+
+        Files.write(customers.toPath(), original);
+        dataManager.loadData();
+        assertFalse(dataManager.getCustomers().isEmpty());
+        assertFalse(dataManager.getBookings().isEmpty());
+        dataManager.addCustomer(new Customer("Cnew", "New Customer", "new@example.com", "555-0100", "Here"));
+        assertTrue(dataManager.saveData());
+    }
+
+    private DataManager newDataManager() {
+        DataManager dataManager = new DataManager();
+        managers.add(dataManager);
+        return dataManager;
+    }
+
+    /**
+     * Change one letter of a file's content, keeping its footer.
+     *
+     * @return the damaged content
+     */
+    private static byte[] damage(File file) throws IOException {
+        byte[] content = Files.readAllBytes(file.toPath());
+        String text = new String(content, StandardCharsets.UTF_8);
+        int index = text.indexOf("Peter");
+        assertTrue(index >= 0);
+        byte[] damaged = Arrays.copyOf(content, content.length);
+        damaged[index] = 'p';
+        Files.write(file.toPath(), damaged);
+        return damaged;
+    }
+}
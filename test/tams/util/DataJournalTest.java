@@ -0,0 +1,135 @@
+package tams.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import tams.model.Customer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that truncating the journal drops only the records a save covers, and
+ * that records appended after a crash are not lost to a torn line.
+ */
+public class DataJournalTest {
+
+    private File dataDir;
+    private DataJournal journal;
+    private DataManager dataManager;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        dataDir = TestData.reset();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        System.clearProperty(DataManager.JOURNAL_PROPERTY);
+        if (dataManager != null) {
+            dataManager.close();
+        }
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    @Test
+    public void truncateKeepsLaterRecords() throws IOException {
+        File file = new File(dataDir, "test-journal.log");
+        journal = new DataJournal(file);
+        journal.append("one");
+        journal.append("two");
+        long covered = journal.getSequence();
+        journal.append("three");
+        journal.append("four");
+
+        journal.truncate(covered);
+        assertEquals(2, journal.getRecordCount());
+        assertEquals(Arrays.asList("three", "four"), replay(journal));
+
+        // Appends after a trim go to the trimmed file
+        journal.append("five");
+        assertEquals(Arrays.asList("three", "four", "five"), replay(journal));
+
+        journal.truncate(journal.getSequence());
+        assertEquals(0, file.length());
+        journal.append("six");
+        assertEquals(Arrays.asList("six"), replay(journal));
+    }
+
+    @Test
+    public void queuedRecordsSurviveTruncateOfEarlierOnes() throws IOException {
+        File file = new File(dataDir, "test-journal.log");
+        journal = new DataJournal(file);
+        journal.append("one");
+        long covered = journal.getSequence();
+        long last = journal.enqueue("two");
+
+        journal.truncate(covered);
+        journal.awaitDurable(last);
+        assertEquals(Arrays.asList("two"), replay(journal));
+    }
+
+    @Test
+    public void recordAppendedAfterTornLineSurvivesReplay() throws IOException {
+        File file = new File(dataDir, "test-journal.log");
+        Files.write(file.toPath(), "one\n{\"op\":\"pu".getBytes(StandardCharsets.UTF_8));
+
+        journal = new DataJournal(file);
+        journal.append("two");
+        journal.close();
+
+        // The torn line is still replayed for the handler to skip, but on its own
+        journal = new DataJournal(file);
+        assertEquals(Arrays.asList("one", "{\"op\":\"pu", "two"), replay(journal));
+    }
+
+    @Test
+    public void writeBehindTruncatesJournalInJournalMode() throws IOException {
+        System.setProperty(DataManager.JOURNAL_PROPERTY, "true");
+        dataManager = new DataManager();
+        dataManager.loadData();
+        assertTrue(dataManager.isJournalEnabled());
+
+        for (int i = 0; i < 20; i++) {
+            dataManager.addCustomer(new Customer("Cj" + i, "Journal " + i, "j" + i + "@example.com", "555", "Here"));
+            dataManager.requestSave();
+        }
+        assertTrue(dataManager.flush());
+        String journalText = new String(Files.readAllBytes(new File(dataDir, "journal.log").toPath()),
+            StandardCharsets.UTF_8);
+        assertEquals("", journalText);
+        assertTrue(dataManager.close());
+
+        // Everything reached the data files
+        System.clearProperty(DataManager.JOURNAL_PROPERTY);
+        DataManager reloaded = new DataManager();
+        reloaded.loadData();
+        for (int i = 0; i < 20; i++) {
+            Customer customer = null;
+            for (Customer candidate : reloaded.getCustomers()) {
+                if (candidate.getCustomerId().equals("Cj" + i)) {
+                    customer = candidate;
+                }
+            }
+            assertNotNull(customer, "Cj" + i);
+        }
+    }
+
+    private static List<String> replay(DataJournal journal) throws IOException {
+        List<String> records = new ArrayList<>();
+        journal.replay(records::add);
+        return records;
+    }
+}
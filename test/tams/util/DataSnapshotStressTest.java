@@ -0,0 +1,194 @@
+package tams.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import tams.model.Booking;
+import tams.model.Customer;
+import tams.model.TravelPackage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Stress test of lock-free reads: readers take snapshots and use the getters
+ * while writers add and remove customers and bookings.
+ */
+public class DataSnapshotStressTest {
+
+    private static final int WRITERS = 4;
+    private static final int READERS = 4;
+    private static final int ROUNDS = 400;
+
+    private DataManager dataManager;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        TestData.reset();
+        dataManager = new DataManager();
+        dataManager.loadData();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        // Also when a check fails, let the writers' saves finish before the next test clears the data
+        dataManager.close();
+    }
+
+    @Test
+    public void readersSeeConsistentSnapshotsWhileWritersChangeData() throws Exception {
+        TravelPackage travelPackage = dataManager.getPackages().get(0);
+        int customersBefore = dataManager.getCustomers().size();
+        int bookingsBefore = dataManager.getBookings().size();
+
+        ExecutorService threads = Executors.newFixedThreadPool(WRITERS + READERS);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch writersDone = new CountDownLatch(WRITERS);
+        List<Future<?>> tasks = new ArrayList<>();
+        try {
+            for (int w = 0; w < WRITERS; w++) {
+                int writer = w;
+                tasks.add(threads.submit(() -> {
+                    try {
+                        start.await();
+                        write(writer, travelPackage);
+                    } finally {
+                        writersDone.countDown();
+                    }
+                    return null;
+                }));
+            }
+            for (int r = 0; r < READERS; r++) {
+                tasks.add(threads.submit(() -> {
+                    start.await();
+                    long lastVersion = 0;
+                    int reads = 0;
+                    // Keep reading until the writers finish, and at least a few times
+                    while (writersDone.getCount() > 0 || reads < 10) {
+                        lastVersion = read(lastVersion);
+                        reads++;
+                    }
+                    return null;
+                }));
+            }
+
+            start.countDown();
+            for (Future<?> task : tasks) {
+                try {
+                    task.get(60, TimeUnit.SECONDS);
+                } catch (ExecutionException e) {
+                    throw new AssertionError("Reader or writer failed: " + e.getCause(), e.getCause());
+                } catch (TimeoutException e) {
+                    throw new AssertionError("Reader or writer did not finish", e);
+                }
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+
+        // Every odd round's customer and booking was kept, every even round's removed
+        assertEquals(customersBefore + WRITERS * ROUNDS / 2, dataManager.getCustomers().size());
+        assertEquals(bookingsBefore + WRITERS * ROUNDS / 2, dataManager.getBookings().size());
+        assertTrue(dataManager.flush());
+    }
+
+    /**
+     * Add a customer and a booking each round, and remove both again every other round.
+     * A booking is always added after its customer and removed before it.
+     */
+    private void write(int writer, TravelPackage travelPackage) {
+        for (int i = 0; i < ROUNDS; i++) {
+            Customer customer = new Customer(customerId(writer, i), "Stress " + writer + " " + i,
+                "stress@example.com", "555-0199", "Here");
+            dataManager.addCustomer(customer);
+            Booking booking = new Booking("Bs" + writer + "-" + i, customer, travelPackage);
+            customer.addBooking(booking);
+            dataManager.addBooking(booking);
+
+            if (i % 2 == 0) {
+                assertTrue(dataManager.removeBooking(booking));
+                assertTrue(dataManager.removeCustomer(customer));
+            }
+        }
+    }
+
+    /**
+     * Take a snapshot and check it, then exercise the getters that read without locking.
+     *
+     * @return the snapshot's version
+     */
+    private long read(long lastVersion) {
+        DataSnapshot snapshot = dataManager.getSnapshot();
+        assertTrue(snapshot.getVersion() >= lastVersion,
+            "Snapshot version went back from " + lastVersion + " to " + snapshot.getVersion());
+
+        List<Customer> customers = snapshot.getCustomers();
+        List<Booking> bookings = snapshot.getBookings();
+        assertThrows(UnsupportedOperationException.class, () -> customers.add(null));
+
+        Set<Customer> visible = Collections.newSetFromMap(new IdentityHashMap<>());
+        int[] keptCount = new int[WRITERS];
+        int[] lastKept = new int[WRITERS];
+        for (Customer customer : customers) {
+            visible.add(customer);
+            String id = customer.getCustomerId();
+            if (id.startsWith("Cs")) {
+                int writer = id.charAt(2) - '0';
+                int round = Integer.parseInt(id.substring(4));
+                if (round % 2 == 1) {
+                    keptCount[writer]++;
+                    lastKept[writer] = Math.max(lastKept[writer], round);
+                }
+            }
+        }
+        // A writer's changes are published in order, so its kept customers are a prefix
+        for (int w = 0; w < WRITERS; w++) {
+            if (keptCount[w] > 0) {
+                assertEquals((lastKept[w] + 1) / 2, keptCount[w], "Customers of writer " + w + " out of order");
+            }
+        }
+        // No booking is published without its customer
+        for (Booking booking : bookings) {
+            assertTrue(visible.contains(booking.getCustomer()),
+                "Booking " + booking.getBookingId() + " published without its customer");
+        }
+
+        // The snapshot does not change once taken
+        assertEquals(customers.size(), snapshot.getCustomers().size());
+        assertSame(bookings, snapshot.getBookings());
+
+        // The getters read the current data without throwing
+        for (Customer customer : dataManager.getCustomers()) {
+            assertFalse(customer.getCustomerId().isEmpty());
+        }
+        dataManager.getBookings().size();
+        dataManager.getPackages().size();
+        dataManager.getReviews().size();
+        dataManager.getActivities().size();
+        dataManager.searchCustomersByName("Stress");
+        dataManager.getBookingsForPackage(bookings.isEmpty() ? "none" : bookings.get(0).getService().getServiceId());
+        return snapshot.getVersion();
+    }
+
+    private static String customerId(int writer, int round) {
+        return "Cs" + writer + "-" + round;
+    }
+}
@@ -0,0 +1,62 @@
+package tams.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Sets up the data directory for a test.
+ * Tests run in their own working directory (see the surefire configuration),
+ * so DataManager's relative data directory there is a scratch copy of the
+ * sample data rather than the project's own.
+ */
+public final class TestData {
+
+    // DataManager's data directory, relative to the working directory
+    private static final String DATA_DIR = "src/data";
+
+    private TestData() {
+    }
+
+    /**
+     * Replace the data directory with a fresh copy of the sample JSON files
+     * and clear the properties that select DataManager's storage modes.
+     *
+     * @return the data directory
+     * @throws IOException if the sample files cannot be copied
+     */
+    public static File reset() throws IOException {
+        System.clearProperty(DataManager.FORMAT_PROPERTY);
+        System.clearProperty(DataManager.JOURNAL_PROPERTY);
+        System.clearProperty(DataManager.COLUMNS_PROPERTY);
+
+        File dataDir = new File(DATA_DIR);
+        File samples = new File(System.getProperty("basedir", "."), DATA_DIR);
+        File[] files = samples.listFiles((dir, name) -> name.endsWith(".json"));
+        // Never clear the project's own data, should the tests be run from the project directory
+        if (files == null || samples.getCanonicalFile().equals(dataDir.getCanonicalFile())) {
+            throw new IOException("Sample data not found outside the working directory: " + samples);
+        }
+
+        delete(dataDir);
+        if (!dataDir.mkdirs()) {
+            throw new IOException("Cannot create " + dataDir.getAbsolutePath());
+        }
+        for (File file : files) {
+            Files.copy(file.toPath(), new File(dataDir, file.getName()).toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+        }
+        return dataDir;
+    }
+
+    private static void delete(File file) throws IOException {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        Files.deleteIfExists(file.toPath());
+    }
+}
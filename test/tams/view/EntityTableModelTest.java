@@ -0,0 +1,77 @@
+package tams.view;
+
+import org.junit.jupiter.api.Test;
+
+import javax.swing.event.TableModelEvent;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that rows are found at the right index as they are added, removed and replaced.
+ */
+public class EntityTableModelTest {
+
+    private static EntityTableModel<String> model() {
+        return new EntityTableModel<String>().addColumn("Value", value -> value);
+    }
+
+    @Test
+    public void findsRowsThroughEveryChange() {
+        EntityTableModel<String> model = model();
+        model.setRows(new ArrayList<>(Arrays.asList("a", "b", "c")));
+        assertEquals(1, model.indexOf("b"));
+        assertEquals(-1, model.indexOf("z"));
+
+        model.addRow("d");
+        model.addRows(Arrays.asList("e", "f"));
+        assertEquals(3, model.indexOf("d"));
+        assertEquals(5, model.indexOf("f"));
+
+        // Rows after a removed one move up
+        assertTrue(model.removeRow("b"));
+        assertFalse(model.removeRow("b"));
+        assertEquals(-1, model.indexOf("b"));
+        assertEquals(0, model.indexOf("a"));
+        assertEquals(1, model.indexOf("c"));
+        assertEquals(4, model.indexOf("f"));
+        for (int i = 0; i < model.getRowCount(); i++) {
+            assertEquals(i, model.indexOf(model.getRow(i)));
+        }
+
+        model.setRows(Arrays.asList("x", "y"));
+        assertEquals(-1, model.indexOf("a"));
+        assertEquals(1, model.indexOf("y"));
+    }
+
+    @Test
+    public void entityShownTwiceIsFoundAtItsFirstRow() {
+        EntityTableModel<String> model = model();
+        model.setRows(Arrays.asList("a", "b", "a"));
+        assertEquals(0, model.indexOf("a"));
+        assertTrue(model.removeRow("a"));
+        assertEquals(1, model.indexOf("a"));
+    }
+
+    @Test
+    public void rowChangesFireEventsForTheirRowOnly() {
+        EntityTableModel<String> model = model();
+        model.setRows(Arrays.asList("a", "b", "c"));
+        List<TableModelEvent> events = new ArrayList<>();
+        model.addTableModelListener(events::add);
+
+        assertTrue(model.updateRow("c"));
+        assertTrue(model.removeRow("a"));
+        assertFalse(model.updateRow("a"));
+
+        assertEquals(2, events.size());
+        assertEquals(TableModelEvent.UPDATE, events.get(0).getType());
+        assertEquals(2, events.get(0).getFirstRow());
+        assertEquals(TableModelEvent.DELETE, events.get(1).getType());
+        assertEquals(0, events.get(1).getFirstRow());
+    }
+}